@@ -76,6 +76,76 @@ public interface DataModule extends Iterable<DataInstance> {
 	 */
 	int getSize();
 
+	/**
+	 * 按照游标收集指定的离散特征(缺失的特征为{@link DataInstance#defaultInteger})
+	 * 
+	 * @param cursors
+	 * @param index
+	 * @param datas
+	 */
+	default void gatherDiscreteFeatures(int[] cursors, int index, int[] datas) {
+		if (cursors.length == 0) {
+			return;
+		}
+		DataInstance instance = getInstance(cursors[0]);
+		for (int position = 0, size = cursors.length; position < size; position++) {
+			instance.setCursor(cursors[position]);
+			datas[position] = instance.getDiscreteFeature(index);
+		}
+	}
+
+	/**
+	 * 按照游标收集指定的连续特征(缺失的特征为{@link DataInstance#defaultFloat})
+	 * 
+	 * @param cursors
+	 * @param index
+	 * @param datas
+	 */
+	default void gatherContinuousFeatures(int[] cursors, int index, float[] datas) {
+		if (cursors.length == 0) {
+			return;
+		}
+		DataInstance instance = getInstance(cursors[0]);
+		for (int position = 0, size = cursors.length; position < size; position++) {
+			instance.setCursor(cursors[position]);
+			datas[position] = instance.getContinuousFeature(index);
+		}
+	}
+
+	/**
+	 * 按照游标收集离散标记
+	 * 
+	 * @param cursors
+	 * @param datas
+	 */
+	default void gatherDiscreteMarks(int[] cursors, int[] datas) {
+		if (cursors.length == 0) {
+			return;
+		}
+		DataInstance instance = getInstance(cursors[0]);
+		for (int position = 0, size = cursors.length; position < size; position++) {
+			instance.setCursor(cursors[position]);
+			datas[position] = instance.getDiscreteMark();
+		}
+	}
+
+	/**
+	 * 按照游标收集连续标记
+	 * 
+	 * @param cursors
+	 * @param datas
+	 */
+	default void gatherContinuousMarks(int[] cursors, float[] datas) {
+		if (cursors.length == 0) {
+			return;
+		}
+		DataInstance instance = getInstance(cursors[0]);
+		for (int position = 0, size = cursors.length; position < size; position++) {
+			instance.setCursor(cursors[position]);
+			datas[position] = instance.getContinuousMark();
+		}
+	}
+
 	/**
 	 * 获取指定外部索引的属性投影(true代表离散,false代表连续)
 	 * 
@@ -3,8 +3,13 @@ package com.jstarcraft.ai.data.module;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 
 import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.environment.EnvironmentThread;
 import com.jstarcraft.ai.utility.FloatArray;
 import com.jstarcraft.ai.utility.IntegerArray;
 import com.jstarcraft.core.utility.KeyValue;
@@ -17,6 +22,9 @@ import com.jstarcraft.core.utility.KeyValue;
  */
 abstract public class AbstractModule implements DataModule {
 
+	/** 并行收集的分块大小 */
+	private static final int GATHER_SIZE = 4096;
+
 	/** 离散特征 */
 	protected int discreteOrder;
 
@@ -102,6 +110,71 @@ abstract public class AbstractModule implements DataModule {
 		return continuousOrder;
 	}
 
+	/**
+	 * 收集(游标数量超过分块大小并且在环境线程调用时按照分块并行)
+	 * 
+	 * @param size
+	 * @param gatherer
+	 *            按照位置收集
+	 */
+	protected static void doGather(int size, IntConsumer gatherer) {
+		if (size <= GATHER_SIZE || !(Thread.currentThread() instanceof EnvironmentThread)) {
+			for (int position = 0; position < size; position++) {
+				gatherer.accept(position);
+			}
+			return;
+		}
+		EnvironmentContext context = EnvironmentContext.getContext();
+		int numberOfBlocks = (size + GATHER_SIZE - 1) / GATHER_SIZE;
+		CountDownLatch latch = new CountDownLatch(numberOfBlocks);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int block = 0; block < numberOfBlocks; block++) {
+			int from = block * GATHER_SIZE;
+			int to = Math.min(from + GATHER_SIZE, size);
+			context.doStructureByAny(block, () -> {
+				try {
+					for (int position = from; position < to; position++) {
+						gatherer.accept(position);
+					}
+				} catch (Throwable throwable) {
+					failure.compareAndSet(null, throwable);
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		// 抛出第一个失败的分块的异常
+		Throwable throwable = failure.get();
+		if (throwable instanceof RuntimeException) {
+			throw (RuntimeException) throwable;
+		}
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+		if (throwable != null) {
+			throw new RuntimeException(throwable);
+		}
+	}
+
+	@Override
+	public void gatherDiscreteMarks(int[] cursors, int[] datas) {
+		doGather(cursors.length, (position) -> {
+			datas[position] = discreteMarks.getData(cursors[position]);
+		});
+	}
+
+	@Override
+	public void gatherContinuousMarks(int[] cursors, float[] datas) {
+		doGather(cursors.length, (position) -> {
+			datas[position] = continuousMarks.getData(cursors[position]);
+		});
+	}
+
 	IntegerArray getDiscreteMarks() {
 		return discreteMarks;
 	}
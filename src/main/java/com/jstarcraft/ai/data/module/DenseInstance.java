@@ -34,6 +34,8 @@ public class DenseInstance implements DataInstance {
 		this.continuousOrder = module.getContinuousOrder();
 		this.discreteValues = module.getDiscreteValues();
 		this.continuousValues = module.getContinuousValues();
+		this.discreteMarks = module.getDiscreteMarks();
+		this.continuousMarks = module.getContinuousMarks();
 	}
 
 	@Override
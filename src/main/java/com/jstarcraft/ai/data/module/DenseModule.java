@@ -87,6 +87,22 @@ public class DenseModule extends AbstractModule {
 		return size;
 	}
 
+	@Override
+	public void gatherDiscreteFeatures(int[] cursors, int index, int[] datas) {
+		IntegerArray values = discreteValues[index];
+		doGather(cursors.length, (position) -> {
+			datas[position] = values.getData(cursors[position]);
+		});
+	}
+
+	@Override
+	public void gatherContinuousFeatures(int[] cursors, int index, float[] datas) {
+		FloatArray values = continuousValues[index];
+		doGather(cursors.length, (position) -> {
+			datas[position] = values.getData(cursors[position]);
+		});
+	}
+
 	@Override
 	public Iterator<DataInstance> iterator() {
 		return new DenseModuleIterator();
@@ -0,0 +1,60 @@
+package com.jstarcraft.ai.data.module;
+
+import com.jstarcraft.ai.utility.FloatArray;
+import com.jstarcraft.ai.utility.IntegerArray;
+
+/**
+ * 稠密模块矩阵
+ *
+ * <pre>
+ * 建立在稠密模块的列存储之上,所有标量都是已知的.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DenseModuleMatrix extends ModuleMatrix {
+
+	/** 离散特征(连续特征的视图为null) */
+	private IntegerArray[] discreteValues;
+
+	/** 连续特征(离散特征的视图为null) */
+	private FloatArray[] continuousValues;
+
+	DenseModuleMatrix(DenseModule module, IntegerArray references, boolean discrete) {
+		super(references, references == null ? module.getSize() : references.getSize(), discrete ? module.getDiscreteOrder() : module.getContinuousOrder());
+		if (discrete) {
+			this.discreteValues = module.getDiscreteValues();
+		} else {
+			this.continuousValues = module.getContinuousValues();
+		}
+		this.knownSize = rowSize * columnSize;
+	}
+
+	@Override
+	protected int getKnownSize(int rowIndex) {
+		return columnSize;
+	}
+
+	@Override
+	protected int getKnownIndex(int rowIndex, int position) {
+		return position;
+	}
+
+	@Override
+	protected float getKnownValue(int rowIndex, int position) {
+		return getValue(rowIndex, position);
+	}
+
+	@Override
+	public boolean isIndexed() {
+		return false;
+	}
+
+	@Override
+	public float getValue(int rowIndex, int columnIndex) {
+		int cursor = getCursor(rowIndex);
+		return discreteValues == null ? continuousValues[columnIndex].getData(cursor) : discreteValues[columnIndex].getData(cursor);
+	}
+
+}
@@ -0,0 +1,488 @@
+package com.jstarcraft.ai.data.module;
+
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathAccessor;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.ScalarIterator;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MatrixScalar;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+import com.jstarcraft.ai.math.structure.vector.VectorScalar;
+import com.jstarcraft.ai.utility.IntegerArray;
+
+/**
+ * 模块矩阵
+ *
+ * <pre>
+ * 直接建立在模块存储之上的只读矩阵视图(不拷贝数据),每行对应一个实例,每列对应一个离散或者连续特征(离散特征的值转换为浮点).
+ * 引用模块通过引用的索引间接访问被引用模块的存储,所以数据集的子集同样不需要拷贝.
+ * 任何修改(setValue,setValues,scaleValues等)都会抛出UnsupportedOperationException.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public abstract class ModuleMatrix implements MathMatrix {
+
+	/** 引用(为null时行索引即为实例的游标) */
+	protected IntegerArray references;
+
+	protected int rowSize, columnSize;
+
+	protected int knownSize;
+
+	protected ModuleMatrix(IntegerArray references, int rowSize, int columnSize) {
+		this.references = references;
+		this.rowSize = rowSize;
+		this.columnSize = columnSize;
+	}
+
+	/**
+	 * 获取行对应的实例游标
+	 *
+	 * @param rowIndex
+	 * @return
+	 */
+	protected int getCursor(int rowIndex) {
+		return references == null ? rowIndex : references.getData(rowIndex);
+	}
+
+	/**
+	 * 获取指定行已知标量的数量
+	 *
+	 * @param rowIndex
+	 * @return
+	 */
+	protected abstract int getKnownSize(int rowIndex);
+
+	/**
+	 * 获取指定行指定位置标量的列索引
+	 *
+	 * @param rowIndex
+	 * @param position
+	 * @return
+	 */
+	protected abstract int getKnownIndex(int rowIndex, int position);
+
+	/**
+	 * 获取指定行指定位置标量的值
+	 *
+	 * @param rowIndex
+	 * @param position
+	 * @return
+	 */
+	protected abstract float getKnownValue(int rowIndex, int position);
+
+	@Override
+	public int getElementSize() {
+		return rowSize * columnSize;
+	}
+
+	@Override
+	public int getKnownSize() {
+		return knownSize;
+	}
+
+	@Override
+	public int getUnknownSize() {
+		return getElementSize() - getKnownSize();
+	}
+
+	@Override
+	public ScalarIterator<MatrixScalar> iterateElement(MathCalculator mode, MathAccessor<MatrixScalar>... accessors) {
+		switch (mode) {
+		case SERIAL: {
+			ModuleMatrixScalar scalar = new ModuleMatrixScalar();
+			for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+				for (int position = 0, size = getKnownSize(rowIndex); position < size; position++) {
+					scalar.update(rowIndex, position);
+					for (MathAccessor<MatrixScalar> accessor : accessors) {
+						accessor.accessElement(scalar);
+					}
+				}
+			}
+			return this;
+		}
+		default: {
+			EnvironmentContext context = EnvironmentContext.getContext();
+			Semaphore semaphore = MathCalculator.getSemaphore();
+			for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+				int row = rowIndex;
+				context.doStructureByAny(rowIndex, () -> {
+					try {
+						ModuleMatrixScalar scalar = new ModuleMatrixScalar();
+						for (int position = 0, size = getKnownSize(row); position < size; position++) {
+							scalar.update(row, position);
+							for (MathAccessor<MatrixScalar> accessor : accessors) {
+								accessor.accessElement(scalar);
+							}
+						}
+					} finally {
+						// 访问器失败时同样释放,否则调用线程会永远等待
+						semaphore.release();
+					}
+				});
+			}
+			try {
+				semaphore.acquire(rowSize);
+			} catch (Exception exception) {
+				throw new RuntimeException(exception);
+			}
+			return this;
+		}
+		}
+	}
+
+	@Override
+	public ModuleMatrix setValues(float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ModuleMatrix scaleValues(float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public ModuleMatrix shiftValues(float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int getRowSize() {
+		return rowSize;
+	}
+
+	@Override
+	public int getColumnSize() {
+		return columnSize;
+	}
+
+	@Override
+	public MathVector getRowVector(int rowIndex) {
+		return new ModuleVector(rowIndex, true);
+	}
+
+	@Override
+	public MathVector getColumnVector(int columnIndex) {
+		if (isIndexed()) {
+			// 按行压缩的存储无法高效地访问列
+			throw new UnsupportedOperationException();
+		}
+		return new ModuleVector(columnIndex, false);
+	}
+
+	@Override
+	public void setValue(int rowIndex, int columnIndex, float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void scaleValue(int rowIndex, int columnIndex, float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void shiftValue(int rowIndex, int columnIndex, float value) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(rowSize=" + rowSize + ", columnSize=" + columnSize + ", knownSize=" + knownSize + ")";
+	}
+
+	@Override
+	public Iterator<MatrixScalar> iterator() {
+		return new ModuleMatrixIterator();
+	}
+
+	private class ModuleMatrixIterator implements Iterator<MatrixScalar> {
+
+		private int rowIndex, position;
+
+		private ModuleMatrixScalar term = new ModuleMatrixScalar();
+
+		private ModuleMatrixIterator() {
+			skip();
+		}
+
+		/**
+		 * 跳过没有已知标量的行
+		 */
+		private void skip() {
+			while (rowIndex < rowSize && position == getKnownSize(rowIndex)) {
+				rowIndex++;
+				position = 0;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return rowIndex < rowSize;
+		}
+
+		@Override
+		public MatrixScalar next() {
+			term.update(rowIndex, position++);
+			skip();
+			return term;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private class ModuleMatrixScalar implements MatrixScalar {
+
+		private int row, position;
+
+		private void update(int row, int position) {
+			this.row = row;
+			this.position = position;
+		}
+
+		@Override
+		public int getRow() {
+			return row;
+		}
+
+		@Override
+		public int getColumn() {
+			return getKnownIndex(row, position);
+		}
+
+		@Override
+		public float getValue() {
+			return getKnownValue(row, position);
+		}
+
+		@Override
+		public void scaleValue(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void setValue(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void shiftValue(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	/**
+	 * 行向量或者列向量(只读)
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private class ModuleVector implements MathVector {
+
+		/** 行索引或者列索引 */
+		private int index;
+
+		/** 是否为行向量 */
+		private boolean row;
+
+		private int size;
+
+		private ModuleVector(int index, boolean row) {
+			this.index = index;
+			this.row = row;
+			this.size = row ? ModuleMatrix.this.getKnownSize(index) : rowSize;
+		}
+
+		private int getIndexOf(int position) {
+			return row ? getKnownIndex(index, position) : position;
+		}
+
+		private float getValueOf(int position) {
+			return row ? getKnownValue(index, position) : ModuleMatrix.this.getValue(position, index);
+		}
+
+		@Override
+		public int getElementSize() {
+			return size;
+		}
+
+		@Override
+		public int getKnownSize() {
+			return size;
+		}
+
+		@Override
+		public int getUnknownSize() {
+			return (row ? columnSize : rowSize) - size;
+		}
+
+		@Override
+		public ScalarIterator<VectorScalar> iterateElement(MathCalculator mode, MathAccessor<VectorScalar>... accessors) {
+			// 只读访问没有并行的必要,总是串行遍历
+			ModuleVectorScalar scalar = new ModuleVectorScalar();
+			for (int position = 0; position < size; position++) {
+				scalar.update(position);
+				for (MathAccessor<VectorScalar> accessor : accessors) {
+					accessor.accessElement(scalar);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		public ModuleVector setValues(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ModuleVector scaleValues(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ModuleVector shiftValues(float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean isConstant() {
+			return !row || !isIndexed();
+		}
+
+		@Override
+		public int getIndex(int position) {
+			return getIndexOf(position);
+		}
+
+		@Override
+		public float getValue(int position) {
+			return getValueOf(position);
+		}
+
+		@Override
+		public void setValue(int position, float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void scaleValue(int position, float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void shiftValue(int position, float value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<VectorScalar> iterator() {
+			return new ModuleVectorIterator();
+		}
+
+		private class ModuleVectorIterator implements Iterator<VectorScalar> {
+
+			private int position;
+
+			private ModuleVectorScalar term = new ModuleVectorScalar();
+
+			@Override
+			public boolean hasNext() {
+				return position < size;
+			}
+
+			@Override
+			public VectorScalar next() {
+				term.update(position++);
+				return term;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+		}
+
+		private class ModuleVectorScalar implements VectorScalar {
+
+			private int position;
+
+			private void update(int position) {
+				this.position = position;
+			}
+
+			@Override
+			public int getIndex() {
+				return getIndexOf(position);
+			}
+
+			@Override
+			public float getValue() {
+				return getValueOf(position);
+			}
+
+			@Override
+			public void scaleValue(float value) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void setValue(float value) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void shiftValue(float value) {
+				throw new UnsupportedOperationException();
+			}
+
+		}
+
+	}
+
+	/**
+	 * 构建模块矩阵
+	 *
+	 * @param module
+	 *            稠密模块,稀疏模块或者引用它们的引用模块
+	 * @param discrete
+	 *            true代表离散特征,false代表连续特征
+	 * @return
+	 */
+	public static ModuleMatrix valueOf(DataModule module, boolean discrete) {
+		IntegerArray references = null;
+		while (module instanceof ReferenceModule) {
+			ReferenceModule reference = ReferenceModule.class.cast(module);
+			if (references == null) {
+				references = reference.getReferences();
+			} else {
+				// 多层引用只组合索引(不拷贝特征)
+				IntegerArray outerReferences = references;
+				IntegerArray innerReferences = reference.getReferences();
+				references = new IntegerArray(outerReferences.getMinimumCapacity(), outerReferences.getMaximumCapacity());
+				for (int position = 0, size = outerReferences.getSize(); position < size; position++) {
+					references.associateData(innerReferences.getData(outerReferences.getData(position)));
+				}
+			}
+			module = reference.getModule();
+		}
+		if (module instanceof DenseModule) {
+			return new DenseModuleMatrix(DenseModule.class.cast(module), references, discrete);
+		}
+		if (module instanceof SparseModule) {
+			return new SparseModuleMatrix(SparseModule.class.cast(module), references, discrete);
+		}
+		throw new IllegalArgumentException();
+	}
+
+}
@@ -30,6 +30,14 @@ public class ReferenceModule implements DataModule {
 		this.module = module;
 	}
 
+	IntegerArray getReferences() {
+		return references;
+	}
+
+	DataModule getModule() {
+		return module;
+	}
+
 	@Override
 	public void associateInstance(Int2IntSortedMap discreteFeatures, Int2FloatSortedMap continuousFeatures, int discreteMark, float continuousMark) {
 		throw new UnsupportedOperationException();
@@ -45,6 +53,40 @@ public class ReferenceModule implements DataModule {
 		return references.getSize();
 	}
 
+	/**
+	 * 把游标转换为被引用模块的游标
+	 * 
+	 * @param cursors
+	 * @return
+	 */
+	private int[] getCursors(int[] cursors) {
+		int[] datas = new int[cursors.length];
+		for (int position = 0, size = cursors.length; position < size; position++) {
+			datas[position] = references.getData(cursors[position]);
+		}
+		return datas;
+	}
+
+	@Override
+	public void gatherDiscreteFeatures(int[] cursors, int index, int[] datas) {
+		module.gatherDiscreteFeatures(getCursors(cursors), index, datas);
+	}
+
+	@Override
+	public void gatherContinuousFeatures(int[] cursors, int index, float[] datas) {
+		module.gatherContinuousFeatures(getCursors(cursors), index, datas);
+	}
+
+	@Override
+	public void gatherDiscreteMarks(int[] cursors, int[] datas) {
+		module.gatherDiscreteMarks(getCursors(cursors), datas);
+	}
+
+	@Override
+	public void gatherContinuousMarks(int[] cursors, float[] datas) {
+		module.gatherContinuousMarks(getCursors(cursors), datas);
+	}
+
 	@Override
 	public Entry<Integer, KeyValue<String, Boolean>> getOuterKeyValue(int index) {
 		return module.getOuterKeyValue(index);
@@ -6,6 +6,17 @@ import com.jstarcraft.ai.data.DiscreteAccessor;
 import com.jstarcraft.ai.utility.FloatArray;
 import com.jstarcraft.ai.utility.IntegerArray;
 
+/**
+ * 稀疏实例
+ * 
+ * <pre>
+ * 只记录游标对应的压缩区间,特征按需在区间内二分查找,迭代只遍历已知的特征.
+ * 所以实例占用的内存与切换游标的时间都与特征的秩无关.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public class SparseInstance implements DataInstance {
 
 	private int cursor;
@@ -17,23 +28,25 @@ public class SparseInstance implements DataInstance {
 	private int continuousOrder;
 
 	/** 离散特征 */
-	private int[] discreteFeatures;
-
 	private IntegerArray discretePoints;
 
 	private IntegerArray discreteIndexes;
 
 	private IntegerArray discreteValues;
 
-	/** 连续特征 */
-	private float[] continuousFeatures;
+	/** 离散特征的压缩区间[from, to) */
+	private int discreteFrom, discreteTo;
 
+	/** 连续特征 */
 	private IntegerArray continuousPoints;
 
 	private IntegerArray continuousIndexes;
 
 	private FloatArray continuousValues;
 
+	/** 连续特征的压缩区间[from, to) */
+	private int continuousFrom, continuousTo;
+
 	/** 离散标记 */
 	protected IntegerArray discreteMarks;
 
@@ -41,80 +54,26 @@ public class SparseInstance implements DataInstance {
 	protected FloatArray continuousMarks;
 
 	SparseInstance(int cursor, SparseModule module) {
-		this.cursor = cursor;
 		this.discreteOrder = module.getDiscreteOrder();
 		this.continuousOrder = module.getContinuousOrder();
-		this.discreteFeatures = new int[module.getDiscreteOrder()];
-		{
-			for (int index = 0, size = module.getDiscreteOrder(); index < size; index++) {
-				this.discreteFeatures[index] = DataInstance.defaultInteger;
-			}
-		}
 		this.discretePoints = module.getDiscretePoints();
 		this.discreteIndexes = module.getDiscreteIndexes();
 		this.discreteValues = module.getDiscreteValues();
-		this.continuousFeatures = new float[module.getContinuousOrder()];
-		{
-			for (int index = 0, size = module.getContinuousOrder(); index < size; index++) {
-				this.continuousFeatures[index] = DataInstance.defaultFloat;
-			}
-		}
 		this.continuousPoints = module.getContinuousPoints();
 		this.continuousIndexes = module.getContinuousIndexes();
 		this.continuousValues = module.getContinuousValues();
-		{
-			int from = this.discretePoints.getData(this.cursor);
-			int to = this.discretePoints.getData(this.cursor + 1);
-			for (int position = from; position < to; position++) {
-				int index = this.discreteIndexes.getData(position);
-				this.discreteFeatures[index] = this.discreteValues.getData(position);
-			}
-		}
-		{
-			int from = this.continuousPoints.getData(this.cursor);
-			int to = this.continuousPoints.getData(this.cursor + 1);
-			for (int position = from; position < to; position++) {
-				int index = this.continuousIndexes.getData(position);
-				this.continuousFeatures[index] = this.continuousValues.getData(position);
-			}
-		}
+		this.discreteMarks = module.getDiscreteMarks();
+		this.continuousMarks = module.getContinuousMarks();
+		setCursor(cursor);
 	}
 
 	@Override
 	public void setCursor(int cursor) {
-		{
-			int from = this.discretePoints.getData(this.cursor);
-			int to = this.discretePoints.getData(this.cursor + 1);
-			for (int current = from; current < to; current++) {
-				int index = this.discreteIndexes.getData(current);
-				this.discreteFeatures[index] = DataInstance.defaultInteger;
-			}
-		}
-		{
-			int from = this.continuousPoints.getData(this.cursor);
-			int to = this.continuousPoints.getData(this.cursor + 1);
-			for (int current = from; current < to; current++) {
-				int index = this.continuousIndexes.getData(current);
-				this.continuousFeatures[index] = DataInstance.defaultFloat;
-			}
-		}
 		this.cursor = cursor;
-		{
-			int from = this.discretePoints.getData(this.cursor);
-			int to = this.discretePoints.getData(this.cursor + 1);
-			for (int current = from; current < to; current++) {
-				int index = this.discreteIndexes.getData(current);
-				this.discreteFeatures[index] = this.discreteValues.getData(current);
-			}
-		}
-		{
-			int from = this.continuousPoints.getData(this.cursor);
-			int to = this.continuousPoints.getData(this.cursor + 1);
-			for (int current = from; current < to; current++) {
-				int index = this.continuousIndexes.getData(current);
-				this.continuousFeatures[index] = this.continuousValues.getData(current);
-			}
-		}
+		this.discreteFrom = this.discretePoints.getData(cursor);
+		this.discreteTo = this.discretePoints.getData(cursor + 1);
+		this.continuousFrom = this.continuousPoints.getData(cursor);
+		this.continuousTo = this.continuousPoints.getData(cursor + 1);
 	}
 
 	@Override
@@ -124,32 +83,28 @@ public class SparseInstance implements DataInstance {
 
 	@Override
 	public int getDiscreteFeature(int index) {
-		return this.discreteFeatures[index];
+		int position = SparseModule.searchFeature(this.discreteIndexes, this.discreteFrom, this.discreteTo, index);
+		return position < 0 ? DataInstance.defaultInteger : this.discreteValues.getData(position);
 	}
 
 	@Override
 	public float getContinuousFeature(int index) {
-		return this.continuousFeatures[index];
+		int position = SparseModule.searchFeature(this.continuousIndexes, this.continuousFrom, this.continuousTo, index);
+		return position < 0 ? DataInstance.defaultFloat : this.continuousValues.getData(position);
 	}
 
 	@Override
 	public SparseInstance iterateDiscreteFeatures(DiscreteAccessor accessor) {
-		int from = this.discretePoints.getData(this.cursor);
-		int to = this.discretePoints.getData(this.cursor + 1);
-		for (int position = from; position < to; position++) {
-			int index = this.discreteIndexes.getData(position);
-			accessor.accessorFeature(index, this.discreteFeatures[index]);
+		for (int position = this.discreteFrom; position < this.discreteTo; position++) {
+			accessor.accessorFeature(this.discreteIndexes.getData(position), this.discreteValues.getData(position));
 		}
 		return this;
 	}
 
 	@Override
 	public SparseInstance iterateContinuousFeatures(ContinuousAccessor accessor) {
-		int from = this.continuousPoints.getData(this.cursor);
-		int to = this.continuousPoints.getData(this.cursor + 1);
-		for (int position = from; position < to; position++) {
-			int index = this.continuousIndexes.getData(position);
-			accessor.accessorFeature(index, this.continuousFeatures[index]);
+		for (int position = this.continuousFrom; position < this.continuousTo; position++) {
+			accessor.accessorFeature(this.continuousIndexes.getData(position), this.continuousValues.getData(position));
 		}
 		return this;
 	}
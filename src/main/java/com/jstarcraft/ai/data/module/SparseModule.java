@@ -113,6 +113,49 @@ public class SparseModule extends AbstractModule {
 		return size;
 	}
 
+	/**
+	 * 在实例的压缩区间[from, to)内查找特征(索引按照特征有序,二分查找)
+	 * 
+	 * @param indexes
+	 * @param from
+	 * @param to
+	 * @param index
+	 * @return 特征的位置(不存在时为-1)
+	 */
+	static int searchFeature(IntegerArray indexes, int from, int to, int index) {
+		to--;
+		while (from <= to) {
+			int middle = (from + to) >>> 1;
+			int feature = indexes.getData(middle);
+			if (feature < index) {
+				from = middle + 1;
+			} else if (feature > index) {
+				to = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public void gatherDiscreteFeatures(int[] cursors, int index, int[] datas) {
+		doGather(cursors.length, (position) -> {
+			int cursor = cursors[position];
+			int point = searchFeature(discreteIndexes, discretePoints.getData(cursor), discretePoints.getData(cursor + 1), index);
+			datas[position] = point < 0 ? DataInstance.defaultInteger : discreteValues.getData(point);
+		});
+	}
+
+	@Override
+	public void gatherContinuousFeatures(int[] cursors, int index, float[] datas) {
+		doGather(cursors.length, (position) -> {
+			int cursor = cursors[position];
+			int point = searchFeature(continuousIndexes, continuousPoints.getData(cursor), continuousPoints.getData(cursor + 1), index);
+			datas[position] = point < 0 ? DataInstance.defaultFloat : continuousValues.getData(point);
+		});
+	}
+
 	@Override
 	public Iterator<DataInstance> iterator() {
 		return new SparseModuleIterator();
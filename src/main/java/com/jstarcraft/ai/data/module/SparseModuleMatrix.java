@@ -0,0 +1,81 @@
+package com.jstarcraft.ai.data.module;
+
+import com.jstarcraft.ai.utility.FloatArray;
+import com.jstarcraft.ai.utility.IntegerArray;
+
+/**
+ * 稀疏模块矩阵
+ *
+ * <pre>
+ * 建立在稀疏模块的按行压缩存储(points/indexes/values)之上,实例缺失的特征为未知标量(值为0).
+ * 行向量直接按照压缩的区间访问;列向量需要遍历所有实例,所以不支持.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class SparseModuleMatrix extends ModuleMatrix {
+
+	private IntegerArray points;
+
+	private IntegerArray indexes;
+
+	/** 离散特征(连续特征的视图为null) */
+	private IntegerArray discreteValues;
+
+	/** 连续特征(离散特征的视图为null) */
+	private FloatArray continuousValues;
+
+	SparseModuleMatrix(SparseModule module, IntegerArray references, boolean discrete) {
+		super(references, references == null ? module.getSize() : references.getSize(), discrete ? module.getDiscreteOrder() : module.getContinuousOrder());
+		if (discrete) {
+			this.points = module.getDiscretePoints();
+			this.indexes = module.getDiscreteIndexes();
+			this.discreteValues = module.getDiscreteValues();
+		} else {
+			this.points = module.getContinuousPoints();
+			this.indexes = module.getContinuousIndexes();
+			this.continuousValues = module.getContinuousValues();
+		}
+		if (references == null) {
+			this.knownSize = points.getData(rowSize);
+		} else {
+			for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+				this.knownSize += getKnownSize(rowIndex);
+			}
+		}
+	}
+
+	@Override
+	protected int getKnownSize(int rowIndex) {
+		int cursor = getCursor(rowIndex);
+		return points.getData(cursor + 1) - points.getData(cursor);
+	}
+
+	@Override
+	protected int getKnownIndex(int rowIndex, int position) {
+		return indexes.getData(points.getData(getCursor(rowIndex)) + position);
+	}
+
+	@Override
+	protected float getKnownValue(int rowIndex, int position) {
+		int point = points.getData(getCursor(rowIndex)) + position;
+		return discreteValues == null ? continuousValues.getData(point) : discreteValues.getData(point);
+	}
+
+	@Override
+	public boolean isIndexed() {
+		return true;
+	}
+
+	@Override
+	public float getValue(int rowIndex, int columnIndex) {
+		int cursor = getCursor(rowIndex);
+		int position = SparseModule.searchFeature(indexes, points.getData(cursor), points.getData(cursor + 1), columnIndex);
+		if (position < 0) {
+			return 0F;
+		}
+		return discreteValues == null ? continuousValues.getData(position) : discreteValues.getData(position);
+	}
+
+}
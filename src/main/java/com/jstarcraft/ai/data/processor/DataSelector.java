@@ -1,13 +1,19 @@
 package com.jstarcraft.ai.data.processor;
 
+import java.util.Arrays;
+
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
-import com.jstarcraft.ai.data.module.ReferenceModule;
-import com.jstarcraft.ai.utility.IntegerArray;
 
 /**
  * 数据选择器
  * 
+ * <pre>
+ * 选择模块时按照连续的分块扫描,每个分块使用独立的实例与游标缓冲,最后按照分块的顺序拼接,所以结果与串行扫描一致.
+ * 在环境线程调用时分块并行,所以{@link #select(DataInstance)}必须是无状态的.
+ * {@link #select(DataInstance)}抛出的异常会在所有分块结束之后原样抛出.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -32,22 +38,22 @@ public interface DataSelector {
 			return module;
 		}
 		int size = module.getSize();
-		int maximum = size;
-		int minimum = 1000;
-		if (maximum < minimum) {
-			maximum = minimum;
-		}
-		IntegerArray reference = new IntegerArray(minimum, maximum);
-		int cursor = 0;
-		DataInstance instance = module.getInstance(cursor);
-		while (cursor < size) {
-			instance.setCursor(cursor);
-			if (select(instance)) {
-				reference.associateData(cursor);
+		int[][] blocks = new int[ProcessorUtility.getNumberOfBlocks(size)][];
+		ProcessorUtility.doBlocks(blocks.length, (block) -> {
+			int from = block * ProcessorUtility.BLOCK_SIZE;
+			int to = Math.min(from + ProcessorUtility.BLOCK_SIZE, size);
+			int[] cursors = new int[to - from];
+			int count = 0;
+			DataInstance instance = module.getInstance(from);
+			for (int cursor = from; cursor < to; cursor++) {
+				instance.setCursor(cursor);
+				if (select(instance)) {
+					cursors[count++] = cursor;
+				}
 			}
-			cursor++;
-		}
-		return new ReferenceModule(reference, module);
+			blocks[block] = Arrays.copyOf(cursors, count);
+		});
+		return ProcessorUtility.getModule(module, blocks);
 	}
 
 }
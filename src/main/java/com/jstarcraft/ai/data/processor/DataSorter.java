@@ -2,12 +2,16 @@ package com.jstarcraft.ai.data.processor;
 
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
-import com.jstarcraft.ai.data.module.ReferenceModule;
-import com.jstarcraft.ai.utility.IntegerArray;
+import com.jstarcraft.ai.data.processor.KeySorter.KeyType;
 
 /**
  * 数据排序器
  * 
+ * <pre>
+ * 排序模块使用稳定的并行归并排序(O(n log n)),在环境线程调用时分块并行,所以{@link #sort(DataInstance, DataInstance)}必须是无状态的.
+ * 按照原始类型的键排序时优先使用{@link #discreteFeature(int, boolean)}等构建的排序器,直接收集键并且使用基数排序.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -23,36 +27,77 @@ public interface DataSorter {
 	int sort(DataInstance left, DataInstance right);
 
 	/**
-	 * 排序
+	 * 排序(稳定)
 	 * 
 	 * @param module
 	 * @return
 	 */
 	default DataModule sort(DataModule module) {
-		if (module.getSize() <= 1) {
-			return module;
-		}
 		int size = module.getSize();
-		IntegerArray reference = new IntegerArray(size, size);
-		for (int index = 0; index < size; index++) {
-			reference.associateData(index);
+		if (size <= 1) {
+			return module;
 		}
-		int cursor = 0;
-		DataInstance leftInstance = module.getInstance(cursor);
-		DataInstance rightInstance = module.getInstance(cursor);
-		for (int left = 0; left < size - 1; left++) {
-			leftInstance.setCursor(left);
-			for (int right = left + 1; right < size; right++) {
-				// TODO 注意:此处存在0的情况.
-				rightInstance.setCursor(right);
-				if (sort(leftInstance, rightInstance) > 0) {
-					reference.setData(left, reference.getData(left) ^ reference.getData(right));
-					reference.setData(right, reference.getData(right) ^ reference.getData(left));
-					reference.setData(left, reference.getData(left) ^ reference.getData(right));
-				}
-			}
+		int[] cursors = new int[size];
+		for (int cursor = 0; cursor < size; cursor++) {
+			cursors[cursor] = cursor;
 		}
-		return new ReferenceModule(reference, module);
+		ProcessorUtility.mergeSort(module, this, cursors);
+		return ProcessorUtility.getModule(module, cursors);
+	}
+
+	/**
+	 * 组合排序器(相等时按照指定排序器排序)
+	 * 
+	 * @param sorter
+	 * @return
+	 */
+	default DataSorter thenSort(DataSorter sorter) {
+		return (left, right) -> {
+			int compare = sort(left, right);
+			return compare != 0 ? compare : sorter.sort(left, right);
+		};
+	}
+
+	/**
+	 * 按照离散特征排序
+	 * 
+	 * @param index
+	 * @param ascending
+	 * @return
+	 */
+	static DataSorter discreteFeature(int index, boolean ascending) {
+		return new KeySorter(KeyType.DISCRETE_FEATURE, index, ascending);
+	}
+
+	/**
+	 * 按照连续特征排序
+	 * 
+	 * @param index
+	 * @param ascending
+	 * @return
+	 */
+	static DataSorter continuousFeature(int index, boolean ascending) {
+		return new KeySorter(KeyType.CONTINUOUS_FEATURE, index, ascending);
+	}
+
+	/**
+	 * 按照离散标记排序
+	 * 
+	 * @param ascending
+	 * @return
+	 */
+	static DataSorter discreteMark(boolean ascending) {
+		return new KeySorter(KeyType.DISCRETE_MARK, 0, ascending);
+	}
+
+	/**
+	 * 按照连续标记排序
+	 * 
+	 * @param ascending
+	 * @return
+	 */
+	static DataSorter continuousMark(boolean ascending) {
+		return new KeySorter(KeyType.CONTINUOUS_MARK, 0, ascending);
 	}
 
 }
@@ -2,12 +2,16 @@ package com.jstarcraft.ai.data.processor;
 
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
-import com.jstarcraft.ai.data.module.ReferenceModule;
-import com.jstarcraft.ai.utility.IntegerArray;
 
 /**
  * 数据划分器
  * 
+ * <pre>
+ * 划分模块时按照连续的分块扫描,每个分块使用独立的实例与游标缓冲,最后按照分块的顺序拼接,所以结果与串行扫描一致.
+ * 在环境线程调用时分块并行,所以{@link #split(DataInstance)}必须是无状态的.
+ * {@link #split(DataInstance)}抛出的异常会在所有分块结束之后原样抛出.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -30,27 +34,111 @@ public interface DataSplitter {
 	 */
 	default DataModule[] split(DataModule module, int number) {
 		int size = module.getSize();
-		int maximum = size;
-		int minimum = 1000;
-		if (maximum < minimum) {
-			maximum = minimum;
-		}
-		IntegerArray[] references = new IntegerArray[number];
+		int numberOfBlocks = ProcessorUtility.getNumberOfBlocks(size);
+		// [部分][分块]
+		int[][][] parts = new int[number][numberOfBlocks][];
+		ProcessorUtility.doBlocks(numberOfBlocks, (block) -> {
+			int from = block * ProcessorUtility.BLOCK_SIZE;
+			int to = Math.min(from + ProcessorUtility.BLOCK_SIZE, size);
+			int[] indexes = new int[to - from];
+			int[] counts = new int[number];
+			DataInstance instance = module.getInstance(from);
+			for (int cursor = from; cursor < to; cursor++) {
+				instance.setCursor(cursor);
+				int index = split(instance) % number;
+				indexes[cursor - from] = index;
+				counts[index]++;
+			}
+			for (int index = 0; index < number; index++) {
+				parts[index][block] = new int[counts[index]];
+				counts[index] = 0;
+			}
+			for (int cursor = from; cursor < to; cursor++) {
+				int index = indexes[cursor - from];
+				parts[index][block][counts[index]++] = cursor;
+			}
+		});
+		DataModule[] modules = new DataModule[number];
 		for (int index = 0; index < number; index++) {
-			references[index] = new IntegerArray(minimum, maximum);
+			modules[index] = ProcessorUtility.getModule(module, parts[index]);
 		}
-		int cursor = 0;
-		DataInstance instance = module.getInstance(cursor);
-		while (cursor < size) {
-			instance.setCursor(cursor);
-			references[split(instance) % number].associateData(cursor);
-			cursor++;
-		}
-		ReferenceModule[] modules = new ReferenceModule[number];
+		return modules;
+	}
+
+	/**
+	 * 交叉划分
+	 * 
+	 * <pre>
+	 * 一次扫描同时得到每折的训练集与测试集,第i折的测试集为划分到i的实例,训练集为其余的实例.
+	 * </pre>
+	 * 
+	 * @param module
+	 * @param number
+	 *            折数
+	 * @return 第i个元素为第i折的{训练集, 测试集}
+	 */
+	default DataModule[][] fold(DataModule module, int number) {
+		int size = module.getSize();
+		int numberOfBlocks = ProcessorUtility.getNumberOfBlocks(size);
+		// [折][分块]
+		int[][][] trainings = new int[number][numberOfBlocks][];
+		int[][][] testings = new int[number][numberOfBlocks][];
+		ProcessorUtility.doBlocks(numberOfBlocks, (block) -> {
+			int from = block * ProcessorUtility.BLOCK_SIZE;
+			int to = Math.min(from + ProcessorUtility.BLOCK_SIZE, size);
+			int[] indexes = new int[to - from];
+			int[] counts = new int[number];
+			DataInstance instance = module.getInstance(from);
+			for (int cursor = from; cursor < to; cursor++) {
+				instance.setCursor(cursor);
+				int index = split(instance) % number;
+				indexes[cursor - from] = index;
+				counts[index]++;
+			}
+			int[] trainingCounts = new int[number];
+			for (int index = 0; index < number; index++) {
+				trainings[index][block] = new int[to - from - counts[index]];
+				testings[index][block] = new int[counts[index]];
+				counts[index] = 0;
+			}
+			for (int cursor = from; cursor < to; cursor++) {
+				int fold = indexes[cursor - from];
+				for (int index = 0; index < number; index++) {
+					if (index == fold) {
+						testings[index][block][counts[index]++] = cursor;
+					} else {
+						trainings[index][block][trainingCounts[index]++] = cursor;
+					}
+				}
+			}
+		});
+		DataModule[][] modules = new DataModule[number][];
 		for (int index = 0; index < number; index++) {
-			modules[index] = new ReferenceModule(references[index], module);
+			modules[index] = new DataModule[] { ProcessorUtility.getModule(module, trainings[index]), ProcessorUtility.getModule(module, testings[index]) };
 		}
 		return modules;
 	}
 
+	/**
+	 * 随机地均匀划分(每个部分的数量最多相差1)
+	 * 
+	 * @param module
+	 * @param number
+	 * @return
+	 */
+	static DataSplitter randomSplitter(DataModule module, int number) {
+		return new FoldSplitter(module, number, false);
+	}
+
+	/**
+	 * 按照离散标记分层随机地划分(每个部分中每个离散标记的数量最多相差1)
+	 * 
+	 * @param module
+	 * @param number
+	 * @return
+	 */
+	static DataSplitter stratifiedSplitter(DataModule module, int number) {
+		return new FoldSplitter(module, number, true);
+	}
+
 }
@@ -0,0 +1,78 @@
+package com.jstarcraft.ai.data.processor;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * 折划分器
+ *
+ * <pre>
+ * 构建时为模块的每个游标预先分配部分,划分时按照实例的游标查找,所以只适用于构建时的模块.
+ * 随机划分把游标的随机排列依次轮流分配到每个部分.
+ * 分层划分先按照离散标记分组(基数排序),再在每组内随机排列,连续地轮流分配,所以每个部分的总数同样均匀.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class FoldSplitter implements DataSplitter {
+
+	/** 每个游标的部分 */
+	private int[] indexes;
+
+	FoldSplitter(DataModule module, int number, boolean stratified) {
+		if (number <= 0) {
+			throw new IllegalArgumentException();
+		}
+		int size = module.getSize();
+		int[] cursors = new int[size];
+		for (int cursor = 0; cursor < size; cursor++) {
+			cursors[cursor] = cursor;
+		}
+		if (stratified && size > 0) {
+			int[] marks = new int[size];
+			module.gatherDiscreteMarks(cursors, marks);
+			for (int cursor = 0; cursor < size; cursor++) {
+				marks[cursor] ^= Integer.MIN_VALUE;
+			}
+			ProcessorUtility.radixSort(new int[][] { marks }, cursors);
+			// 组内随机排列
+			int from = 0;
+			for (int to = 1; to <= size; to++) {
+				if (to == size || marks[cursors[to]] != marks[cursors[from]]) {
+					shuffle(cursors, from, to);
+					from = to;
+				}
+			}
+		} else {
+			shuffle(cursors, 0, size);
+		}
+		this.indexes = new int[size];
+		for (int position = 0; position < size; position++) {
+			indexes[cursors[position]] = position % number;
+		}
+	}
+
+	/**
+	 * 随机排列区间[from, to)(Fisher-Yates)
+	 *
+	 * @param cursors
+	 * @param from
+	 * @param to
+	 */
+	private static void shuffle(int[] cursors, int from, int to) {
+		for (int index = to - 1; index > from; index--) {
+			int random = from + RandomUtility.randomInteger(index - from + 1);
+			int swap = cursors[index];
+			cursors[index] = cursors[random];
+			cursors[random] = swap;
+		}
+	}
+
+	@Override
+	public int split(DataInstance instance) {
+		return indexes[instance.getCursor()];
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.jstarcraft.ai.data.processor;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.data.DataModule;
+
+/**
+ * 键排序器
+ *
+ * <pre>
+ * 按照一个或者多个原始类型的键(离散/连续特征或者标记)排序.
+ * 排序模块时先收集每个键的列并且转换为按照无符号整数比较的键,再使用基数排序,不需要调用比较器.
+ * 连续的键与{@link Float#compare(float, float)}一致(NaN最大).
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class KeySorter implements DataSorter {
+
+	/**
+	 * 键类型
+	 */
+	enum KeyType {
+
+		/** 离散特征 */
+		DISCRETE_FEATURE,
+
+		/** 连续特征 */
+		CONTINUOUS_FEATURE,
+
+		/** 离散标记 */
+		DISCRETE_MARK,
+
+		/** 连续标记 */
+		CONTINUOUS_MARK;
+
+	}
+
+	private KeyType[] types;
+
+	/** 特征索引(标记忽略) */
+	private int[] indexes;
+
+	/** 是否升序 */
+	private boolean[] ascendings;
+
+	KeySorter(KeyType type, int index, boolean ascending) {
+		this(new KeyType[] { type }, new int[] { index }, new boolean[] { ascending });
+	}
+
+	private KeySorter(KeyType[] types, int[] indexes, boolean[] ascendings) {
+		this.types = types;
+		this.indexes = indexes;
+		this.ascendings = ascendings;
+	}
+
+	@Override
+	public int sort(DataInstance left, DataInstance right) {
+		for (int key = 0; key < types.length; key++) {
+			int compare;
+			switch (types[key]) {
+			case DISCRETE_FEATURE:
+				compare = Integer.compare(left.getDiscreteFeature(indexes[key]), right.getDiscreteFeature(indexes[key]));
+				break;
+			case CONTINUOUS_FEATURE:
+				compare = Float.compare(left.getContinuousFeature(indexes[key]), right.getContinuousFeature(indexes[key]));
+				break;
+			case DISCRETE_MARK:
+				compare = Integer.compare(left.getDiscreteMark(), right.getDiscreteMark());
+				break;
+			default:
+				compare = Float.compare(left.getContinuousMark(), right.getContinuousMark());
+				break;
+			}
+			if (compare != 0) {
+				return ascendings[key] ? compare : -compare;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public DataSorter thenSort(DataSorter sorter) {
+		if (!(sorter instanceof KeySorter)) {
+			return DataSorter.super.thenSort(sorter);
+		}
+		// 合并键,保留基数排序
+		KeySorter that = KeySorter.class.cast(sorter);
+		int size = this.types.length + that.types.length;
+		KeyType[] types = new KeyType[size];
+		int[] indexes = new int[size];
+		boolean[] ascendings = new boolean[size];
+		System.arraycopy(this.types, 0, types, 0, this.types.length);
+		System.arraycopy(that.types, 0, types, this.types.length, that.types.length);
+		System.arraycopy(this.indexes, 0, indexes, 0, this.indexes.length);
+		System.arraycopy(that.indexes, 0, indexes, this.indexes.length, that.indexes.length);
+		System.arraycopy(this.ascendings, 0, ascendings, 0, this.ascendings.length);
+		System.arraycopy(that.ascendings, 0, ascendings, this.ascendings.length, that.ascendings.length);
+		return new KeySorter(types, indexes, ascendings);
+	}
+
+	/**
+	 * 把离散值转换为按照无符号整数比较的键
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int getKey(int value) {
+		return value ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * 把连续值转换为按照无符号整数比较的键
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int getKey(float value) {
+		// floatToIntBits统一NaN
+		int bits = Float.floatToIntBits(value);
+		return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+	}
+
+	@Override
+	public DataModule sort(DataModule module) {
+		int size = module.getSize();
+		if (size <= 1) {
+			return module;
+		}
+		int[] cursors = new int[size];
+		for (int cursor = 0; cursor < size; cursor++) {
+			cursors[cursor] = cursor;
+		}
+		int[][] keys = new int[types.length][];
+		float[] values = null;
+		for (int key = 0; key < types.length; key++) {
+			int[] datas = new int[size];
+			switch (types[key]) {
+			case DISCRETE_FEATURE:
+				module.gatherDiscreteFeatures(cursors, indexes[key], datas);
+				break;
+			case DISCRETE_MARK:
+				module.gatherDiscreteMarks(cursors, datas);
+				break;
+			case CONTINUOUS_FEATURE:
+			case CONTINUOUS_MARK:
+				values = values == null ? new float[size] : values;
+				if (types[key] == KeyType.CONTINUOUS_FEATURE) {
+					module.gatherContinuousFeatures(cursors, indexes[key], values);
+				} else {
+					module.gatherContinuousMarks(cursors, values);
+				}
+				break;
+			}
+			boolean discrete = types[key] == KeyType.DISCRETE_FEATURE || types[key] == KeyType.DISCRETE_MARK;
+			boolean ascending = ascendings[key];
+			for (int cursor = 0; cursor < size; cursor++) {
+				int data = discrete ? getKey(datas[cursor]) : getKey(values[cursor]);
+				datas[cursor] = ascending ? data : ~data;
+			}
+			keys[key] = datas;
+		}
+		ProcessorUtility.radixSort(keys, cursors);
+		return ProcessorUtility.getModule(module, cursors);
+	}
+
+}
@@ -0,0 +1,285 @@
+package com.jstarcraft.ai.data.processor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.data.module.ReferenceModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.environment.EnvironmentThread;
+import com.jstarcraft.ai.utility.IntegerArray;
+
+/**
+ * 处理工具
+ *
+ * <pre>
+ * 数据处理器共用的分块并行,归并排序与基数排序.
+ * 分块只在环境线程调用并且多于1个时并行(使用环境上下文的结构线程),否则串行.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class ProcessorUtility {
+
+	/** 分块大小 */
+	static final int BLOCK_SIZE = 4096;
+
+	/** 小于此长度的区间使用插入排序 */
+	private static final int INSERTION_SIZE = 16;
+
+	/** 基数排序每轮的位数 */
+	private static final int RADIX_SHIFT = 8;
+
+	private static final int RADIX_SIZE = 1 << RADIX_SHIFT;
+
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+
+	/**
+	 * 执行分块(任何分块失败时,等待所有分块结束之后抛出第一个异常)
+	 *
+	 * @param numberOfBlocks
+	 * @param task
+	 *            按照分块索引执行
+	 */
+	static void doBlocks(int numberOfBlocks, IntConsumer task) {
+		if (numberOfBlocks <= 1 || !(Thread.currentThread() instanceof EnvironmentThread)) {
+			for (int block = 0; block < numberOfBlocks; block++) {
+				task.accept(block);
+			}
+			return;
+		}
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(numberOfBlocks);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int block = 0; block < numberOfBlocks; block++) {
+			int index = block;
+			context.doStructureByAny(index, () -> {
+				try {
+					// 已经失败时跳过剩余的分块
+					if (failure.get() == null) {
+						task.accept(index);
+					}
+				} catch (Throwable throwable) {
+					failure.compareAndSet(null, throwable);
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		Throwable throwable = failure.get();
+		if (throwable instanceof RuntimeException) {
+			throw (RuntimeException) throwable;
+		}
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+		if (throwable != null) {
+			throw new RuntimeException(throwable);
+		}
+	}
+
+	/**
+	 * 获取分块数量
+	 *
+	 * @param size
+	 * @return
+	 */
+	static int getNumberOfBlocks(int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+	 * 构建引用模块(按照顺序拼接每个分块的游标)
+	 *
+	 * @param module
+	 * @param blocks
+	 * @return
+	 */
+	static ReferenceModule getModule(DataModule module, int[]... blocks) {
+		int size = 0;
+		for (int[] cursors : blocks) {
+			size += cursors.length;
+		}
+		int minimum = 1000;
+		int maximum = size < minimum ? minimum : size;
+		IntegerArray reference = new IntegerArray(minimum, maximum);
+		for (int[] cursors : blocks) {
+			for (int cursor : cursors) {
+				reference.associateData(cursor);
+			}
+		}
+		return new ReferenceModule(reference, module);
+	}
+
+	/**
+	 * 获取按照游标比较实例的比较器(每个线程独占)
+	 *
+	 * @param module
+	 * @param sorter
+	 * @return
+	 */
+	private static IntBinaryOperator getComparator(DataModule module, DataSorter sorter) {
+		DataInstance left = module.getInstance(0);
+		DataInstance right = module.getInstance(0);
+		return (leftCursor, rightCursor) -> {
+			left.setCursor(leftCursor);
+			right.setCursor(rightCursor);
+			return sorter.sort(left, right);
+		};
+	}
+
+	/**
+	 * 稳定的并行归并排序
+	 *
+	 * <pre>
+	 * 先并行地排序每个分块,再逐轮地两两合并(同一轮的合并之间并行).
+	 * </pre>
+	 *
+	 * @param module
+	 * @param sorter
+	 * @param cursors
+	 */
+	static void mergeSort(DataModule module, DataSorter sorter, int[] cursors) {
+		int size = cursors.length;
+		int[] buffer = new int[size];
+		doBlocks(getNumberOfBlocks(size), (block) -> {
+			int from = block * BLOCK_SIZE;
+			int to = Math.min(from + BLOCK_SIZE, size);
+			mergeSort(cursors, buffer, from, to, getComparator(module, sorter));
+		});
+		int[] source = cursors;
+		int[] target = buffer;
+		for (int width = BLOCK_SIZE; width < size; width <<= 1) {
+			int step = width << 1;
+			int[] from = source;
+			int[] to = target;
+			int half = width;
+			doBlocks((size + step - 1) / step, (block) -> {
+				int left = block * step;
+				int middle = Math.min(left + half, size);
+				int right = Math.min(left + step, size);
+				merge(from, to, left, middle, right, getComparator(module, sorter));
+			});
+			source = to;
+			target = from;
+		}
+		if (source != cursors) {
+			System.arraycopy(source, 0, cursors, 0, size);
+		}
+	}
+
+	/**
+	 * 排序区间[from, to)
+	 *
+	 * @param datas
+	 * @param buffer
+	 * @param from
+	 * @param to
+	 * @param comparator
+	 */
+	private static void mergeSort(int[] datas, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+		if (to - from <= INSERTION_SIZE) {
+			for (int current = from + 1; current < to; current++) {
+				int data = datas[current];
+				int position = current;
+				while (position > from && comparator.applyAsInt(datas[position - 1], data) > 0) {
+					datas[position] = datas[position - 1];
+					position--;
+				}
+				datas[position] = data;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(datas, buffer, from, middle, comparator);
+		mergeSort(datas, buffer, middle, to, comparator);
+		if (comparator.applyAsInt(datas[middle - 1], datas[middle]) <= 0) {
+			// 已经有序
+			return;
+		}
+		System.arraycopy(datas, from, buffer, from, to - from);
+		merge(buffer, datas, from, middle, to, comparator);
+	}
+
+	/**
+	 * 合并有序区间[from, middle)与[middle, to)(相等时左边优先,保证稳定)
+	 *
+	 * @param source
+	 * @param target
+	 * @param from
+	 * @param middle
+	 * @param to
+	 * @param comparator
+	 */
+	private static void merge(int[] source, int[] target, int from, int middle, int to, IntBinaryOperator comparator) {
+		int left = from, right = middle;
+		for (int position = from; position < to; position++) {
+			if (right >= to || (left < middle && comparator.applyAsInt(source[left], source[right]) <= 0)) {
+				target[position] = source[left++];
+			} else {
+				target[position] = source[right++];
+			}
+		}
+	}
+
+	/**
+	 * 稳定的基数排序(LSD)
+	 *
+	 * <pre>
+	 * 键按照无符号整数比较,keys[0]为最主要的键.
+	 * 从最次要的键开始,每个键按照8位分4轮计数排序,所有键落在同一个桶的轮次会被跳过.
+	 * </pre>
+	 *
+	 * @param keys
+	 *            键(按照游标索引)
+	 * @param cursors
+	 */
+	static void radixSort(int[][] keys, int[] cursors) {
+		int size = cursors.length;
+		int[] buffer = new int[size];
+		int[] counts = new int[RADIX_SIZE + 1];
+		int[] source = cursors;
+		int[] target = buffer;
+		for (int index = keys.length - 1; index >= 0; index--) {
+			int[] key = keys[index];
+			for (int shift = 0; shift < Integer.SIZE; shift += RADIX_SHIFT) {
+				Arrays.fill(counts, 0);
+				for (int position = 0; position < size; position++) {
+					counts[((key[source[position]] >>> shift) & RADIX_MASK) + 1]++;
+				}
+				boolean skip = false;
+				for (int bucket = 1; bucket <= RADIX_SIZE; bucket++) {
+					if (counts[bucket] == size) {
+						skip = true;
+						break;
+					}
+					counts[bucket] += counts[bucket - 1];
+				}
+				if (skip) {
+					continue;
+				}
+				for (int position = 0; position < size; position++) {
+					int cursor = source[position];
+					target[counts[(key[cursor] >>> shift) & RADIX_MASK]++] = cursor;
+				}
+				int[] swap = source;
+				source = target;
+				target = swap;
+			}
+		}
+		if (source != cursors) {
+			System.arraycopy(source, 0, cursors, 0, size);
+		}
+	}
+
+}
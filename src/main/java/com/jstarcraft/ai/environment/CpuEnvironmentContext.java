@@ -1,5 +1,8 @@
 package com.jstarcraft.ai.environment;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,27 +23,7 @@ class CpuEnvironmentContext extends EnvironmentContext {
 	static final CpuEnvironmentContext INSTANCE;
 
 	static {
-		INSTANCE = new CpuEnvironmentContext();
-		INSTANCE.numberOfThreads = Runtime.getRuntime().availableProcessors();
-		{
-			int numberOfTasks = 1;
-			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(INSTANCE);
-			INSTANCE.taskExecutor = Executors.newFixedThreadPool(numberOfTasks, factory);
-		}
-		{
-			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(INSTANCE);
-			INSTANCE.algorithmExecutors = new ExecutorService[INSTANCE.numberOfThreads];
-			for (int threadIndex = 0; threadIndex < INSTANCE.numberOfThreads; threadIndex++) {
-				INSTANCE.algorithmExecutors[threadIndex] = Executors.newSingleThreadExecutor(factory);
-			}
-		}
-		{
-			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(INSTANCE);
-			INSTANCE.structureExecutors = new ExecutorService[INSTANCE.numberOfThreads];
-			for (int threadIndex = 0; threadIndex < INSTANCE.numberOfThreads; threadIndex++) {
-				INSTANCE.structureExecutors[threadIndex] = Executors.newSingleThreadExecutor(factory);
-			}
-		}
+		INSTANCE = new CpuEnvironmentContext(Runtime.getRuntime().availableProcessors());
 	}
 
 	private int numberOfThreads;
@@ -51,7 +34,34 @@ class CpuEnvironmentContext extends EnvironmentContext {
 
 	private ExecutorService[] structureExecutors;
 
-	private CpuEnvironmentContext() {
+	/** 数据结构线程(由线程工厂登记,不能在静态初始化期间向线程分派任务,否则会等待类初始化导致死锁) */
+	private Set<Thread> structures = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	CpuEnvironmentContext(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+		{
+			int numberOfTasks = 1;
+			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(this);
+			this.taskExecutor = Executors.newFixedThreadPool(numberOfTasks, factory);
+		}
+		{
+			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(this);
+			this.algorithmExecutors = new ExecutorService[numberOfThreads];
+			for (int threadIndex = 0; threadIndex < numberOfThreads; threadIndex++) {
+				this.algorithmExecutors[threadIndex] = Executors.newSingleThreadExecutor(factory);
+			}
+		}
+		{
+			EnvironmentThreadFactory factory = new EnvironmentThreadFactory(this);
+			this.structureExecutors = new ExecutorService[numberOfThreads];
+			for (int threadIndex = 0; threadIndex < numberOfThreads; threadIndex++) {
+				this.structureExecutors[threadIndex] = Executors.newSingleThreadExecutor((runnable) -> {
+					Thread thread = factory.newThread(runnable);
+					structures.add(thread);
+					return thread;
+				});
+			}
+		}
 	}
 
 	@Override
@@ -108,8 +118,24 @@ class CpuEnvironmentContext extends EnvironmentContext {
 		}
 	}
 
+	/**
+	 * 执行数据结构指令(任一线程)
+	 * 
+	 * <pre>
+	 * 在数据结构线程中嵌套执行时直接在当前线程执行,避免单线程执行器等待自身导致死锁.
+	 * 所以可以把整个任务(例如ShareVertex的每个共享)分派到数据结构线程,任务内部的数据结构指令串行执行.
+	 * 任务数量少于线程数量时会损失指令内部的并发,调用方应该根据{@link #getNumberOfThreads()}决定是否分派.
+	 * </pre>
+	 * 
+	 * @param code
+	 * @param command
+	 */
 	@Override
 	public void doStructureByAny(int code, Runnable command) {
+		if (structures.contains(Thread.currentThread())) {
+			command.run();
+			return;
+		}
 		int threadIndex = FastMath.abs(HashUtility.twNumberHash32(code)) % numberOfThreads;
 		structureExecutors[threadIndex].execute(command);
 	}
@@ -130,4 +156,22 @@ class CpuEnvironmentContext extends EnvironmentContext {
 		}
 	}
 
+	@Override
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	@Override
+	public void shutdown() {
+		// 共享的环境由整个进程使用,不能关闭
+		if (this == INSTANCE) {
+			return;
+		}
+		taskExecutor.shutdown();
+		for (int threadIndex = 0; threadIndex < numberOfThreads; threadIndex++) {
+			algorithmExecutors[threadIndex].shutdown();
+			structureExecutors[threadIndex].shutdown();
+		}
+	}
+
 }
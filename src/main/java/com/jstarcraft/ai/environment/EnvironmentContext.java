@@ -55,9 +55,39 @@ public abstract class EnvironmentContext {
 	 */
 	abstract public void doStructureByEvery(Runnable command);
 
+	/**
+	 * 获取数据结构线程的数量
+	 * 
+	 * @return
+	 */
+	abstract public int getNumberOfThreads();
+
+	/**
+	 * 关闭环境(共享的环境会被忽略,只有独立构建的环境才会关闭线程)
+	 */
+	abstract public void shutdown();
+
 	public static EnvironmentContext getContext() {
 		EnvironmentThread thread = EnvironmentThread.currentThread();
 		return thread.getContext();
 	}
 
+	/**
+	 * 构建独立的CPU环境上下文
+	 * 
+	 * <pre>
+	 * 拥有独立的任务线程,算法线程与数据结构线程,用于多个计算图副本互不干扰地并发执行.
+	 * 使用完毕必须调用shutdown.
+	 * </pre>
+	 * 
+	 * @param numberOfThreads
+	 * @return
+	 */
+	public static EnvironmentContext constructCpuContext(int numberOfThreads) {
+		if (numberOfThreads <= 0) {
+			throw new IllegalArgumentException();
+		}
+		return new CpuEnvironmentContext(numberOfThreads);
+	}
+
 }
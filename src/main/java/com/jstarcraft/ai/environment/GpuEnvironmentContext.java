@@ -67,4 +67,15 @@ class GpuEnvironmentContext extends EnvironmentContext {
 		command.run();
 	}
 
+	@Override
+	public int getNumberOfThreads() {
+		// 数据结构指令直接在当前线程执行
+		return 1;
+	}
+
+	@Override
+	public void shutdown() {
+		// 共享的环境由整个进程使用,不能关闭
+	}
+
 }
@@ -0,0 +1,168 @@
+package com.jstarcraft.ai.math.algorithm.distribution;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * 别名采样器(Walker's alias method)
+ *
+ * <pre>
+ * 构造的时间复杂度为O(n),每次采样的时间复杂度为O(1),与类别数量无关.
+ * 参考Vose, A Linear Algorithm For Generating Random Numbers With a Given Distribution
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "probabilities", "thresholds", "aliases" })
+public class AliasSampler {
+
+	/** 每个类别的概率 */
+	private float[] probabilities;
+
+	/** 每个桶保留自身类别的阈值 */
+	private float[] thresholds;
+
+	/** 每个桶的别名类别 */
+	private int[] aliases;
+
+	AliasSampler() {
+	}
+
+	/**
+	 * 根据权重构造采样器(权重不需要归一化)
+	 *
+	 * @param weights
+	 */
+	public AliasSampler(float[] weights) {
+		int size = weights.length;
+		if (size == 0) {
+			throw new IllegalArgumentException();
+		}
+		double sum = 0D;
+		for (float weight : weights) {
+			if (weight < 0F || Float.isNaN(weight) || Float.isInfinite(weight)) {
+				throw new IllegalArgumentException();
+			}
+			sum += weight;
+		}
+		if (sum <= 0D) {
+			throw new IllegalArgumentException();
+		}
+		this.probabilities = new float[size];
+		this.thresholds = new float[size];
+		this.aliases = new int[size];
+
+		double[] scales = new double[size];
+		int[] smalls = new int[size];
+		int[] larges = new int[size];
+		int numberOfSmalls = 0;
+		int numberOfLarges = 0;
+		for (int index = 0; index < size; index++) {
+			probabilities[index] = (float) (weights[index] / sum);
+			scales[index] = weights[index] / sum * size;
+			if (scales[index] < 1D) {
+				smalls[numberOfSmalls++] = index;
+			} else {
+				larges[numberOfLarges++] = index;
+			}
+		}
+		while (numberOfSmalls > 0 && numberOfLarges > 0) {
+			int small = smalls[--numberOfSmalls];
+			int large = larges[--numberOfLarges];
+			thresholds[small] = (float) scales[small];
+			aliases[small] = large;
+			scales[large] = (scales[large] + scales[small]) - 1D;
+			if (scales[large] < 1D) {
+				smalls[numberOfSmalls++] = large;
+			} else {
+				larges[numberOfLarges++] = large;
+			}
+		}
+		// 剩余的桶由于浮点误差应该等于1
+		while (numberOfLarges > 0) {
+			int large = larges[--numberOfLarges];
+			thresholds[large] = 1F;
+			aliases[large] = large;
+		}
+		while (numberOfSmalls > 0) {
+			int small = smalls[--numberOfSmalls];
+			thresholds[small] = 1F;
+			aliases[small] = small;
+		}
+	}
+
+	/**
+	 * 采样
+	 *
+	 * @return
+	 */
+	public int sample() {
+		int index = RandomUtility.randomInteger(thresholds.length);
+		return RandomUtility.randomFloat(1F) < thresholds[index] ? index : aliases[index];
+	}
+
+	/**
+	 * 获取类别的概率
+	 *
+	 * @param index
+	 * @return
+	 */
+	public float getProbability(int index) {
+		return probabilities[index];
+	}
+
+	public int getSize() {
+		return probabilities.length;
+	}
+
+	/**
+	 * 均匀分布
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static AliasSampler uniformOf(int size) {
+		float[] weights = new float[size];
+		for (int index = 0; index < size; index++) {
+			weights[index] = 1F;
+		}
+		return new AliasSampler(weights);
+	}
+
+	/**
+	 * 一元分布(按照频次的幂次,word2vec使用0.75)
+	 *
+	 * @param counts
+	 * @param power
+	 * @return
+	 */
+	public static AliasSampler unigramOf(float[] counts, float power) {
+		float[] weights = new float[counts.length];
+		for (int index = 0; index < counts.length; index++) {
+			weights[index] = (float) FastMath.pow(counts[index], power);
+		}
+		return new AliasSampler(weights);
+	}
+
+	/**
+	 * 对数均匀分布(Zipf分布的近似,要求类别按照频次降序编号)
+	 *
+	 * <pre>
+	 * P(k) = (log(k + 2) - log(k + 1)) / log(size + 1)
+	 * </pre>
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static AliasSampler logUniformOf(int size) {
+		float[] weights = new float[size];
+		for (int index = 0; index < size; index++) {
+			weights[index] = (float) FastMath.log1p(1D / (index + 1D));
+		}
+		return new AliasSampler(weights);
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.jstarcraft.ai.math.algorithm.distribution;
+
+import com.jstarcraft.ai.model.ModelDefinition;
+
+/**
+ * 计数器随机数生成器(counter-based)
+ *
+ * <pre>
+ * 第counter个随机数只由种子与计数器决定(mix64(seed + (counter + 1) * GAMMA),等价于SplittableRandom的第counter个输出),没有内部状态.
+ * 所以任意线程可以无竞争地并发调用,并且只要按照元素的位置(例如row * columnSize + column)作为计数器,结果与任务的划分方式和线程数量无关.
+ * 需要多次独立的随机序列时(例如每次迭代的掩码),使用{@link #split(long)}派生新的流.
+ * 参考Salmon et al., Parallel Random Numbers: As Easy as 1, 2, 3
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "seed" })
+public class CounterRandom {
+
+	/** 黄金分割常量(SplittableRandom的GOLDEN_GAMMA) */
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static final float FLOAT_UNIT = 0x1.0p-24F;
+
+	private static final double DOUBLE_UNIT = 0x1.0p-53D;
+
+	private long seed;
+
+	CounterRandom() {
+	}
+
+	public CounterRandom(long seed) {
+		this.seed = seed;
+	}
+
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * 派生独立的流
+	 *
+	 * @param stream
+	 * @return
+	 */
+	public CounterRandom split(long stream) {
+		return new CounterRandom(mix(seed ^ mix(stream * GAMMA + GAMMA)));
+	}
+
+	/**
+	 * 获取第counter个随机长整数
+	 *
+	 * @param counter
+	 * @return
+	 */
+	public long randomLong(long counter) {
+		return mix(seed + (counter + 1L) * GAMMA);
+	}
+
+	/**
+	 * 获取第counter个[0, 1)之间的随机单精度数
+	 *
+	 * @param counter
+	 * @return
+	 */
+	public float randomFloat(long counter) {
+		return (randomLong(counter) >>> 40) * FLOAT_UNIT;
+	}
+
+	/**
+	 * 获取第counter个[0, 1)之间的随机双精度数
+	 *
+	 * @param counter
+	 * @return
+	 */
+	public double randomDouble(long counter) {
+		return (randomLong(counter) >>> 11) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * 获取第counter个(0, 1)之间的随机双精度数(用于逆累积分布函数)
+	 *
+	 * @param counter
+	 * @return
+	 */
+	public double randomProbability(long counter) {
+		return ((randomLong(counter) >>> 11) + 0.5D) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * 获取第counter个标准正态分布随机数(Box-Muller变换,每个计数器消耗两个随机数)
+	 *
+	 * @param counter
+	 * @return
+	 */
+	public float randomGaussian(long counter) {
+		double radius = Math.sqrt(-2D * Math.log(randomProbability(counter << 1)));
+		double theta = 2D * Math.PI * randomDouble((counter << 1) + 1L);
+		return (float) (radius * Math.cos(theta));
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			CounterRandom that = (CounterRandom) object;
+			return this.seed == that.seed;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(seed);
+	}
+
+	@Override
+	public String toString() {
+		return "CounterRandom(seed=" + seed + ")";
+	}
+
+}
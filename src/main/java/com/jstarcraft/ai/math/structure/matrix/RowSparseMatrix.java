@@ -0,0 +1,420 @@
+package com.jstarcraft.ai.math.structure.matrix;
+
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathAccessor;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.ScalarIterator;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+import com.jstarcraft.ai.model.ModelDefinition;
+
+/**
+ * 行稀疏矩阵
+ *
+ * <pre>
+ * 由稠密矩阵与已知行的集合组成,未知的行全部为0.
+ * 迭代,统计与批量修改只处理已知的行,适用于只有少量行存在梯度的场景(例如Embed层).
+ *
+ * 通过getRowVector修改行之前必须调用attachRow.
+ * 已知行的集合不是线程安全的,attachRow必须串行调用.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "matrix", "flags", "indexes", "size" })
+public class RowSparseMatrix implements MathMatrix {
+
+	/** 稠密矩阵(未知的行必须为0) */
+	private MathMatrix matrix;
+
+	/** 行是否已知 */
+	private boolean[] flags;
+
+	/** 已知行的索引 */
+	private int[] indexes;
+
+	/** 已知行的数量 */
+	private int size;
+
+	RowSparseMatrix() {
+	}
+
+	/**
+	 * 附加行
+	 *
+	 * @param rowIndex
+	 */
+	public void attachRow(int rowIndex) {
+		if (!flags[rowIndex]) {
+			flags[rowIndex] = true;
+			indexes[size++] = rowIndex;
+		}
+	}
+
+	/**
+	 * 附加所有行(相当于稠密矩阵)
+	 */
+	public void attachRows() {
+		for (int rowIndex = 0, rowSize = getRowSize(); rowIndex < rowSize; rowIndex++) {
+			attachRow(rowIndex);
+		}
+	}
+
+	/**
+	 * 附加指定矩阵中存在非0值的行
+	 *
+	 * <pre>
+	 * 用于动量之类的状态:没有梯度的行仍然可能需要更新
+	 * </pre>
+	 *
+	 * @param state
+	 */
+	public void attachRows(MathMatrix state) {
+		int columnSize = getColumnSize();
+		for (int rowIndex = 0, rowSize = getRowSize(); rowIndex < rowSize; rowIndex++) {
+			if (flags[rowIndex]) {
+				continue;
+			}
+			for (int columnIndex = 0; columnIndex < columnSize; columnIndex++) {
+				if (state.getValue(rowIndex, columnIndex) != 0F) {
+					attachRow(rowIndex);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 清理所有已知的行(设置为0并且变为未知)
+	 */
+	public void clearRows() {
+		if (size == getRowSize()) {
+			matrix.setValues(0F);
+		} else {
+			for (int position = 0; position < size; position++) {
+				matrix.getRowVector(indexes[position]).setValues(0F);
+			}
+		}
+		for (int position = 0; position < size; position++) {
+			flags[indexes[position]] = false;
+		}
+		size = 0;
+	}
+
+	/**
+	 * 获取已知行的数量
+	 *
+	 * @return
+	 */
+	public int getKnownRowSize() {
+		return size;
+	}
+
+	/**
+	 * 获取已知行的索引
+	 *
+	 * @param position
+	 * @return
+	 */
+	public int getKnownRowIndex(int position) {
+		return indexes[position];
+	}
+
+	/**
+	 * 行是否已知
+	 *
+	 * @param rowIndex
+	 * @return
+	 */
+	public boolean isKnownRow(int rowIndex) {
+		return flags[rowIndex];
+	}
+
+	/**
+	 * 获取稠密矩阵
+	 *
+	 * @return
+	 */
+	public MathMatrix getMatrix() {
+		return matrix;
+	}
+
+	@Override
+	public int getElementSize() {
+		return getRowSize() * getColumnSize();
+	}
+
+	@Override
+	public int getKnownSize() {
+		return size * getColumnSize();
+	}
+
+	@Override
+	public int getUnknownSize() {
+		return getElementSize() - getKnownSize();
+	}
+
+	@Override
+	public ScalarIterator<MatrixScalar> iterateElement(MathCalculator mode, MathAccessor<MatrixScalar>... accessors) {
+		int columnSize = getColumnSize();
+		switch (mode) {
+		case SERIAL: {
+			RowSparseMatrixScalar scalar = new RowSparseMatrixScalar();
+			for (int position = 0; position < size; position++) {
+				int rowIndex = indexes[position];
+				for (int columnIndex = 0; columnIndex < columnSize; columnIndex++) {
+					scalar.update(rowIndex, columnIndex);
+					for (MathAccessor<MatrixScalar> accessor : accessors) {
+						accessor.accessElement(scalar);
+					}
+				}
+			}
+			return this;
+		}
+		default: {
+			EnvironmentContext context = EnvironmentContext.getContext();
+			Semaphore semaphore = MathCalculator.getSemaphore();
+			for (int position = 0; position < size; position++) {
+				int rowIndex = indexes[position];
+				context.doStructureByAny(position, () -> {
+					RowSparseMatrixScalar scalar = new RowSparseMatrixScalar();
+					for (int columnIndex = 0; columnIndex < columnSize; columnIndex++) {
+						scalar.update(rowIndex, columnIndex);
+						for (MathAccessor<MatrixScalar> accessor : accessors) {
+							accessor.accessElement(scalar);
+						}
+					}
+					semaphore.release();
+				});
+			}
+			try {
+				semaphore.acquire(size);
+			} catch (Exception exception) {
+				throw new RuntimeException(exception);
+			}
+			return this;
+		}
+		}
+	}
+
+	@Override
+	public RowSparseMatrix setValues(float value) {
+		for (int position = 0; position < size; position++) {
+			matrix.getRowVector(indexes[position]).setValues(value);
+		}
+		return this;
+	}
+
+	@Override
+	public RowSparseMatrix scaleValues(float value) {
+		for (int position = 0; position < size; position++) {
+			matrix.getRowVector(indexes[position]).scaleValues(value);
+		}
+		return this;
+	}
+
+	@Override
+	public RowSparseMatrix shiftValues(float value) {
+		for (int position = 0; position < size; position++) {
+			matrix.getRowVector(indexes[position]).shiftValues(value);
+		}
+		return this;
+	}
+
+	@Override
+	public float getSum(boolean absolute) {
+		float sum = 0F;
+		for (int position = 0; position < size; position++) {
+			sum += matrix.getRowVector(indexes[position]).getSum(absolute);
+		}
+		return sum;
+	}
+
+	@Override
+	public int getRowSize() {
+		return matrix.getRowSize();
+	}
+
+	@Override
+	public int getColumnSize() {
+		return matrix.getColumnSize();
+	}
+
+	@Override
+	public MathVector getRowVector(int rowIndex) {
+		return matrix.getRowVector(rowIndex);
+	}
+
+	@Override
+	public MathVector getColumnVector(int columnIndex) {
+		// 列向量的修改无法记录已知的行
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean isIndexed() {
+		return matrix.isIndexed();
+	}
+
+	@Override
+	public float getValue(int rowIndex, int columnIndex) {
+		return matrix.getValue(rowIndex, columnIndex);
+	}
+
+	@Override
+	public void setValue(int rowIndex, int columnIndex, float value) {
+		if (!flags[rowIndex]) {
+			if (value == 0F) {
+				return;
+			}
+			attachRow(rowIndex);
+		}
+		matrix.setValue(rowIndex, columnIndex, value);
+	}
+
+	@Override
+	public void scaleValue(int rowIndex, int columnIndex, float value) {
+		if (flags[rowIndex]) {
+			matrix.scaleValue(rowIndex, columnIndex, value);
+		}
+	}
+
+	@Override
+	public void shiftValue(int rowIndex, int columnIndex, float value) {
+		if (!flags[rowIndex]) {
+			if (value == 0F) {
+				return;
+			}
+			attachRow(rowIndex);
+		}
+		matrix.shiftValue(rowIndex, columnIndex, value);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object)
+			return true;
+		if (object == null)
+			return false;
+		if (getClass() != object.getClass())
+			return false;
+		RowSparseMatrix that = (RowSparseMatrix) object;
+		EqualsBuilder equal = new EqualsBuilder();
+		equal.append(this.matrix, that.matrix);
+		return equal.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(matrix);
+		return hash.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		ToStringBuilder string = new ToStringBuilder(this);
+		string.append(getRowSize());
+		string.append(getColumnSize());
+		string.append(size);
+		return string.toString();
+	}
+
+	@Override
+	public Iterator<MatrixScalar> iterator() {
+		return new RowSparseMatrixIterator();
+	}
+
+	private class RowSparseMatrixIterator implements Iterator<MatrixScalar> {
+
+		private int cursor;
+
+		private RowSparseMatrixScalar term = new RowSparseMatrixScalar();
+
+		@Override
+		public boolean hasNext() {
+			return cursor < size * getColumnSize();
+		}
+
+		@Override
+		public MatrixScalar next() {
+			int columnSize = getColumnSize();
+			term.update(indexes[cursor / columnSize], cursor % columnSize);
+			cursor++;
+			return term;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	private class RowSparseMatrixScalar implements MatrixScalar {
+
+		private int row;
+
+		private int column;
+
+		private void update(int row, int column) {
+			this.row = row;
+			this.column = column;
+		}
+
+		@Override
+		public int getRow() {
+			return row;
+		}
+
+		@Override
+		public int getColumn() {
+			return column;
+		}
+
+		@Override
+		public float getValue() {
+			return matrix.getValue(row, column);
+		}
+
+		@Override
+		public void scaleValue(float value) {
+			matrix.scaleValue(row, column, value);
+		}
+
+		@Override
+		public void setValue(float value) {
+			matrix.setValue(row, column, value);
+		}
+
+		@Override
+		public void shiftValue(float value) {
+			matrix.shiftValue(row, column, value);
+		}
+
+	}
+
+	/**
+	 * 根据稠密矩阵构造行稀疏矩阵(稠密矩阵会被清理为0)
+	 *
+	 * @param matrix
+	 * @return
+	 */
+	public static RowSparseMatrix valueOf(MathMatrix matrix) {
+		RowSparseMatrix instance = new RowSparseMatrix();
+		matrix.setValues(0F);
+		instance.matrix = matrix;
+		instance.flags = new boolean[matrix.getRowSize()];
+		instance.indexes = new int[matrix.getRowSize()];
+		instance.size = 0;
+		return instance;
+	}
+
+}
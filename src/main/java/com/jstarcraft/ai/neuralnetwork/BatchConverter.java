@@ -0,0 +1,30 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+
+/**
+ * 批量转换器
+ *
+ * <pre>
+ * 把实例转换为样本与标记的指定行.
+ * 批量的矩阵会被重复使用,所以转换器必须设置行的所有列.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@FunctionalInterface
+public interface BatchConverter {
+
+	/**
+	 * 转换
+	 *
+	 * @param instance
+	 * @param row
+	 * @param samples
+	 * @param labels
+	 */
+	void convert(DataInstance instance, int row, MathMatrix[] samples, MathMatrix[] labels);
+
+}
@@ -0,0 +1,222 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * 批量预取器
+ *
+ * <pre>
+ * 在后台线程把数据模块的实例转换为批量的样本与标记,训练线程执行{@link Graph#practice}的同时准备下一个批量.
+ * 预先分配固定数量(至少2个)的批量,训练线程借用已经准备好的批量,训练完毕之后归还,归还的批量由后台线程重新填充,所以不会分配内存.
+ * 每个周期按照索引的随机排列划分批量(不移动实例),不完整的最后一个批量会被丢弃(下一个周期重新排列),保证批量大小不变.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class BatchPrefetcher {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * 批量
+	 *
+	 * @author Birdy
+	 *
+	 */
+	public static class Batch {
+
+		private MathMatrix[] samples;
+
+		private MathMatrix[] labels;
+
+		/** 所属的周期 */
+		private int epoch;
+
+		private Batch(MathMatrix[] samples, MathMatrix[] labels) {
+			this.samples = samples;
+			this.labels = labels;
+		}
+
+		public MathMatrix[] getSamples() {
+			return samples;
+		}
+
+		public MathMatrix[] getLabels() {
+			return labels;
+		}
+
+		public int getEpoch() {
+			return epoch;
+		}
+
+	}
+
+	/** 终止标记(后台线程结束时放入) */
+	private static final Batch TERMINAL = new Batch(null, null);
+
+	private DataModule module;
+
+	private BatchConverter converter;
+
+	/** 批量大小 */
+	private int batchSize;
+
+	/** 索引的排列 */
+	private int[] permutation;
+
+	/** 空闲的批量 */
+	private BlockingQueue<Batch> freeBatches = new LinkedBlockingQueue<>();
+
+	/** 准备好的批量 */
+	private BlockingQueue<Batch> readyBatches = new LinkedBlockingQueue<>();
+
+	private Thread producer;
+
+	private volatile boolean running;
+
+	/** 后台线程的异常 */
+	private volatile Throwable throwable;
+
+	/**
+	 *
+	 * @param module
+	 * @param factory
+	 * @param converter
+	 * @param sampleDimensions
+	 *            每个样本矩阵的列数
+	 * @param labelDimensions
+	 *            每个标记矩阵的列数
+	 * @param batchSize
+	 * @param numberOfBuffers
+	 *            批量的数量(至少为2)
+	 */
+	public BatchPrefetcher(DataModule module, MathCache factory, BatchConverter converter, int[] sampleDimensions, int[] labelDimensions, int batchSize, int numberOfBuffers) {
+		if (batchSize <= 0 || batchSize > module.getSize() || numberOfBuffers < 2) {
+			throw new IllegalArgumentException();
+		}
+		this.module = module;
+		this.converter = converter;
+		this.batchSize = batchSize;
+		this.permutation = new int[module.getSize()];
+		for (int index = 0; index < permutation.length; index++) {
+			permutation[index] = index;
+		}
+		for (int index = 0; index < numberOfBuffers; index++) {
+			MathMatrix[] samples = new MathMatrix[sampleDimensions.length];
+			for (int position = 0; position < samples.length; position++) {
+				samples[position] = factory.makeMatrix(batchSize, sampleDimensions[position]);
+			}
+			MathMatrix[] labels = new MathMatrix[labelDimensions.length];
+			for (int position = 0; position < labels.length; position++) {
+				labels[position] = factory.makeMatrix(batchSize, labelDimensions[position]);
+			}
+			freeBatches.offer(new Batch(samples, labels));
+		}
+		this.running = true;
+		this.producer = new Thread(this::doProduce, getClass().getName());
+		this.producer.setDaemon(true);
+		this.producer.start();
+	}
+
+	/**
+	 * 随机排列索引(Fisher-Yates)
+	 */
+	private void doShuffle() {
+		for (int index = permutation.length - 1; index > 0; index--) {
+			int random = RandomUtility.randomInteger(index + 1);
+			int swap = permutation[index];
+			permutation[index] = permutation[random];
+			permutation[random] = swap;
+		}
+	}
+
+	/**
+	 * 生产(填充空闲的批量)
+	 */
+	private void doProduce() {
+		try {
+			DataInstance instance = module.getInstance(0);
+			int numberOfBatches = permutation.length / batchSize;
+			for (int epoch = 0; running; epoch++) {
+				doShuffle();
+				for (int index = 0; running && index < numberOfBatches; index++) {
+					Batch batch = freeBatches.take();
+					int from = index * batchSize;
+					for (int row = 0; row < batchSize; row++) {
+						instance.setCursor(permutation[from + row]);
+						converter.convert(instance, row, batch.samples, batch.labels);
+					}
+					batch.epoch = epoch;
+					readyBatches.offer(batch);
+				}
+			}
+		} catch (InterruptedException exception) {
+			// 关闭
+		} catch (Throwable throwable) {
+			logger.error("exception", throwable);
+			this.throwable = throwable;
+		} finally {
+			running = false;
+			readyBatches.offer(TERMINAL);
+		}
+	}
+
+	/**
+	 * 借用批量(阻塞直到准备好,用完必须归还)
+	 *
+	 * @return 批量(已经关闭时为null)
+	 */
+	public Batch borrowBatch() {
+		Batch batch;
+		try {
+			batch = readyBatches.take();
+		} catch (InterruptedException exception) {
+			throw new RuntimeException(exception);
+		}
+		if (batch == TERMINAL) {
+			// 保留终止标记,其它借用的线程同样返回
+			readyBatches.offer(TERMINAL);
+			if (throwable != null) {
+				throw new RuntimeException(throwable);
+			}
+			return null;
+		}
+		return batch;
+	}
+
+	/**
+	 * 归还批量
+	 *
+	 * @param batch
+	 */
+	public void returnBatch(Batch batch) {
+		freeBatches.offer(batch);
+	}
+
+	/**
+	 * 关闭(后台线程结束之后返回,尚未借用的批量会被丢弃)
+	 */
+	public void shutdown() {
+		running = false;
+		producer.interrupt();
+		try {
+			producer.join();
+		} catch (InterruptedException exception) {
+			throw new RuntimeException(exception);
+		}
+		readyBatches.clear();
+		readyBatches.offer(TERMINAL);
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+import com.jstarcraft.ai.model.ModelDefinition;
+
+/**
+ * 检查点缓存
+ *
+ * <pre>
+ * 配合{@link Graph#setCheckpoints(CheckpointCache, String...)}使用,计算图的节点必须使用同一个检查点缓存构建.
+ * 计算图缓存每个节点之前指定节点所属的分段,不保留输出的节点在不同的分段之间复用相同形状的矩阵
+ * (每个分段内第i次申请的{rowSize, columnSize}矩阵为同一个实例),所以这些节点占用的内存只相当于最大的分段.
+ * 分段为-1(保留输出的节点或者没有使用检查点模式)时直接委托给被装饰的缓存,向量不复用.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "cache" })
+public class CheckpointCache implements MathCache {
+
+	/** 被装饰的缓存 */
+	private MathCache cache;
+
+	/** 当前的分段 */
+	private int segment = -1;
+
+	/** 复用的矩阵(键为形状) */
+	private Map<Long, List<MathMatrix>> matrixes = new HashMap<>();
+
+	/** 每个分段申请矩阵的次数(键为分段与形状) */
+	private Map<Integer, Map<Long, Integer>> counts = new HashMap<>();
+
+	CheckpointCache() {
+	}
+
+	public CheckpointCache(MathCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * 设置当前的分段
+	 *
+	 * @param segment
+	 */
+	void setSegment(int segment) {
+		this.segment = segment;
+	}
+
+	/**
+	 * 清空复用的矩阵(每次缓存计算图之前调用)
+	 */
+	void reset() {
+		segment = -1;
+		matrixes.clear();
+		counts.clear();
+	}
+
+	@Override
+	public MathMatrix makeMatrix(int rowSize, int columnSize) {
+		if (segment < 0) {
+			return cache.makeMatrix(rowSize, columnSize);
+		}
+		long shape = ((long) rowSize << 32) | columnSize;
+		int index = counts.computeIfAbsent(segment, (key) -> new HashMap<>()).merge(shape, 1, Integer::sum) - 1;
+		List<MathMatrix> shapes = matrixes.computeIfAbsent(shape, (key) -> new ArrayList<>());
+		if (index == shapes.size()) {
+			shapes.add(cache.makeMatrix(rowSize, columnSize));
+		}
+		return shapes.get(index);
+	}
+
+	@Override
+	public MathVector makeVector(int capacitySize) {
+		return cache.makeVector(capacitySize);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			CheckpointCache that = (CheckpointCache) object;
+			EqualsBuilder equal = new EqualsBuilder();
+			equal.append(this.cache, that.cache);
+			return equal.isEquals();
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(cache);
+		return hash.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "CheckpointCache(cache=" + cache + ")";
+	}
+
+}
@@ -0,0 +1,272 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+
+/**
+ * 分布式计算图
+ *
+ * <pre>
+ * 每个进程持有一个计算图副本与样本的一个分片,通过{@link RingTransport}交换梯度.
+ * 反向传播过程中,每个层节点完成反向传播之后立即开始归约该层的原始梯度,与后续节点的反向传播重叠.
+ * 为了保证所有进程以相同的顺序归约,通信线程按照逆拓扑顺序依次等待并归约每个层节点.
+ * 归约之后才执行标准器与学习器,再按照所有进程的总样本数量缩放梯度,执行正则化与优化器更新.
+ * 行稀疏梯度先全收集所有进程的已知行索引,再只传输已知行的并集,稠密梯度传输所有元素.
+ * 得分只归约目标函数的总和,正则化项只计算一次.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class DistributedGraph implements AutoCloseable {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private Graph graph;
+
+	private RingTransport transport;
+
+	/** 层节点(逆拓扑顺序) */
+	private LayerVertex[] vertices;
+
+	/** 层节点的索引(节点的哈希码依赖参数,所以按照引用查找) */
+	private Map<Vertex, Integer> indexes;
+
+	/** 扁平化的梯度缓冲(行稀疏梯度的已知行数量可变,容量按需扩大) */
+	private float[][] buffers;
+
+	/** 通信线程 */
+	private ExecutorService communicator;
+
+	private CountDownLatch[] latches;
+
+	public DistributedGraph(Graph graph, RingTransport transport) {
+		this.graph = graph;
+		this.transport = transport;
+		if (transport.getRank() > 0) {
+			// 所有进程从相同的模型出发,每个进程的分片不同,掩码必须使用独立的随机流
+			graph.splitMaskers(transport.getRank());
+		}
+		Vertex[] vertices = graph.getVertices();
+		int[] topologicalOrder = graph.getTopologicalOrder();
+		List<LayerVertex> layerVertices = new ArrayList<>();
+		for (int index = topologicalOrder.length - 1; index > -1; index--) {
+			Vertex vertex = vertices[topologicalOrder[index]];
+			if (vertex instanceof LayerVertex) {
+				layerVertices.add(LayerVertex.class.cast(vertex));
+			}
+		}
+		this.vertices = layerVertices.toArray(new LayerVertex[layerVertices.size()]);
+		this.indexes = new IdentityHashMap<>();
+		this.buffers = new float[this.vertices.length][];
+		for (int index = 0; index < this.vertices.length; index++) {
+			this.indexes.put(this.vertices[index], index);
+			this.buffers[index] = new float[0];
+		}
+		this.communicator = Executors.newSingleThreadExecutor();
+	}
+
+	private static List<String> getNames(Layer layer) {
+		List<String> names = new ArrayList<>(layer.getGradients().keySet());
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * 获取需要传输的行
+	 *
+	 * <pre>
+	 * 行稀疏梯度附加所有进程已知的行,按照行索引排序保证所有进程的传输顺序一致.
+	 * 稠密梯度传输所有行.
+	 * </pre>
+	 *
+	 * @param gradient
+	 * @return
+	 */
+	private int[] getRows(MathMatrix gradient) {
+		if (!(gradient instanceof RowSparseMatrix)) {
+			int[] rows = new int[gradient.getRowSize()];
+			for (int row = 0; row < rows.length; row++) {
+				rows[row] = row;
+			}
+			return rows;
+		}
+		RowSparseMatrix sparse = RowSparseMatrix.class.cast(gradient);
+		int[] rows = new int[sparse.getKnownRowSize()];
+		for (int position = 0; position < rows.length; position++) {
+			rows[position] = sparse.getKnownRowIndex(position);
+		}
+		for (int[] peerRows : transport.allGather(rows)) {
+			for (int row : peerRows) {
+				sparse.attachRow(row);
+			}
+		}
+		rows = new int[sparse.getKnownRowSize()];
+		for (int position = 0; position < rows.length; position++) {
+			rows[position] = sparse.getKnownRowIndex(position);
+		}
+		Arrays.sort(rows);
+		return rows;
+	}
+
+	/**
+	 * 归约指定层节点的梯度
+	 *
+	 * @param index
+	 */
+	private void doReduce(int index) {
+		Layer layer = vertices[index].getLayer();
+		Map<String, MathMatrix> gradients = layer.getGradients();
+		List<String> names = getNames(layer);
+		int[][] rows = new int[names.size()][];
+		int size = 0;
+		for (int position = 0; position < rows.length; position++) {
+			MathMatrix gradient = gradients.get(names.get(position));
+			rows[position] = getRows(gradient);
+			size += rows[position].length * gradient.getColumnSize();
+		}
+		if (buffers[index].length < size) {
+			buffers[index] = new float[size];
+		}
+		float[] buffer = buffers[index];
+		int cursor = 0;
+		for (int position = 0; position < rows.length; position++) {
+			MathMatrix gradient = gradients.get(names.get(position));
+			for (int row : rows[position]) {
+				for (int column = 0, columnSize = gradient.getColumnSize(); column < columnSize; column++) {
+					buffer[cursor++] = gradient.getValue(row, column);
+				}
+			}
+		}
+		transport.allReduce(buffer, size);
+		cursor = 0;
+		for (int position = 0; position < rows.length; position++) {
+			MathMatrix gradient = gradients.get(names.get(position));
+			for (int row : rows[position]) {
+				for (int column = 0, columnSize = gradient.getColumnSize(); column < columnSize; column++) {
+					gradient.setValue(row, column, buffer[cursor++]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 训练
+	 *
+	 * <pre>
+	 * 样本与标记为当前进程的分片,所有进程必须以相同的迭代次数调用.
+	 * </pre>
+	 *
+	 * @param numberOfIterations
+	 * @param samples
+	 * @param labels
+	 * @return
+	 */
+	public float practice(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
+		graph.doCache(samples, labels);
+		for (int index = 0, size = labels.length; index < size; index++) {
+			// 检查数量
+			if (labels[index].getRowSize() != graph.getNumberOfSamples()) {
+				throw new IllegalArgumentException();
+			}
+		}
+		float[] counts = new float[] { graph.getNumberOfSamples() };
+		transport.allReduce(counts);
+		int numberOfSamples = (int) counts[0];
+
+		Map<String, MathMatrix> parameters = graph.getParameters();
+		Map<String, MathMatrix> gradients = graph.getGradients();
+		Callable<Float> scorer = () -> {
+			latches = new CountDownLatch[vertices.length];
+			for (int index = 0; index < vertices.length; index++) {
+				latches[index] = new CountDownLatch(1);
+			}
+			CountDownLatch[] latches = this.latches;
+			// 通信线程按照固定顺序等待每个层节点完成反向传播
+			Future<?> task = communicator.submit(() -> {
+				for (int index = 0; index < vertices.length; index++) {
+					latches[index].await();
+					doReduce(index);
+				}
+				return null;
+			});
+			float loss;
+			try {
+				loss = graph.doLoss(labels);
+				task.get();
+			} finally {
+				// 反向传播失败时通信线程仍然在等待层节点,必须取消,否则后续的归约永远无法执行
+				task.cancel(true);
+			}
+			// 标准器与学习器按照所有进程归约之后的梯度执行一次
+			graph.doLearn();
+			return loss;
+		};
+		graph.optimizer.doCache(scorer, gradients, parameters);
+		graph.setListener((vertex) -> {
+			Integer index = indexes.get(vertex);
+			if (index != null) {
+				latches[index].countDown();
+			}
+		});
+		// 反向传播只计算分片的原始梯度
+		graph.setAccumulation(true);
+
+		float score = 0F;
+		try {
+			for (int iteration = 0; iteration < numberOfIterations; iteration++) {
+				// 只归约目标函数的总和,所有进程的参数一致,正则化项只需要计算一次
+				float[] losses = new float[] { scorer.call() };
+				transport.allReduce(losses);
+				score = (losses[0] + graph.doNorm()) / numberOfSamples;
+				graph.doGradient(gradients, numberOfSamples);
+				// 所有进程的得分与优化器状态一致,所以会在同一次迭代一起终止
+				if (graph.optimizer.optimize(score)) {
+					break;
+				}
+			}
+		} catch (Exception exception) {
+			logger.error("exception", exception);
+			throw new RuntimeException(exception);
+		} finally {
+			graph.setListener(null);
+			graph.setAccumulation(false);
+		}
+		return score;
+	}
+
+	/**
+	 * 预测
+	 *
+	 * @param samples
+	 * @param labels
+	 */
+	public void predict(MathMatrix[] samples, MathMatrix[] labels) {
+		graph.predict(samples, labels);
+	}
+
+	@Override
+	public void close() {
+		communicator.shutdownNow();
+		transport.close();
+	}
+
+}
@@ -8,6 +8,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -15,14 +16,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.ai.neuralnetwork.activation.SoftMaxActivationFunction;
 import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.RandomLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.SampledLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
 import com.jstarcraft.ai.neuralnetwork.loss.LossFunction;
+import com.jstarcraft.ai.neuralnetwork.loss.MCXENTLossFunction;
 import com.jstarcraft.ai.neuralnetwork.optimization.Optimizer;
 import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.ShareVertex;
 import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
 import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.StringUtility;
@@ -52,6 +62,8 @@ public class Graph implements ModelCycle {
 	private KeyValue<String, Layer>[] layers;
 	/** 目标函数 */
 	private LossFunction[] lossFunctions;
+	/** 与目标函数合并反向传播的输出层(不合并时为null) */
+	private WeightLayer[] fusions;
 
 	/** 拓扑排序 */
 	private int[] topologicalOrder;
@@ -64,6 +76,25 @@ public class Graph implements ModelCycle {
 
 	protected CountDownLatch latch;
 
+	/** 反向传播监听器(每个节点反向传播完毕时调用) */
+	private Consumer<Vertex> listener;
+
+	/** 检查点缓存(为null时不使用检查点模式) */
+	private CheckpointCache checkpointCache;
+	/** 检查点节点的名称(为空时自动划分) */
+	private String[] checkpointNames;
+	/** 分段(每个分段的节点按照拓扑排序) */
+	private int[][] segments;
+	/** 节点所属的分段 */
+	private int[] segmentIndexes;
+	/** 节点是否保留输出 */
+	private boolean[] keeps;
+
+	/** 梯度累积使用的缓存 */
+	private MathCache accumulationCache;
+	/** 微批量的样本数量(为0时不使用梯度累积模式) */
+	private int numberOfMicroSamples;
+
 	/** 优化器 */
 	protected Optimizer optimizer;
 
@@ -118,6 +149,125 @@ public class Graph implements ModelCycle {
 		return monitor;
 	}
 
+	/**
+	 * 设置检查点模式(梯度检查点)
+	 * 
+	 * <pre>
+	 * 按照拓扑排序把节点划分为多个分段,每个分段以检查点节点结束(没有指定检查点时自动划分为约√n个分段).
+	 * 检查点,输入,输出,随机(Dropout,RandomLayer,SampledLayer)节点以及被之后的分段引用的节点保留输出,
+	 * 其余节点通过检查点缓存在分段之间复用矩阵,反向传播时按照分段的逆序先重新计算分段的正向传播再执行反向传播.
+	 * 以额外一次正向传播的计算量换取内存,适合受内存限制的深层计算图.
+	 * 由于分段之间复用矩阵,检查点模式下节点按照拓扑排序串行执行(节点内部仍然并行).
+	 * </pre>
+	 * 
+	 * @param cache
+	 *            构建节点使用的检查点缓存(为null时关闭检查点模式)
+	 * @param names
+	 *            检查点节点的名称
+	 */
+	public void setCheckpoints(CheckpointCache cache, String... names) {
+		this.checkpointCache = cache;
+		this.checkpointNames = names;
+	}
+
+	/**
+	 * 设置梯度累积模式
+	 * 
+	 * <pre>
+	 * 训练时把批量按照行划分为多个微批量,每个微批量执行正向传播,目标函数与反向传播,梯度累积到持久的缓冲;
+	 * 所有微批量完毕之后才执行一次标准器,学习器,正则化,按照批量的样本数量缩放与优化器(包括终止条件).
+	 * 节点只按照微批量缓存矩阵,所以内存不会随着批量增长(只增加微批量的样本与参数大小的累积缓冲).
+	 * 批量的样本数量必须为微批量样本数量的整数倍(重新缓存会重置学习器的状态,无法单独处理不完整的微批量).
+	 * </pre>
+	 * 
+	 * @param cache
+	 *            微批量的样本与累积缓冲使用的缓存
+	 * @param numberOfMicroSamples
+	 *            微批量的样本数量(为0时关闭梯度累积模式)
+	 */
+	public void setAccumulation(MathCache cache, int numberOfMicroSamples) {
+		if (numberOfMicroSamples < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.accumulationCache = cache;
+		this.numberOfMicroSamples = numberOfMicroSamples;
+	}
+
+	/**
+	 * 是否为随机节点(重新计算的结果会不一致)
+	 * 
+	 * @param vertex
+	 * @return
+	 */
+	private boolean isRandom(Vertex vertex) {
+		if (!(vertex instanceof LayerVertex)) {
+			return false;
+		}
+		Layer layer = LayerVertex.class.cast(vertex).getLayer();
+		if (layer.getMode() != Mode.TRAIN) {
+			return false;
+		}
+		if (layer instanceof RandomLayer || layer instanceof SampledLayer) {
+			return true;
+		}
+		return layer instanceof WeightLayer && WeightLayer.class.cast(layer).getDropout() != null;
+	}
+
+	/**
+	 * 划分分段
+	 */
+	private void doSegment() {
+		int size = topologicalOrder.length;
+		boolean[] checkpoints = new boolean[size];
+		if (checkpointNames.length == 0) {
+			int step = (int) Math.ceil(Math.sqrt(size));
+			for (int position = step - 1; position < size; position += step) {
+				checkpoints[topologicalOrder[position]] = true;
+			}
+		} else {
+			for (String name : checkpointNames) {
+				boolean exist = false;
+				for (int index = 0; index < size; index++) {
+					if (vertices[index].getVertexName().equals(name)) {
+						checkpoints[index] = true;
+						exist = true;
+					}
+				}
+				if (!exist) {
+					throw new IllegalArgumentException(StringUtility.format("检查点节点{}不存在", name));
+				}
+			}
+		}
+		// 最后一个节点总是结束最后一个分段
+		checkpoints[topologicalOrder[size - 1]] = true;
+
+		segmentIndexes = new int[size];
+		List<int[]> segments = new LinkedList<>();
+		int from = 0;
+		for (int position = 0; position < size; position++) {
+			int index = topologicalOrder[position];
+			segmentIndexes[index] = segments.size();
+			if (checkpoints[index]) {
+				int[] segment = new int[position + 1 - from];
+				System.arraycopy(topologicalOrder, from, segment, 0, segment.length);
+				segments.add(segment);
+				from = position + 1;
+			}
+		}
+		this.segments = segments.toArray(new int[segments.size()][]);
+
+		keeps = new boolean[size];
+		for (int index = 0; index < size; index++) {
+			boolean keep = checkpoints[index] || forwardDependencies[index].isEmpty() || backwardDependencies[index].isEmpty() || isRandom(vertices[index]);
+			for (int dependency : backwardDependencies[index]) {
+				if (segmentIndexes[dependency] != segmentIndexes[index]) {
+					keep = true;
+				}
+			}
+			keeps[index] = keep;
+		}
+	}
+
 	public void doCache(MathMatrix[] samples, MathMatrix[] labels) {
 		numberOfSamples = samples[0].getRowSize();
 		for (int index = 1, size = samples.length; index < size; index++) {
@@ -127,6 +277,10 @@ public class Graph implements ModelCycle {
 			}
 		}
 
+		if (checkpointCache != null) {
+			doSegment();
+			checkpointCache.reset();
+		}
 		int position = 0;
 		for (int size = samples.length; position < size; position++) {
 			vertices[position].doCache(new KeyValue<>(samples[position], null));
@@ -138,18 +292,61 @@ public class Graph implements ModelCycle {
 				Vertex vertex = vertices[dependencies.get(index)];
 				keyValues[index] = vertex.getOutputKeyValue();
 			}
+			if (checkpointCache != null) {
+				// 不保留输出的节点在分段之间复用矩阵
+				checkpointCache.setSegment(keeps[position] ? -1 : segmentIndexes[position]);
+			}
 			vertices[position].doCache(keyValues);
 		}
+		if (checkpointCache != null) {
+			checkpointCache.setSegment(-1);
+		}
 
+		fusions = new WeightLayer[outputVertices.length];
 		for (int index = 0, size = outputVertices.length; index < size; index++) {
 			Vertex vertex = outputVertices[index];
 			LossFunction lossFunction = lossFunctions[index];
 			KeyValue<MathMatrix, MathMatrix> keyValue = vertex.getOutputKeyValue();
 			lossFunction.doCache(labels[index], keyValue.getKey());
+			fusions[index] = getFusion(vertex, lossFunction);
 		}
 	}
 
+	/**
+	 * 获取可以与目标函数合并反向传播的输出层
+	 * 
+	 * <pre>
+	 * 目前只合并SoftMax激活函数与交叉熵目标函数.
+	 * RandomLayer按照随机的列计算激活函数,无法合并;设置了Dropout的层也无法合并.
+	 * </pre>
+	 * 
+	 * @param vertex
+	 * @param lossFunction
+	 * @return
+	 */
+	private WeightLayer getFusion(Vertex vertex, LossFunction lossFunction) {
+		// ShareVertex的中间结果分散在多个层副本
+		if (!(vertex instanceof LayerVertex) || vertex instanceof ShareVertex) {
+			return null;
+		}
+		Layer layer = LayerVertex.class.cast(vertex).getLayer();
+		if (!(layer instanceof WeightLayer) || layer instanceof RandomLayer) {
+			return null;
+		}
+		WeightLayer weightLayer = WeightLayer.class.cast(layer);
+		boolean fusion = weightLayer.getDropout() == null && layer.getFunction() instanceof SoftMaxActivationFunction && lossFunction instanceof MCXENTLossFunction && MCXENTLossFunction.class.cast(lossFunction).isSoftMaximum();
+		weightLayer.setFusion(fusion);
+		return fusion ? weightLayer : null;
+	}
+
 	public void doForward() {
+		if (checkpointCache != null) {
+			// 分段之间复用矩阵,必须按照拓扑排序串行执行
+			for (int index : topologicalOrder) {
+				vertices[index].doForward();
+			}
+			return;
+		}
 		latch = new CountDownLatch(topologicalOrder.length);
 		for (int index = 0, size = topologicalOrder.length; index < size; index++) {
 			Semaphore semaphore = semaphores[index];
@@ -184,6 +381,27 @@ public class Graph implements ModelCycle {
 	}
 
 	public void doBackward() {
+		if (checkpointCache != null) {
+			for (int segment = segments.length - 1; segment >= 0; segment--) {
+				int[] indexes = segments[segment];
+				// 最后一个分段的矩阵没有被之后的分段覆盖,不需要重新计算
+				if (segment < segments.length - 1) {
+					for (int index : indexes) {
+						if (!keeps[index]) {
+							vertices[index].doForward();
+						}
+					}
+				}
+				for (int position = indexes.length - 1; position >= 0; position--) {
+					Vertex vertex = vertices[indexes[position]];
+					vertex.doBackward();
+					if (listener != null) {
+						listener.accept(vertex);
+					}
+				}
+			}
+			return;
+		}
 		latch = new CountDownLatch(topologicalOrder.length);
 		for (int index = topologicalOrder.length - 1; index > -1; index--) {
 			Semaphore semaphore = semaphores[index];
@@ -213,6 +431,9 @@ public class Graph implements ModelCycle {
 					if (logger.isDebugEnabled()) {
 						logger.debug(StringUtility.format("{}节点{}反向传播耗时{}毫秒", vertex.getClass().getSimpleName(), vertex.getVertexName(), System.currentTimeMillis() - time));
 					}
+					if (listener != null) {
+						listener.accept(vertex);
+					}
 					for (int position : beforeDependencies) {
 						// 产生beforeDependencies的信号量
 						semaphores[position].release();
@@ -235,23 +456,12 @@ public class Graph implements ModelCycle {
 	}
 
 	/**
-	 * 训练
+	 * 获取所有层的参数
 	 * 
-	 * @param samples
-	 * @param labels
+	 * @return
 	 */
-	public float practice(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
-		doCache(samples, labels);
-		for (int index = 0, size = labels.length; index < size; index++) {
-			// 检查数量
-			if (labels[index].getRowSize() != numberOfSamples) {
-				throw new IllegalArgumentException();
-			}
-		}
-
-		// TODO 获取所有层的梯度与参数
+	Map<String, MathMatrix> getParameters() {
 		Map<String, MathMatrix> parameters = new HashMap<>();
-		Map<String, MathMatrix> gradients = new HashMap<>();
 		for (KeyValue<String, Layer> term : layers) {
 			String name = term.getKey();
 			Layer layer = term.getValue();
@@ -260,69 +470,235 @@ public class Graph implements ModelCycle {
 					throw new RuntimeException(StringUtility.format("Layer参数名称{}冲突", name));
 				}
 			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * 获取所有层的梯度
+	 * 
+	 * @return
+	 */
+	Map<String, MathMatrix> getGradients() {
+		Map<String, MathMatrix> gradients = new HashMap<>();
+		for (KeyValue<String, Layer> term : layers) {
+			String name = term.getKey();
+			Layer layer = term.getValue();
 			for (Entry<String, MathMatrix> gradient : layer.getGradients().entrySet()) {
 				if (gradients.put(name + ":" + gradient.getKey(), gradient.getValue()) != null) {
 					throw new RuntimeException(StringUtility.format("Layer参数名称{}冲突", name));
 				}
 			}
 		}
+		return gradients;
+	}
 
-		Callable<Float> scorer = () -> {
-			if (monitor != null) {
-				monitor.beforeForward();
+	int getNumberOfSamples() {
+		return numberOfSamples;
+	}
+
+	Vertex[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * 派生使用独立随机流的掩码器
+	 * 
+	 * <pre>
+	 * 用于计算图的副本,否则副本会复制掩码器的种子并与原始计算图生成相同的掩码.
+	 * </pre>
+	 * 
+	 * @param stream
+	 */
+	void splitMaskers(long stream) {
+		for (KeyValue<String, Layer> term : layers) {
+			Layer layer = term.getValue();
+			if (layer instanceof WeightLayer) {
+				WeightLayer weightLayer = WeightLayer.class.cast(layer);
+				if (weightLayer.getDropout() != null) {
+					weightLayer.setDropout(weightLayer.getDropout().split(stream));
+				}
 			}
-			doForward();
-			if (monitor != null) {
-				monitor.afterForward();
+		}
+	}
+
+	int[] getTopologicalOrder() {
+		return topologicalOrder;
+	}
+
+	List<Integer>[] getForwardDependencies() {
+		return forwardDependencies;
+	}
+
+	List<Integer>[] getBackwardDependencies() {
+		return backwardDependencies;
+	}
+
+	void setListener(Consumer<Vertex> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 计算得分与梯度(正向传播,目标函数,反向传播)
+	 * 
+	 * @param labels
+	 * @return
+	 */
+	float doScore(MathMatrix[] labels) {
+		float score = doLoss(labels);
+		score += doNorm();
+		score /= numberOfSamples;
+		return score;
+	}
+
+	/**
+	 * 计算所有层的正则化项(L1与L2)的总和
+	 * 
+	 * @return
+	 */
+	float doNorm() {
+		float norm = 0F;
+		for (KeyValue<String, Layer> term : layers) {
+			Layer layer = term.getValue();
+			norm += (layer.calculateL1Norm() + layer.calculateL2Norm());
+		}
+		return norm;
+	}
+
+	/**
+	 * 计算目标函数的总和与梯度(正向传播,目标函数,反向传播)
+	 * 
+	 * @param labels
+	 * @return
+	 */
+	float doLoss(MathMatrix[] labels) {
+		if (monitor != null) {
+			monitor.beforeForward();
+		}
+		doForward();
+		if (monitor != null) {
+			monitor.afterForward();
+		}
+		// TODO 执行目标函数(loss)
+		float score = 0F;
+		for (int index = 0, size = outputVertices.length; index < size; index++) {
+			long time = System.currentTimeMillis();
+			Vertex vertex = outputVertices[index];
+			LossFunction lossFunction = lossFunctions[index];
+			KeyValue<MathMatrix, MathMatrix> keyValue = vertex.getOutputKeyValue();
+			if (fusions[index] != null) {
+				// 根据激活之前的输入直接计算dL/dz
+				KeyValue<MathMatrix, MathMatrix> middleKeyValue = fusions[index].getMiddleKeyValue();
+				score += MCXENTLossFunction.class.cast(lossFunction).computeScoreAndGradientWithSoftMaximum(labels[index], middleKeyValue.getKey(), null, middleKeyValue.getValue());
+			} else {
+				score += lossFunction.computeScoreAndGradient(labels[index], keyValue.getKey(), null, keyValue.getValue());
 			}
-			// TODO 执行目标函数(loss)
-			float score = 0F;
-			for (int index = 0, size = outputVertices.length; index < size; index++) {
-				long time = System.currentTimeMillis();
-				Vertex vertex = outputVertices[index];
-				LossFunction lossFunction = lossFunctions[index];
-				KeyValue<MathMatrix, MathMatrix> keyValue = vertex.getOutputKeyValue();
-				// TODO 考虑computeGradient与computeScore整合,避免重复迭代.
-				lossFunction.computeGradient(labels[index], keyValue.getKey(), null, keyValue.getValue());
-				score += lossFunction.computeScore(labels[index], keyValue.getKey(), null);
-				if (logger.isDebugEnabled()) {
-					logger.debug(StringUtility.format("{}目标函数计算耗时{}毫秒", lossFunction.getClass().getSimpleName(), System.currentTimeMillis() - time));
-				}
+			if (logger.isDebugEnabled()) {
+				logger.debug(StringUtility.format("{}目标函数计算耗时{}毫秒", lossFunction.getClass().getSimpleName(), System.currentTimeMillis() - time));
 			}
-			if (monitor != null) {
-				monitor.beforeBackward();
+		}
+		if (monitor != null) {
+			monitor.beforeBackward();
+		}
+		doBackward();
+		if (monitor != null) {
+			monitor.afterBackward();
+		}
+		return score;
+	}
+
+	/**
+	 * 正则化并按照样本数量缩放梯度
+	 * 
+	 * @param gradients
+	 */
+	void doGradient(Map<String, MathMatrix> gradients) {
+		doGradient(gradients, numberOfSamples);
+	}
+
+	/**
+	 * 正则化并按照指定的样本数量缩放梯度(用于多个副本归约之后的梯度)
+	 * 
+	 * @param gradients
+	 * @param numberOfSamples
+	 */
+	void doGradient(Map<String, MathMatrix> gradients, int numberOfSamples) {
+		for (KeyValue<String, Layer> term : layers) {
+			Layer layer = term.getValue();
+			layer.regularize();
+		}
+
+		// 按照样本数量缩放梯度比例
+		float scale = 1F / numberOfSamples;
+		for (MathMatrix gradient : gradients.values()) {
+			// TODO 此处应该判断是否由于scale导致NaN或者无穷
+			gradient.scaleValues(scale);
+		}
+	}
+
+	/**
+	 * 设置所有层节点是否延迟执行标准器与学习器
+	 * 
+	 * <pre>
+	 * 延迟时反向传播只计算梯度,由调用方在梯度完整(累积或者归约)之后调用{@link #doLearn()}.
+	 * </pre>
+	 * 
+	 * @param accumulation
+	 */
+	void setAccumulation(boolean accumulation) {
+		for (Vertex vertex : vertices) {
+			if (vertex instanceof LayerVertex) {
+				LayerVertex.class.cast(vertex).setAccumulation(accumulation);
 			}
-			doBackward();
-			if (monitor != null) {
-				monitor.afterBackward();
+		}
+	}
+
+	/**
+	 * 所有层节点执行标准器与学习器
+	 */
+	void doLearn() {
+		for (Vertex vertex : vertices) {
+			if (vertex instanceof LayerVertex) {
+				LayerVertex.class.cast(vertex).doLearn();
 			}
-			for (KeyValue<String, Layer> term : layers) {
-				Layer layer = term.getValue();
-				score += (layer.calculateL1Norm() + layer.calculateL2Norm());
+		}
+	}
+
+	/**
+	 * 训练
+	 * 
+	 * @param samples
+	 * @param labels
+	 */
+	public float practice(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
+		if (numberOfMicroSamples > 0 && samples[0].getRowSize() > numberOfMicroSamples) {
+			return accumulate(numberOfIterations, samples, labels);
+		}
+		doCache(samples, labels);
+		for (int index = 0, size = labels.length; index < size; index++) {
+			// 检查数量
+			if (labels[index].getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
 			}
-			score /= numberOfSamples;
-			return score;
+		}
+
+		// TODO 获取所有层的梯度与参数
+		Map<String, MathMatrix> parameters = getParameters();
+		Map<String, MathMatrix> gradients = getGradients();
+
+		Callable<Float> scorer = () -> {
+			return doScore(labels);
 		};
 
 		optimizer.doCache(scorer, gradients, parameters);
 
 		// 迭代
 		float score = 0F;
-		// 按照样本数量缩放梯度比例
-		float scale = 1F / numberOfSamples;
 		for (int iteration = 0; iteration < numberOfIterations; iteration++) {
 			try {
 				score = scorer.call();
 
-				for (KeyValue<String, Layer> term : layers) {
-					Layer layer = term.getValue();
-					layer.regularize();
-				}
-
-				for (MathMatrix gradient : gradients.values()) {
-					// TODO 此处应该判断是否由于scale导致NaN或者无穷
-					gradient.scaleValues(scale);
-				}
+				doGradient(gradients);
 
 				if (optimizer.optimize(score)) {
 					// TODO 收敛条件(termination)
@@ -335,6 +711,160 @@ public class Graph implements ModelCycle {
 		return score;
 	}
 
+	/**
+	 * 拷贝批量的行到微批量
+	 * 
+	 * @param matrixes
+	 * @param microMatrixes
+	 * @param from
+	 */
+	private static void copyRows(MathMatrix[] matrixes, MathMatrix[] microMatrixes, int from) {
+		for (int position = 0; position < matrixes.length; position++) {
+			MathMatrix matrix = matrixes[position];
+			MathMatrix microMatrix = microMatrixes[position];
+			for (int row = 0, size = microMatrix.getRowSize(); row < size; row++) {
+				microMatrix.getRowVector(row).copyVector(matrix.getRowVector(from + row));
+			}
+		}
+	}
+
+	/**
+	 * 累积梯度
+	 * 
+	 * @param accumulation
+	 * @param gradient
+	 */
+	private static void accumulateGradient(MathMatrix accumulation, MathMatrix gradient) {
+		if (gradient instanceof RowSparseMatrix) {
+			// 只累积已知的行
+			RowSparseMatrix from = RowSparseMatrix.class.cast(gradient);
+			RowSparseMatrix to = RowSparseMatrix.class.cast(accumulation);
+			for (int position = 0, size = from.getKnownRowSize(); position < size; position++) {
+				int row = from.getKnownRowIndex(position);
+				to.attachRow(row);
+				to.getRowVector(row).addVector(from.getRowVector(row));
+			}
+		} else {
+			accumulation.addMatrix(gradient, false);
+		}
+	}
+
+	/**
+	 * 把累积的梯度设置为层的梯度并清理累积缓冲
+	 * 
+	 * @param gradient
+	 * @param accumulation
+	 */
+	private static void restoreGradient(MathMatrix gradient, MathMatrix accumulation) {
+		if (gradient instanceof RowSparseMatrix) {
+			RowSparseMatrix from = RowSparseMatrix.class.cast(accumulation);
+			RowSparseMatrix to = RowSparseMatrix.class.cast(gradient);
+			to.clearRows();
+			for (int position = 0, size = from.getKnownRowSize(); position < size; position++) {
+				int row = from.getKnownRowIndex(position);
+				to.attachRow(row);
+				to.getRowVector(row).copyVector(from.getRowVector(row));
+			}
+			from.clearRows();
+		} else {
+			gradient.copyMatrix(accumulation, false);
+			accumulation.setValues(0F);
+		}
+	}
+
+	/**
+	 * 按照微批量累积梯度训练
+	 * 
+	 * @param numberOfIterations
+	 * @param samples
+	 * @param labels
+	 * @return
+	 */
+	private float accumulate(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
+		int numberOfSamples = samples[0].getRowSize();
+		for (MathMatrix matrix : samples) {
+			// 检查数量
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+		for (MathMatrix matrix : labels) {
+			// 检查数量
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+		if (numberOfSamples % numberOfMicroSamples != 0) {
+			throw new IllegalArgumentException(StringUtility.format("样本数量{}不是微批量样本数量{}的整数倍", numberOfSamples, numberOfMicroSamples));
+		}
+
+		MathMatrix[] microSamples = new MathMatrix[samples.length];
+		for (int position = 0; position < samples.length; position++) {
+			microSamples[position] = accumulationCache.makeMatrix(numberOfMicroSamples, samples[position].getColumnSize());
+		}
+		MathMatrix[] microLabels = new MathMatrix[labels.length];
+		for (int position = 0; position < labels.length; position++) {
+			microLabels[position] = accumulationCache.makeMatrix(numberOfMicroSamples, labels[position].getColumnSize());
+		}
+		doCache(microSamples, microLabels);
+
+		Map<String, MathMatrix> parameters = getParameters();
+		Map<String, MathMatrix> gradients = getGradients();
+		Map<String, MathMatrix> accumulations = new HashMap<>();
+		for (Entry<String, MathMatrix> term : gradients.entrySet()) {
+			MathMatrix gradient = term.getValue();
+			MathMatrix accumulation = accumulationCache.makeMatrix(gradient.getRowSize(), gradient.getColumnSize());
+			if (gradient instanceof RowSparseMatrix) {
+				accumulation = RowSparseMatrix.valueOf(accumulation);
+			} else {
+				accumulation.setValues(0F);
+			}
+			accumulations.put(term.getKey(), accumulation);
+		}
+		Callable<Float> scorer = () -> {
+			float score = 0F;
+			for (int from = 0; from < numberOfSamples; from += numberOfMicroSamples) {
+				copyRows(samples, microSamples, from);
+				copyRows(labels, microLabels, from);
+				score += doLoss(microLabels);
+				for (Entry<String, MathMatrix> term : gradients.entrySet()) {
+					accumulateGradient(accumulations.get(term.getKey()), term.getValue());
+				}
+			}
+			for (Entry<String, MathMatrix> term : gradients.entrySet()) {
+				restoreGradient(term.getValue(), accumulations.get(term.getKey()));
+			}
+			// 标准器与学习器按照整个批量的梯度执行一次
+			doLearn();
+			score += doNorm();
+			score /= numberOfSamples;
+			return score;
+		};
+
+		optimizer.doCache(scorer, gradients, parameters);
+
+		setAccumulation(true);
+		// 迭代
+		float score = 0F;
+		try {
+			for (int iteration = 0; iteration < numberOfIterations; iteration++) {
+				score = scorer.call();
+
+				doGradient(gradients, numberOfSamples);
+
+				if (optimizer.optimize(score)) {
+					// TODO 收敛条件(termination)
+				}
+			}
+		} catch (Exception exception) {
+			logger.error("exception", exception);
+			throw new RuntimeException(exception);
+		} finally {
+			setAccumulation(false);
+		}
+		return score;
+	}
+
 	/**
 	 * 预测
 	 * 
@@ -9,8 +9,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
+import com.jstarcraft.ai.math.structure.MathCache;
 import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.ElementVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.FusionVertex;
 import com.jstarcraft.core.utility.KeyValue;
 
 /**
@@ -147,6 +151,107 @@ public class GraphConfigurator {
 		return new KeyValue<>(topologicalOrder, new KeyValue<>(forwardDependencies, backwardDependencies));
 	}
 
+	/**
+	 * 融合逐元素节点
+	 * 
+	 * <pre>
+	 * 只有一个后继节点并且后继节点也是{@link ElementVertex}的逐元素节点,与后继节点融合为一个{@link FusionVertex}(使用最后一个节点的名称).
+	 * 融合之后的节点与边保持原来的相对顺序,所以输入节点的索引与节点的依赖顺序不变.
+	 * 被融合的中间节点不再执行,所以需要观察中间节点的输出时不要融合.
+	 * </pre>
+	 * 
+	 * @param factory
+	 * @return 新的图配置器(原配置器不变)
+	 */
+	public GraphConfigurator fuseVertices(MathCache factory) {
+		int size = vertices.size();
+		Vertex[] instances = new Vertex[size];
+		for (KeyValue<Integer, Vertex> keyValue : vertices.values()) {
+			instances[keyValue.getKey()] = keyValue.getValue();
+		}
+		List<Integer>[] inputEdges = new List[size];
+		List<Integer>[] outputEdges = new List[size];
+		for (int index = 0; index < size; index++) {
+			inputEdges[index] = new ArrayList<>();
+			outputEdges[index] = new ArrayList<>();
+		}
+		for (KeyValue<Integer, Integer> keyValue : edges) {
+			inputEdges[keyValue.getValue()].add(keyValue.getKey());
+			outputEdges[keyValue.getKey()].add(keyValue.getValue());
+		}
+		// 可以融合的节点(有输入的逐元素节点)
+		boolean[] elements = new boolean[size];
+		for (int index = 0; index < size; index++) {
+			elements[index] = instances[index] instanceof ElementVertex && !inputEdges[index].isEmpty();
+		}
+		// 融合到后继节点的节点
+		boolean[] merges = new boolean[size];
+		for (int index = 0; index < size; index++) {
+			merges[index] = elements[index] && outputEdges[index].size() == 1 && elements[outputEdges[index].get(0)];
+		}
+
+		GraphConfigurator configurator = new GraphConfigurator();
+		for (int index = 0; index < size; index++) {
+			if (merges[index]) {
+				continue;
+			}
+			Vertex vertex = instances[index];
+			List<Integer> dependencies = inputEdges[index];
+			if (elements[index]) {
+				TreeSet<Integer> members = new TreeSet<>();
+				LinkedList<Integer> stack = new LinkedList<>();
+				stack.push(index);
+				while (!stack.isEmpty()) {
+					int member = stack.pop();
+					members.add(member);
+					for (int dependency : inputEdges[member]) {
+						if (merges[dependency]) {
+							stack.push(dependency);
+						}
+					}
+				}
+				if (members.size() > 1) {
+					// 按照拓扑排序(索引顺序)编排融合节点的步骤与操作数
+					Map<Integer, Integer> steps = new LinkedHashMap<>();
+					for (int member : members) {
+						steps.put(member, steps.size());
+					}
+					Map<Integer, Integer> inputs = new LinkedHashMap<>();
+					ElementVertex[] elementVertices = new ElementVertex[members.size()];
+					int[][] operands = new int[members.size()][];
+					for (Map.Entry<Integer, Integer> term : steps.entrySet()) {
+						int member = term.getKey();
+						int step = term.getValue();
+						List<Integer> memberDependencies = inputEdges[member];
+						elementVertices[step] = (ElementVertex) instances[member];
+						operands[step] = new int[memberDependencies.size()];
+						for (int position = 0; position < operands[step].length; position++) {
+							int dependency = memberDependencies.get(position);
+							if (merges[dependency]) {
+								operands[step][position] = -steps.get(dependency) - 1;
+							} else {
+								Integer input = inputs.get(dependency);
+								if (input == null) {
+									input = inputs.size();
+									inputs.put(dependency, input);
+								}
+								operands[step][position] = input;
+							}
+						}
+					}
+					vertex = new FusionVertex(vertex.getVertexName(), factory, elementVertices, operands);
+					dependencies = new ArrayList<>(inputs.keySet());
+				}
+			}
+			List<String> names = new ArrayList<>(dependencies.size());
+			for (int dependency : dependencies) {
+				names.add(instances[dependency].getVertexName());
+			}
+			configurator.connect(vertex, names);
+		}
+		return configurator;
+	}
+
 	public Map<String, KeyValue<Integer, Vertex>> getVertices() {
 		return vertices;
 	}
@@ -0,0 +1,232 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+
+/**
+ * 异步计算图(Hogwild)
+ *
+ * <pre>
+ * 所有工作者共享同一份参数,每个工作者拥有独立的计算图副本(激活,梯度与学习器状态)与独立的环境上下文,并负责样本的一个分片.
+ * 工作者计算梯度之后直接无锁地更新共享参数,不等待其它工作者.Embed层的梯度为行稀疏矩阵,所以只会更新引用的行.
+ * 陈旧度(staleness)限制最快的工作者最多领先最慢的工作者多少次迭代,为0时相当于每次迭代同步一次.
+ *
+ * 参考Hogwild!: A Lock-Free Approach to Parallelizing Stochastic Gradient Descent
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class HogwildGraph {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private MathCache factory;
+
+	/** 工作者(第一个工作者为原始计算图) */
+	private Graph[] workers;
+
+	/** 工作者的环境上下文 */
+	private EnvironmentContext[] contexts;
+
+	/** 陈旧度 */
+	private int staleness;
+
+	/** 工作者已经完成的迭代次数 */
+	private int[] progresses;
+
+	public HogwildGraph(Graph graph, MathCache factory, int numberOfWorkers, int numberOfThreads, int staleness) {
+		if (numberOfWorkers <= 0 || numberOfThreads <= 0 || staleness < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.factory = factory;
+		this.staleness = staleness;
+		this.workers = new Graph[numberOfWorkers];
+		this.contexts = new EnvironmentContext[numberOfWorkers];
+		this.progresses = new int[numberOfWorkers];
+		byte[] data = ModelCodec.KRYO.encodeModel(graph);
+		Vertex[] vertices = graph.getVertices();
+		for (int index = 0; index < numberOfWorkers; index++) {
+			Graph worker = index == 0 ? graph : (Graph) ModelCodec.KRYO.decodeModel(data);
+			if (index > 0) {
+				// 每个工作者的分片不同,掩码必须使用独立的随机流
+				worker.splitMaskers(index);
+				// 共享原始计算图的参数
+				Vertex[] copies = worker.getVertices();
+				for (int position = 0; position < vertices.length; position++) {
+					if (vertices[position] instanceof LayerVertex) {
+						Map<String, MathMatrix> parameters = LayerVertex.class.cast(vertices[position]).getLayer().getParameters();
+						LayerVertex.class.cast(copies[position]).getLayer().getParameters().putAll(parameters);
+					}
+				}
+			}
+			this.workers[index] = worker;
+			this.contexts[index] = EnvironmentContext.constructCpuContext(numberOfThreads);
+		}
+	}
+
+	/**
+	 * 获取工作者
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Graph getWorker(int index) {
+		return workers[index];
+	}
+
+	public int getWorkerSize() {
+		return workers.length;
+	}
+
+	private int getMinimum() {
+		int minimum = Integer.MAX_VALUE;
+		for (int progress : progresses) {
+			minimum = Math.min(minimum, progress);
+		}
+		return minimum;
+	}
+
+	/**
+	 * 等待直到指定的迭代不超过陈旧度
+	 *
+	 * @param iteration
+	 * @throws InterruptedException
+	 */
+	private void doWait(int iteration) throws InterruptedException {
+		synchronized (progresses) {
+			while (iteration - getMinimum() > staleness) {
+				progresses.wait();
+			}
+		}
+	}
+
+	private void doNotify(int position, int progress) {
+		synchronized (progresses) {
+			progresses[position] = progress;
+			progresses.notifyAll();
+		}
+	}
+
+	/**
+	 * 训练
+	 *
+	 * @param numberOfIterations
+	 * @param samples
+	 * @param labels
+	 * @return
+	 */
+	public float practice(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
+		int numberOfWorkers = workers.length;
+		int numberOfSamples = samples[0].getRowSize();
+		if (numberOfSamples < numberOfWorkers) {
+			throw new IllegalArgumentException();
+		}
+		for (MathMatrix matrix : samples) {
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+		for (MathMatrix matrix : labels) {
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		synchronized (progresses) {
+			for (int index = 0; index < numberOfWorkers; index++) {
+				progresses[index] = 0;
+			}
+		}
+		// 按照分片的样本数量加权得分
+		float[] weights = new float[numberOfWorkers];
+		float[] scores = new float[numberOfWorkers];
+		Future<?>[] tasks = new Future[numberOfWorkers];
+		for (int index = 0; index < numberOfWorkers; index++) {
+			int position = index;
+			int from = (int) ((long) numberOfSamples * position / numberOfWorkers);
+			int to = (int) ((long) numberOfSamples * (position + 1) / numberOfWorkers);
+			weights[position] = (to - from) / (float) numberOfSamples;
+			Graph worker = workers[position];
+			tasks[position] = contexts[position].doTask(() -> {
+				try {
+					MathMatrix[] shardSamples = new MathMatrix[samples.length];
+					for (int shard = 0; shard < samples.length; shard++) {
+						shardSamples[shard] = ParallelGraph.getShard(factory, samples[shard], from, to);
+					}
+					MathMatrix[] shardLabels = new MathMatrix[labels.length];
+					for (int shard = 0; shard < labels.length; shard++) {
+						shardLabels[shard] = ParallelGraph.getShard(factory, labels[shard], from, to);
+					}
+					worker.doCache(shardSamples, shardLabels);
+					Map<String, MathMatrix> parameters = worker.getParameters();
+					Map<String, MathMatrix> gradients = worker.getGradients();
+					Callable<Float> scorer = () -> {
+						return worker.doScore(shardLabels);
+					};
+					worker.optimizer.doCache(scorer, gradients, parameters);
+
+					for (int iteration = 0; iteration < numberOfIterations; iteration++) {
+						doWait(iteration);
+						scores[position] = scorer.call();
+						worker.doGradient(gradients);
+						// 无锁地更新共享参数
+						if (worker.optimizer.optimize(scores[position])) {
+							// TODO 收敛条件(termination)
+						}
+						doNotify(position, iteration + 1);
+					}
+				} catch (Exception exception) {
+					logger.error("exception", exception);
+					throw new RuntimeException(exception);
+				} finally {
+					// 防止其它工作者等待导致死锁
+					doNotify(position, numberOfIterations);
+				}
+			});
+		}
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		float score = 0F;
+		for (int index = 0; index < numberOfWorkers; index++) {
+			score += scores[index] * weights[index];
+		}
+		return score;
+	}
+
+	/**
+	 * 预测(使用第一个工作者)
+	 *
+	 * @param samples
+	 * @param labels
+	 */
+	public void predict(MathMatrix[] samples, MathMatrix[] labels) {
+		workers[0].predict(samples, labels);
+	}
+
+	/**
+	 * 关闭所有工作者的环境上下文
+	 */
+	public void shutdown() {
+		for (EnvironmentContext context : contexts) {
+			context.shutdown();
+		}
+	}
+
+}
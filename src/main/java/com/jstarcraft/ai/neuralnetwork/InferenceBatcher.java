@@ -0,0 +1,243 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+
+/**
+ * 推断批处理器(micro-batching)
+ *
+ * <pre>
+ * 把并发的单行预测请求合并为一个批量矩阵,执行一次正向传播,再把输出的行分发回每个请求的Future.
+ * 调度线程取到第一个请求之后,继续等待直到批量达到最大批量大小或者等待超过最大等待时间(微秒),所以额外的延迟不超过最大等待时间.
+ * 批量在环境上下文的算法线程执行,调度线程随即开始合并下一个批量,多个批量可以同时执行.
+ * 队列深度(每次开始合并时等待的请求数量,按照2的幂分桶)与批量大小(按照大小计数)的直方图用于调整参数.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class InferenceBatcher {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * 请求
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private static class Request {
+
+		private MathMatrix[] samples;
+
+		private CompletableFuture<MathMatrix[]> future;
+
+		private Request(MathMatrix[] samples) {
+			this.samples = samples;
+			this.future = new CompletableFuture<>();
+		}
+
+	}
+
+	private InferenceGraph graph;
+
+	private MathCache factory;
+
+	private EnvironmentContext context;
+
+	/** 最大批量大小 */
+	private int maximumSize;
+
+	/** 最大等待时间(微秒) */
+	private long maximumWait;
+
+	private BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+	private Thread dispatcher;
+
+	private volatile boolean running;
+
+	/** 已经分派的批量数量(用于选择算法线程) */
+	private int batches;
+
+	/** 队列深度直方图(第i个桶统计[2^(i-1), 2^i)) */
+	private AtomicLongArray queueDepths = new AtomicLongArray(Integer.SIZE + 1);
+
+	/** 批量大小直方图(第i个桶统计大小为i的批量) */
+	private AtomicLongArray batchSizes;
+
+	public InferenceBatcher(InferenceGraph graph, MathCache factory, EnvironmentContext context, int maximumSize, long maximumWait) {
+		if (maximumSize <= 0 || maximumWait < 0L) {
+			throw new IllegalArgumentException();
+		}
+		this.graph = graph;
+		this.factory = factory;
+		this.context = context;
+		this.maximumSize = maximumSize;
+		this.maximumWait = maximumWait;
+		this.batchSizes = new AtomicLongArray(maximumSize + 1);
+		this.running = true;
+		this.dispatcher = new Thread(this::doDispatch, getClass().getName());
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * 预测(样本必须为单行)
+	 *
+	 * @param samples
+	 * @return 输出(单行)
+	 */
+	public CompletableFuture<MathMatrix[]> predict(MathMatrix... samples) {
+		for (MathMatrix matrix : samples) {
+			if (matrix.getRowSize() != 1) {
+				throw new IllegalArgumentException();
+			}
+		}
+		if (!running) {
+			throw new IllegalStateException();
+		}
+		Request request = new Request(samples);
+		requests.offer(request);
+		// 与关闭并发时,调度线程可能已经不会再取出请求
+		if (!running && requests.remove(request)) {
+			request.future.completeExceptionally(new IllegalStateException());
+		}
+		return request.future;
+	}
+
+	/**
+	 * 调度(合并请求)
+	 */
+	private void doDispatch() {
+		while (running) {
+			List<Request> batch = new ArrayList<>(maximumSize);
+			try {
+				Request request = requests.take();
+				// 包括已经取出的第一个请求
+				queueDepths.incrementAndGet(Integer.SIZE - Integer.numberOfLeadingZeros(requests.size() + 1));
+				batch.add(request);
+				long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maximumWait);
+				while (batch.size() < maximumSize) {
+					// 先取已经到达的请求,避免无谓的等待
+					if (requests.drainTo(batch, maximumSize - batch.size()) > 0) {
+						continue;
+					}
+					long remain = deadline - System.nanoTime();
+					if (remain <= 0L) {
+						break;
+					}
+					request = requests.poll(remain, TimeUnit.NANOSECONDS);
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+				}
+			} catch (InterruptedException exception) {
+				for (Request request : batch) {
+					request.future.completeExceptionally(exception);
+				}
+				break;
+			}
+			batchSizes.incrementAndGet(batch.size());
+			context.doAlgorithmByAny(batches++, () -> {
+				doBatch(batch);
+			});
+		}
+		// 拒绝剩余的请求
+		List<Request> batch = new ArrayList<>();
+		requests.drainTo(batch);
+		for (Request request : batch) {
+			request.future.completeExceptionally(new IllegalStateException());
+		}
+	}
+
+	/**
+	 * 执行批量
+	 *
+	 * @param batch
+	 */
+	private void doBatch(List<Request> batch) {
+		try {
+			int rowSize = batch.size();
+			MathMatrix[] prototypes = batch.get(0).samples;
+			MathMatrix[] samples = new MathMatrix[prototypes.length];
+			for (int position = 0; position < samples.length; position++) {
+				samples[position] = factory.makeMatrix(rowSize, prototypes[position].getColumnSize());
+			}
+			// 合并样本
+			for (int row = 0; row < rowSize; row++) {
+				Request request = batch.get(row);
+				if (request.samples.length != samples.length) {
+					throw new IllegalArgumentException();
+				}
+				for (int position = 0; position < samples.length; position++) {
+					samples[position].getRowVector(row).copyVector(request.samples[position].getRowVector(0));
+				}
+			}
+			graph.predict(samples, (outputs) -> {
+				// 分发输出
+				for (int row = 0; row < rowSize; row++) {
+					MathMatrix[] labels = new MathMatrix[outputs.length];
+					for (int position = 0; position < outputs.length; position++) {
+						labels[position] = factory.makeMatrix(1, outputs[position].getColumnSize());
+						labels[position].getRowVector(0).copyVector(outputs[position].getRowVector(row));
+					}
+					batch.get(row).future.complete(labels);
+				}
+			});
+		} catch (Throwable throwable) {
+			logger.error("exception", throwable);
+			for (Request request : batch) {
+				request.future.completeExceptionally(throwable);
+			}
+		}
+	}
+
+	/**
+	 * 获取队列深度直方图
+	 *
+	 * @return
+	 */
+	public long[] getQueueDepths() {
+		long[] histogram = new long[queueDepths.length()];
+		for (int index = 0; index < histogram.length; index++) {
+			histogram[index] = queueDepths.get(index);
+		}
+		return histogram;
+	}
+
+	/**
+	 * 获取批量大小直方图
+	 *
+	 * @return
+	 */
+	public long[] getBatchSizes() {
+		long[] histogram = new long[batchSizes.length()];
+		for (int index = 0; index < histogram.length; index++) {
+			histogram[index] = batchSizes.get(index);
+		}
+		return histogram;
+	}
+
+	/**
+	 * 关闭(正在执行的批量会正常完成,尚未合并的请求会失败)
+	 */
+	public void shutdown() {
+		running = false;
+		dispatcher.interrupt();
+	}
+
+}
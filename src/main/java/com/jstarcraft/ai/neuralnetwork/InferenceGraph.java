@@ -0,0 +1,333 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+import com.jstarcraft.core.utility.KeyValue;
+
+/**
+ * 推断计算图
+ *
+ * <pre>
+ * 由训练完毕的计算图编译而成的只读执行计划,支持多个线程并发预测.
+ * 编译时复制一份冻结的计算图,之后继续训练原始计算图不会影响预测.所有层切换为测试模式(不执行Dropout),
+ * 层节点的学习器与标准器替换为忽略实现,不再为梯度分配学习器的状态.
+ * 拓扑排序,正向依赖与输出节点在编译时解析为数组,预测时在调用线程按照拓扑排序逐个执行节点,不经过算法线程与信号量.
+ *
+ * 每个请求从池中借用一个工作区(共享冻结参数的节点副本与输入缓冲),用完归还,所以并发的请求不会共享节点的矩阵.
+ * 工作区的数量有上限(默认为环境上下文的线程数量),所有工作区都被借用时请求等待归还,避免突发的并发请求构建大量工作区.
+ * 工作区按照批量大小缓存节点的矩阵,优先借用批量大小一致的工作区,批量大小不变时预测不会分配内存;
+ * 样本与输出都通过{@link MathMatrix#copyMatrix}批量拷贝.
+ * 在数据结构线程调用时,节点内部的数据结构指令全部在当前线程执行,适合小批量的低延迟预测.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class InferenceGraph {
+
+	/**
+	 * 工作区
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private static class Workspace {
+
+		/** 节点副本 */
+		private Vertex[] vertices;
+
+		/** 输入缓冲 */
+		private MathMatrix[] buffers;
+
+		private Workspace(Vertex[] vertices, int numberOfInputs) {
+			this.vertices = vertices;
+			this.buffers = new MathMatrix[numberOfInputs];
+		}
+
+	}
+
+	private MathCache factory;
+
+	/** 冻结的计算图 */
+	private byte[] data;
+
+	/** 拓扑排序 */
+	private int[] topologicalOrder;
+
+	/** 正向依赖 */
+	private int[][] forwardDependencies;
+
+	/** 输入节点的数量 */
+	private int numberOfInputs;
+
+	/** 输出节点 */
+	private int[] outputIndexes;
+
+	/** 冻结的参数与梯度(按照节点索引,非层节点为null) */
+	private Map<String, MathMatrix>[] parameters, gradients;
+
+	/** 空闲的工作区 */
+	private Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+	/** 可以借用的工作区数量(限制工作区的总数) */
+	private Semaphore semaphore;
+
+	public InferenceGraph(Graph graph, MathCache factory) {
+		this(graph, factory, EnvironmentContext.getContext().getNumberOfThreads());
+	}
+
+	/**
+	 * 
+	 * @param graph
+	 * @param factory
+	 * @param numberOfWorkspaces
+	 *            工作区数量的上限
+	 */
+	public InferenceGraph(Graph graph, MathCache factory, int numberOfWorkspaces) {
+		if (numberOfWorkspaces <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.factory = factory;
+		this.semaphore = new Semaphore(numberOfWorkspaces);
+		this.data = ModelCodec.KRYO.encodeModel(graph);
+
+		int[] topologicalOrder = graph.getTopologicalOrder();
+		List<Integer>[] forwardDependencies = graph.getForwardDependencies();
+		List<Integer>[] backwardDependencies = graph.getBackwardDependencies();
+		int size = topologicalOrder.length;
+		int outputSize = 0;
+		this.topologicalOrder = topologicalOrder.clone();
+		this.forwardDependencies = new int[size][];
+		for (int index = 0; index < size; index++) {
+			List<Integer> dependencies = forwardDependencies[index];
+			this.forwardDependencies[index] = new int[dependencies.size()];
+			for (int position = 0; position < dependencies.size(); position++) {
+				this.forwardDependencies[index][position] = dependencies.get(position);
+			}
+			if (dependencies.isEmpty()) {
+				numberOfInputs++;
+			}
+			if (backwardDependencies[index].isEmpty()) {
+				outputSize++;
+			}
+		}
+		// 与Graph一致,没有反向依赖的节点按照拓扑排序作为输出节点
+		this.outputIndexes = new int[outputSize];
+		outputSize = 0;
+		for (int index : topologicalOrder) {
+			if (backwardDependencies[index].isEmpty()) {
+				this.outputIndexes[outputSize++] = index;
+			}
+		}
+
+		// 第一个工作区的参数与梯度作为冻结的参数与梯度
+		Workspace workspace = constructWorkspace(null, null);
+		this.parameters = new Map[size];
+		this.gradients = new Map[size];
+		for (int index = 0; index < size; index++) {
+			Vertex vertex = workspace.vertices[index];
+			if (vertex instanceof LayerVertex) {
+				Layer layer = LayerVertex.class.cast(vertex).getLayer();
+				this.parameters[index] = layer.getParameters();
+				this.gradients[index] = layer.getGradients();
+			}
+		}
+		workspaces.offer(workspace);
+	}
+
+	/**
+	 * 构建工作区
+	 *
+	 * @param parameters
+	 *            共享的参数(为null时使用冻结的计算图自身的参数)
+	 * @param gradients
+	 *            共享的梯度(正向传播只会引用,不会修改)
+	 * @return
+	 */
+	private Workspace constructWorkspace(Map<String, MathMatrix>[] parameters, Map<String, MathMatrix>[] gradients) {
+		Graph graph = (Graph) ModelCodec.KRYO.decodeModel(data);
+		Vertex[] vertices = graph.getVertices();
+		for (int index = 0; index < vertices.length; index++) {
+			Vertex vertex = vertices[index];
+			if (!(vertex instanceof LayerVertex)) {
+				continue;
+			}
+			Layer layer = LayerVertex.class.cast(vertex).getLayer();
+			layer.setMode(Mode.TEST);
+			if (parameters != null) {
+				layer.getParameters().putAll(parameters[index]);
+				layer.getGradients().putAll(gradients[index]);
+			}
+			// 子类(例如ShareVertex)有自己的执行逻辑,只替换普通的层节点
+			if (vertex.getClass() == LayerVertex.class) {
+				vertices[index] = new LayerVertex(vertex.getVertexName(), factory, layer);
+			}
+		}
+		return new Workspace(vertices, numberOfInputs);
+	}
+
+	/**
+	 * 按照样本的维度缓存工作区(维度不变时不会重新分配)
+	 *
+	 * @param workspace
+	 * @param samples
+	 */
+	private void doCache(Workspace workspace, MathMatrix[] samples) {
+		int rowSize = samples[0].getRowSize();
+		boolean cached = true;
+		for (int position = 0; position < samples.length; position++) {
+			MathMatrix buffer = workspace.buffers[position];
+			if (buffer == null || buffer.getRowSize() != rowSize || buffer.getColumnSize() != samples[position].getColumnSize()) {
+				cached = false;
+				break;
+			}
+		}
+		if (cached) {
+			return;
+		}
+
+		Vertex[] vertices = workspace.vertices;
+		MathMatrix[] buffers = new MathMatrix[samples.length];
+		int position = 0;
+		for (int size = samples.length; position < size; position++) {
+			buffers[position] = factory.makeMatrix(rowSize, samples[position].getColumnSize());
+			vertices[position].doCache(new KeyValue<>(buffers[position], null));
+		}
+		for (int size = vertices.length; position < size; position++) {
+			int[] dependencies = forwardDependencies[position];
+			KeyValue<MathMatrix, MathMatrix>[] keyValues = new KeyValue[dependencies.length];
+			for (int index = 0; index < keyValues.length; index++) {
+				keyValues[index] = vertices[dependencies[index]].getOutputKeyValue();
+			}
+			vertices[position].doCache(keyValues);
+		}
+		// 所有节点缓存完毕才更新输入缓冲,避免异常导致工作区处于不一致的状态
+		workspace.buffers = buffers;
+	}
+
+	/**
+	 * 借用工作区(优先借用批量大小一致的工作区,所有工作区都被借用时等待归还)
+	 *
+	 * @param rowSize
+	 * @return
+	 */
+	private Workspace borrowWorkspace(int rowSize) {
+		try {
+			semaphore.acquire();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		boolean borrowed = false;
+		try {
+			for (Workspace workspace : workspaces) {
+				MathMatrix buffer = workspace.buffers.length == 0 ? null : workspace.buffers[0];
+				if (buffer != null && buffer.getRowSize() == rowSize && workspaces.remove(workspace)) {
+					borrowed = true;
+					return workspace;
+				}
+			}
+			Workspace workspace = workspaces.poll();
+			if (workspace == null) {
+				// 持有许可的请求才会构建工作区,所以工作区的总数不会超过上限
+				workspace = constructWorkspace(parameters, gradients);
+			}
+			borrowed = true;
+			return workspace;
+		} finally {
+			if (!borrowed) {
+				semaphore.release();
+			}
+		}
+	}
+
+	/**
+	 * 归还工作区
+	 *
+	 * @param workspace
+	 */
+	private void returnWorkspace(Workspace workspace) {
+		workspaces.offer(workspace);
+		semaphore.release();
+	}
+
+	int getWorkspaceSize() {
+		return workspaces.size();
+	}
+
+	/**
+	 * 预测并访问输出(访问期间工作区不会被其它请求借用,所以可以直接读取输出)
+	 *
+	 * @param samples
+	 * @param accessor
+	 */
+	void predict(MathMatrix[] samples, Consumer<MathMatrix[]> accessor) {
+		if (samples.length != numberOfInputs) {
+			throw new IllegalArgumentException();
+		}
+		int numberOfSamples = samples[0].getRowSize();
+		for (MathMatrix matrix : samples) {
+			// 检查数量
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		Workspace workspace = borrowWorkspace(numberOfSamples);
+		try {
+			doCache(workspace, samples);
+			for (int position = 0; position < samples.length; position++) {
+				workspace.buffers[position].copyMatrix(samples[position], false);
+			}
+			Vertex[] vertices = workspace.vertices;
+			for (int index : topologicalOrder) {
+				vertices[index].doForward();
+			}
+			MathMatrix[] outputs = new MathMatrix[outputIndexes.length];
+			for (int position = 0; position < outputs.length; position++) {
+				outputs[position] = vertices[outputIndexes[position]].getOutputKeyValue().getKey();
+			}
+			accessor.accept(outputs);
+		} finally {
+			returnWorkspace(workspace);
+		}
+	}
+
+	/**
+	 * 预测(线程安全)
+	 *
+	 * @param samples
+	 * @param labels
+	 */
+	public void predict(MathMatrix[] samples, MathMatrix[] labels) {
+		if (labels.length != outputIndexes.length) {
+			throw new IllegalArgumentException();
+		}
+		int numberOfSamples = samples[0].getRowSize();
+		for (MathMatrix matrix : labels) {
+			// 检查数量
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		predict(samples, (outputs) -> {
+			for (int position = 0; position < labels.length; position++) {
+				labels[position].copyMatrix(outputs[position], false);
+			}
+		});
+	}
+
+}
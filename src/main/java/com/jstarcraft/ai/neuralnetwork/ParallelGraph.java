@@ -0,0 +1,305 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+
+/**
+ * 数据并行计算图
+ *
+ * <pre>
+ * 将计算图复制为多个副本,每个副本拥有独立的环境上下文(线程组)并负责样本的一个分片.
+ * 每次迭代在标准器,学习器,正则化与优化器更新之前,所有副本通过共享内存对原始梯度执行全归约(All-Reduce):
+ * 每个副本负责归约梯度的一个区段,并把结果写回所有副本.
+ * 归约之后才执行标准器与学习器,再按照总样本数量缩放梯度,正则化项只会计算一次.
+ * 得分同样只归约分片的目标函数总和,再加上一次正则化项并按照总样本数量平均.
+ * 由于归约顺序固定,所有副本得到逐位一致的梯度,参数也因此保持逐位一致.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class ParallelGraph {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private MathCache factory;
+
+	/** 副本(第一个副本为原始计算图) */
+	private Graph[] replicas;
+
+	/** 副本的环境上下文 */
+	private EnvironmentContext[] contexts;
+
+	public ParallelGraph(Graph graph, MathCache factory, int numberOfReplicas, int numberOfThreads) {
+		if (numberOfReplicas <= 0 || numberOfThreads <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.factory = factory;
+		this.replicas = new Graph[numberOfReplicas];
+		this.contexts = new EnvironmentContext[numberOfReplicas];
+		byte[] data = ModelCodec.KRYO.encodeModel(graph);
+		for (int index = 0; index < numberOfReplicas; index++) {
+			this.replicas[index] = index == 0 ? graph : (Graph) ModelCodec.KRYO.decodeModel(data);
+			if (index > 0) {
+				// 每个副本的分片不同,掩码必须使用独立的随机流
+				this.replicas[index].splitMaskers(index);
+			}
+			this.contexts[index] = EnvironmentContext.constructCpuContext(numberOfThreads);
+		}
+	}
+
+	/**
+	 * 获取副本
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Graph getReplica(int index) {
+		return replicas[index];
+	}
+
+	public int getReplicaSize() {
+		return replicas.length;
+	}
+
+	/**
+	 * 按行切分分片
+	 *
+	 * @param factory
+	 * @param matrix
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	static MathMatrix getShard(MathCache factory, MathMatrix matrix, int from, int to) {
+		MathMatrix shard = factory.makeMatrix(to - from, matrix.getColumnSize());
+		shard.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(matrix.getValue(from + scalar.getRow(), scalar.getColumn()));
+		});
+		return shard;
+	}
+
+	/**
+	 * 把所有副本已知的行附加到每个副本的行稀疏梯度
+	 *
+	 * <pre>
+	 * 作为屏障动作由最后到达的线程执行(其它副本都在等待),保证归约写回时不会并发地附加行.
+	 * </pre>
+	 *
+	 * @param names
+	 * @param gradients
+	 */
+	private static void attachRows(List<String> names, Map<String, MathMatrix>[] gradients) {
+		for (String name : names) {
+			for (Map<String, MathMatrix> from : gradients) {
+				if (!(from.get(name) instanceof RowSparseMatrix)) {
+					continue;
+				}
+				RowSparseMatrix matrix = RowSparseMatrix.class.cast(from.get(name));
+				for (int position = 0, size = matrix.getKnownRowSize(); position < size; position++) {
+					int row = matrix.getKnownRowIndex(position);
+					for (Map<String, MathMatrix> to : gradients) {
+						RowSparseMatrix.class.cast(to.get(name)).attachRow(row);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 全归约
+	 *
+	 * <pre>
+	 * 稠密梯度按照元素切分区段,行稀疏梯度按照已知的行切分区段(屏障动作已经保证所有副本的已知行一致),
+	 * 指定的副本负责归约自己的区段并写回所有副本.
+	 * </pre>
+	 *
+	 * @param position
+	 * @param names
+	 * @param gradients
+	 */
+	private void doReduce(int position, List<String> names, Map<String, MathMatrix>[] gradients) {
+		int numberOfReplicas = replicas.length;
+		MathMatrix[] matrixes = new MathMatrix[numberOfReplicas];
+		for (String name : names) {
+			for (int index = 0; index < numberOfReplicas; index++) {
+				matrixes[index] = gradients[index].get(name);
+			}
+			int columnSize = matrixes[0].getColumnSize();
+			if (matrixes[0] instanceof RowSparseMatrix) {
+				RowSparseMatrix sparse = RowSparseMatrix.class.cast(matrixes[0]);
+				int rowSize = sparse.getKnownRowSize();
+				int from = (int) ((long) rowSize * position / numberOfReplicas);
+				int to = (int) ((long) rowSize * (position + 1) / numberOfReplicas);
+				for (int cursor = from; cursor < to; cursor++) {
+					int row = sparse.getKnownRowIndex(cursor);
+					for (int column = 0; column < columnSize; column++) {
+						float value = 0F;
+						// 固定归约顺序保证所有副本逐位一致
+						for (int index = 0; index < numberOfReplicas; index++) {
+							value += matrixes[index].getValue(row, column);
+						}
+						for (int index = 0; index < numberOfReplicas; index++) {
+							matrixes[index].setValue(row, column, value);
+						}
+					}
+				}
+				continue;
+			}
+			int elementSize = matrixes[0].getRowSize() * columnSize;
+			int from = (int) ((long) elementSize * position / numberOfReplicas);
+			int to = (int) ((long) elementSize * (position + 1) / numberOfReplicas);
+			for (int cursor = from; cursor < to; cursor++) {
+				int row = cursor / columnSize;
+				int column = cursor % columnSize;
+				float value = 0F;
+				// 固定归约顺序保证所有副本逐位一致
+				for (int index = 0; index < numberOfReplicas; index++) {
+					value += matrixes[index].getValue(row, column);
+				}
+				for (int index = 0; index < numberOfReplicas; index++) {
+					matrixes[index].setValue(row, column, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 训练
+	 *
+	 * @param numberOfIterations
+	 * @param samples
+	 * @param labels
+	 * @return
+	 */
+	public float practice(int numberOfIterations, MathMatrix[] samples, MathMatrix[] labels) {
+		int numberOfReplicas = replicas.length;
+		int numberOfSamples = samples[0].getRowSize();
+		if (numberOfSamples < numberOfReplicas) {
+			throw new IllegalArgumentException();
+		}
+		for (MathMatrix matrix : samples) {
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+		for (MathMatrix matrix : labels) {
+			if (matrix.getRowSize() != numberOfSamples) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		// 分片的目标函数总和(不包含正则化项)
+		float[] losses = new float[numberOfReplicas];
+		Map<String, MathMatrix>[] gradients = new Map[numberOfReplicas];
+		List<String> names = new ArrayList<>(replicas[0].getGradients().keySet());
+		Collections.sort(names);
+		CyclicBarrier barrier = new CyclicBarrier(numberOfReplicas, () -> {
+			attachRows(names, gradients);
+		});
+		Future<?>[] tasks = new Future[numberOfReplicas];
+		float[] results = new float[numberOfReplicas];
+		for (int index = 0; index < numberOfReplicas; index++) {
+			int position = index;
+			int from = (int) ((long) numberOfSamples * position / numberOfReplicas);
+			int to = (int) ((long) numberOfSamples * (position + 1) / numberOfReplicas);
+			Graph replica = replicas[position];
+			tasks[position] = contexts[position].doTask(() -> {
+				try {
+					MathMatrix[] shardSamples = new MathMatrix[samples.length];
+					for (int shard = 0; shard < samples.length; shard++) {
+						shardSamples[shard] = getShard(factory, samples[shard], from, to);
+					}
+					MathMatrix[] shardLabels = new MathMatrix[labels.length];
+					for (int shard = 0; shard < labels.length; shard++) {
+						shardLabels[shard] = getShard(factory, labels[shard], from, to);
+					}
+					replica.doCache(shardSamples, shardLabels);
+					Map<String, MathMatrix> parameters = replica.getParameters();
+					gradients[position] = replica.getGradients();
+					Callable<Float> scorer = () -> {
+						return replica.doLoss(shardLabels);
+					};
+					replica.optimizer.doCache(scorer, gradients[position], parameters);
+					// 反向传播只计算分片的原始梯度,标准器与学习器在归约之后执行
+					replica.setAccumulation(true);
+					barrier.await();
+
+					float score = 0F;
+					for (int iteration = 0; iteration < numberOfIterations; iteration++) {
+						losses[position] = scorer.call();
+						barrier.await();
+						// 必须在下一个屏障之前读取目标函数,否则可能被其它副本的下一次迭代覆盖
+						score = 0F;
+						for (int shard = 0; shard < numberOfReplicas; shard++) {
+							score += losses[shard];
+						}
+						// 所有副本的参数逐位一致,正则化项只需要按照本副本计算一次
+						score += replica.doNorm();
+						score /= numberOfSamples;
+						doReduce(position, names, gradients);
+						barrier.await();
+						// 所有副本的梯度逐位一致,所以学习器的状态也保持一致
+						replica.doLearn();
+						replica.doGradient(gradients[position], numberOfSamples);
+						// 所有副本的得分与优化器状态逐位一致,所以会在同一次迭代一起终止
+						if (replica.optimizer.optimize(score)) {
+							break;
+						}
+					}
+					results[position] = score;
+				} catch (Exception exception) {
+					// 中断其它副本,防止等待屏障导致死锁
+					barrier.reset();
+					logger.error("exception", exception);
+					throw new RuntimeException(exception);
+				} finally {
+					replica.setAccumulation(false);
+				}
+			});
+		}
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		return results[0];
+	}
+
+	/**
+	 * 预测(使用第一个副本)
+	 *
+	 * @param samples
+	 * @param labels
+	 */
+	public void predict(MathMatrix[] samples, MathMatrix[] labels) {
+		replicas[0].predict(samples, labels);
+	}
+
+	/**
+	 * 关闭所有副本的环境上下文
+	 */
+	public void shutdown() {
+		for (EnvironmentContext context : contexts) {
+			context.shutdown();
+		}
+	}
+
+}
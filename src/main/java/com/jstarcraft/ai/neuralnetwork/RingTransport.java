@@ -0,0 +1,314 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.core.utility.StringUtility;
+
+/**
+ * 环形传输
+ *
+ * <pre>
+ * 基于TCP的环形全归约(Ring All-Reduce),用于多个进程之间交换扁平化的梯度.
+ * 节点根据静态的节点列表启动:每个节点监听自己的地址,连接下一个节点并接受上一个节点的连接.
+ *
+ * 全归约分为两个阶段,每个阶段执行size-1步:
+ * 1.归约分散(Reduce-Scatter):每一步把一个区段发送给下一个节点,并把上一个节点的区段累加到本地.
+ * 2.全收集(All-Gather):每一步把已经完成归约的区段发送给下一个节点,并覆盖本地对应的区段.
+ * 每个区段只由一个节点完成最终归约,所以所有节点得到逐位一致的结果.
+ *
+ * 可选压缩:使用bfloat16(保留float的高16位,舍入到最近偶数)传输,流量减半.
+ *
+ * 全收集同样支持变长的整数数组(例如行稀疏梯度的已知行索引),每个节点的数组沿着环转发size-1步.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class RingTransport implements AutoCloseable {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/** 连接重试间隔(毫秒) */
+	private static final long RETRY_INTERVAL = 100L;
+
+	/** 连接超时(毫秒) */
+	private static final long CONNECT_TIMEOUT = 60000L;
+
+	private final int rank;
+
+	private final int size;
+
+	private final boolean compress;
+
+	private ServerSocket server;
+
+	private Socket previousSocket, nextSocket;
+
+	private DataInputStream input;
+
+	private DataOutputStream output;
+
+	/** 发送线程(发送与接收同时进行,避免双方缓冲区写满导致死锁) */
+	private ExecutorService sender;
+
+	private byte[] sendBuffer = new byte[0];
+
+	private byte[] receiveBuffer = new byte[0];
+
+	/**
+	 *
+	 * @param peers
+	 *            静态节点列表(所有节点的顺序必须一致)
+	 * @param rank
+	 *            当前节点在列表中的位置
+	 * @param compress
+	 *            是否使用bfloat16压缩
+	 */
+	public RingTransport(InetSocketAddress[] peers, int rank, boolean compress) {
+		if (rank < 0 || rank >= peers.length) {
+			throw new IllegalArgumentException();
+		}
+		this.rank = rank;
+		this.size = peers.length;
+		this.compress = compress;
+		if (size == 1) {
+			return;
+		}
+		this.sender = Executors.newSingleThreadExecutor();
+		try {
+			server = new ServerSocket();
+			server.setReuseAddress(true);
+			server.bind(new InetSocketAddress(peers[rank].getPort()));
+			Future<Socket> accept = sender.submit(() -> {
+				return server.accept();
+			});
+
+			InetSocketAddress next = peers[(rank + 1) % size];
+			long time = System.currentTimeMillis();
+			while (true) {
+				try {
+					nextSocket = new Socket();
+					nextSocket.connect(next);
+					break;
+				} catch (IOException exception) {
+					nextSocket.close();
+					if (System.currentTimeMillis() - time > CONNECT_TIMEOUT) {
+						throw exception;
+					}
+					Thread.sleep(RETRY_INTERVAL);
+				}
+			}
+			previousSocket = accept.get();
+			nextSocket.setTcpNoDelay(true);
+			previousSocket.setTcpNoDelay(true);
+			output = new DataOutputStream(new BufferedOutputStream(nextSocket.getOutputStream()));
+			input = new DataInputStream(new BufferedInputStream(previousSocket.getInputStream()));
+			if (logger.isDebugEnabled()) {
+				logger.debug(StringUtility.format("节点{}连接耗时{}毫秒", rank, System.currentTimeMillis() - time));
+			}
+		} catch (Exception exception) {
+			close();
+			throw new RuntimeException(exception);
+		}
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	private static short encode(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		if ((bits & 0x7FFFFFFF) > 0x7F800000) {
+			// NaN
+			return (short) ((bits >>> 16) | 0x0040);
+		}
+		// 舍入到最近偶数
+		bits += 0x7FFF + ((bits >>> 16) & 1);
+		return (short) (bits >>> 16);
+	}
+
+	private static float decode(short value) {
+		return Float.intBitsToFloat((value & 0xFFFF) << 16);
+	}
+
+	private int getFrom(int length, int chunk) {
+		return (int) ((long) length * chunk / size);
+	}
+
+	private Future<?> doSend(float[] data, int count, int chunk) {
+		int from = getFrom(count, chunk);
+		int to = getFrom(count, chunk + 1);
+		int length = (to - from) * (compress ? 2 : 4);
+		if (sendBuffer.length < length) {
+			sendBuffer = new byte[length];
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(sendBuffer, 0, length);
+		if (compress) {
+			for (int index = from; index < to; index++) {
+				buffer.putShort(encode(data[index]));
+			}
+		} else {
+			for (int index = from; index < to; index++) {
+				buffer.putFloat(data[index]);
+			}
+		}
+		return sender.submit(() -> {
+			output.writeInt(length);
+			output.write(sendBuffer, 0, length);
+			output.flush();
+			return null;
+		});
+	}
+
+	private void doReceive(float[] data, int count, int chunk, boolean accumulate) throws IOException {
+		int from = getFrom(count, chunk);
+		int to = getFrom(count, chunk + 1);
+		int length = input.readInt();
+		if (length != (to - from) * (compress ? 2 : 4)) {
+			throw new IOException(StringUtility.format("节点{}接收的区段长度{}不一致", rank, length));
+		}
+		if (receiveBuffer.length < length) {
+			receiveBuffer = new byte[length];
+		}
+		input.readFully(receiveBuffer, 0, length);
+		ByteBuffer buffer = ByteBuffer.wrap(receiveBuffer, 0, length);
+		for (int index = from; index < to; index++) {
+			float value = compress ? decode(buffer.getShort()) : buffer.getFloat();
+			data[index] = accumulate ? data[index] + value : value;
+		}
+	}
+
+	/**
+	 * 全归约(求和)
+	 *
+	 * <pre>
+	 * 所有节点必须以相同的顺序调用,并且数组长度必须一致.
+	 * </pre>
+	 *
+	 * @param data
+	 */
+	public void allReduce(float[] data) {
+		allReduce(data, data.length);
+	}
+
+	/**
+	 * 全归约(求和)数组的前length个元素
+	 *
+	 * <pre>
+	 * 所有节点必须以相同的顺序调用,并且length必须一致(数组本身可以是更大的复用缓冲).
+	 * </pre>
+	 *
+	 * @param data
+	 * @param length
+	 */
+	public synchronized void allReduce(float[] data, int length) {
+		if (length > data.length) {
+			throw new IllegalArgumentException();
+		}
+		if (size == 1) {
+			return;
+		}
+		try {
+			// 归约分散
+			for (int step = 0; step < size - 1; step++) {
+				int sendChunk = (rank - step + size) % size;
+				int receiveChunk = (rank - step - 1 + size) % size;
+				Future<?> send = doSend(data, length, sendChunk);
+				doReceive(data, length, receiveChunk, true);
+				send.get();
+			}
+			if (compress) {
+				// 本地区段同样需要经过压缩,保证所有节点一致
+				int chunk = (rank + 1) % size;
+				for (int index = getFrom(length, chunk), to = getFrom(length, chunk + 1); index < to; index++) {
+					data[index] = decode(encode(data[index]));
+				}
+			}
+			// 全收集
+			for (int step = 0; step < size - 1; step++) {
+				int sendChunk = (rank - step + 1 + size) % size;
+				int receiveChunk = (rank - step + size) % size;
+				Future<?> send = doSend(data, length, sendChunk);
+				doReceive(data, length, receiveChunk, false);
+				send.get();
+			}
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * 全收集变长的整数数组
+	 *
+	 * <pre>
+	 * 所有节点必须以相同的顺序调用,数组长度可以不一致.
+	 * </pre>
+	 *
+	 * @param data
+	 * @return 按照节点位置排列的所有节点的数组
+	 */
+	public synchronized int[][] allGather(int[] data) {
+		int[][] datas = new int[size][];
+		datas[rank] = data;
+		if (size == 1) {
+			return datas;
+		}
+		try {
+			for (int step = 0; step < size - 1; step++) {
+				int[] send = datas[(rank - step + size) % size];
+				Future<?> future = sender.submit(() -> {
+					output.writeInt(send.length);
+					for (int value : send) {
+						output.writeInt(value);
+					}
+					output.flush();
+					return null;
+				});
+				int[] receive = new int[input.readInt()];
+				for (int index = 0; index < receive.length; index++) {
+					receive[index] = input.readInt();
+				}
+				datas[(rank - step - 1 + size) % size] = receive;
+				future.get();
+			}
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		return datas;
+	}
+
+	@Override
+	public void close() {
+		if (sender != null) {
+			sender.shutdownNow();
+		}
+		for (AutoCloseable closeable : new AutoCloseable[] { input, output, previousSocket, nextSocket, server }) {
+			if (closeable != null) {
+				try {
+					closeable.close();
+				} catch (Exception exception) {
+					logger.error("exception", exception);
+				}
+			}
+		}
+	}
+
+}
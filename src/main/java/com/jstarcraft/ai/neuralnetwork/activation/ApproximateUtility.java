@@ -0,0 +1,147 @@
+package com.jstarcraft.ai.neuralnetwork.activation;
+
+/**
+ * 近似计算工具
+ *
+ * <pre>
+ * 使用区间缩减查表与低阶多项式代替FastMath的超越函数,用于激活函数的近似模式.
+ * exp(x) = 2^k * 2^(j/256) * exp(f),其中0 <= f < ln2/256,exp(f)使用2阶多项式,截断误差小于3.4E-9.
+ * log1p(u) = log(1 + j/128) + log1p(r),其中0 <= r < 1/128,log1p(r)使用4阶多项式,截断误差小于5.4E-12.
+ * 中间结果使用double计算,所以转换为float之后的相对误差不超过1E-6(tanh/expm1的小值区间使用泰勒级数避免相消误差).
+ * 输入小于-104时exp返回0,大于88.8时返回正无穷.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class ApproximateUtility {
+
+	private static final int EXPONENT_SHIFT = 8;
+
+	private static final int EXPONENT_SIZE = 1 << EXPONENT_SHIFT;
+
+	/** 2^(j/256) */
+	private static final double[] EXPONENT_TABLE = new double[EXPONENT_SIZE];
+
+	private static final int LOGARITHM_SIZE = 128;
+
+	/** log(1 + j/128) */
+	private static final double[] LOGARITHM_TABLE = new double[LOGARITHM_SIZE + 1];
+
+	/** 1 / (1 + j/128) */
+	private static final double[] INVERSE_TABLE = new double[LOGARITHM_SIZE + 1];
+
+	private static final double LN2 = Math.log(2D);
+
+	private static final double LOG2E = 1D / LN2;
+
+	private static final float MINIMUM = -104F;
+
+	private static final float MAXIMUM = 88.8F;
+
+	/** 小于此值时tanh与expm1使用泰勒级数 */
+	private static final double SMALL = 0.0625D;
+
+	static {
+		for (int index = 0; index < EXPONENT_SIZE; index++) {
+			EXPONENT_TABLE[index] = Math.pow(2D, index / (double) EXPONENT_SIZE);
+		}
+		for (int index = 0; index <= LOGARITHM_SIZE; index++) {
+			LOGARITHM_TABLE[index] = Math.log1p(index / (double) LOGARITHM_SIZE);
+			INVERSE_TABLE[index] = 1D / (1D + index / (double) LOGARITHM_SIZE);
+		}
+	}
+
+	/**
+	 * 近似计算exp
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static double exp(double value) {
+		if (value < MINIMUM) {
+			return 0D;
+		}
+		if (value > MAXIMUM) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if (value != value) {
+			return value;
+		}
+		double scale = value * LOG2E * EXPONENT_SIZE;
+		int floor = (int) scale;
+		if (floor > scale) {
+			floor--;
+		}
+		int power = floor >> EXPONENT_SHIFT;
+		int index = floor & (EXPONENT_SIZE - 1);
+		double remainder = (scale - floor) * (LN2 / EXPONENT_SIZE);
+		double polynomial = 1D + remainder * (1D + remainder * 0.5D);
+		// 2^power(power在[-151, 129]之间,不会超出double的范围)
+		double exponent = Double.longBitsToDouble((long) (power + 1023) << 52);
+		return exponent * EXPONENT_TABLE[index] * polynomial;
+	}
+
+	/**
+	 * 近似计算log1p(value >= 0)
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static double log1p(double value) {
+		if (value > 1D) {
+			return Math.log1p(value);
+		}
+		int index = (int) (value * LOGARITHM_SIZE);
+		double remainder = (value - index / (double) LOGARITHM_SIZE) * INVERSE_TABLE[index];
+		double polynomial = remainder * (1D - remainder * (0.5D - remainder * (1D / 3D - remainder * 0.25D)));
+		return LOGARITHM_TABLE[index] + polynomial;
+	}
+
+	/**
+	 * 近似计算expm1
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static double expm1(double value) {
+		if (value > -SMALL && value < SMALL) {
+			return value * (1D + value * (1D / 2D + value * (1D / 6D + value * (1D / 24D + value * (1D / 120D + value * (1D / 720D))))));
+		}
+		return exp(value) - 1D;
+	}
+
+	static float exp(float value) {
+		return (float) exp((double) value);
+	}
+
+	static float expm1(float value) {
+		return (float) expm1((double) value);
+	}
+
+	static float sigmoid(float value) {
+		return (float) (1D / (1D + exp(-(double) value)));
+	}
+
+	static float tanh(float value) {
+		double absolute = Math.abs(value);
+		double tanh;
+		if (absolute < SMALL) {
+			double square = absolute * absolute;
+			tanh = absolute * (1D - square * (1D / 3D - square * (2D / 15D - square * (17D / 315D))));
+		} else {
+			tanh = 1D - 2D / (exp(absolute * 2D) + 1D);
+		}
+		return (float) (value < 0F ? -tanh : tanh);
+	}
+
+	static float softplus(float value) {
+		if (value != value) {
+			return value;
+		}
+		// log(1 + exp(x)) = max(x, 0) + log1p(exp(-|x|))
+		double maximum = value > 0F ? value : 0D;
+		return (float) (maximum + log1p(exp(-Math.abs((double) value))));
+	}
+
+}
@@ -15,23 +15,33 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * 参考Deeplearning4j团队
  * 
  * f(x) = alpha * (exp(x) - 1.0); x < 0 = x ; x>= 0
+ * 
+ * approximate为true时使用查表近似计算,相对误差不超过1E-6.
  * </pre>
  * 
  * @author Birdy
  *
  */
-public class ELUActivationFunction implements ActivationFunction {
+public class ELUActivationFunction implements ElementActivationFunction {
 
 	public static final float DEFAULT_ALPHA = 1F;
 
 	private float alpha;
 
+	/** 是否使用近似计算(参考{@link ApproximateUtility}) */
+	private boolean approximate;
+
 	public ELUActivationFunction() {
 		this(DEFAULT_ALPHA);
 	}
 
 	public ELUActivationFunction(float alpha) {
+		this(alpha, false);
+	}
+
+	public ELUActivationFunction(float alpha, boolean approximate) {
 		this.alpha = alpha;
+		this.approximate = approximate;
 	}
 
 	@Override
@@ -39,11 +49,7 @@ public class ELUActivationFunction implements ActivationFunction {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			if (value < 0F) {
-				value = (float) ((FastMath.exp(value) - 1D) * alpha);
-			}
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(row, column)));
 		});
 	}
 
@@ -51,11 +57,7 @@ public class ELUActivationFunction implements ActivationFunction {
 	public void forward(MathVector input, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			if (value < 0F) {
-				value = (float) ((FastMath.exp(value) - 1D) * alpha);
-			}
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(index)));
 		});
 	}
 
@@ -64,10 +66,7 @@ public class ELUActivationFunction implements ActivationFunction {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			value = value >= 0F ? 1F : (float) (FastMath.exp(value) * alpha);
-			value *= error.getValue(row, column);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(row, column), error.getValue(row, column)));
 		});
 	}
 
@@ -75,13 +74,26 @@ public class ELUActivationFunction implements ActivationFunction {
 	public void backward(MathVector input, MathVector error, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = value >= 0F ? 1F : (float) (FastMath.exp(value) * alpha);
-			value *= error.getValue(index);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(index), error.getValue(index)));
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		if (input < 0F) {
+			return approximate ? ApproximateUtility.expm1(input) * alpha : (float) ((FastMath.exp(input) - 1D) * alpha);
+		}
+		return input;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		if (input >= 0F) {
+			return error;
+		}
+		return (approximate ? ApproximateUtility.exp(input) * alpha : (float) (FastMath.exp(input) * alpha)) * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -96,6 +108,7 @@ public class ELUActivationFunction implements ActivationFunction {
 			ELUActivationFunction that = (ELUActivationFunction) object;
 			EqualsBuilder equal = new EqualsBuilder();
 			equal.append(this.alpha, that.alpha);
+			equal.append(this.approximate, that.approximate);
 			return equal.isEquals();
 		}
 	}
@@ -104,12 +117,13 @@ public class ELUActivationFunction implements ActivationFunction {
 	public int hashCode() {
 		HashCodeBuilder hash = new HashCodeBuilder();
 		hash.append(alpha);
+		hash.append(approximate);
 		return hash.toHashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "ELUActivationFunction(alpha=" + alpha + ")";
+		return "ELUActivationFunction(alpha=" + alpha + ", approximate=" + approximate + ")";
 	}
 
 }
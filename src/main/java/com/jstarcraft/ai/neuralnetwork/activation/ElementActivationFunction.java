@@ -0,0 +1,35 @@
+package com.jstarcraft.ai.neuralnetwork.activation;
+
+/**
+ * 元素激活函数
+ * 
+ * <pre>
+ * 每个输出只依赖对应的输入,所以可以与矩阵乘法合并计算(参考{@link com.jstarcraft.ai.neuralnetwork.layer.WeightLayer}).
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public interface ElementActivationFunction extends ActivationFunction {
+
+	/**
+	 * 向前传播
+	 * 
+	 * @param input
+	 *            输入(z)
+	 * @return 输出(a)
+	 */
+	float forward(float input);
+
+	/**
+	 * 向后传播
+	 * 
+	 * @param input
+	 *            输入(z)
+	 * @param error
+	 *            导数(dL/da)
+	 * @return 梯度(dL/dz)
+	 */
+	float backward(float input, float error);
+
+}
@@ -19,7 +19,7 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * @author Birdy
  *
  */
-public class HardTanHActivationFunction implements ActivationFunction {
+public class HardTanHActivationFunction implements ElementActivationFunction {
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
@@ -65,6 +65,16 @@ public class HardTanHActivationFunction implements ActivationFunction {
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		return input < -1F ? -1F : input > 1F ? 1F : input;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		return (input >= -1F && input <= 1F) ? error : 0F;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -15,7 +15,7 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * @author Birdy
  *
  */
-public class IdentityActivationFunction implements ActivationFunction {
+public class IdentityActivationFunction implements ElementActivationFunction {
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
@@ -37,6 +37,16 @@ public class IdentityActivationFunction implements ActivationFunction {
 		output.copyVector(error);
 	}
 
+	@Override
+	public float forward(float input) {
+		return input;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		return error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -19,7 +19,7 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * @author Birdy
  *
  */
-public class LReLUActivationFunction implements ActivationFunction {
+public class LReLUActivationFunction implements ElementActivationFunction {
 
 	public static final float DEFAULT_ALPHA = 0.01F;
 
@@ -77,6 +77,16 @@ public class LReLUActivationFunction implements ActivationFunction {
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		return input < 0F ? alpha * input : input;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		return input >= 0F ? error : alpha * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
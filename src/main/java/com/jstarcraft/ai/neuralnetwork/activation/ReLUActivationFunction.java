@@ -16,7 +16,7 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * @author Birdy
  *
  */
-public class ReLUActivationFunction implements ActivationFunction {
+public class ReLUActivationFunction implements ElementActivationFunction {
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
@@ -62,6 +62,16 @@ public class ReLUActivationFunction implements ActivationFunction {
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		return input < 0F ? 0F : input;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		return input > 0F ? error : 0F;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.activation;
 
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.math3.util.FastMath;
 
 import com.jstarcraft.ai.math.structure.MathCalculator;
@@ -14,25 +15,36 @@ import com.jstarcraft.ai.neuralnetwork.layer.AlphaMasker;
  * 参考Deeplearning4j团队
  * 
  * {@link AlphaMasker} https://arxiv.org/pdf/1706.02515.pdf
+ * 
+ * approximate为true时使用查表近似计算,相对误差不超过1E-6.
  * </pre>
  * 
  * @author Birdy
  *
  */
-public class SELUActivationFunction implements ActivationFunction {
+public class SELUActivationFunction implements ElementActivationFunction {
 
 	private static final float SELU_ALPHA = 1.6732632423543772848170429916717F;
 
 	private static final float SELU_LAMBDA = 1.0507009873554804934193349852946F;
 
+	/** 是否使用近似计算(参考{@link ApproximateUtility}) */
+	private boolean approximate;
+
+	public SELUActivationFunction() {
+		this(false);
+	}
+
+	public SELUActivationFunction(boolean approximate) {
+		this.approximate = approximate;
+	}
+
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			value = (float) (value > 0F ? SELU_LAMBDA * value : SELU_LAMBDA * (SELU_ALPHA * FastMath.exp(value) - SELU_ALPHA));
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(row, column)));
 		});
 	}
 
@@ -40,9 +52,7 @@ public class SELUActivationFunction implements ActivationFunction {
 	public void forward(MathVector input, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) (value > 0F ? SELU_LAMBDA * value : SELU_LAMBDA * (SELU_ALPHA * FastMath.exp(value) - SELU_ALPHA));
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(index)));
 		});
 	}
 
@@ -51,10 +61,7 @@ public class SELUActivationFunction implements ActivationFunction {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			value = (float) (value > 0F ? SELU_LAMBDA : SELU_ALPHA * SELU_LAMBDA * FastMath.exp(value));
-			value *= error.getValue(row, column);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(row, column), error.getValue(row, column)));
 		});
 	}
 
@@ -62,13 +69,26 @@ public class SELUActivationFunction implements ActivationFunction {
 	public void backward(MathVector input, MathVector error, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) (value > 0F ? SELU_LAMBDA : SELU_ALPHA * SELU_LAMBDA * FastMath.exp(value));
-			value *= error.getValue(index);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(index), error.getValue(index)));
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		if (approximate && input <= 0F) {
+			return SELU_LAMBDA * SELU_ALPHA * ApproximateUtility.expm1(input);
+		}
+		return (float) (input > 0F ? SELU_LAMBDA * input : SELU_LAMBDA * (SELU_ALPHA * FastMath.exp(input) - SELU_ALPHA));
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		if (approximate && input <= 0F) {
+			return SELU_ALPHA * SELU_LAMBDA * ApproximateUtility.exp(input) * error;
+		}
+		return (float) (input > 0F ? SELU_LAMBDA : SELU_ALPHA * SELU_LAMBDA * FastMath.exp(input)) * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -80,18 +100,22 @@ public class SELUActivationFunction implements ActivationFunction {
 		if (getClass() != object.getClass()) {
 			return false;
 		} else {
-			return true;
+			SELUActivationFunction that = (SELUActivationFunction) object;
+			return this.approximate == that.approximate;
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getClass().hashCode();
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(getClass());
+		hash.append(approximate);
+		return hash.toHashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "SELUActivationFunction()";
+		return "SELUActivationFunction(approximate=" + approximate + ")";
 	}
 
 }
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.activation;
 
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.math3.util.FastMath;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.transforms.Sigmoid;
@@ -19,26 +20,36 @@ import com.jstarcraft.ai.utility.MathUtility;
  * 参考Deeplearning4j团队
  * 
  * f(x) = 1 / (1 + exp(-x))
+ * 
+ * approximate为true时使用查表近似计算,相对误差不超过1E-6.
  * </pre>
  * 
  * @author Birdy
  *
  */
-public class SigmoidActivationFunction implements ActivationFunction {
+public class SigmoidActivationFunction implements ElementActivationFunction {
 
 	private boolean threshold;
 
+	/** 是否使用近似计算(参考{@link ApproximateUtility}) */
+	private boolean approximate;
+
 	public SigmoidActivationFunction() {
 		this(false);
 	}
 
 	public SigmoidActivationFunction(boolean threshold) {
+		this(threshold, false);
+	}
+
+	public SigmoidActivationFunction(boolean threshold, boolean approximate) {
 		this.threshold = threshold;
+		this.approximate = approximate;
 	}
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
-		if (input instanceof Nd4jMatrix && output instanceof Nd4jMatrix) {
+		if (!approximate && input instanceof Nd4jMatrix && output instanceof Nd4jMatrix) {
 			INDArray inputArray = Nd4jMatrix.class.cast(input).getArray();
 			INDArray outputArray = Nd4jMatrix.class.cast(output).getArray();
 			Nd4j.getExecutioner().execAndReturn(new Sigmoid(inputArray, outputArray));
@@ -46,12 +57,7 @@ public class SigmoidActivationFunction implements ActivationFunction {
 			output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
-				float value = input.getValue(row, column);
-				value = (float) (1F / (1F + FastMath.exp(-value)));
-				if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
-					value = MathUtility.EPSILON;
-				}
-				scalar.setValue(value);
+				scalar.setValue(forward(input.getValue(row, column)));
 			});
 		}
 	}
@@ -60,18 +66,13 @@ public class SigmoidActivationFunction implements ActivationFunction {
 	public void forward(MathVector input, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) (1F / (1F + FastMath.exp(-value)));
-			if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(index)));
 		});
 	}
 
 	@Override
 	public void backward(MathMatrix input, MathMatrix error, MathMatrix output) {
-		if (input instanceof Nd4jMatrix && output instanceof Nd4jMatrix && error instanceof Nd4jMatrix) {
+		if (!approximate && input instanceof Nd4jMatrix && output instanceof Nd4jMatrix && error instanceof Nd4jMatrix) {
 			INDArray inputArray = Nd4jMatrix.class.cast(input).getArray();
 			INDArray outputArray = Nd4jMatrix.class.cast(output).getArray();
 			INDArray errorArray = Nd4jMatrix.class.cast(error).getArray();
@@ -81,14 +82,7 @@ public class SigmoidActivationFunction implements ActivationFunction {
 			output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
-				float value = input.getValue(row, column);
-				value = (float) (1F / (1F + FastMath.exp(-value)));
-				value = value * (1F - value);
-				if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
-					value = MathUtility.EPSILON;
-				}
-				value *= error.getValue(row, column);
-				scalar.setValue(value);
+				scalar.setValue(backward(input.getValue(row, column), error.getValue(row, column)));
 			});
 		}
 	}
@@ -97,17 +91,29 @@ public class SigmoidActivationFunction implements ActivationFunction {
 	public void backward(MathVector input, MathVector error, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) (1F / (1F + FastMath.exp(-value)));
-			value = value * (1F - value);
-			if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			value *= error.getValue(index);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(index), error.getValue(index)));
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		float value = approximate ? ApproximateUtility.sigmoid(input) : (float) (1F / (1F + FastMath.exp(-input)));
+		if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
+			value = MathUtility.EPSILON;
+		}
+		return value;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		float value = approximate ? ApproximateUtility.sigmoid(input) : (float) (1F / (1F + FastMath.exp(-input)));
+		value = value * (1F - value);
+		if (threshold && (Double.isNaN(value) || Double.isInfinite(value))) {
+			value = MathUtility.EPSILON;
+		}
+		return value * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -119,18 +125,22 @@ public class SigmoidActivationFunction implements ActivationFunction {
 		if (getClass() != object.getClass()) {
 			return false;
 		} else {
-			return true;
+			SigmoidActivationFunction that = (SigmoidActivationFunction) object;
+			return this.approximate == that.approximate;
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getClass().hashCode();
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(getClass());
+		hash.append(approximate);
+		return hash.toHashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "SigmoidActivationFunction(threshold=" + threshold + ")";
+		return "SigmoidActivationFunction(threshold=" + threshold + ", approximate=" + approximate + ")";
 	}
 
 }
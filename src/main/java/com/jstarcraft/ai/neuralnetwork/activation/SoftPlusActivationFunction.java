@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.activation;
 
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.math3.util.FastMath;
 
 import com.jstarcraft.ai.math.structure.MathCalculator;
@@ -12,21 +13,31 @@ import com.jstarcraft.ai.utility.MathUtility;
  * 
  * <pre>
  * 参考Deeplearning4j团队
+ * 
+ * approximate为true时使用查表近似计算,相对误差不超过1E-6.
  * </pre>
  * 
  * @author Birdy
  *
  */
-public class SoftPlusActivationFunction implements ActivationFunction {
+public class SoftPlusActivationFunction implements ElementActivationFunction {
 
 	private boolean threshold;
 
+	/** 是否使用近似计算(参考{@link ApproximateUtility}) */
+	private boolean approximate;
+
 	public SoftPlusActivationFunction() {
 		this(false);
 	}
 
 	public SoftPlusActivationFunction(boolean threshold) {
+		this(threshold, false);
+	}
+
+	public SoftPlusActivationFunction(boolean threshold, boolean approximate) {
 		this.threshold = threshold;
+		this.approximate = approximate;
 	}
 
 	@Override
@@ -34,12 +45,7 @@ public class SoftPlusActivationFunction implements ActivationFunction {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			value = (float) FastMath.log(1F + FastMath.exp(value));
-			if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(row, column)));
 		});
 	}
 
@@ -47,12 +53,7 @@ public class SoftPlusActivationFunction implements ActivationFunction {
 	public void forward(MathVector input, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) FastMath.log(1F + FastMath.exp(value));
-			if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(index)));
 		});
 	}
 
@@ -61,13 +62,7 @@ public class SoftPlusActivationFunction implements ActivationFunction {
 		output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
-			float value = input.getValue(row, column);
-			value = (float) (1F / (1F + FastMath.exp(-value)));
-			if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			value *= error.getValue(row, column);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(row, column), error.getValue(row, column)));
 		});
 	}
 
@@ -75,16 +70,28 @@ public class SoftPlusActivationFunction implements ActivationFunction {
 	public void backward(MathVector input, MathVector error, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) (1F / (1F + FastMath.exp(-value)));
-			if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
-				value = MathUtility.EPSILON;
-			}
-			value *= error.getValue(index);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(index), error.getValue(index)));
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		float value = approximate ? ApproximateUtility.softplus(input) : (float) FastMath.log(1F + FastMath.exp(input));
+		if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
+			value = MathUtility.EPSILON;
+		}
+		return value;
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		float value = approximate ? ApproximateUtility.sigmoid(input) : (float) (1F / (1F + FastMath.exp(-input)));
+		if (threshold && (Float.isNaN(value) || Float.isInfinite(value))) {
+			value = MathUtility.EPSILON;
+		}
+		return value * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -96,18 +103,22 @@ public class SoftPlusActivationFunction implements ActivationFunction {
 		if (getClass() != object.getClass()) {
 			return false;
 		} else {
-			return true;
+			SoftPlusActivationFunction that = (SoftPlusActivationFunction) object;
+			return this.approximate == that.approximate;
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getClass().hashCode();
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(getClass());
+		hash.append(approximate);
+		return hash.toHashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "SoftPlusActivationFunction(threshold=" + threshold + ")";
+		return "SoftPlusActivationFunction(threshold=" + threshold + ", approximate=" + approximate + ")";
 	}
 
 }
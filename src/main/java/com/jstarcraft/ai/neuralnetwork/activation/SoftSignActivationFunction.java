@@ -18,7 +18,7 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * @author Birdy
  *
  */
-public class SoftSignActivationFunction implements ActivationFunction {
+public class SoftSignActivationFunction implements ElementActivationFunction {
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
@@ -66,6 +66,17 @@ public class SoftSignActivationFunction implements ActivationFunction {
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		return input / (1F + FastMath.abs(input));
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		float value = 1F + FastMath.abs(input);
+		return 1F / (value * value) * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.activation;
 
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.math3.util.FastMath;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.transforms.Tanh;
@@ -16,16 +17,29 @@ import com.jstarcraft.ai.math.structure.vector.MathVector;
  * 
  * <pre>
  * 参考Deeplearning4j团队
+ * 
+ * approximate为true时使用查表近似计算,相对误差不超过1E-6.
  * </pre>
  * 
  * @author Birdy
  *
  */
-public class TanHActivationFunction implements ActivationFunction {
+public class TanHActivationFunction implements ElementActivationFunction {
+
+	/** 是否使用近似计算(参考{@link ApproximateUtility}) */
+	private boolean approximate;
+
+	public TanHActivationFunction() {
+		this(false);
+	}
+
+	public TanHActivationFunction(boolean approximate) {
+		this.approximate = approximate;
+	}
 
 	@Override
 	public void forward(MathMatrix input, MathMatrix output) {
-		if (input instanceof Nd4jMatrix && output instanceof Nd4jMatrix) {
+		if (!approximate && input instanceof Nd4jMatrix && output instanceof Nd4jMatrix) {
 			INDArray inputArray = Nd4jMatrix.class.cast(input).getArray();
 			INDArray outputArray = Nd4jMatrix.class.cast(output).getArray();
 			Nd4j.getExecutioner().execAndReturn(new Tanh(inputArray, outputArray));
@@ -33,9 +47,7 @@ public class TanHActivationFunction implements ActivationFunction {
 			output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
-				float value = input.getValue(row, column);
-				value = (float) FastMath.tanh(value);
-				scalar.setValue(value);
+				scalar.setValue(forward(input.getValue(row, column)));
 			});
 		}
 	}
@@ -44,15 +56,13 @@ public class TanHActivationFunction implements ActivationFunction {
 	public void forward(MathVector input, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) FastMath.tanh(value);
-			scalar.setValue(value);
+			scalar.setValue(forward(input.getValue(index)));
 		});
 	}
 
 	@Override
 	public void backward(MathMatrix input, MathMatrix error, MathMatrix output) {
-		if (input instanceof Nd4jMatrix && output instanceof Nd4jMatrix && error instanceof Nd4jMatrix) {
+		if (!approximate && input instanceof Nd4jMatrix && output instanceof Nd4jMatrix && error instanceof Nd4jMatrix) {
 			INDArray inputArray = Nd4jMatrix.class.cast(input).getArray();
 			INDArray outputArray = Nd4jMatrix.class.cast(output).getArray();
 			INDArray errorArray = Nd4jMatrix.class.cast(error).getArray();
@@ -62,11 +72,7 @@ public class TanHActivationFunction implements ActivationFunction {
 			output.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
-				float value = input.getValue(row, column);
-				value = (float) FastMath.tanh(value);
-				value = 1F - value * value;
-				value *= error.getValue(row, column);
-				scalar.setValue(value);
+				scalar.setValue(backward(input.getValue(row, column), error.getValue(row, column)));
 			});
 		}
 	}
@@ -75,14 +81,21 @@ public class TanHActivationFunction implements ActivationFunction {
 	public void backward(MathVector input, MathVector error, MathVector output) {
 		output.iterateElement(MathCalculator.SERIAL, (scalar) -> {
 			int index = scalar.getIndex();
-			float value = input.getValue(index);
-			value = (float) FastMath.tanh(value);
-			value = 1F - value * value;
-			value *= error.getValue(index);
-			scalar.setValue(value);
+			scalar.setValue(backward(input.getValue(index), error.getValue(index)));
 		});
 	}
 
+	@Override
+	public float forward(float input) {
+		return approximate ? ApproximateUtility.tanh(input) : (float) FastMath.tanh(input);
+	}
+
+	@Override
+	public float backward(float input, float error) {
+		float value = approximate ? ApproximateUtility.tanh(input) : (float) FastMath.tanh(input);
+		return (1F - value * value) * error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -94,18 +107,22 @@ public class TanHActivationFunction implements ActivationFunction {
 		if (getClass() != object.getClass()) {
 			return false;
 		} else {
-			return true;
+			TanHActivationFunction that = (TanHActivationFunction) object;
+			return this.approximate == that.approximate;
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getClass().hashCode();
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(getClass());
+		hash.append(approximate);
+		return hash.toHashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "TanHActivationFunction()";
+		return "TanHActivationFunction(approximate=" + approximate + ")";
 	}
 
 }
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.layer;
 
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 import com.jstarcraft.ai.neuralnetwork.activation.SELUActivationFunction;
@@ -13,6 +14,7 @@ import com.jstarcraft.core.utility.RandomUtility;
  * 参考Deeplearning4j团队
  * 
  * 与{@link SELUActivationFunction}相关
+ * 使用{@link CounterRandom}按照元素的位置生成随机数,相同的种子得到相同的掩码,与线程数量无关.
  * </pre>
  * 
  * @author Birdy
@@ -30,13 +32,27 @@ public class AlphaMasker implements Masker {
 	private float alpha;
 	private float beta;
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经掩盖的次数(每次掩盖使用独立的流) */
+	private long times;
+
+	AlphaMasker() {
+	}
+
 	public AlphaMasker(Schedule schedule) {
 		this(schedule, DEFAULT_ALPHA, DEFAULT_LAMBDA);
 	}
 
 	public AlphaMasker(Schedule schedule, float alpha, float lambda) {
+		this(schedule, alpha, lambda, RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public AlphaMasker(Schedule schedule, float alpha, float lambda, long seed) {
 		this.schedule = schedule;
 		this.prime = -lambda * alpha;
+		this.random = new CounterRandom(seed);
 	}
 
 	private float alpha(float probability) {
@@ -47,6 +63,18 @@ public class AlphaMasker implements Masker {
 		return -alpha(probability) * (1F - probability) * prime;
 	}
 
+	@Override
+	public AlphaMasker split(long stream) {
+		AlphaMasker masker = new AlphaMasker();
+		masker.schedule = schedule;
+		masker.prime = prime;
+		masker.random = random.split(stream);
+		synchronized (this) {
+			masker.times = times;
+		}
+		return masker;
+	}
+
 	@Override
 	public void mask(MathMatrix matrix, int iteration, int epoch) {
 		// https://arxiv.org/pdf/1706.02515.pdf pg6
@@ -64,9 +92,14 @@ public class AlphaMasker implements Masker {
 
 		// 参考Pytorch实现.
 		// https://github.com/pytorch/pytorch/blob/master/torch/nn/functional.py
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
 		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			float value = scalar.getValue();
-			value = RandomUtility.randomFloat(1F) < probability ? prime : value;
+			value = stream.randomFloat((long) scalar.getRow() * columnSize + scalar.getColumn()) < probability ? prime : value;
 			scalar.setValue(value * alpha + beta);
 		});
 	}
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.layer;
 
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
@@ -10,6 +11,7 @@ import com.jstarcraft.core.utility.RandomUtility;
  * 
  * <pre>
  * 参考Deeplearning4j团队
+ * 使用{@link CounterRandom}按照元素的位置生成随机数,相同的种子得到相同的掩码,与线程数量无关.
  * </pre>
  * 
  * @author Birdy
@@ -19,17 +21,47 @@ public class DefaultMasker implements Masker {
 
 	private Schedule schedule;
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经掩盖的次数(每次掩盖使用独立的流) */
+	private long times;
+
+	DefaultMasker() {
+	}
+
 	public DefaultMasker(Schedule schedule) {
+		this(schedule, RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public DefaultMasker(Schedule schedule, long seed) {
 		this.schedule = schedule;
+		this.random = new CounterRandom(seed);
+	}
+
+	@Override
+	public DefaultMasker split(long stream) {
+		DefaultMasker masker = new DefaultMasker();
+		masker.schedule = schedule;
+		masker.random = random.split(stream);
+		synchronized (this) {
+			masker.times = times;
+		}
+		return masker;
 	}
 
 	@Override
 	public void mask(MathMatrix matrix, int iteration, int epoch) {
 		float current = schedule.valueAt(iteration, epoch);
 
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
 		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			float value = scalar.getValue();
-			scalar.setValue(RandomUtility.randomFloat(1F) < current ? 0F : value);
+			scalar.setValue(stream.randomFloat((long) scalar.getRow() * columnSize + scalar.getColumn()) < current ? 0F : value);
 		});
 	}
 
@@ -0,0 +1,230 @@
+package com.jstarcraft.ai.neuralnetwork.layer;
+
+import java.util.concurrent.CountDownLatch;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.core.utility.RandomUtility;
+
+/**
+ * Dropout掩码器
+ *
+ * <pre>
+ * 使用位集保存每个元素的保留/丢弃(1个元素1位,内存为浮点掩码的1/32),正向传播生成并应用,反向传播复用同一个掩码.
+ * 使用inverted dropout,保留的元素乘以1 / (1 - probability),所以测试时不需要缩放.
+ * 每个字(64个元素)由同一个线程生成,使用{@link CounterRandom}按照元素的位置生成随机数,结果与线程数量无关.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "schedule", "random", "times" })
+public class DropoutMasker implements Masker {
+
+	/** 每个任务负责的字数量 */
+	private static final int BLOCK_SIZE = 64;
+
+	/** 丢弃的概率 */
+	private Schedule schedule;
+
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经掩盖的次数(每次掩盖使用独立的流) */
+	private long times;
+
+	/** 保留位(1为保留,0为丢弃) */
+	private long[] bits;
+
+	private int rowSize, columnSize;
+
+	/** 保留元素的缩放 */
+	private float scale;
+
+	DropoutMasker() {
+	}
+
+	public DropoutMasker(Schedule schedule) {
+		this(schedule, RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public DropoutMasker(Schedule schedule, long seed) {
+		this.schedule = schedule;
+		this.random = new CounterRandom(seed);
+	}
+
+	@Override
+	public DropoutMasker split(long stream) {
+		DropoutMasker masker = new DropoutMasker();
+		masker.schedule = schedule;
+		masker.random = random.split(stream);
+		synchronized (this) {
+			masker.times = times;
+		}
+		return masker;
+	}
+
+	/**
+	 * 访问字
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private interface WordAccessor {
+
+		void accessWord(int word);
+
+	}
+
+	/**
+	 * 按照字并行访问(同一个字只由一个线程访问)
+	 *
+	 * @param accessor
+	 */
+	private void iterateWord(WordAccessor accessor) {
+		int wordSize = bits.length;
+		int blockSize = (wordSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(blockSize);
+		for (int block = 0; block < blockSize; block++) {
+			int from = block * BLOCK_SIZE;
+			int to = Math.min(from + BLOCK_SIZE, wordSize);
+			context.doStructureByAny(block, () -> {
+				try {
+					for (int word = from; word < to; word++) {
+						accessor.accessWord(word);
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * 按照掩码缩放(保留的元素乘以scale,丢弃的元素置0)
+	 *
+	 * @param matrix
+	 * @param word
+	 */
+	private void scaleWord(MathMatrix matrix, int word) {
+		long mask = bits[word];
+		int from = word << 6;
+		int to = Math.min(from + 64, rowSize * columnSize);
+		for (int index = from; index < to; index++) {
+			int row = index / columnSize;
+			int column = index % columnSize;
+			if ((mask & (1L << (index - from))) != 0L) {
+				matrix.scaleValue(row, column, scale);
+			} else {
+				matrix.setValue(row, column, 0F);
+			}
+		}
+	}
+
+	/**
+	 * 生成掩码(不修改矩阵)
+	 *
+	 * @param rowSize
+	 * @param columnSize
+	 * @param iteration
+	 * @param epoch
+	 */
+	public void generate(int rowSize, int columnSize, int iteration, int epoch) {
+		float probability = schedule.valueAt(iteration, epoch);
+		int size = rowSize * columnSize;
+		int wordSize = (size + 63) >>> 6;
+		if (bits == null || bits.length != wordSize) {
+			bits = new long[wordSize];
+		}
+		this.rowSize = rowSize;
+		this.columnSize = columnSize;
+		this.scale = 1F / (1F - probability);
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		iterateWord((word) -> {
+			long mask = 0L;
+			int from = word << 6;
+			int to = Math.min(from + 64, size);
+			for (int index = from; index < to; index++) {
+				if (stream.randomFloat(index) >= probability) {
+					mask |= 1L << (index - from);
+				}
+			}
+			bits[word] = mask;
+		});
+	}
+
+	/**
+	 * 是否保留
+	 *
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public boolean isKept(int row, int column) {
+		int index = row * columnSize + column;
+		return (bits[index >>> 6] & (1L << (index & 63))) != 0L;
+	}
+
+	/**
+	 * 获取保留元素的缩放
+	 *
+	 * @return
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * 生成掩码(层内使用时没有迭代次数,以掩盖次数作为迭代次数)
+	 *
+	 * @param rowSize
+	 * @param columnSize
+	 */
+	public void generate(int rowSize, int columnSize) {
+		generate(rowSize, columnSize, (int) times, 0);
+	}
+
+	/**
+	 * 掩盖(层内使用时没有迭代次数,以掩盖次数作为迭代次数)
+	 *
+	 * @param middleData
+	 */
+	public void mask(MathMatrix middleData) {
+		mask(middleData, (int) times, 0);
+	}
+
+	@Override
+	public void mask(MathMatrix middleData, int iteration, int epoch) {
+		generate(middleData.getRowSize(), middleData.getColumnSize(), iteration, epoch);
+		iterateWord((word) -> {
+			scaleWord(middleData, word);
+		});
+	}
+
+	/**
+	 * 使用正向传播的掩码处理误差
+	 *
+	 * @param error
+	 */
+	public void unmask(MathMatrix error) {
+		if (error.getRowSize() != rowSize || error.getColumnSize() != columnSize) {
+			throw new IllegalArgumentException();
+		}
+		iterateWord((word) -> {
+			scaleWord(error, word);
+		});
+	}
+
+}
@@ -1,11 +1,14 @@
 package com.jstarcraft.ai.neuralnetwork.layer;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.math.structure.MathCache;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.math.structure.vector.MathVector;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.neuralnetwork.activation.ActivationFunction;
@@ -18,6 +21,9 @@ import com.jstarcraft.core.utility.KeyValue;
  * 参考Deeplearning4j团队
  * 
  * 只可以作为输入层
+ * 
+ * 权重梯度使用行稀疏矩阵,只有样本引用的行是已知的,
+ * 所以标准器,学习器,正则化与步进函数只会处理这些行(正则化为惰性).
  * </pre>
  * 
  * @author Birdy
@@ -25,7 +31,8 @@ import com.jstarcraft.core.utility.KeyValue;
  */
 public class EmbedLayer extends WeightLayer implements ModelCycle {
 
-	private KeyValue<MathVector, MathVector>[] weightReferences;
+	/** 参数行与梯度行的引用(由多个线程惰性填充) */
+	private AtomicReferenceArray<KeyValue<MathVector, MathVector>> weightReferences;
 
 	protected EmbedLayer() {
 		super();
@@ -33,7 +40,19 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 
 	public EmbedLayer(int numberOfInputs, int numberOfOutputs, MathCache factory, Map<String, ParameterConfigurator> configurators, Mode mode, ActivationFunction function) {
 		super(numberOfInputs, numberOfOutputs, factory, configurators, mode, function);
-		this.weightReferences = new KeyValue[numberOfInputs];
+		this.weightReferences = new AtomicReferenceArray<>(numberOfInputs);
+	}
+
+	private KeyValue<MathVector, MathVector> getReference(MathMatrix weightParameters, MathMatrix weightGradients, int index) {
+		KeyValue<MathVector, MathVector> keyValue = weightReferences.get(index);
+		if (keyValue == null) {
+			keyValue = new KeyValue<>(weightParameters.getRowVector(index), weightGradients.getRowVector(index));
+			// 保证所有线程使用同一个引用
+			if (!weightReferences.compareAndSet(index, null, keyValue)) {
+				keyValue = weightReferences.get(index);
+			}
+		}
+		return keyValue;
 	}
 
 	@Override
@@ -59,6 +78,11 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 		outputKeyValue.setKey(outputData);
 		MathMatrix innerError = factory.makeMatrix(rowSize, numberOfOutputs);
 		outputKeyValue.setValue(innerError);
+
+		MathMatrix weightGradients = gradients.get(WEIGHT_KEY);
+		if (!(weightGradients instanceof RowSparseMatrix)) {
+			gradients.put(WEIGHT_KEY, RowSparseMatrix.valueOf(weightGradients));
+		}
 	}
 
 	@Override
@@ -84,11 +108,7 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 					int index = (int) inputData.getValue(cursor, 0);
 					// 索引为负数代表不输出
 					if (index >= 0) {
-						KeyValue<MathVector, MathVector> keyValue = weightReferences[index];
-						if (keyValue == null) {
-							keyValue = new KeyValue(weightParameters.getRowVector(index), weightGradients.getRowVector(index));
-							weightReferences[index] = keyValue;
-						}
+						KeyValue<MathVector, MathVector> keyValue = getReference(weightParameters, weightGradients, index);
 						middleData.getRowVector(cursor).copyVector(keyValue.getKey());
 						// for (int columnIndex = 0, columnSize =
 						// middleData.getColumnSize(); columnIndex < columnSize;
@@ -131,7 +151,7 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 	public void doBackward() {
 		MathMatrix weightParameters = parameters.get(WEIGHT_KEY);
 		MathMatrix biasParameters = parameters.get(BIAS_KEY);
-		MathMatrix weightGradients = gradients.get(WEIGHT_KEY);
+		RowSparseMatrix weightGradients = RowSparseMatrix.class.cast(gradients.get(WEIGHT_KEY));
 		MathMatrix biasGradients = gradients.get(BIAS_KEY);
 
 		MathMatrix innerError = getMatrix(outputKeyValue.getValue());
@@ -143,19 +163,54 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 		MathMatrix outputData = getMatrix(outputKeyValue.getKey());
 
 		// 计算梯度
-		function.backward(middleData, innerError, middleError);
+		if (!fusion) {
+			function.backward(middleData, innerError, middleError);
+		}
 
 		// inputData.transposeProductThat(middleError, weightGradients);
-		weightGradients.setValues(0F);
+		// 只清理上一次引用的行
+		weightGradients.clearRows();
 		int rowSize = middleData.getRowSize();
+		// 按照索引分组(高32位为索引,低32位为行),同一个索引的行由同一个线程按顺序累加,无需同步且结果确定.
+		long[] keys = new long[rowSize];
+		int size = 0;
 		for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
-			// TODO 此处可以想办法支持并发,得注意根据index同步.
 			int index = (int) inputData.getValue(rowIndex, 0);
 			if (index >= 0) {
-				KeyValue<MathVector, MathVector> keyValue = weightReferences[index];
-				keyValue.getValue().addVector(middleError.getRowVector(rowIndex));
+				weightGradients.attachRow(index);
+				keys[size++] = ((long) index << 32) | rowIndex;
 			}
 		}
+		Arrays.sort(keys, 0, size);
+		int numberOfGroups = 0;
+		int[] groups = new int[size + 1];
+		for (int position = 0; position < size; position++) {
+			if (position == 0 || (keys[position] >>> 32) != (keys[position - 1] >>> 32)) {
+				groups[numberOfGroups++] = position;
+			}
+		}
+		groups[numberOfGroups] = size;
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(numberOfGroups);
+		for (int group = 0; group < numberOfGroups; group++) {
+			int from = groups[group], to = groups[group + 1];
+			context.doStructureByAny(group, () -> {
+				try {
+					int index = (int) (keys[from] >>> 32);
+					MathVector vector = getReference(weightParameters, weightGradients, index).getValue();
+					for (int position = from; position < to; position++) {
+						vector.addVector(middleError.getRowVector((int) keys[position]));
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
 		if (biasGradients != null) {
 			for (int columnIndex = 0, columnSize = biasGradients.getColumnSize(); columnIndex < columnSize; columnIndex++) {
 				float bias = middleError.getColumnVector(columnIndex).getSum(false);
@@ -170,7 +225,7 @@ public class EmbedLayer extends WeightLayer implements ModelCycle {
 
 	@Override
 	public void afterLoad() {
-		weightReferences = new KeyValue[numberOfInputs];
+		weightReferences = new AtomicReferenceArray<>(numberOfInputs);
 	}
 
 }
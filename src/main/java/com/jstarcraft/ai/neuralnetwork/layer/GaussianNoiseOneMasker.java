@@ -1,17 +1,17 @@
 package com.jstarcraft.ai.neuralnetwork.layer;
 
-import org.apache.commons.math3.distribution.NormalDistribution;
-
-import com.jstarcraft.ai.math.algorithm.distribution.ContinuousProbability;
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.core.utility.RandomUtility;
 
 /**
  * GaussianNoiseOne掩码器
  * 
  * <pre>
  * 参考Deeplearning4j团队
+ * 使用{@link CounterRandom}按照元素的位置生成随机数,相同的种子得到相同的掩码,与线程数量无关.
  * </pre>
  * 
  * @author Birdy
@@ -21,8 +21,33 @@ public class GaussianNoiseOneMasker implements Masker {
 
 	private Schedule schedule;
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经掩盖的次数(每次掩盖使用独立的流) */
+	private long times;
+
+	GaussianNoiseOneMasker() {
+	}
+
 	protected GaussianNoiseOneMasker(Schedule schedule) {
+		this(schedule, RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	protected GaussianNoiseOneMasker(Schedule schedule, long seed) {
 		this.schedule = schedule;
+		this.random = new CounterRandom(seed);
+	}
+
+	@Override
+	public GaussianNoiseOneMasker split(long stream) {
+		GaussianNoiseOneMasker masker = new GaussianNoiseOneMasker();
+		masker.schedule = schedule;
+		masker.random = random.split(stream);
+		synchronized (this) {
+			masker.times = times;
+		}
+		return masker;
 	}
 
 	@Override
@@ -30,10 +55,15 @@ public class GaussianNoiseOneMasker implements Masker {
 		float current = schedule.valueAt(iteration, epoch);
 		current = (float) Math.sqrt(current / (1F - current));
 
-		ContinuousProbability probability = new ContinuousProbability(new NormalDistribution(1F, current));
+		float deviation = current;
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
 		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			float value = scalar.getValue();
-			scalar.setValue(value * probability.sample().floatValue());
+			scalar.setValue(value * (1F + stream.randomGaussian((long) scalar.getRow() * columnSize + scalar.getColumn()) * deviation));
 		});
 	}
 
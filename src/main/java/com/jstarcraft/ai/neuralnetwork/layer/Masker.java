@@ -27,4 +27,16 @@ public interface Masker {
 	 */
 	void mask(MathMatrix middleData, int iteration, int epoch);
 
+	/**
+	 * 派生使用独立随机流的掩码器
+	 * 
+	 * <pre>
+	 * 用于计算图或者层的副本,否则副本会复制种子并生成相同的掩码.
+	 * </pre>
+	 * 
+	 * @param stream
+	 * @return
+	 */
+	Masker split(long stream);
+
 }
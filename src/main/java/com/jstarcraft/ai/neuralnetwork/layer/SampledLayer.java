@@ -0,0 +1,326 @@
+package com.jstarcraft.ai.neuralnetwork.layer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.algorithm.distribution.AliasSampler;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.ai.neuralnetwork.activation.ActivationFunction;
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.StringUtility;
+
+/**
+ * 采样层(Sampled SoftMax)
+ *
+ * <pre>
+ * 用于类别数量非常大的输出层,训练时每行只计算真实类别与采样的负样本的logits,时间复杂度与类别数量无关.
+ * 输入的第0列为真实类别的索引,其余列为隐藏层数据;
+ * 训练(TRAIN)时输出{rowSize, numberOfSamples + 1},第0列为真实类别,logits已经减去log(K*Q(c)),意外命中真实类别的负样本为负无穷;
+ * 测试(TEST)时输出{rowSize, numberOfOutputs},为所有类别的logits.
+ * 权重按照类别存储为{numberOfOutputs, numberOfInputs},偏置为{numberOfOutputs, 1},梯度均为行稀疏矩阵,只会更新采样的类别.
+ * 配合{@link com.jstarcraft.ai.neuralnetwork.loss.SampledSoftMaxLossFunction}与Identity激活函数使用.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "numberOfInputs", "numberOfOutputs", "configurators", "parameters", "gradients", "mode", "function", "numberOfSamples", "sampler" })
+public class SampledLayer extends WeightLayer {
+
+	/** 每行采样的负样本数量 */
+	private int numberOfSamples;
+
+	/** 建议分布 */
+	private AliasSampler sampler;
+
+	/** 训练时每行的类别(第0列为真实类别) */
+	private int[] indexes;
+
+	SampledLayer() {
+		super();
+	}
+
+	public SampledLayer(int numberOfInputs, int numberOfOutputs, int numberOfSamples, AliasSampler sampler, MathCache factory, Map<String, ParameterConfigurator> configurators, Mode mode, ActivationFunction function) {
+		super();
+		if (numberOfSamples <= 0 || sampler.getSize() != numberOfOutputs) {
+			throw new IllegalArgumentException();
+		}
+		this.numberOfInputs = numberOfInputs;
+		this.numberOfOutputs = numberOfOutputs;
+		this.numberOfSamples = numberOfSamples;
+		this.sampler = sampler;
+		this.mode = mode;
+		this.function = function;
+		this.configurators = configurators;
+		this.parameters = new HashMap<>();
+		this.gradients = new HashMap<>();
+
+		if (!this.configurators.containsKey(WEIGHT_KEY)) {
+			String message = StringUtility.format("参数{}配置缺失.", WEIGHT_KEY);
+			throw new IllegalArgumentException(message);
+		}
+
+		MathMatrix weightParameter = factory.makeMatrix(numberOfOutputs, numberOfInputs);
+		configurators.get(WEIGHT_KEY).getFactory().setValues(weightParameter);
+		this.parameters.put(WEIGHT_KEY, weightParameter);
+		MathMatrix weightGradient = RowSparseMatrix.valueOf(factory.makeMatrix(numberOfOutputs, numberOfInputs));
+		this.gradients.put(WEIGHT_KEY, weightGradient);
+
+		if (this.configurators.containsKey(BIAS_KEY)) {
+			MathMatrix biasParameter = factory.makeMatrix(numberOfOutputs, 1);
+			configurators.get(BIAS_KEY).getFactory().setValues(biasParameter);
+			this.parameters.put(BIAS_KEY, biasParameter);
+			MathMatrix biasGradient = RowSparseMatrix.valueOf(factory.makeMatrix(numberOfOutputs, 1));
+			this.gradients.put(BIAS_KEY, biasGradient);
+		}
+	}
+
+	/**
+	 * 获取训练时输出的列对应的类别
+	 *
+	 * @param rowIndex
+	 * @param columnIndex
+	 * @return
+	 */
+	public int getIndex(int rowIndex, int columnIndex) {
+		return indexes[rowIndex * (numberOfSamples + 1) + columnIndex];
+	}
+
+	@Override
+	public void doCache(MathCache factory, KeyValue<MathMatrix, MathMatrix> samples) {
+		inputKeyValue = samples;
+		int rowSize = inputKeyValue.getKey().getRowSize();
+		int columnSize = inputKeyValue.getKey().getColumnSize();
+
+		// 检查维度
+		if (columnSize != numberOfInputs + 1) {
+			throw new IllegalArgumentException();
+		}
+
+		columnSize = mode == Mode.TRAIN ? numberOfSamples + 1 : numberOfOutputs;
+		middleKeyValue = new KeyValue<>(null, null);
+		outputKeyValue = new KeyValue<>(null, null);
+
+		MathMatrix middleData = factory.makeMatrix(rowSize, columnSize);
+		middleKeyValue.setKey(middleData);
+		MathMatrix middleError = factory.makeMatrix(rowSize, columnSize);
+		middleKeyValue.setValue(middleError);
+
+		MathMatrix outputData = factory.makeMatrix(rowSize, columnSize);
+		outputKeyValue.setKey(outputData);
+		MathMatrix innerError = factory.makeMatrix(rowSize, columnSize);
+		outputKeyValue.setValue(innerError);
+
+		indexes = new int[rowSize * (numberOfSamples + 1)];
+	}
+
+	/**
+	 * 计算logit
+	 *
+	 * @param inputData
+	 * @param rowIndex
+	 * @param weightParameters
+	 * @param biasParameters
+	 * @param index
+	 * @return
+	 */
+	private float getLogit(MathMatrix inputData, int rowIndex, MathMatrix weightParameters, MathMatrix biasParameters, int index) {
+		MathVector weightVector = weightParameters.getRowVector(index);
+		float value = biasParameters == null ? 0F : biasParameters.getValue(index, 0);
+		for (int position = 0; position < numberOfInputs; position++) {
+			value += inputData.getValue(rowIndex, position + 1) * weightVector.getValue(position);
+		}
+		return value;
+	}
+
+	/**
+	 * 是否为意外命中真实类别的负样本
+	 *
+	 * @param position
+	 * @return
+	 */
+	private boolean isHit(int position) {
+		int columnSize = numberOfSamples + 1;
+		return position % columnSize != 0 && indexes[position] == indexes[position - position % columnSize];
+	}
+
+	@Override
+	public void doForward() {
+		MathMatrix weightParameters = parameters.get(WEIGHT_KEY);
+		MathMatrix biasParameters = parameters.get(BIAS_KEY);
+
+		MathMatrix inputData = inputKeyValue.getKey();
+		MathMatrix middleData = middleKeyValue.getKey();
+		MathMatrix outputData = outputKeyValue.getKey();
+
+		int rowSize = inputData.getRowSize();
+		int columnSize = middleData.getColumnSize();
+		boolean train = mode == Mode.TRAIN;
+		if (train) {
+			// 串行采样,避免随机数生成器的竞争
+			for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+				int offset = rowIndex * columnSize;
+				indexes[offset] = (int) inputData.getValue(rowIndex, 0);
+				for (int columnIndex = 1; columnIndex < columnSize; columnIndex++) {
+					indexes[offset + columnIndex] = sampler.sample();
+				}
+			}
+		}
+		float correction = (float) FastMath.log(numberOfSamples);
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(rowSize);
+		for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+			int row = rowIndex;
+			context.doStructureByAny(rowIndex, () -> {
+				try {
+					for (int columnIndex = 0; columnIndex < columnSize; columnIndex++) {
+						if (train) {
+							int position = row * columnSize + columnIndex;
+							if (isHit(position)) {
+								middleData.setValue(row, columnIndex, Float.NEGATIVE_INFINITY);
+							} else {
+								int index = indexes[position];
+								// log(Q)修正
+								float value = getLogit(inputData, row, weightParameters, biasParameters, index);
+								value -= correction + (float) FastMath.log(sampler.getProbability(index));
+								middleData.setValue(row, columnIndex, value);
+							}
+						} else {
+							middleData.setValue(row, columnIndex, getLogit(inputData, row, weightParameters, biasParameters, columnIndex));
+						}
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+
+		function.forward(middleData, outputData);
+
+		MathMatrix middleError = middleKeyValue.getValue();
+		middleError.setValues(0F);
+		MathMatrix innerError = outputKeyValue.getValue();
+		innerError.setValues(0F);
+	}
+
+	@Override
+	public void doBackward() {
+		if (mode != Mode.TRAIN) {
+			throw new IllegalStateException("采样层只能在训练模式反向传播");
+		}
+		MathMatrix weightParameters = parameters.get(WEIGHT_KEY);
+		RowSparseMatrix weightGradients = RowSparseMatrix.class.cast(gradients.get(WEIGHT_KEY));
+		RowSparseMatrix biasGradients = RowSparseMatrix.class.cast(gradients.get(BIAS_KEY));
+
+		MathMatrix inputData = inputKeyValue.getKey();
+		MathMatrix middleData = middleKeyValue.getKey();
+		MathMatrix innerError = outputKeyValue.getValue();
+		MathMatrix middleError = middleKeyValue.getValue();
+		MathMatrix outerError = inputKeyValue.getValue();
+
+		// 计算梯度
+		if (!fusion) {
+			function.backward(middleData, innerError, middleError);
+		}
+
+		// 只清理上一次采样的类别
+		weightGradients.clearRows();
+		if (biasGradients != null) {
+			biasGradients.clearRows();
+		}
+		int rowSize = middleData.getRowSize();
+		int columnSize = numberOfSamples + 1;
+		// 按照类别分组(高32位为类别,低32位为位置),同一个类别由同一个线程按顺序累加,无需同步且结果确定.
+		long[] keys = new long[rowSize * columnSize];
+		int size = 0;
+		for (int position = 0, length = rowSize * columnSize; position < length; position++) {
+			if (isHit(position)) {
+				continue;
+			}
+			int index = indexes[position];
+			weightGradients.attachRow(index);
+			if (biasGradients != null) {
+				biasGradients.attachRow(index);
+			}
+			keys[size++] = ((long) index << 32) | position;
+		}
+		Arrays.sort(keys, 0, size);
+		int numberOfGroups = 0;
+		int[] groups = new int[size + 1];
+		for (int position = 0; position < size; position++) {
+			if (position == 0 || (keys[position] >>> 32) != (keys[position - 1] >>> 32)) {
+				groups[numberOfGroups++] = position;
+			}
+		}
+		groups[numberOfGroups] = size;
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(numberOfGroups + (outerError == null ? 0 : rowSize));
+		for (int group = 0; group < numberOfGroups; group++) {
+			int from = groups[group], to = groups[group + 1];
+			context.doStructureByAny(group, () -> {
+				try {
+					int index = (int) (keys[from] >>> 32);
+					MathVector weightVector = weightGradients.getRowVector(index);
+					float bias = 0F;
+					for (int cursor = from; cursor < to; cursor++) {
+						int position = (int) keys[cursor];
+						int rowIndex = position / columnSize;
+						float error = middleError.getValue(rowIndex, position % columnSize);
+						for (int dimension = 0; dimension < numberOfInputs; dimension++) {
+							weightVector.shiftValue(dimension, error * inputData.getValue(rowIndex, dimension + 1));
+						}
+						bias += error;
+					}
+					if (biasGradients != null) {
+						biasGradients.setValue(index, 0, bias);
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		if (outerError != null) {
+			// 真实类别的索引没有梯度
+			for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+				int row = rowIndex;
+				context.doStructureByAny(rowIndex, () -> {
+					try {
+						for (int columnIndex = 0; columnIndex < columnSize; columnIndex++) {
+							int position = row * columnSize + columnIndex;
+							if (isHit(position)) {
+								continue;
+							}
+							float error = middleError.getValue(row, columnIndex);
+							MathVector weightVector = weightParameters.getRowVector(indexes[position]);
+							for (int dimension = 0; dimension < numberOfInputs; dimension++) {
+								outerError.shiftValue(row, dimension + 1, error * weightVector.getValue(dimension));
+							}
+						}
+					} finally {
+						latch.countDown();
+					}
+				});
+			}
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+}
@@ -1,16 +1,21 @@
 package com.jstarcraft.ai.neuralnetwork.layer;
 
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.apache.commons.math3.util.FastMath;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MatrixScalar;
 import com.jstarcraft.ai.math.structure.matrix.Nd4jMatrix;
+import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.activation.ActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.activation.ElementActivationFunction;
 import com.jstarcraft.core.utility.StringUtility;
 
 /**
@@ -23,12 +28,19 @@ import com.jstarcraft.core.utility.StringUtility;
  * @author Birdy
  *
  */
+@ModelDefinition(value = { "numberOfInputs", "numberOfOutputs", "configurators", "parameters", "gradients", "mode", "function", "dropout" })
 public class WeightLayer extends AbstractLayer {
 
 	public final static String WEIGHT_KEY = "weight";
 
 	public final static String BIAS_KEY = "bias";
 
+	/** 是否合并激活函数与目标函数的反向传播(middleError由目标函数直接计算) */
+	protected boolean fusion;
+
+	/** 输出的Dropout(只在训练模式生效) */
+	protected DropoutMasker dropout;
+
 	protected WeightLayer() {
 		super();
 	}
@@ -56,6 +68,50 @@ public class WeightLayer extends AbstractLayer {
 		}
 	}
 
+	/**
+	 * 设置是否合并激活函数与目标函数的反向传播
+	 * 
+	 * <pre>
+	 * 合并时由目标函数直接计算middleError(dL/dz),doBackward跳过激活函数的反向传播.
+	 * </pre>
+	 * 
+	 * @param fusion
+	 */
+	public void setFusion(boolean fusion) {
+		this.fusion = fusion;
+	}
+
+	public boolean isFusion() {
+		return fusion;
+	}
+
+	/**
+	 * 设置输出的Dropout
+	 * 
+	 * <pre>
+	 * 训练时正向传播生成位掩码并应用到输出,反向传播复用同一个掩码处理innerError.
+	 * 被丢弃的输出为0,下游权重层的合并计算会跳过为0的输入.
+	 * </pre>
+	 * 
+	 * @param dropout
+	 */
+	public void setDropout(DropoutMasker dropout) {
+		this.dropout = dropout;
+	}
+
+	public DropoutMasker getDropout() {
+		return dropout;
+	}
+
+	/**
+	 * 获取当前生效的Dropout
+	 * 
+	 * @return
+	 */
+	private DropoutMasker getMasker() {
+		return mode == Mode.TRAIN ? dropout : null;
+	}
+
 	@Override
 	public float calculateL1Norm() {
 		float l1Sum = 0F;
@@ -138,6 +194,129 @@ public class WeightLayer extends AbstractLayer {
 		return l2Sum;
 	}
 
+	/**
+	 * 是否为稠密矩阵(合并计算只支持稠密矩阵,Nd4j矩阵使用BLAS)
+	 * 
+	 * @param matrices
+	 * @return
+	 */
+	private static boolean isDense(MathMatrix... matrices) {
+		for (MathMatrix matrix : matrices) {
+			if (matrix != null && !(matrix instanceof DenseMatrix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 合并计算正向传播
+	 * 
+	 * <pre>
+	 * 每个线程负责一行,在同一次遍历中完成矩阵乘法,偏置,激活函数与误差清零,避免多次遍历{rowSize, numberOfOutputs}.
+	 * 矩阵乘法按照i-k-j的顺序累加,权重的行是连续的;累加顺序与{@link MathMatrix#dotProduct}一致,所以结果相同.
+	 * 被Dropout丢弃的输出跳过激活函数.
+	 * </pre>
+	 */
+	private void doForward(ElementActivationFunction function, DropoutMasker masker, MathMatrix inputData, MathMatrix weightParameters, MathMatrix biasParameters, MathMatrix middleData, MathMatrix outputData, MathMatrix middleError, MathMatrix innerError) {
+		int rowSize = middleData.getRowSize();
+		int columnSize = middleData.getColumnSize();
+		int dimensionSize = inputData.getColumnSize();
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(rowSize);
+		for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+			int row = rowIndex;
+			context.doStructureByAny(rowIndex, () -> {
+				try {
+					for (int column = 0; column < columnSize; column++) {
+						middleData.setValue(row, column, 0F);
+					}
+					for (int dimension = 0; dimension < dimensionSize; dimension++) {
+						float input = inputData.getValue(row, dimension);
+						if (input == 0F) {
+							continue;
+						}
+						for (int column = 0; column < columnSize; column++) {
+							middleData.shiftValue(row, column, input * weightParameters.getValue(dimension, column));
+						}
+					}
+					for (int column = 0; column < columnSize; column++) {
+						float value = middleData.getValue(row, column);
+						if (biasParameters != null) {
+							value += biasParameters.getValue(0, column);
+							middleData.setValue(row, column, value);
+						}
+						if (masker == null) {
+							outputData.setValue(row, column, function.forward(value));
+						} else {
+							outputData.setValue(row, column, masker.isKept(row, column) ? function.forward(value) * masker.getScale() : 0F);
+						}
+						middleError.setValue(row, column, 0F);
+						innerError.setValue(row, column, 0F);
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * 合并计算反向传播
+	 * 
+	 * <pre>
+	 * 每个线程负责一行,在同一次遍历中完成Dropout,激活函数的反向传播与outerError的矩阵乘法(跳过为0的梯度).
+	 * </pre>
+	 */
+	private void doBackward(ElementActivationFunction function, DropoutMasker masker, MathMatrix weightParameters, MathMatrix middleData, MathMatrix innerError, MathMatrix middleError, MathMatrix outerError) {
+		int rowSize = middleData.getRowSize();
+		int columnSize = middleData.getColumnSize();
+		int dimensionSize = weightParameters.getRowSize();
+		EnvironmentContext context = EnvironmentContext.getContext();
+		CountDownLatch latch = new CountDownLatch(rowSize);
+		for (int rowIndex = 0; rowIndex < rowSize; rowIndex++) {
+			int row = rowIndex;
+			context.doStructureByAny(rowIndex, () -> {
+				try {
+					if (!fusion) {
+						for (int column = 0; column < columnSize; column++) {
+							float error = innerError.getValue(row, column);
+							if (masker != null) {
+								error = masker.isKept(row, column) ? error * masker.getScale() : 0F;
+							}
+							middleError.setValue(row, column, error == 0F ? 0F : function.backward(middleData.getValue(row, column), error));
+						}
+					}
+					if (outerError != null) {
+						for (int dimension = 0; dimension < dimensionSize; dimension++) {
+							float value = 0F;
+							for (int column = 0; column < columnSize; column++) {
+								float error = middleError.getValue(row, column);
+								if (error == 0F) {
+									continue;
+								}
+								value += error * weightParameters.getValue(dimension, column);
+							}
+							outerError.shiftValue(row, dimension, value);
+						}
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
 	@Override
 	public void doForward() {
 		MathMatrix weightParameters = parameters.get(WEIGHT_KEY);
@@ -147,6 +326,19 @@ public class WeightLayer extends AbstractLayer {
 		MathMatrix middleData = getMatrix(middleKeyValue.getKey());
 		MathMatrix outputData = getMatrix(outputKeyValue.getKey());
 
+		if (function instanceof ElementActivationFunction) {
+			MathMatrix middleError = getMatrix(middleKeyValue.getValue());
+			MathMatrix innerError = getMatrix(outputKeyValue.getValue());
+			if (isDense(inputData, weightParameters, biasParameters, middleData, outputData, middleError, innerError)) {
+				DropoutMasker masker = getMasker();
+				if (masker != null) {
+					masker.generate(middleData.getRowSize(), middleData.getColumnSize());
+				}
+				doForward(ElementActivationFunction.class.cast(function), masker, inputData, weightParameters, biasParameters, middleData, outputData, middleError, innerError);
+				return;
+			}
+		}
+
 		middleData.dotProduct(inputData, false, weightParameters, false, MathCalculator.PARALLEL);
 		if (biasParameters != null) {
 			middleData.addRowVector(biasParameters.getRowVector(0));
@@ -159,6 +351,10 @@ public class WeightLayer extends AbstractLayer {
 		}
 
 		function.forward(middleData, outputData);
+		DropoutMasker masker = getMasker();
+		if (masker != null) {
+			masker.mask(outputData);
+		}
 
 		MathMatrix middleError = middleKeyValue.getValue();
 		middleError.setValues(0F);
@@ -181,8 +377,18 @@ public class WeightLayer extends AbstractLayer {
 		MathMatrix middleError = getMatrix(middleKeyValue.getValue());
 		MathMatrix outerError = getMatrix(inputKeyValue.getValue());
 
-		// 计算梯度
-		function.backward(middleData, innerError, middleError);
+		if (function instanceof ElementActivationFunction && isDense(weightParameters, middleData, innerError, middleError, outerError)) {
+			doBackward(ElementActivationFunction.class.cast(function), getMasker(), weightParameters, middleData, innerError, middleError, outerError);
+			// outerError已经在合并计算中累加
+			outerError = null;
+		} else if (!fusion) {
+			DropoutMasker masker = getMasker();
+			if (masker != null) {
+				masker.unmask(innerError);
+			}
+			// 计算梯度
+			function.backward(middleData, innerError, middleError);
+		}
 
 		weightGradients.dotProduct(inputData, true, middleError, false, MathCalculator.PARALLEL);
 		if (biasGradients != null) {
@@ -11,6 +11,7 @@ import org.apache.commons.math3.util.FastMath;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
@@ -70,6 +71,20 @@ public class AdaGradLearner implements Learner, ModelCycle {
 			MathMatrix gradient = term.getValue();
 			DenseMatrix historicalGradient = historicalGradients.get(term.getKey());
 			double learnRatio = learnSchedule.valueAt(iteration, epoch);
+			if (gradient instanceof RowSparseMatrix) {
+				// 没有梯度的行不会改变累积梯度,只需要处理已知的行
+				gradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+					int row = scalar.getRow();
+					int column = scalar.getColumn();
+					float value = scalar.getValue();
+					float sum = historicalGradient.getValue(row, column) + value * value;
+					historicalGradient.setValue(row, column, sum);
+					value = (float) (value * (learnRatio / (FastMath.sqrt(sum) + epsilon)));
+					scalar.setValue(value);
+				});
+				continue;
+			}
+
 			historicalGradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
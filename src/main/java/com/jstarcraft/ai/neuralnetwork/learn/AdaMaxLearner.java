@@ -11,6 +11,7 @@ import org.apache.commons.math3.util.FastMath;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
@@ -103,6 +104,11 @@ public class AdaMaxLearner implements Learner, ModelCycle {
 				scalar.setValue(value + 1E-32F);
 			});
 
+			if (gradient instanceof RowSparseMatrix) {
+				// 动量会更新没有梯度的行(EmbedLayer每次迭代都会清理已知的行)
+				RowSparseMatrix.class.cast(gradient).attachRows(m);
+			}
+
 			float beta1t = (float) FastMath.pow(beta1, iteration + 1);
 			float learnRatio = learnSchedule.valueAt(iteration, epoch);
 			float alphat = learnRatio / (1F - beta1t);
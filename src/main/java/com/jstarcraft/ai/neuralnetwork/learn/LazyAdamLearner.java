@@ -0,0 +1,182 @@
+package com.jstarcraft.ai.neuralnetwork.learn;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.math3.util.FastMath;
+
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.model.ModelCycle;
+import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+
+/**
+ * 惰性Adam学习器
+ *
+ * <pre>
+ * 对于稠密梯度与{@link AdamLearner}一致.
+ * 对于行稀疏梯度只更新已知的行,没有梯度的迭代不会更新参数,
+ * 在行再次出现时一次性补偿一阶矩与二阶矩的衰减.
+ * 每次迭代的时间复杂度与已知的行数量成正比,而不是与总行数成正比.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "beta1", "beta2", "epsilon", "learnSchedule" })
+public class LazyAdamLearner implements Learner, ModelCycle {
+
+	// gradient moving avg decay rate
+	private float beta1;
+	// gradient sqrd decay rate
+	private float beta2;
+	private float epsilon;
+
+	private Schedule learnSchedule;
+
+	// moving avg & sqrd gradients
+	private Map<String, DenseMatrix> ms, vs;
+
+	/** 每行最后一次更新的迭代 */
+	private Map<String, int[]> lastIterations;
+
+	public LazyAdamLearner() {
+		this(AdamLearner.DEFAULT_ADAM_BETA1_MEAN_DECAY, AdamLearner.DEFAULT_ADAM_BETA2_VAR_DECAY, AdamLearner.DEFAULT_ADAM_EPSILON, new ConstantSchedule(AdamLearner.DEFAULT_ADAM_LEARN_RATE));
+	}
+
+	public LazyAdamLearner(Schedule learnSchedule) {
+		this(AdamLearner.DEFAULT_ADAM_BETA1_MEAN_DECAY, AdamLearner.DEFAULT_ADAM_BETA2_VAR_DECAY, AdamLearner.DEFAULT_ADAM_EPSILON, learnSchedule);
+	}
+
+	public LazyAdamLearner(float beta1, float beta2, float epsilon, Schedule learnSchedule) {
+		this.beta1 = beta1;
+		this.beta2 = beta2;
+		this.epsilon = epsilon;
+		this.learnSchedule = learnSchedule;
+		this.ms = new HashMap<>();
+		this.vs = new HashMap<>();
+		this.lastIterations = new HashMap<>();
+	}
+
+	@Override
+	public void doCache(Map<String, MathMatrix> gradients) {
+		ms.clear();
+		vs.clear();
+		lastIterations.clear();
+		for (Entry<String, MathMatrix> term : gradients.entrySet()) {
+			MathMatrix gradient = term.getValue();
+			ms.put(term.getKey(), DenseMatrix.valueOf(gradient.getRowSize(), gradient.getColumnSize()));
+			vs.put(term.getKey(), DenseMatrix.valueOf(gradient.getRowSize(), gradient.getColumnSize()));
+			if (gradient instanceof RowSparseMatrix) {
+				int[] lastIteration = new int[gradient.getRowSize()];
+				Arrays.fill(lastIteration, -1);
+				lastIterations.put(term.getKey(), lastIteration);
+			}
+		}
+	}
+
+	@Override
+	public void learn(Map<String, MathMatrix> gradients, int iteration, int epoch) {
+		if (ms.isEmpty() || vs.isEmpty()) {
+			throw new IllegalStateException("Updater has not been initialized with view state");
+		}
+
+		for (Entry<String, MathMatrix> term : gradients.entrySet()) {
+			MathMatrix gradient = term.getValue();
+			DenseMatrix m = ms.get(term.getKey());
+			DenseMatrix v = vs.get(term.getKey());
+
+			if (gradient instanceof RowSparseMatrix) {
+				// 补偿没有梯度的迭代中一阶矩与二阶矩的衰减
+				RowSparseMatrix matrix = RowSparseMatrix.class.cast(gradient);
+				int[] lastIteration = lastIterations.get(term.getKey());
+				for (int position = 0, size = matrix.getKnownRowSize(); position < size; position++) {
+					int row = matrix.getKnownRowIndex(position);
+					int skip = iteration - lastIteration[row] - 1;
+					if (skip > 0) {
+						m.getRowVector(row).scaleValues((float) FastMath.pow(beta1, skip));
+						v.getRowVector(row).scaleValues((float) FastMath.pow(beta2, skip));
+					}
+					lastIteration[row] = iteration;
+				}
+			}
+
+			float beta1t = (float) FastMath.pow(beta1, iteration + 1);
+			float beta2t = (float) FastMath.pow(beta2, iteration + 1);
+			float learnRatio = learnSchedule.valueAt(iteration, epoch);
+			float alphat = (float) (learnRatio * FastMath.sqrt(1F - beta2t) / (1F - beta1t));
+			if (Double.isNaN(alphat) || alphat == 0D) {
+				alphat = epsilon;
+			}
+
+			float alpha = alphat;
+			gradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+				int row = scalar.getRow();
+				int column = scalar.getColumn();
+				float delta = scalar.getValue();
+				float mean = m.getValue(row, column) * beta1 + delta * (1F - beta1);
+				m.setValue(row, column, mean);
+				float variance = v.getValue(row, column) * beta2 + delta * delta * (1F - beta2);
+				v.setValue(row, column, variance);
+				float value = (float) (mean * alpha / (FastMath.sqrt(variance) + epsilon));
+				scalar.setValue(value);
+			});
+		}
+	}
+
+	@Override
+	public void beforeSave() {
+	}
+
+	@Override
+	public void afterLoad() {
+		ms = new HashMap<>();
+		vs = new HashMap<>();
+		lastIterations = new HashMap<>();
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			LazyAdamLearner that = (LazyAdamLearner) object;
+			EqualsBuilder equal = new EqualsBuilder();
+			equal.append(this.beta1, that.beta1);
+			equal.append(this.beta2, that.beta2);
+			equal.append(this.epsilon, that.epsilon);
+			equal.append(this.learnSchedule, that.learnSchedule);
+			return equal.isEquals();
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(beta1);
+		hash.append(beta2);
+		hash.append(epsilon);
+		hash.append(learnSchedule);
+		return hash.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "LazyAdamLearner(beta1=" + beta1 + ", beta2=" + beta2 + ", epsilon=" + epsilon + ", learnSchedule=" + learnSchedule + ")";
+	}
+
+}
@@ -10,6 +10,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
@@ -98,6 +99,13 @@ public class NesterovLearner implements Learner, ModelCycle {
 				scalar.setValue(value);
 			});
 
+			if (gradient instanceof RowSparseMatrix) {
+				// 动量会更新没有梯度的行(EmbedLayer每次迭代都会清理已知的行)
+				RowSparseMatrix matrix = RowSparseMatrix.class.cast(gradient);
+				matrix.attachRows(c);
+				matrix.attachRows(v);
+			}
+
 			gradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
@@ -1,5 +1,6 @@
 package com.jstarcraft.ai.neuralnetwork.learn;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -11,6 +12,7 @@ import org.apache.commons.math3.util.FastMath;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCycle;
 import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
@@ -42,6 +44,9 @@ public class RmsPropLearner implements Learner, ModelCycle {
 
 	private Map<String, DenseMatrix> lastGradients;
 
+	/** 每行最后一次更新的迭代(用于稀疏梯度补偿衰减) */
+	private Map<String, int[]> lastIterations;
+
 	public RmsPropLearner() {
 		this(DEFAULT_RMSPROP_RMSDECAY, DEFAULT_RMSPROP_EPSILON, new ConstantSchedule(DEFAULT_RMSPROP_LEARN_RATE));
 	}
@@ -51,16 +56,23 @@ public class RmsPropLearner implements Learner, ModelCycle {
 		this.epsilon = epsilon;
 		this.learnSchedule = learnSchedule;
 		this.lastGradients = new HashMap<>();
+		this.lastIterations = new HashMap<>();
 	}
 
 	@Override
 	public void doCache(Map<String, MathMatrix> gradients) {
 		lastGradients.clear();
+		lastIterations.clear();
 		for (Entry<String, MathMatrix> term : gradients.entrySet()) {
 			MathMatrix gradient = term.getValue();
 			DenseMatrix lastGradient = DenseMatrix.valueOf(gradient.getRowSize(), gradient.getColumnSize());
 			lastGradient.setValues(epsilon);
 			lastGradients.put(term.getKey(), lastGradient);
+			if (gradient instanceof RowSparseMatrix) {
+				int[] lastIteration = new int[gradient.getRowSize()];
+				Arrays.fill(lastIteration, -1);
+				lastIterations.put(term.getKey(), lastIteration);
+			}
 		}
 	}
 
@@ -75,6 +87,30 @@ public class RmsPropLearner implements Learner, ModelCycle {
 
 			double learnRatio = learnSchedule.valueAt(iteration, epoch);
 
+			if (gradient instanceof RowSparseMatrix) {
+				// 没有梯度的迭代只会衰减缓存,在行再次出现时一次性补偿
+				RowSparseMatrix matrix = RowSparseMatrix.class.cast(gradient);
+				int[] lastIteration = lastIterations.get(term.getKey());
+				for (int position = 0, size = matrix.getKnownRowSize(); position < size; position++) {
+					int row = matrix.getKnownRowIndex(position);
+					int skip = iteration - lastIteration[row] - 1;
+					if (skip > 0) {
+						lastGradient.getRowVector(row).scaleValues((float) FastMath.pow(rmsDecay, skip));
+					}
+					lastIteration[row] = iteration;
+				}
+				gradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+					int row = scalar.getRow();
+					int column = scalar.getColumn();
+					float value = scalar.getValue();
+					float cache = lastGradient.getValue(row, column) * rmsDecay + value * value * (1F - rmsDecay);
+					lastGradient.setValue(row, column, cache);
+					value = (float) (value * (learnRatio / (FastMath.sqrt(cache) + epsilon)));
+					scalar.setValue(value);
+				});
+				continue;
+			}
+
 			lastGradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 				int row = scalar.getRow();
 				int column = scalar.getColumn();
@@ -102,6 +138,7 @@ public class RmsPropLearner implements Learner, ModelCycle {
 	@Override
 	public void afterLoad() {
 		lastGradients = new HashMap<>();
+		lastIterations = new HashMap<>();
 	}
 
 	@Override
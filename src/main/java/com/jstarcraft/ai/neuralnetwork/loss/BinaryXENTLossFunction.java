@@ -94,6 +94,35 @@ public class BinaryXENTLossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float minimum = clip;
+		float maximum = 1F - clip;
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float label = tests.getValue(row, column);
+				if (isSoftMaximum) {
+					sum += -(float) (FastMath.log(value) * label);
+					value = value < minimum ? minimum : (value > maximum ? maximum : value);
+				} else {
+					value = value < minimum ? minimum : (value > maximum ? maximum : value);
+					double left = FastMath.log(value) * label;
+					double right = FastMath.log(1D - value) * (1D - label);
+					sum += -(float) (left + right);
+				}
+				float numerator = value - label;
+				float denominator = value * (1F - value);
+				gradients.setValue(row, column, numerator / denominator);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
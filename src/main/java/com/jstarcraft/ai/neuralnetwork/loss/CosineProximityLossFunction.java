@@ -62,6 +62,34 @@ public class CosineProximityLossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			MathVector vector = trains.getRowVector(row);
+			MathVector label = tests.getRowVector(row);
+			float scoreNorm = vector.getNorm(2F);
+			float labelNorm = label.getNorm(2F);
+			float squareNorm = scoreNorm * scoreNorm;
+			float sum = 0F;
+			for (VectorScalar term : vector) {
+				sum += term.getValue() * label.getValue(term.getIndex());
+			}
+
+			labelNorm = Math.max(labelNorm, MathUtility.EPSILON);
+			scoreNorm = Math.max(scoreNorm, MathUtility.EPSILON);
+			squareNorm = Math.max(squareNorm, MathUtility.EPSILON);
+			for (VectorScalar term : vector) {
+				float value = term.getValue();
+				value = label.getValue(term.getIndex()) * squareNorm - value * sum;
+				value /= (labelNorm * scoreNorm * squareNorm);
+				gradients.setValue(row, term.getIndex(), -value);
+			}
+			return -(sum / scoreNorm / labelNorm);
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
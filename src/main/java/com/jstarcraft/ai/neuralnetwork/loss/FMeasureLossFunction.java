@@ -109,7 +109,10 @@ public class FMeasureLossFunction implements LossFunction {
 			gradients.setValues(0F);
 			return;
 		}
+		computeGradient(tests, gradients, numerator, denominator);
+	}
 
+	private void computeGradient(MathMatrix tests, MathMatrix gradients, float numerator, float denominator) {
 		float secondTerm = numerator / (denominator * denominator);
 		// TODO 避免重复分配内存
 		int size = tests.getColumnSize();
@@ -140,6 +143,20 @@ public class FMeasureLossFunction implements LossFunction {
 		// maximizing fMeasure
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		// 得分与梯度共享同一组统计量
+		KeyValue<Float, Float> keyValue = computeNumeratorWithDenominator(tests, trains, masks);
+		float numerator = keyValue.getKey();
+		float denominator = keyValue.getValue();
+		if (numerator == 0F && denominator == 0F) {
+			gradients.setValues(0F);
+			return 0F;
+		}
+		computeGradient(tests, gradients, numerator, denominator);
+		return 1F - numerator / denominator;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -50,6 +50,26 @@ public class HingeLossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float label = tests.getValue(row, column);
+				sum += (1F - value * label);
+				// 与computeGradient保持一致
+				value = 1F - gradients.getValue(row, column) * label;
+				value = value > 0F ? 1F : 0F;
+				gradients.setValue(row, column, -label * value);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
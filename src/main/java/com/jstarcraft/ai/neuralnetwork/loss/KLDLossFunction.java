@@ -47,6 +47,26 @@ public class KLDLossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float label = tests.getValue(row, column);
+				gradients.setValue(row, column, -(label / value));
+				value = value < MathUtility.EPSILON ? MathUtility.EPSILON : (value > 1F ? 1F : value);
+				label = label < MathUtility.EPSILON ? MathUtility.EPSILON : (label > 1F ? 1F : label);
+				float ratio = (float) FastMath.log(label / value);
+				sum += ratio * label;
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
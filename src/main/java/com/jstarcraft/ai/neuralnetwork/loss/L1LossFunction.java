@@ -41,6 +41,38 @@ public class L1LossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	/**
+	 * 在一次迭代中计算得分与梯度
+	 * 
+	 * @param tests
+	 * @param trains
+	 * @param gradients
+	 * @param scale
+	 *            得分与梯度的缩放比例
+	 * @return
+	 */
+	float calculateScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix gradients, float scale) {
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				value = value - tests.getValue(row, column);
+				sum += Math.abs(value);
+				value = value < 0F ? -scale : (value > 0F ? scale : 0F);
+				gradients.setValue(row, column, value);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score * scale;
+	}
+
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		return calculateScoreAndGradient(tests, trains, gradients, 1F);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
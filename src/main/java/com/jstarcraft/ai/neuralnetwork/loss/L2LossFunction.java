@@ -86,6 +86,56 @@ public class L2LossFunction implements LossFunction {
 		calculateGradient(tests, trains, gradients);
 	}
 
+	/**
+	 * 在一次迭代中计算得分与梯度
+	 * 
+	 * @param tests
+	 * @param trains
+	 * @param gradients
+	 * @param scale
+	 *            得分与梯度的缩放比例
+	 * @return
+	 */
+	float calculateScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix gradients, float scale) {
+		float score = 0F;
+		if (tests instanceof CompositeMatrix && trains instanceof CompositeMatrix) {
+			MathMatrix[] testComponents = CompositeMatrix.class.cast(tests).getComponentMatrixes();
+			MathMatrix[] trainComponents = CompositeMatrix.class.cast(trains).getComponentMatrixes();
+			MathMatrix[] gradientComponents = CompositeMatrix.class.cast(gradients).getComponentMatrixes();
+			assert testComponents.length == trainComponents.length;
+			for (int index = 0, size = testComponents.length; index < size; index++) {
+				score += calculateScoreAndGradient(testComponents[index], trainComponents[index], gradientComponents[index], scale);
+			}
+		} else if (tests instanceof Nd4jMatrix && trains instanceof Nd4jMatrix && gradients instanceof Nd4jMatrix) {
+			INDArray testArray = Nd4jMatrix.class.cast(tests).getArray();
+			INDArray trainArray = Nd4jMatrix.class.cast(trains).getArray();
+			INDArray gradientArray = Nd4jMatrix.class.cast(gradients).getArray();
+			trainArray.sub(testArray, gradientArray);
+			float norm = gradientArray.norm2Number().floatValue();
+			score = norm * norm * scale;
+			gradientArray.muli(2F * scale);
+		} else {
+			int columnSize = trains.getColumnSize();
+			score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+				float sum = 0F;
+				for (int column = 0; column < columnSize; column++) {
+					float value = trains.getValue(row, column);
+					value = value - tests.getValue(row, column);
+					sum += value * value;
+					gradients.setValue(row, column, value * 2F * scale);
+				}
+				return sum;
+			}) * scale;
+		}
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		return calculateScoreAndGradient(tests, trains, gradients, 1F);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -33,4 +33,22 @@ public interface LossFunction {
 	 */
 	void computeGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients);
 
+	/**
+	 * 计算得分与梯度
+	 * 
+	 * <pre>
+	 * 与分别调用computeGradient与computeScore等价,实现类应该在一次迭代中同时计算得分与梯度.
+	 * </pre>
+	 * 
+	 * @param tests
+	 * @param trains
+	 * @param masks
+	 * @param gradients
+	 * @return
+	 */
+	default float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		computeGradient(tests, trains, masks, gradients);
+		return computeScore(tests, trains, masks);
+	}
+
 }
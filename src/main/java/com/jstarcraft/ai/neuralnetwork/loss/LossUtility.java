@@ -0,0 +1,85 @@
+package com.jstarcraft.ai.neuralnetwork.loss;
+
+import java.util.concurrent.Semaphore;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+
+/**
+ * 目标函数工具
+ *
+ * @author Birdy
+ *
+ */
+class LossUtility {
+
+	/** 每个线程分配的块数量(用于平衡负载) */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/**
+	 * 行访问器
+	 *
+	 * @author Birdy
+	 *
+	 */
+	interface RowAccessor {
+
+		/**
+		 * 访问行
+		 *
+		 * @param row
+		 * @return 行的得分
+		 */
+		float accessRow(int row);
+
+	}
+
+	/**
+	 * 按行分块并行归约得分
+	 *
+	 * <pre>
+	 * 每个块串行访问连续的行并且累加得分,最后按照块的顺序求和,所以结果与线程调度无关.
+	 * </pre>
+	 *
+	 * @param rowSize
+	 * @param accessor
+	 * @return
+	 */
+	static float reduceRows(int rowSize, RowAccessor accessor) {
+		EnvironmentContext context = EnvironmentContext.getContext();
+		int blockSize = Math.min(rowSize, context.getNumberOfThreads() * BLOCKS_PER_THREAD);
+		if (blockSize <= 1) {
+			float score = 0F;
+			for (int row = 0; row < rowSize; row++) {
+				score += accessor.accessRow(row);
+			}
+			return score;
+		}
+		float[] scores = new float[blockSize];
+		Semaphore semaphore = MathCalculator.getSemaphore();
+		for (int block = 0; block < blockSize; block++) {
+			int index = block;
+			int from = (int) ((long) rowSize * index / blockSize);
+			int to = (int) ((long) rowSize * (index + 1) / blockSize);
+			context.doStructureByAny(index, () -> {
+				float score = 0F;
+				for (int row = from; row < to; row++) {
+					score += accessor.accessRow(row);
+				}
+				scores[index] = score;
+				semaphore.release();
+			});
+		}
+		try {
+			semaphore.acquire(blockSize);
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		float score = 0F;
+		for (int block = 0; block < blockSize; block++) {
+			score += scores[block];
+		}
+		return score;
+	}
+
+}
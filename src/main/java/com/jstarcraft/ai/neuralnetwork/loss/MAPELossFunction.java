@@ -47,6 +47,28 @@ public class MAPELossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float scoreScale = 100F / trains.getColumnSize();
+		float gradientScale = -100F / trains.getColumnSize();
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float label = tests.getValue(row, column);
+				sum += Math.abs((value - label) / label) * scoreScale;
+				value = label - value;
+				value = value < 0F ? -1F : (value > 0F ? 1F : 0F);
+				value = value / Math.abs(label) * gradientScale;
+				gradients.setValue(row, column, value);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
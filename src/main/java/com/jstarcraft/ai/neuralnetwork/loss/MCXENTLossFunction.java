@@ -108,6 +108,82 @@ public class MCXENTLossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		boolean clipping = isSoftMaximum && clip > 0F;
+		float minimum = clip;
+		float maximum = 1F - clip;
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float label = tests.getValue(row, column);
+				gradients.setValue(row, column, -(label / value));
+				if (clipping) {
+					value = value < minimum ? minimum : (value > maximum ? maximum : value);
+				}
+				sum += -(float) (FastMath.log(value) * label);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	/**
+	 * 合并SoftMax激活函数计算得分与梯度
+	 * 
+	 * <pre>
+	 * 根据激活之前的输入,每行只计算一次log-sum-exp,直接得到log(SoftMax)与dL/dz=p*sum(y)-y.
+	 * 对数不需要截断,SoftMax激活函数也不需要在反向传播时重新计算前向传播与雅可比矩阵的乘积.
+	 * </pre>
+	 * 
+	 * @param tests
+	 *            标签
+	 * @param inputs
+	 *            激活之前的输入(z)
+	 * @param masks
+	 * @param gradients
+	 *            激活之前的梯度(dL/dz)
+	 * @return
+	 */
+	public float computeScoreAndGradientWithSoftMaximum(MathMatrix tests, MathMatrix inputs, MathMatrix masks, MathMatrix gradients) {
+		int columnSize = inputs.getColumnSize();
+		float score = LossUtility.reduceRows(inputs.getRowSize(), (row) -> {
+			float maximum = Float.NEGATIVE_INFINITY;
+			float labelSum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				maximum = Math.max(maximum, inputs.getValue(row, column));
+				labelSum += tests.getValue(row, column);
+			}
+			// 暂存exp(z-max)
+			float exponentSum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = (float) FastMath.exp(inputs.getValue(row, column) - maximum);
+				gradients.setValue(row, column, value);
+				exponentSum += value;
+			}
+			float logarithm = maximum + (float) FastMath.log(exponentSum);
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float label = tests.getValue(row, column);
+				float probability = gradients.getValue(row, column) / exponentSum;
+				gradients.setValue(row, column, probability * labelSum - label);
+				if (label != 0F) {
+					sum += label * (logarithm - inputs.getValue(row, column));
+				}
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	public boolean isSoftMaximum() {
+		return isSoftMaximum;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -27,6 +27,12 @@ public class MSELossFunction extends L2LossFunction {
 		gradients.scaleValues(scale);
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float scale = 1F / trains.getColumnSize();
+		return calculateScoreAndGradient(tests, trains, gradients, scale);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -46,6 +46,24 @@ public class MSLELossFunction implements LossFunction {
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float scale = 2F / trains.getColumnSize();
+		int columnSize = trains.getColumnSize();
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			float sum = 0F;
+			for (int column = 0; column < columnSize; column++) {
+				float value = trains.getValue(row, column);
+				float ratio = (float) (FastMath.log((value + 1F) / (tests.getValue(row, column) + 1F)));
+				sum += ratio * ratio / columnSize;
+				gradients.setValue(row, column, scale / (value + 1F) * ratio);
+			}
+			return sum;
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
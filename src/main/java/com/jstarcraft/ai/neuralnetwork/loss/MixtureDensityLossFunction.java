@@ -212,22 +212,20 @@ public class MixtureDensityLossFunction implements LossFunction {
 		}
 	}
 
-	@Override
-	public float computeScore(MathMatrix tests, MathMatrix trains, MathMatrix masks) {
-		extractComponents(trains);
-		labelsMinusMu(tests);
+	private void calculateSum() {
 		sum.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
 			int row = scalar.getRow();
 			int column = scalar.getColumn();
 			float value = 0F;
 			for (int index = 0, size = means.length; index < size; index++) {
-				value += (float) FastMath.pow(means[index].getValue(row, column), 2F);
+				value += (float) FastMath.pow(means[index].getValue(row, column), 2D);
 			}
 			scalar.setValue(value);
 		});
+	}
 
-		float score = 0F;
-		for (int rowIndex = 0, rowSize = standardDeviation.getRowSize(); rowIndex < rowSize; rowIndex++) {
+	private float calculateScore() {
+		return LossUtility.reduceRows(standardDeviation.getRowSize(), (rowIndex) -> {
 			// See Bishop equation (28,29)
 			float likelihood = 0F;
 			for (int columnIndex = 0, columnSize = standardDeviation.getColumnSize(); columnIndex < columnSize; columnIndex++) {
@@ -241,26 +239,11 @@ public class MixtureDensityLossFunction implements LossFunction {
 				value *= weight.getValue(rowIndex, columnIndex);
 				likelihood += value;
 			}
-			score -= (float) FastMath.log(likelihood);
-		}
-		// TODO 暂时不处理masks
-		return score;
-	}
-
-	@Override
-	public void computeGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
-		extractComponents(trains);
-		labelsMinusMu(tests);
-		sum.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
-			int row = scalar.getRow();
-			int column = scalar.getColumn();
-			float value = 0F;
-			for (int index = 0, size = means.length; index < size; index++) {
-				value += (float) FastMath.pow(means[index].getValue(row, column), 2D);
-			}
-			scalar.setValue(value);
+			return -(float) FastMath.log(likelihood);
 		});
+	}
 
+	private void calculateGradient(MathMatrix gradients) {
 		// This computes pi_i, see Bishop equation (30).
 		// See
 		// http://www.plsyard.com/dealing-overflow-and-underflow-in-softmax-function/
@@ -341,9 +324,39 @@ public class MixtureDensityLossFunction implements LossFunction {
 				scalar.setValue(-(mean.getValue(row, column) * normal.getValue(row, column) / variance.getValue(row, column)));
 			});
 		}
+	}
+
+	@Override
+	public float computeScore(MathMatrix tests, MathMatrix trains, MathMatrix masks) {
+		extractComponents(trains);
+		labelsMinusMu(tests);
+		calculateSum();
+		float score = calculateScore();
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	@Override
+	public void computeGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		extractComponents(trains);
+		labelsMinusMu(tests);
+		calculateSum();
+		calculateGradient(gradients);
 		// TODO 暂时不处理masks
 	}
 
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		// 得分与梯度共享同一组分量
+		extractComponents(trains);
+		labelsMinusMu(tests);
+		calculateSum();
+		float score = calculateScore();
+		calculateGradient(gradients);
+		// TODO 暂时不处理masks
+		return score;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
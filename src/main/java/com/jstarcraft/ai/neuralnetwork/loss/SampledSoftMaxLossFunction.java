@@ -0,0 +1,90 @@
+package com.jstarcraft.ai.neuralnetwork.loss;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+
+/**
+ * 采样SoftMax目标函数
+ *
+ * <pre>
+ * 与{@link com.jstarcraft.ai.neuralnetwork.layer.SampledLayer}配合使用(激活函数必须为Identity).
+ * 输入为已经修正log(Q)的logits,第0列总是真实类别,其余列为负样本,意外命中的负样本为负无穷.
+ * 标签(tests)不参与计算,得分为交叉熵log-sum-exp(z)-z[0],梯度为SoftMax(z)-e[0].
+ * 参考Jean et al., On Using Very Large Target Vocabulary for Neural Machine Translation
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+public class SampledSoftMaxLossFunction implements LossFunction {
+
+	private float computeRow(MathMatrix trains, MathMatrix gradients, int row) {
+		int columnSize = trains.getColumnSize();
+		float maximum = Float.NEGATIVE_INFINITY;
+		for (int column = 0; column < columnSize; column++) {
+			maximum = Math.max(maximum, trains.getValue(row, column));
+		}
+		float sum = 0F;
+		for (int column = 0; column < columnSize; column++) {
+			sum += (float) FastMath.exp(trains.getValue(row, column) - maximum);
+		}
+		float logarithm = maximum + (float) FastMath.log(sum);
+		if (gradients != null) {
+			for (int column = 0; column < columnSize; column++) {
+				float value = (float) FastMath.exp(trains.getValue(row, column) - logarithm);
+				gradients.setValue(row, column, column == 0 ? value - 1F : value);
+			}
+		}
+		return logarithm - trains.getValue(row, 0);
+	}
+
+	@Override
+	public float computeScore(MathMatrix tests, MathMatrix trains, MathMatrix masks) {
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			return computeRow(trains, null, row);
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	@Override
+	public void computeGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		computeScoreAndGradient(tests, trains, masks, gradients);
+	}
+
+	@Override
+	public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+		float score = LossUtility.reduceRows(trains.getRowSize(), (row) -> {
+			return computeRow(trains, gradients, row);
+		});
+		// TODO 暂时不处理masks
+		return score;
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			return true;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "SampledSoftMaxLossFunction()";
+	}
+
+}
@@ -1,13 +1,13 @@
 package com.jstarcraft.ai.neuralnetwork.normalization;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.commons.math3.util.FastMath;
 
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
-import com.jstarcraft.ai.math.structure.matrix.MatrixScalar;
+import com.jstarcraft.ai.neuralnetwork.normalization.NormalizationUtility.Norm;
 
 public class ClipNorm2Normalizer implements Normalizer {
 
@@ -24,34 +24,18 @@ public class ClipNorm2Normalizer implements Normalizer {
 	public void normalize(Map<String, MathMatrix> gradients) {
 		switch (mode) {
 		case GLOBAL: {
-			float norm = 0F;
-			for (MathMatrix gradient : gradients.values()) {
-				for (MatrixScalar term : gradient) {
-					norm += term.getValue() * term.getValue();
-				}
-			}
-			norm = (float) (1F / FastMath.sqrt(norm));
+			float norm = NormalizationUtility.getNorm(Norm.L2, gradients.values());
 			if (norm > threshold) {
-				norm = threshold / norm;
-				for (MathMatrix gradient : gradients.values()) {
-					gradient.scaleValues(norm);
-				}
+				NormalizationUtility.scaleValues(gradients.values(), threshold / norm);
 			}
 			break;
 		}
 		case LOCAL: {
 			for (MathMatrix gradient : gradients.values()) {
-				float norm = 0F;
-				for (MatrixScalar term : gradient) {
-					norm += term.getValue() * term.getValue();
-				}
-				norm = (float) (1F / FastMath.sqrt(norm));
-				norm = (float) (1F / FastMath.sqrt(norm));
+				float norm = NormalizationUtility.getNorm(Norm.L2, Collections.singleton(gradient));
 				if (norm > threshold) {
-					norm = threshold / norm;
-					gradient.scaleValues(norm);
+					NormalizationUtility.scaleValues(Collections.singleton(gradient), threshold / norm);
 				}
-
 			}
 			break;
 		}
@@ -5,7 +5,6 @@ import java.util.Map;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
-import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 
 public class ClipNormalizer implements Normalizer {
@@ -18,13 +17,7 @@ public class ClipNormalizer implements Normalizer {
 
 	@Override
 	public void normalize(Map<String, MathMatrix> gradients) {
-		for (MathMatrix gradient : gradients.values()) {
-			gradient.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
-				float value = scalar.getValue();
-				value = value < -threshold ? -threshold : (value > threshold ? threshold : value);
-				scalar.scaleValue(value);
-			});
-		}
+		NormalizationUtility.clipValues(gradients.values(), threshold);
 	}
 
 	@Override
@@ -0,0 +1,355 @@
+package com.jstarcraft.ai.neuralnetwork.normalization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.ColumnArrayMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.Nd4jMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+
+/**
+ * 标准化工具
+ *
+ * <pre>
+ * 将所有梯度的行(RowSparseMatrix只取已知的行)按照元素数量均匀地划分为块,每个块由一个线程按位置直接访问,避免MatrixScalar迭代器.
+ * 归约时每个块独立累加,最后按照块的顺序合并,所以结果与线程调度无关.
+ * Nd4jMatrix直接使用Nd4j的原生实现.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+class NormalizationUtility {
+
+	/** 每个线程分配的块数量(用于平衡负载) */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/**
+	 * 范数
+	 *
+	 * @author Birdy
+	 *
+	 */
+	enum Norm {
+
+		/** L1范数 */
+		L1 {
+
+			@Override
+			float reduce(float accumulation, float value) {
+				return accumulation + Math.abs(value);
+			}
+
+			@Override
+			float merge(float left, float right) {
+				return left + right;
+			}
+
+			@Override
+			float reduce(INDArray array) {
+				return array.norm1Number().floatValue();
+			}
+
+			@Override
+			float complete(float accumulation) {
+				return accumulation;
+			}
+
+		},
+
+		/** L2范数 */
+		L2 {
+
+			@Override
+			float reduce(float accumulation, float value) {
+				return accumulation + value * value;
+			}
+
+			@Override
+			float merge(float left, float right) {
+				return left + right;
+			}
+
+			@Override
+			float reduce(INDArray array) {
+				float norm = array.norm2Number().floatValue();
+				return norm * norm;
+			}
+
+			@Override
+			float complete(float accumulation) {
+				return (float) Math.sqrt(accumulation);
+			}
+
+		},
+
+		/** L∞范数 */
+		INFINITY {
+
+			@Override
+			float reduce(float accumulation, float value) {
+				return Math.max(accumulation, Math.abs(value));
+			}
+
+			@Override
+			float merge(float left, float right) {
+				return Math.max(left, right);
+			}
+
+			@Override
+			float reduce(INDArray array) {
+				return array.normmaxNumber().floatValue();
+			}
+
+			@Override
+			float complete(float accumulation) {
+				return accumulation;
+			}
+
+		};
+
+		/**
+		 * 累加元素
+		 *
+		 * @param accumulation
+		 * @param value
+		 * @return
+		 */
+		abstract float reduce(float accumulation, float value);
+
+		/**
+		 * 合并块
+		 *
+		 * @param left
+		 * @param right
+		 * @return
+		 */
+		abstract float merge(float left, float right);
+
+		/**
+		 * 归约Nd4j数组(结果与{@link #reduce(float, float)}的累加一致)
+		 *
+		 * @param array
+		 * @return
+		 */
+		abstract float reduce(INDArray array);
+
+		/**
+		 * 完成归约
+		 *
+		 * @param accumulation
+		 * @return
+		 */
+		abstract float complete(float accumulation);
+
+	}
+
+	/**
+	 * 向量访问器
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private interface VectorAccessor {
+
+		/**
+		 * 访问向量
+		 *
+		 * @param vector
+		 * @param accumulation
+		 * @return
+		 */
+		float accessVector(MathVector vector, float accumulation);
+
+	}
+
+	/**
+	 * 按块并行访问所有向量
+	 *
+	 * @param vectors
+	 * @param elementSize
+	 * @param norm
+	 * @param accessor
+	 * @return 按照块的顺序合并的归约结果
+	 */
+	private static float iterateVectors(List<MathVector> vectors, long elementSize, Norm norm, VectorAccessor accessor) {
+		int vectorSize = vectors.size();
+		EnvironmentContext context = EnvironmentContext.getContext();
+		int blockSize = Math.min(vectorSize, context.getNumberOfThreads() * BLOCKS_PER_THREAD);
+		if (blockSize <= 1) {
+			float accumulation = 0F;
+			for (MathVector vector : vectors) {
+				accumulation = accessor.accessVector(vector, accumulation);
+			}
+			return accumulation;
+		}
+		// 按照元素数量划分边界
+		int[] bounds = new int[blockSize + 1];
+		long count = 0L;
+		for (int index = 0, block = 1; index < vectorSize && block < blockSize; index++) {
+			count += vectors.get(index).getElementSize();
+			if (count * blockSize >= elementSize * block) {
+				bounds[block++] = index + 1;
+			}
+		}
+		for (int block = 1; block <= blockSize; block++) {
+			if (bounds[block] < bounds[block - 1]) {
+				bounds[block] = vectorSize;
+			}
+		}
+		bounds[blockSize] = vectorSize;
+		float[] accumulations = new float[blockSize];
+		Semaphore semaphore = MathCalculator.getSemaphore();
+		for (int block = 0; block < blockSize; block++) {
+			int index = block;
+			int from = bounds[index];
+			int to = bounds[index + 1];
+			context.doStructureByAny(index, () -> {
+				try {
+					float accumulation = 0F;
+					for (int position = from; position < to; position++) {
+						accumulation = accessor.accessVector(vectors.get(position), accumulation);
+					}
+					accumulations[index] = accumulation;
+				} finally {
+					semaphore.release();
+				}
+			});
+		}
+		try {
+			semaphore.acquire(blockSize);
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		float accumulation = accumulations[0];
+		for (int block = 1; block < blockSize; block++) {
+			accumulation = norm.merge(accumulation, accumulations[block]);
+		}
+		return accumulation;
+	}
+
+	/**
+	 * 获取矩阵的向量(Nd4jMatrix除外)
+	 *
+	 * @param matrix
+	 * @param vectors
+	 * @return 元素数量
+	 */
+	private static long getVectors(MathMatrix matrix, List<MathVector> vectors) {
+		long elementSize = 0L;
+		if (matrix instanceof RowSparseMatrix) {
+			RowSparseMatrix sparse = (RowSparseMatrix) matrix;
+			for (int position = 0, size = sparse.getKnownRowSize(); position < size; position++) {
+				MathVector vector = sparse.getRowVector(sparse.getKnownRowIndex(position));
+				vectors.add(vector);
+				elementSize += vector.getElementSize();
+			}
+		} else if (matrix instanceof ColumnArrayMatrix) {
+			for (int columnIndex = 0, columnSize = matrix.getColumnSize(); columnIndex < columnSize; columnIndex++) {
+				MathVector vector = matrix.getColumnVector(columnIndex);
+				vectors.add(vector);
+				elementSize += vector.getElementSize();
+			}
+		} else {
+			for (int rowIndex = 0, rowSize = matrix.getRowSize(); rowIndex < rowSize; rowIndex++) {
+				MathVector vector = matrix.getRowVector(rowIndex);
+				vectors.add(vector);
+				elementSize += vector.getElementSize();
+			}
+		}
+		return elementSize;
+	}
+
+	/**
+	 * 计算所有矩阵的范数
+	 *
+	 * @param norm
+	 * @param matrixes
+	 * @return
+	 */
+	static float getNorm(Norm norm, Collection<MathMatrix> matrixes) {
+		List<MathVector> vectors = new ArrayList<>();
+		long elementSize = 0L;
+		float accumulation = 0F;
+		for (MathMatrix matrix : matrixes) {
+			if (matrix instanceof Nd4jMatrix) {
+				accumulation = norm.merge(accumulation, norm.reduce(Nd4jMatrix.class.cast(matrix).getArray()));
+			} else {
+				elementSize += getVectors(matrix, vectors);
+			}
+		}
+		accumulation = norm.merge(accumulation, iterateVectors(vectors, elementSize, norm, (vector, value) -> {
+			for (int position = 0, size = vector.getElementSize(); position < size; position++) {
+				value = norm.reduce(value, vector.getValue(position));
+			}
+			return value;
+		}));
+		return norm.complete(accumulation);
+	}
+
+	/**
+	 * 缩放所有矩阵
+	 *
+	 * @param matrixes
+	 * @param scale
+	 */
+	static void scaleValues(Collection<MathMatrix> matrixes, float scale) {
+		List<MathVector> vectors = new ArrayList<>();
+		long elementSize = 0L;
+		for (MathMatrix matrix : matrixes) {
+			if (matrix instanceof Nd4jMatrix) {
+				matrix.scaleValues(scale);
+			} else {
+				elementSize += getVectors(matrix, vectors);
+			}
+		}
+		iterateVectors(vectors, elementSize, Norm.L1, (vector, value) -> {
+			for (int position = 0, size = vector.getElementSize(); position < size; position++) {
+				vector.scaleValue(position, scale);
+			}
+			return value;
+		});
+	}
+
+	/**
+	 * 按照阈值截断所有矩阵的元素
+	 *
+	 * @param matrixes
+	 * @param threshold
+	 */
+	static void clipValues(Collection<MathMatrix> matrixes, float threshold) {
+		List<MathVector> vectors = new ArrayList<>();
+		long elementSize = 0L;
+		for (MathMatrix matrix : matrixes) {
+			if (matrix instanceof Nd4jMatrix) {
+				// Nd4jMatrix的迭代器会批量同步数据
+				matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+					float value = scalar.getValue();
+					scalar.setValue(value < -threshold ? -threshold : (value > threshold ? threshold : value));
+				});
+			} else {
+				elementSize += getVectors(matrix, vectors);
+			}
+		}
+		iterateVectors(vectors, elementSize, Norm.L1, (vector, value) -> {
+			for (int position = 0, size = vector.getElementSize(); position < size; position++) {
+				float element = vector.getValue(position);
+				if (element < -threshold) {
+					vector.setValue(position, -threshold);
+				} else if (element > threshold) {
+					vector.setValue(position, threshold);
+				}
+			}
+			return value;
+		});
+	}
+
+}
@@ -1,22 +1,54 @@
 package com.jstarcraft.ai.neuralnetwork.parameter;
 
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.algorithm.distribution.Probability;
+import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.core.utility.RandomUtility;
 
+/**
+ * 分布参数工厂
+ * 
+ * <pre>
+ * 使用{@link CounterRandom}与逆累积分布函数并行设置参数值(不使用分布自身有状态的生成器),相同的种子得到相同的参数,与线程数量无关.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public class DistributionParameterFactory implements ParameterFactory {
 
 	private Probability<Number> probability;
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经设置的矩阵数量(每个矩阵使用独立的流,保证共享同一个工厂的矩阵互不相同) */
+	private long times;
+
 	DistributionParameterFactory() {
 	}
 
 	public DistributionParameterFactory(Probability<Number> probability) {
+		this(probability, RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public DistributionParameterFactory(Probability<Number> probability, long seed) {
 		this.probability = probability;
+		this.random = new CounterRandom(seed);
 	}
 
 	@Override
 	public void setValues(MathMatrix matrix) {
-		// TODO Auto-generated method stub
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
+		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+			double value = stream.randomProbability((long) scalar.getRow() * columnSize + scalar.getColumn());
+			scalar.setValue(probability.inverseDistribution(value).floatValue());
+		});
 	}
 
 }
@@ -1,19 +1,49 @@
 package com.jstarcraft.ai.neuralnetwork.parameter;
 
 import org.apache.commons.math3.util.FastMath;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.core.utility.RandomUtility;
 
+/**
+ * 正态分布参数工厂
+ * 
+ * <pre>
+ * N(0, 1) / sqrt(rowSize)
+ * 使用{@link CounterRandom}并行设置参数值,相同的种子得到相同的参数,与线程数量无关.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public class NormalParameterFactory implements ParameterFactory {
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经设置的矩阵数量(每个矩阵使用独立的流,保证共享同一个工厂的矩阵互不相同) */
+	private long times;
+
+	public NormalParameterFactory() {
+		this(RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public NormalParameterFactory(long seed) {
+		this.random = new CounterRandom(seed);
+	}
+
 	@Override
 	public void setValues(MathMatrix matrix) {
-		INDArray ndArray = Nd4j.randn(new int[] { matrix.getRowSize(), matrix.getColumnSize() }).divi(FastMath.sqrt(matrix.getRowSize()));
-		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
-			scalar.setValue(ndArray.getFloat(scalar.getRow(), scalar.getColumn()));
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
+		float scale = (float) FastMath.sqrt(matrix.getRowSize());
+		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+			scalar.setValue(stream.randomGaussian((long) scalar.getRow() * columnSize + scalar.getColumn()) / scale);
 		});
 	}
 
@@ -28,18 +58,19 @@ public class NormalParameterFactory implements ParameterFactory {
 		if (getClass() != object.getClass()) {
 			return false;
 		} else {
-			return true;
+			NormalParameterFactory that = (NormalParameterFactory) object;
+			return this.random.equals(that.random);
 		}
 	}
 
 	@Override
 	public int hashCode() {
-		return getClass().hashCode();
+		return random.hashCode();
 	}
 
 	@Override
 	public String toString() {
-		return "NormalParameterFactory()";
+		return "NormalParameterFactory(seed=" + random.getSeed() + ")";
 	}
 
 }
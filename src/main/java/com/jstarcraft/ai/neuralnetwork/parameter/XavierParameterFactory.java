@@ -1,20 +1,76 @@
 package com.jstarcraft.ai.neuralnetwork.parameter;
 
 import org.apache.commons.math3.util.FastMath;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
+import com.jstarcraft.ai.math.algorithm.distribution.CounterRandom;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.core.utility.RandomUtility;
 
+/**
+ * Xavier参数工厂
+ * 
+ * <pre>
+ * N(0, 1) * sqrt(2 / (rowSize + columnSize))
+ * 使用{@link CounterRandom}并行设置参数值,相同的种子得到相同的参数,与线程数量无关.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
 public class XavierParameterFactory implements ParameterFactory {
 
+	/** 随机数生成器 */
+	private CounterRandom random;
+
+	/** 已经设置的矩阵数量(每个矩阵使用独立的流,保证共享同一个工厂的矩阵互不相同) */
+	private long times;
+
+	public XavierParameterFactory() {
+		this(RandomUtility.randomInteger(Integer.MAX_VALUE));
+	}
+
+	public XavierParameterFactory(long seed) {
+		this.random = new CounterRandom(seed);
+	}
+
 	@Override
 	public void setValues(MathMatrix matrix) {
-		INDArray ndArray = Nd4j.randn(new int[] { matrix.getRowSize(), matrix.getColumnSize() }).muli(FastMath.sqrt(2D / (matrix.getRowSize() + matrix.getColumnSize())));
-		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
-			scalar.setValue(ndArray.getFloat(scalar.getRow(), scalar.getColumn()));
+		CounterRandom stream;
+		synchronized (this) {
+			stream = random.split(times++);
+		}
+		int columnSize = matrix.getColumnSize();
+		float scale = (float) FastMath.sqrt(2D / (matrix.getRowSize() + matrix.getColumnSize()));
+		matrix.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+			scalar.setValue(stream.randomGaussian((long) scalar.getRow() * columnSize + scalar.getColumn()) * scale);
 		});
 	}
 
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			XavierParameterFactory that = (XavierParameterFactory) object;
+			return this.random.equals(that.random);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return random.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "XavierParameterFactory(seed=" + random.getSeed() + ")";
+	}
+
 }
@@ -5,6 +5,7 @@ import java.util.Map.Entry;
 
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 
 public class PositiveGradientStepFunction implements StepFunction {
 
@@ -14,12 +15,22 @@ public class PositiveGradientStepFunction implements StepFunction {
 		for (Entry<String, MathMatrix> keyValue : parameters.entrySet()) {
 			MathMatrix parameter = keyValue.getValue();
 			MathMatrix direction = directions.get(keyValue.getKey());
-			parameter.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
-				int row = scalar.getRow();
-				int column = scalar.getColumn();
-				float value = scalar.getValue();
-				scalar.setValue(value + direction.getValue(row, column));
-			});
+			if (direction instanceof RowSparseMatrix) {
+				// 稀疏梯度只更新已知的行
+				direction.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+					int row = scalar.getRow();
+					int column = scalar.getColumn();
+					float value = parameter.getValue(row, column);
+					parameter.setValue(row, column, value + scalar.getValue());
+				});
+			} else {
+				parameter.iterateElement(MathCalculator.PARALLEL, (scalar) -> {
+					int row = scalar.getRow();
+					int column = scalar.getColumn();
+					float value = scalar.getValue();
+					scalar.setValue(value + direction.getValue(row, column));
+				});
+			}
 		}
 	}
 
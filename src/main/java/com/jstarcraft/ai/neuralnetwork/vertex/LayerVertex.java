@@ -34,6 +34,9 @@ public class LayerVertex extends AbstractVertex {
 
 	protected int epoch, iteration;
 
+	/** 是否延迟执行标准器与学习器(梯度累积模式由计算图在累积完毕之后执行) */
+	protected boolean accumulation;
+
 	protected LayerVertex() {
 	}
 
@@ -69,6 +72,15 @@ public class LayerVertex extends AbstractVertex {
 	@Override
 	public void doBackward() {
 		layer.doBackward();
+		if (!accumulation) {
+			doLearn();
+		}
+	}
+
+	/**
+	 * 执行标准器与学习器
+	 */
+	public void doLearn() {
 		Map<String, MathMatrix> gradients = layer.getGradients();
 		// TODO 执行标准器(标准化)
 		normalizer.normalize(gradients);
@@ -76,6 +88,15 @@ public class LayerVertex extends AbstractVertex {
 		learner.learn(gradients, iteration++, epoch);
 	}
 
+	/**
+	 * 设置是否延迟执行标准器与学习器
+	 * 
+	 * @param accumulation
+	 */
+	public void setAccumulation(boolean accumulation) {
+		this.accumulation = accumulation;
+	}
+
 	public Layer getLayer() {
 		return layer;
 	}
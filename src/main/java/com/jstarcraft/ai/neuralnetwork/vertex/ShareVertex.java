@@ -1,18 +1,24 @@
 package com.jstarcraft.ai.neuralnetwork.vertex;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.math.structure.MathCache;
 import com.jstarcraft.ai.math.structure.matrix.ColumnCompositeMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.SectionMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
 import com.jstarcraft.ai.model.ModelDefinition;
 import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
 import com.jstarcraft.ai.neuralnetwork.learn.IgnoreLearner;
 import com.jstarcraft.ai.neuralnetwork.learn.Learner;
 import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
@@ -22,6 +28,14 @@ import com.jstarcraft.core.utility.KeyValue;
 /**
  * 共享节点
  * 
+ * <pre>
+ * 每个共享使用独立的层副本(共享参数,独立的缓存与梯度,独立的Dropout随机流).
+ * 共享数量不少于数据结构线程数量时,每个共享分派到一个数据结构线程(共享内部的数据结构指令串行执行);
+ * 否则按顺序执行共享,由共享内部的数据结构指令并发.
+ * 反向传播之后各个副本的梯度按照二叉树归约到原始层的梯度(行稀疏梯度只归约已知的行).
+ * 输入按照列切分为视图(组合矩阵的切分与组件边界对齐时直接使用组件,否则使用SectionMatrix),不复制数据.
+ * </pre>
+ * 
  * @author Birdy
  *
  */
@@ -32,21 +46,8 @@ public class ShareVertex extends LayerVertex {
 
 	private KeyValue<MathMatrix, MathMatrix> middleKeyValue;
 
-	private Map<String, MathMatrix> vertexGradients;
-
-	private MathMatrix inputGlobalData;
-	private MathMatrix middleGlobalData;
-	private MathMatrix outputGlobalData;
-	private MathMatrix outterGlobalError;
-	private MathMatrix middleGlobalError;
-	private MathMatrix innerGlobalError;
-
-	private MathMatrix[] inputLocalDatas;
-	private MathMatrix[] middleLocalDatas;
-	private MathMatrix[] outputLocalDatas;
-	private MathMatrix[] outterLocalErrors;
-	private MathMatrix[] middleLocalErrors;
-	private MathMatrix[] innerLocalErrors;
+	/** 每个共享的层(第0个为原始层) */
+	private Layer[] layers;
 
 	protected ShareVertex() {
 	}
@@ -58,11 +59,141 @@ public class ShareVertex extends LayerVertex {
 	public ShareVertex(String name, MathCache factory, int numberOfShares, Layer layer, Learner learner, Normalizer normalizer) {
 		super(name, factory, layer, learner, normalizer);
 		this.numberOfShares = numberOfShares;
-		this.vertexGradients = new HashMap<>(layer.getGradients());
-		for (Entry<String, MathMatrix> term : vertexGradients.entrySet()) {
-			MathMatrix matrix = term.getValue();
-			matrix = factory.makeMatrix(matrix.getRowSize(), matrix.getColumnSize());
-			term.setValue(matrix);
+	}
+
+	/**
+	 * 获取列切分的视图
+	 * 
+	 * @param matrix
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static MathMatrix getSection(MathMatrix matrix, int from, int to) {
+		if (matrix instanceof ColumnCompositeMatrix) {
+			ColumnCompositeMatrix composite = ColumnCompositeMatrix.class.cast(matrix);
+			int split = 0;
+			boolean aligned = false;
+			for (int index = 0, size = composite.getComponentSize(); index < size && split < to; index++) {
+				if (split == from) {
+					aligned = true;
+				}
+				split += composite.getComponentMatrix(index).getColumnSize();
+			}
+			if (aligned && split == to) {
+				return ColumnCompositeMatrix.detachOf(composite, from, to);
+			}
+		}
+		return new SectionMatrix(matrix, from, to, 0, matrix.getRowSize());
+	}
+
+	/**
+	 * 构建每个共享的层副本(共享原始层的参数)
+	 */
+	private void constructLayers() {
+		if (layers == null || layers.length != numberOfShares) {
+			layers = new Layer[numberOfShares];
+			layers[0] = layer;
+			byte[] data = ModelCodec.KRYO.encodeModel(layer);
+			for (int shareIndex = 1; shareIndex < numberOfShares; shareIndex++) {
+				layers[shareIndex] = (Layer) ModelCodec.KRYO.decodeModel(data);
+				if (layer instanceof WeightLayer) {
+					// 副本会复制掩码器的种子,必须派生独立的随机流
+					WeightLayer copy = WeightLayer.class.cast(layers[shareIndex]);
+					if (copy.getDropout() != null) {
+						copy.setDropout(WeightLayer.class.cast(layer).getDropout().split(shareIndex));
+					}
+				}
+			}
+		}
+		for (int shareIndex = 1; shareIndex < numberOfShares; shareIndex++) {
+			layers[shareIndex].getParameters().putAll(layer.getParameters());
+		}
+	}
+
+	/**
+	 * 访问共享
+	 * 
+	 * @author Birdy
+	 *
+	 */
+	private interface ShareAccessor {
+
+		void accessShare(int shareIndex);
+
+	}
+
+	/**
+	 * 访问共享
+	 * 
+	 * <pre>
+	 * 共享数量少于数据结构线程数量时按顺序执行,保留共享内部数据结构指令的并发;
+	 * 否则每个共享分派到一个数据结构线程.
+	 * </pre>
+	 * 
+	 * @param from
+	 * @param to
+	 * @param step
+	 * @param accessor
+	 */
+	private void iterateShares(int from, int to, int step, ShareAccessor accessor) {
+		EnvironmentContext context = EnvironmentContext.getContext();
+		if (numberOfShares < context.getNumberOfThreads()) {
+			for (int shareIndex = from; shareIndex < to; shareIndex += step) {
+				accessor.accessShare(shareIndex);
+			}
+			return;
+		}
+		int size = (to - from + step - 1) / step;
+		CountDownLatch latch = new CountDownLatch(size);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (int shareIndex = from; shareIndex < to; shareIndex += step) {
+			int index = shareIndex;
+			context.doStructureByAny(index, () -> {
+				try {
+					accessor.accessShare(index);
+				} catch (Throwable throwable) {
+					failure.compareAndSet(null, throwable);
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+		Throwable throwable = failure.get();
+		if (throwable instanceof RuntimeException) {
+			throw RuntimeException.class.cast(throwable);
+		}
+		if (throwable instanceof Error) {
+			throw Error.class.cast(throwable);
+		}
+		if (throwable != null) {
+			throw new RuntimeException(throwable);
+		}
+	}
+
+	/**
+	 * 把右侧的梯度归约到左侧的梯度
+	 * 
+	 * @param left
+	 * @param right
+	 */
+	private static void reduceGradient(MathMatrix left, MathMatrix right) {
+		if (right instanceof RowSparseMatrix) {
+			// 只归约已知的行
+			RowSparseMatrix from = RowSparseMatrix.class.cast(right);
+			RowSparseMatrix to = RowSparseMatrix.class.cast(left);
+			for (int position = 0, size = from.getKnownRowSize(); position < size; position++) {
+				int row = from.getKnownRowIndex(position);
+				to.attachRow(row);
+				to.getRowVector(row).addVector(from.getRowVector(row));
+			}
+		} else {
+			left.addMatrix(right, false);
 		}
 	}
 
@@ -77,12 +208,11 @@ public class ShareVertex extends LayerVertex {
 		this.outputKeyValue = new KeyValue<>(null, null);
 		this.middleKeyValue = new KeyValue<>(null, null);
 
-		inputLocalDatas = new MathMatrix[numberOfShares];
-		middleLocalDatas = new MathMatrix[numberOfShares];
-		outputLocalDatas = new MathMatrix[numberOfShares];
-		outterLocalErrors = new MathMatrix[numberOfShares];
-		middleLocalErrors = new MathMatrix[numberOfShares];
-		innerLocalErrors = new MathMatrix[numberOfShares];
+		constructLayers();
+		MathMatrix[] middleLocalDatas = new MathMatrix[numberOfShares];
+		MathMatrix[] outputLocalDatas = new MathMatrix[numberOfShares];
+		MathMatrix[] middleLocalErrors = new MathMatrix[numberOfShares];
+		MathMatrix[] innerLocalErrors = new MathMatrix[numberOfShares];
 
 		for (int shareIndex = 0; shareIndex < numberOfShares; shareIndex++) {
 			// 输入部分
@@ -91,25 +221,15 @@ public class ShareVertex extends LayerVertex {
 			int from = shareIndex * key.getColumnSize() / numberOfShares;
 			int to = from + key.getColumnSize() / numberOfShares;
 
-			if (key instanceof ColumnCompositeMatrix) {
-				key = ColumnCompositeMatrix.detachOf(ColumnCompositeMatrix.class.cast(key), from, to);
-				if (value != null) {
-					value = ColumnCompositeMatrix.detachOf(ColumnCompositeMatrix.class.cast(value), from, to);
-				}
-			} else {
-				key = new SectionMatrix(key, from, to, 0, key.getRowSize());
-				if (value != null) {
-					value = new SectionMatrix(value, from, to, 0, key.getRowSize());
-				}
+			key = getSection(key, from, to);
+			if (value != null) {
+				value = getSection(value, from, to);
 			}
 
-			KeyValue<MathMatrix, MathMatrix> keyValue = new KeyValue<>(key, value);
-			layer.doCache(factory, keyValue);
+			Layer layer = layers[shareIndex];
+			layer.doCache(factory, new KeyValue<>(key, value));
 
-			keyValue = layer.getInputKeyValue();
-			inputLocalDatas[shareIndex] = keyValue.getKey();
-			outterLocalErrors[shareIndex] = keyValue.getValue();
-			keyValue = layer.getMiddleKeyValue();
+			KeyValue<MathMatrix, MathMatrix> keyValue = layer.getMiddleKeyValue();
 			middleLocalDatas[shareIndex] = keyValue.getKey();
 			middleLocalErrors[shareIndex] = keyValue.getValue();
 			keyValue = layer.getOutputKeyValue();
@@ -117,22 +237,13 @@ public class ShareVertex extends LayerVertex {
 			innerLocalErrors[shareIndex] = keyValue.getValue();
 		}
 
-		inputGlobalData = ColumnCompositeMatrix.attachOf(inputLocalDatas);
-		middleGlobalData = ColumnCompositeMatrix.attachOf(middleLocalDatas);
-		outputGlobalData = ColumnCompositeMatrix.attachOf(outputLocalDatas);
-		if (inputKeyValues[0].getValue() != null) {
-			outterGlobalError = ColumnCompositeMatrix.attachOf(outterLocalErrors);
-		}
-		middleGlobalError = ColumnCompositeMatrix.attachOf(middleLocalErrors);
-		innerGlobalError = ColumnCompositeMatrix.attachOf(innerLocalErrors);
-
 		// 中间部分
-		middleKeyValue.setKey(middleGlobalData);
-		middleKeyValue.setValue(middleGlobalError);
+		middleKeyValue.setKey(ColumnCompositeMatrix.attachOf(middleLocalDatas));
+		middleKeyValue.setValue(ColumnCompositeMatrix.attachOf(middleLocalErrors));
 
 		// 输出部分
-		outputKeyValue.setKey(outputGlobalData);
-		outputKeyValue.setValue(innerGlobalError);
+		outputKeyValue.setKey(ColumnCompositeMatrix.attachOf(outputLocalDatas));
+		outputKeyValue.setValue(ColumnCompositeMatrix.attachOf(innerLocalErrors));
 
 		learner.doCache(layer.getGradients());
 		epoch++;
@@ -141,16 +252,11 @@ public class ShareVertex extends LayerVertex {
 
 	@Override
 	public void doForward() {
-		for (int shareIndex = 0; shareIndex < numberOfShares; shareIndex++) {
-			MathMatrix inputLocalData = inputLocalDatas[shareIndex];
-			MathMatrix middleLocalData = middleLocalDatas[shareIndex];
-			MathMatrix outputLocalData = outputLocalDatas[shareIndex];
-
-			layer.getInputKeyValue().setKey(inputLocalData);
-			layer.getMiddleKeyValue().setKey(middleLocalData);
-			layer.getOutputKeyValue().setKey(outputLocalData);
-			layer.doForward();
-		}
+		Mode mode = layer.getMode();
+		iterateShares(0, numberOfShares, 1, (shareIndex) -> {
+			layers[shareIndex].setMode(mode);
+			layers[shareIndex].doForward();
+		});
 
 		MathMatrix innerError = outputKeyValue.getValue();
 		innerError.setValues(0F);
@@ -158,43 +264,30 @@ public class ShareVertex extends LayerVertex {
 
 	@Override
 	public void doBackward() {
-		for (Entry<String, MathMatrix> term : vertexGradients.entrySet()) {
-			MathMatrix matrix = term.getValue();
-			matrix.setValues(0F);
-		}
-		Map<String, MathMatrix> layerGradients = layer.getGradients();
+		iterateShares(0, numberOfShares, 1, (shareIndex) -> {
+			layers[shareIndex].doBackward();
+		});
 
-		for (int shareIndex = 0; shareIndex < numberOfShares; shareIndex++) {
-			MathMatrix inputLocalData = inputLocalDatas[shareIndex];
-			MathMatrix middleLocalData = middleLocalDatas[shareIndex];
-			MathMatrix outputLocalData = outputLocalDatas[shareIndex];
-			MathMatrix outterLocalError = outterLocalErrors[shareIndex];
-			MathMatrix innerLocalError = innerLocalErrors[shareIndex];
-
-			layer.getInputKeyValue().setKey(inputLocalData);
-			layer.getMiddleKeyValue().setKey(middleLocalData);
-			layer.getOutputKeyValue().setKey(outputLocalData);
-			layer.getInputKeyValue().setValue(outterLocalError);
-			layer.getOutputKeyValue().setValue(innerLocalError);
-			layer.doBackward();
-
-			for (Entry<String, MathMatrix> term : vertexGradients.entrySet()) {
-				MathMatrix vertexGradient = term.getValue();
-				MathMatrix layerGradient = layerGradients.get(term.getKey());
-				vertexGradient.addMatrix(layerGradient, false);
-			}
+		// 按照二叉树归约梯度
+		Map<String, MathMatrix> layerGradients = layer.getGradients();
+		for (int step = 1; step < numberOfShares; step <<= 1) {
+			int stride = step;
+			// 每一对由左侧的共享负责
+			iterateShares(0, numberOfShares - stride, stride << 1, (shareIndex) -> {
+				Map<String, MathMatrix> leftGradients = layers[shareIndex].getGradients();
+				Map<String, MathMatrix> rightGradients = layers[shareIndex + stride].getGradients();
+				for (Entry<String, MathMatrix> term : leftGradients.entrySet()) {
+					reduceGradient(term.getValue(), rightGradients.get(term.getKey()));
+				}
+			});
 		}
 		float scale = 1F / numberOfShares;
-		for (Entry<String, MathMatrix> term : layerGradients.entrySet()) {
-			MathMatrix vertexGradient = vertexGradients.get(term.getKey());
-			vertexGradient.scaleValues(scale);
-			MathMatrix layerGradient = term.getValue();
-			layerGradient.copyMatrix(vertexGradient, false);
-		}
-		// TODO 执行标准器(标准化)
-		normalizer.normalize(layerGradients);
-		// 执行学习器(自适应学习率)
-		learner.learn(layerGradients, iteration++, epoch);
+		for (MathMatrix layerGradient : layerGradients.values()) {
+			layerGradient.scaleValues(scale);
+		}
+		if (!accumulation) {
+			doLearn();
+		}
 	}
 
 	public Layer getLayer() {
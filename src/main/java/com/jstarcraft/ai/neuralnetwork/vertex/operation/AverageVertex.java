@@ -51,6 +51,17 @@ public class AverageVertex extends PlusVertex {
 		});
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		float scale = 1F / size;
+		return super.forwardElement(inputs, size) * scale;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		super.backwardElement(inputs, size, output, error / size, errors);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
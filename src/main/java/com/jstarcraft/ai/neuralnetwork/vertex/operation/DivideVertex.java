@@ -19,7 +19,7 @@ import com.jstarcraft.core.utility.KeyValue;
  * @author Birdy
  *
  */
-public class DivideVertex extends AbstractVertex {
+public class DivideVertex extends AbstractVertex implements ElementVertex {
 
 	protected DivideVertex() {
 	}
@@ -87,13 +87,26 @@ public class DivideVertex extends AbstractVertex {
 			}
 			if (rightInputError != null) {
 				MathMatrix leftInputData = inputKeyValues[0].getKey();
+				MathMatrix rightInputData = inputKeyValues[1].getKey();
+				float rightValue = rightInputData.getValue(row, column);
 				// TODO 使用累计的方式计算
 				// TODO 需要锁机制,否则并发计算会导致Bug
-				rightInputError.shiftValue(row, column, value * leftInputData.getValue(row, column));
+				rightInputError.shiftValue(row, column, -value * leftInputData.getValue(row, column) / (rightValue * rightValue));
 			}
 		});
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		return inputs[0] / inputs[1];
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		errors[0] = error / inputs[1];
+		errors[1] = -error * inputs[0] / (inputs[1] * inputs[1]);
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -121,7 +134,7 @@ public class DivideVertex extends AbstractVertex {
 
 	@Override
 	public String toString() {
-		return "MinusVertex(name=" + vertexName + ")";
+		return "DivideVertex(name=" + vertexName + ")";
 	}
 
 }
@@ -0,0 +1,45 @@
+package com.jstarcraft.ai.neuralnetwork.vertex.operation;
+
+import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+
+/**
+ * 逐元素节点
+ * 
+ * <pre>
+ * 输出的每个元素只依赖于所有输入相同位置的元素,所以相连的逐元素节点可以融合为{@link FusionVertex}.
+ * 按元素计算的结果必须与节点按矩阵计算的结果一致.
+ * </pre>
+ * 
+ * @author Birdy
+ *
+ */
+public interface ElementVertex extends Vertex {
+
+	/**
+	 * 正向计算元素
+	 * 
+	 * @param inputs
+	 *            输入的元素
+	 * @param size
+	 *            输入的数量
+	 * @return 输出的元素
+	 */
+	float forwardElement(float[] inputs, int size);
+
+	/**
+	 * 反向计算元素
+	 * 
+	 * @param inputs
+	 *            输入的元素
+	 * @param size
+	 *            输入的数量
+	 * @param output
+	 *            输出的元素
+	 * @param error
+	 *            输出的误差
+	 * @param errors
+	 *            每个输入的误差(覆盖)
+	 */
+	void backwardElement(float[] inputs, int size, float output, float error, float[] errors);
+
+}
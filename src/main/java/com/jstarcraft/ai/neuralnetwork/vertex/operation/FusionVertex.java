@@ -0,0 +1,261 @@
+package com.jstarcraft.ai.neuralnetwork.vertex.operation;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelDefinition;
+import com.jstarcraft.ai.neuralnetwork.vertex.AbstractVertex;
+import com.jstarcraft.core.utility.KeyValue;
+
+/**
+ * 融合节点
+ *
+ * <pre>
+ * 由{@link com.jstarcraft.ai.neuralnetwork.GraphConfigurator}把相连的{@link ElementVertex}融合而成(中间节点只有一个后继节点).
+ * 正向传播与反向传播各自只遍历一次元素,中间结果只保存在每个线程的临时数组,不分配中间节点的输出与误差矩阵.
+ * 反向传播按元素重新计算中间结果,然后按照节点的逆序传播误差,数值结果与逐个节点执行一致.
+ * </pre>
+ *
+ * @author Birdy
+ *
+ */
+@ModelDefinition(value = { "vertexName", "factory", "vertices", "operands" })
+public class FusionVertex extends AbstractVertex {
+
+	/** 每个线程分配的块数量(用于平衡负载) */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/** 融合的节点(按照拓扑排序,最后一个为输出节点) */
+	private ElementVertex[] vertices;
+
+	/** 每个节点的操作数(非负数为输入的索引,负数为-(节点索引 + 1)) */
+	private int[][] operands;
+
+	/** 最大的操作数数量 */
+	private int capacity;
+
+	protected FusionVertex() {
+	}
+
+	public FusionVertex(String name, MathCache factory, ElementVertex[] vertices, int[][] operands) {
+		super(name, factory);
+		if (vertices.length == 0 || vertices.length != operands.length) {
+			throw new IllegalArgumentException();
+		}
+		this.vertices = vertices;
+		this.operands = operands;
+	}
+
+	@Override
+	public void doCache(KeyValue<MathMatrix, MathMatrix>... samples) {
+		super.doCache(samples);
+
+		// 检查样本的数量是否一样
+		int rowSize = samples[0].getKey().getRowSize();
+		for (int position = 1; position < samples.length; position++) {
+			if (rowSize != samples[position].getKey().getRowSize()) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		// 检查样本的维度是否一样
+		int columnSize = samples[0].getKey().getColumnSize();
+		for (int position = 1; position < samples.length; position++) {
+			if (columnSize != samples[position].getKey().getColumnSize()) {
+				throw new IllegalArgumentException();
+			}
+		}
+
+		MathMatrix outputData = factory.makeMatrix(rowSize, columnSize);
+		outputKeyValue.setKey(outputData);
+		MathMatrix innerError = factory.makeMatrix(rowSize, columnSize);
+		outputKeyValue.setValue(innerError);
+
+		capacity = 0;
+		for (int[] operand : operands) {
+			capacity = Math.max(capacity, operand.length);
+		}
+	}
+
+	/**
+	 * 行访问器
+	 *
+	 * @author Birdy
+	 *
+	 */
+	private interface RowAccessor {
+
+		/**
+		 * 访问行
+		 *
+		 * @param row
+		 * @param values
+		 *            每个节点的输出
+		 * @param errors
+		 *            每个节点的误差
+		 * @param inputs
+		 *            操作数的元素
+		 * @param gradients
+		 *            操作数的误差
+		 */
+		void accessRow(int row, float[] values, float[] errors, float[] inputs, float[] gradients);
+
+	}
+
+	/**
+	 * 按行分块并行访问(每个块使用独立的临时数组)
+	 *
+	 * @param rowSize
+	 * @param accessor
+	 */
+	private void iterateRows(int rowSize, RowAccessor accessor) {
+		int size = vertices.length;
+		EnvironmentContext context = EnvironmentContext.getContext();
+		int blockSize = Math.min(rowSize, context.getNumberOfThreads() * BLOCKS_PER_THREAD);
+		Semaphore semaphore = MathCalculator.getSemaphore();
+		for (int block = 0; block < blockSize; block++) {
+			int index = block;
+			int from = (int) ((long) rowSize * index / blockSize);
+			int to = (int) ((long) rowSize * (index + 1) / blockSize);
+			context.doStructureByAny(index, () -> {
+				try {
+					float[] values = new float[size];
+					float[] errors = new float[size];
+					float[] inputs = new float[capacity];
+					float[] gradients = new float[capacity];
+					for (int row = from; row < to; row++) {
+						accessor.accessRow(row, values, errors, inputs, gradients);
+					}
+				} finally {
+					semaphore.release();
+				}
+			});
+		}
+		try {
+			semaphore.acquire(blockSize);
+		} catch (Exception exception) {
+			throw new RuntimeException(exception);
+		}
+	}
+
+	/**
+	 * 收集节点的操作数
+	 *
+	 * @param step
+	 * @param row
+	 * @param column
+	 * @param values
+	 * @param inputs
+	 */
+	private void collectOperands(int step, int row, int column, float[] values, float[] inputs) {
+		int[] operand = operands[step];
+		for (int position = 0, size = operand.length; position < size; position++) {
+			int index = operand[position];
+			inputs[position] = index >= 0 ? inputKeyValues[index].getKey().getValue(row, column) : values[-index - 1];
+		}
+	}
+
+	/**
+	 * 按元素正向计算所有节点
+	 *
+	 * @param row
+	 * @param column
+	 * @param values
+	 * @param inputs
+	 * @return
+	 */
+	private float forwardElement(int row, int column, float[] values, float[] inputs) {
+		for (int step = 0, size = vertices.length; step < size; step++) {
+			collectOperands(step, row, column, values, inputs);
+			values[step] = vertices[step].forwardElement(inputs, operands[step].length);
+		}
+		return values[vertices.length - 1];
+	}
+
+	@Override
+	public void doForward() {
+		MathMatrix outputData = outputKeyValue.getKey();
+		int columnSize = outputData.getColumnSize();
+		iterateRows(outputData.getRowSize(), (row, values, errors, inputs, gradients) -> {
+			for (int column = 0; column < columnSize; column++) {
+				outputData.setValue(row, column, forwardElement(row, column, values, inputs));
+			}
+		});
+		MathMatrix innerError = outputKeyValue.getValue();
+		innerError.setValues(0F);
+	}
+
+	@Override
+	public void doBackward() {
+		MathMatrix innerError = outputKeyValue.getValue();
+		int columnSize = innerError.getColumnSize();
+		int last = vertices.length - 1;
+		iterateRows(innerError.getRowSize(), (row, values, errors, inputs, gradients) -> {
+			for (int column = 0; column < columnSize; column++) {
+				forwardElement(row, column, values, inputs);
+				Arrays.fill(errors, 0F);
+				errors[last] = innerError.getValue(row, column);
+				for (int step = last; step >= 0; step--) {
+					int[] operand = operands[step];
+					collectOperands(step, row, column, values, inputs);
+					vertices[step].backwardElement(inputs, operand.length, values[step], errors[step], gradients);
+					for (int position = 0, size = operand.length; position < size; position++) {
+						int index = operand[position];
+						if (index >= 0) {
+							MathMatrix outerError = inputKeyValues[index].getValue();
+							if (outerError != null) {
+								// TODO 使用累计的方式计算
+								// TODO 需要锁机制,否则并发计算会导致Bug
+								outerError.shiftValue(row, column, gradients[position]);
+							}
+						} else {
+							errors[-index - 1] += gradients[position];
+						}
+					}
+				}
+			}
+		});
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null) {
+			return false;
+		}
+		if (getClass() != object.getClass()) {
+			return false;
+		} else {
+			FusionVertex that = (FusionVertex) object;
+			EqualsBuilder equal = new EqualsBuilder();
+			equal.append(this.vertexName, that.vertexName);
+			equal.append(this.vertices, that.vertices);
+			equal.append(this.operands, that.operands);
+			return equal.isEquals();
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		HashCodeBuilder hash = new HashCodeBuilder();
+		hash.append(vertexName);
+		hash.append(vertices);
+		hash.append(operands);
+		return hash.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "FusionVertex(name=" + vertexName + ", vertices=" + Arrays.toString(vertices) + ")";
+	}
+
+}
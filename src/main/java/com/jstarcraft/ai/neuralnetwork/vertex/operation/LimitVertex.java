@@ -21,7 +21,7 @@ import com.jstarcraft.core.utility.KeyValue;
  *
  */
 @ModelDefinition(value = { "vertexName", "factory", "mode" })
-public class LimitVertex extends AbstractVertex {
+public class LimitVertex extends AbstractVertex implements ElementVertex {
 
 	public enum Mode {
 		Maximum, Minimum;
@@ -66,7 +66,7 @@ public class LimitVertex extends AbstractVertex {
 		MathMatrix innerError = factory.makeMatrix(rowSize, columnSize);
 		outputKeyValue.setValue(innerError);
 
-		limitIndexes = factory.makeMatrix(rowSize, 1);
+		limitIndexes = factory.makeMatrix(rowSize, columnSize);
 	}
 
 	@Override
@@ -136,6 +136,72 @@ public class LimitVertex extends AbstractVertex {
 		});
 	}
 
+	/**
+	 * 获取极限值的索引(与正向传播的比较方式一致)
+	 * 
+	 * @param inputs
+	 * @param size
+	 * @return
+	 */
+	private int getLimit(float[] inputs, int size) {
+		int limit = 0;
+		switch (mode) {
+		case Maximum: {
+			float value = Float.NEGATIVE_INFINITY;
+			for (int index = 0; index < size; index++) {
+				if (value < inputs[index]) {
+					value = inputs[index];
+					limit = index;
+				}
+			}
+			break;
+		}
+		case Minimum: {
+			float value = Float.POSITIVE_INFINITY;
+			for (int index = 0; index < size; index++) {
+				if (value > inputs[index]) {
+					value = inputs[index];
+					limit = index;
+				}
+			}
+			break;
+		}
+		}
+		return limit;
+	}
+
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		float value = 0F;
+		switch (mode) {
+		case Maximum:
+			value = Float.NEGATIVE_INFINITY;
+			for (int index = 0; index < size; index++) {
+				if (value < inputs[index]) {
+					value = inputs[index];
+				}
+			}
+			break;
+		case Minimum:
+			value = Float.POSITIVE_INFINITY;
+			for (int index = 0; index < size; index++) {
+				if (value > inputs[index]) {
+					value = inputs[index];
+				}
+			}
+			break;
+		}
+		return value;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		int limit = getLimit(inputs, size);
+		for (int index = 0; index < size; index++) {
+			errors[index] = index == limit ? error : 0F;
+		}
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -19,7 +19,7 @@ import com.jstarcraft.core.utility.KeyValue;
  * @author Birdy
  *
  */
-public class MinusVertex extends AbstractVertex {
+public class MinusVertex extends AbstractVertex implements ElementVertex {
 
 	protected MinusVertex() {
 	}
@@ -92,6 +92,17 @@ public class MinusVertex extends AbstractVertex {
 		});
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		return inputs[0] - inputs[1];
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		errors[0] = error;
+		errors[1] = -error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
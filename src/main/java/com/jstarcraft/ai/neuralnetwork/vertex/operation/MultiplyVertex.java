@@ -19,7 +19,7 @@ import com.jstarcraft.core.utility.KeyValue;
  * @author Birdy
  *
  */
-public class MultiplyVertex extends AbstractVertex {
+public class MultiplyVertex extends AbstractVertex implements ElementVertex {
 
 	protected MultiplyVertex() {
 	}
@@ -99,6 +99,28 @@ public class MultiplyVertex extends AbstractVertex {
 		});
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		float value = 1F;
+		for (int index = 0; index < size; index++) {
+			value *= inputs[index];
+		}
+		return value;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		for (int thisIndex = 0; thisIndex < size; thisIndex++) {
+			float value = error;
+			for (int thatIndex = 0; thatIndex < size; thatIndex++) {
+				if (thisIndex != thatIndex) {
+					value *= inputs[thatIndex];
+				}
+			}
+			errors[thisIndex] = value;
+		}
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -21,7 +21,7 @@ import com.jstarcraft.core.utility.KeyValue;
  * @author Birdy
  *
  */
-public class PlusVertex extends AbstractVertex {
+public class PlusVertex extends AbstractVertex implements ElementVertex {
 
 	protected PlusVertex() {
 	}
@@ -108,6 +108,22 @@ public class PlusVertex extends AbstractVertex {
 		}
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		float value = 0F;
+		for (int index = 0; index < size; index++) {
+			value += inputs[index];
+		}
+		return value;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		for (int index = 0; index < size; index++) {
+			errors[index] = error;
+		}
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -21,7 +21,7 @@ import com.jstarcraft.core.utility.KeyValue;
  *
  */
 @ModelDefinition(value = { "vertexName", "factory", "scaleFactor" })
-public class ScaleVertex extends AbstractVertex {
+public class ScaleVertex extends AbstractVertex implements ElementVertex {
 
 	private float scaleFactor;
 
@@ -91,6 +91,16 @@ public class ScaleVertex extends AbstractVertex {
 		}
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		return inputs[0] * scaleFactor;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		errors[0] = error * scaleFactor;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
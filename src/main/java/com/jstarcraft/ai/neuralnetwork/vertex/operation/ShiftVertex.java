@@ -21,7 +21,7 @@ import com.jstarcraft.core.utility.KeyValue;
  *
  */
 @ModelDefinition(value = { "vertexName", "factory", "shiftFactor" })
-public class ShiftVertex extends AbstractVertex {
+public class ShiftVertex extends AbstractVertex implements ElementVertex {
 
 	private float shiftFactor;
 
@@ -91,6 +91,16 @@ public class ShiftVertex extends AbstractVertex {
 		}
 	}
 
+	@Override
+	public float forwardElement(float[] inputs, int size) {
+		return inputs[0] + shiftFactor;
+	}
+
+	@Override
+	public void backwardElement(float[] inputs, int size, float output, float error, float[] errors) {
+		errors[0] = error;
+	}
+
 	@Override
 	public boolean equals(Object object) {
 		if (this == object) {
@@ -38,7 +38,8 @@ public class FloatArray implements CapacityArray {
 	public void associateData(float data) {
 		int position = size++ % minimumCapacity;
 		if (position == 0) {
-			if (size >= maximumCapacity) {
+			if (size > maximumCapacity) {
+				size--;
 				current = null;
 				throw new IllegalStateException();
 			} else {
@@ -38,7 +38,8 @@ public class IntegerArray implements CapacityArray {
 	public void associateData(int data) {
 		int position = size++ % minimumCapacity;
 		if (position == 0) {
-			if (size >= maximumCapacity) {
+			if (size > maximumCapacity) {
+				size--;
 				current = null;
 				throw new IllegalStateException();
 			} else {
@@ -3,6 +3,7 @@ package com.jstarcraft.ai.data.module;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.Assert;
@@ -11,6 +12,7 @@ import org.junit.Test;
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
 import com.jstarcraft.ai.data.exception.DataCapacityException;
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.RandomUtility;
 
@@ -90,4 +92,70 @@ public abstract class DataModuleTestCase {
 		}
 	}
 
+	/**
+	 * 检查收集与实例一致
+	 */
+	private void checkGather(DataModule module, int[] cursors) {
+		int[] discreteDatas = new int[cursors.length];
+		float[] continuousDatas = new float[cursors.length];
+		DataInstance instance = module.getInstance(0);
+		for (int index = 0; index < 10; index++) {
+			module.gatherDiscreteFeatures(cursors, index, discreteDatas);
+			module.gatherContinuousFeatures(cursors, index, continuousDatas);
+			for (int position = 0; position < cursors.length; position++) {
+				instance.setCursor(cursors[position]);
+				Assert.assertEquals(instance.getDiscreteFeature(index), discreteDatas[position]);
+				Assert.assertEquals(instance.getContinuousFeature(index), continuousDatas[position], 0F);
+			}
+		}
+		module.gatherDiscreteMarks(cursors, discreteDatas);
+		module.gatherContinuousMarks(cursors, continuousDatas);
+		for (int position = 0; position < cursors.length; position++) {
+			instance.setCursor(cursors[position]);
+			Assert.assertEquals(instance.getDiscreteMark(), discreteDatas[position]);
+			Assert.assertEquals(instance.getContinuousMark(), continuousDatas[position], 0F);
+		}
+	}
+
+	@Test
+	public void testGather() throws Exception {
+		String moduleName = "module";
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		for (int index = 0; index < 10; index++) {
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("ontinuous", false), 1));
+		}
+		int instanceCapacity = 5500;
+		DataModule module = getDataModule(moduleName, moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			for (int feature = 0; feature < 10; feature++) {
+				discreteFeatures.put(feature, index + feature);
+				continuousFeatures.put(feature, index * 0.5F - feature);
+			}
+			module.associateInstance(discreteFeatures, continuousFeatures, index % 7, index * 0.25F);
+		}
+		// 乱序并且重复的游标
+		int[] cursors = new int[instanceCapacity];
+		for (int position = 0; position < cursors.length; position++) {
+			cursors[position] = (position * 7919) % instanceCapacity;
+		}
+		// 串行
+		checkGather(module, cursors);
+		// 并行
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			checkGather(module, cursors);
+			// 非法的游标必须抛出异常,而不是留下未收集的数据
+			int[] illegals = cursors.clone();
+			illegals[illegals.length - 1] = -1;
+			try {
+				module.gatherDiscreteFeatures(illegals, 0, new int[illegals.length]);
+				Assert.fail();
+			} catch (IndexOutOfBoundsException exception) {
+			}
+		});
+		task.get();
+	}
+
 }
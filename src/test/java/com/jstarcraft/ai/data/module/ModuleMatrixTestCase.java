@@ -0,0 +1,176 @@
+package com.jstarcraft.ai.data.module;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.data.DataInstance;
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.math.structure.matrix.MatrixScalar;
+import com.jstarcraft.ai.math.structure.vector.MathVector;
+import com.jstarcraft.ai.math.structure.vector.VectorScalar;
+import com.jstarcraft.ai.utility.IntegerArray;
+import com.jstarcraft.core.utility.KeyValue;
+
+import it.unimi.dsi.fastutil.ints.Int2FloatAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatSortedMap;
+import it.unimi.dsi.fastutil.ints.Int2IntAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2IntSortedMap;
+
+public class ModuleMatrixTestCase {
+
+	private int order = 10;
+
+	private int instanceCapacity = 20;
+
+	private List<KeyValue<KeyValue<String, Boolean>, Integer>> getDefinition() {
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		for (int index = 0; index < order; index++) {
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete" + index, true), 1));
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("continuous" + index, false), 1));
+		}
+		return moduleDefinition;
+	}
+
+	private DataModule getSparseModule() {
+		DataModule module = new SparseModule("module", getDefinition(), instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.clear();
+			discreteFeatures.put(index % order, index);
+			discreteFeatures.put((index + 3) % order, index + 1);
+			continuousFeatures.clear();
+			if (index % 4 != 0) {
+				continuousFeatures.put(index % order, index * 0.5F);
+			}
+			module.associateInstance(discreteFeatures, continuousFeatures);
+		}
+		return module;
+	}
+
+	private DataModule getDenseModule() {
+		DataModule module = new DenseModule("module", getDefinition(), instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			for (int feature = 0; feature < order; feature++) {
+				discreteFeatures.put(feature, index * order + feature);
+				continuousFeatures.put(feature, index - feature * 0.25F);
+			}
+			module.associateInstance(discreteFeatures, continuousFeatures);
+		}
+		return module;
+	}
+
+	/**
+	 * 检查视图与实例一致(缺失的特征为0)
+	 */
+	private void checkMatrix(DataModule module, ModuleMatrix matrix, boolean discrete) {
+		Assert.assertEquals(module.getSize(), matrix.getRowSize());
+		Assert.assertEquals(order, matrix.getColumnSize());
+		DataInstance instance = module.getInstance(0);
+		int knownSize = 0;
+		for (int row = 0; row < matrix.getRowSize(); row++) {
+			instance.setCursor(row);
+			for (int column = 0; column < matrix.getColumnSize(); column++) {
+				float value;
+				if (discrete) {
+					int feature = instance.getDiscreteFeature(column);
+					value = feature == DataInstance.defaultInteger ? 0F : feature;
+				} else {
+					float feature = instance.getContinuousFeature(column);
+					value = Float.isNaN(feature) ? 0F : feature;
+				}
+				Assert.assertEquals(value, matrix.getValue(row, column), 0F);
+			}
+			MathVector vector = matrix.getRowVector(row);
+			for (VectorScalar term : vector) {
+				Assert.assertEquals(matrix.getValue(row, term.getIndex()), term.getValue(), 0F);
+			}
+			knownSize += vector.getElementSize();
+		}
+		Assert.assertEquals(knownSize, matrix.getKnownSize());
+		int count = 0;
+		for (MatrixScalar term : matrix) {
+			Assert.assertEquals(matrix.getValue(term.getRow(), term.getColumn()), term.getValue(), 0F);
+			count++;
+		}
+		Assert.assertEquals(knownSize, count);
+	}
+
+	@Test
+	public void testSparse() {
+		DataModule module = getSparseModule();
+		ModuleMatrix discreteMatrix = ModuleMatrix.valueOf(module, true);
+		Assert.assertTrue(discreteMatrix.isIndexed());
+		Assert.assertEquals(instanceCapacity * 2, discreteMatrix.getKnownSize());
+		checkMatrix(module, discreteMatrix, true);
+		ModuleMatrix continuousMatrix = ModuleMatrix.valueOf(module, false);
+		Assert.assertEquals(instanceCapacity - instanceCapacity / 4, continuousMatrix.getKnownSize());
+		checkMatrix(module, continuousMatrix, false);
+		try {
+			discreteMatrix.getColumnVector(0);
+			Assert.fail();
+		} catch (UnsupportedOperationException exception) {
+		}
+	}
+
+	@Test
+	public void testDense() {
+		DataModule module = getDenseModule();
+		ModuleMatrix discreteMatrix = ModuleMatrix.valueOf(module, true);
+		Assert.assertFalse(discreteMatrix.isIndexed());
+		checkMatrix(module, discreteMatrix, true);
+		ModuleMatrix continuousMatrix = ModuleMatrix.valueOf(module, false);
+		checkMatrix(module, continuousMatrix, false);
+		MathVector vector = continuousMatrix.getColumnVector(3);
+		for (int row = 0; row < instanceCapacity; row++) {
+			Assert.assertEquals(row - 0.75F, vector.getValue(row), 0F);
+		}
+	}
+
+	@Test
+	public void testReference() {
+		for (DataModule module : new DataModule[] { getSparseModule(), getDenseModule() }) {
+			IntegerArray references = new IntegerArray(instanceCapacity, instanceCapacity);
+			for (int index = instanceCapacity - 1; index >= 0; index -= 3) {
+				references.associateData(index);
+			}
+			DataModule reference = new ReferenceModule(references, module);
+			checkMatrix(reference, ModuleMatrix.valueOf(reference, true), true);
+			checkMatrix(reference, ModuleMatrix.valueOf(reference, false), false);
+
+			// 多层引用
+			IntegerArray nestedReferences = new IntegerArray(instanceCapacity, instanceCapacity);
+			nestedReferences.associateData(2);
+			nestedReferences.associateData(0);
+			DataModule nestedReference = new ReferenceModule(nestedReferences, reference);
+			checkMatrix(nestedReference, ModuleMatrix.valueOf(nestedReference, true), true);
+			checkMatrix(nestedReference, ModuleMatrix.valueOf(nestedReference, false), false);
+		}
+	}
+
+	@Test
+	public void testReadOnly() {
+		ModuleMatrix matrix = ModuleMatrix.valueOf(getDenseModule(), false);
+		try {
+			matrix.setValue(0, 0, 1F);
+			Assert.fail();
+		} catch (UnsupportedOperationException exception) {
+		}
+		try {
+			matrix.scaleValues(2F);
+			Assert.fail();
+		} catch (UnsupportedOperationException exception) {
+		}
+		try {
+			matrix.getRowVector(0).setValue(0, 1F);
+			Assert.fail();
+		} catch (UnsupportedOperationException exception) {
+		}
+	}
+
+}
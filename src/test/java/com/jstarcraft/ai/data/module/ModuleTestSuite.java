@@ -11,7 +11,9 @@ import org.junit.runners.Suite.SuiteClasses;
 
 		SparseModuleTestCase.class,
 
-		ReferenceModuleTestCase.class })
+		ReferenceModuleTestCase.class,
+
+		ModuleMatrixTestCase.class })
 public class ModuleTestSuite {
 
 }
@@ -1,10 +1,20 @@
 package com.jstarcraft.ai.data.module;
 
+import java.util.LinkedList;
 import java.util.List;
 
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
 import com.jstarcraft.core.utility.KeyValue;
 
+import it.unimi.dsi.fastutil.ints.Int2FloatAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatSortedMap;
+import it.unimi.dsi.fastutil.ints.Int2IntAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2IntSortedMap;
+
 public class SparseModuleTestCase extends DataModuleTestCase {
 
 	@Override
@@ -12,4 +22,50 @@ public class SparseModuleTestCase extends DataModuleTestCase {
 		return new SparseModule(moduleName, moduleDefinition, instanceCapacity);
 	}
 
+	@Test
+	public void testSparseInstance() {
+		// 千万维的哈希特征空间
+		int order = 10000000;
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), order));
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("continuous", false), order));
+		int instanceCapacity = 10;
+		DataModule module = new SparseModule("module", moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.clear();
+			continuousFeatures.clear();
+			for (int feature = 0; feature < index; feature++) {
+				discreteFeatures.put(feature * 999983 % order, index + feature);
+				continuousFeatures.put(feature * 999979 % order, index - feature * 0.5F);
+			}
+			module.associateInstance(discreteFeatures, continuousFeatures);
+		}
+
+		DataInstance instance = module.getInstance(0);
+		for (int index = instanceCapacity - 1; index >= 0; index--) {
+			instance.setCursor(index);
+			discreteFeatures.clear();
+			continuousFeatures.clear();
+			instance.iterateDiscreteFeatures((feature, value) -> {
+				Assert.assertEquals(value, instance.getDiscreteFeature(feature));
+				discreteFeatures.put(feature, value);
+			});
+			instance.iterateContinuousFeatures((feature, value) -> {
+				Assert.assertEquals(value, instance.getContinuousFeature(feature), 0F);
+				continuousFeatures.put(feature, value);
+			});
+			Assert.assertEquals(index, discreteFeatures.size());
+			Assert.assertEquals(index, continuousFeatures.size());
+			for (int feature = 0; feature < index; feature++) {
+				Assert.assertEquals(index + feature, discreteFeatures.get(feature * 999983 % order));
+				Assert.assertEquals(index - feature * 0.5F, continuousFeatures.get(feature * 999979 % order), 0F);
+			}
+			// 缺失的特征
+			Assert.assertEquals(DataInstance.defaultInteger, instance.getDiscreteFeature(order - 1));
+			Assert.assertTrue(Float.isNaN(instance.getContinuousFeature(order - 1)));
+		}
+	}
+
 }
@@ -2,6 +2,7 @@ package com.jstarcraft.ai.data.processor;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -10,6 +11,7 @@ import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
 import com.jstarcraft.ai.data.module.ReferenceModule;
 import com.jstarcraft.ai.data.module.SparseModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.utility.IntegerArray;
 import com.jstarcraft.core.utility.KeyValue;
 
@@ -58,4 +60,70 @@ public class DataSelectorTestCase {
 		Assert.assertEquals(0, module.getSize());
 	}
 
+	@Test
+	public void testParallel() throws Exception {
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+		int instanceCapacity = 30000 - 1;
+		DataModule module = new SparseModule(moduleName, moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.put(0, (index * 7919) % 10);
+			module.associateInstance(discreteFeatures, continuousFeatures);
+		}
+		DataSelector selector = (instance) -> {
+			return instance.getDiscreteFeature(0) < 3;
+		};
+		DataModule serial = selector.select(module);
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			DataModule parallel = selector.select(module);
+			// 顺序与串行一致
+			Assert.assertEquals(serial.getSize(), parallel.getSize());
+			DataInstance serialInstance = serial.getInstance(0);
+			DataInstance parallelInstance = parallel.getInstance(0);
+			int count = 0;
+			for (int index = 0; index < instanceCapacity; index++) {
+				if ((index * 7919) % 10 < 3) {
+					serialInstance.setCursor(count);
+					parallelInstance.setCursor(count);
+					Assert.assertEquals(index * 7919 % 10, parallelInstance.getDiscreteFeature(0));
+					Assert.assertEquals(serialInstance.getDiscreteFeature(0), parallelInstance.getDiscreteFeature(0));
+					count++;
+				}
+			}
+			Assert.assertEquals(count, parallel.getSize());
+		});
+		task.get();
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+		int instanceCapacity = 30000 - 1;
+		DataModule module = new SparseModule(moduleName, moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.put(0, index);
+			module.associateInstance(discreteFeatures, continuousFeatures);
+		}
+		// 只有一个分块会失败,异常必须原样抛出(而不是拼接时的NullPointerException)
+		DataSelector selector = (instance) -> {
+			if (instance.getCursor() == 20000) {
+				throw new IllegalStateException();
+			}
+			return true;
+		};
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			try {
+				selector.select(module);
+				Assert.fail();
+			} catch (IllegalStateException exception) {
+			}
+		});
+		task.get();
+	}
+
 }
@@ -1,7 +1,10 @@
 package com.jstarcraft.ai.data.processor;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -9,6 +12,7 @@ import org.junit.Test;
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
 import com.jstarcraft.ai.data.module.SparseModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.core.utility.KeyValue;
 
 import it.unimi.dsi.fastutil.ints.Int2FloatAVLTreeMap;
@@ -58,4 +62,124 @@ public class DataSorterTestCase {
 		}
 	}
 
+	/**
+	 * 获取带有重复键的模块(特征0与1为离散,特征0为连续,标记由索引决定)
+	 */
+	private DataModule getDataModule(int instanceCapacity) {
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		for (int index = 0; index < order; index++) {
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+			moduleDefinition.add(new KeyValue<>(new KeyValue<>("ontinuous", false), 1));
+		}
+		DataModule module = new SparseModule(moduleName, moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.clear();
+			discreteFeatures.put(0, (index * 7919) % 13 - 6);
+			discreteFeatures.put(1, (index * 104729) % 5);
+			continuousFeatures.clear();
+			if (index % 17 != 0) {
+				// 缺失的连续特征为NaN
+				continuousFeatures.put(0, ((index * 7907) % 11 - 5) * 0.5F);
+			}
+			module.associateInstance(discreteFeatures, continuousFeatures, index % 3, -index * 0.25F);
+		}
+		return module;
+	}
+
+	/**
+	 * 检查排序结果与稳定排序一致
+	 */
+	private void checkSort(DataModule module, DataSorter sorter) {
+		int size = module.getSize();
+		Integer[] cursors = new Integer[size];
+		for (int cursor = 0; cursor < size; cursor++) {
+			cursors[cursor] = cursor;
+		}
+		DataInstance left = module.getInstance(0);
+		DataInstance right = module.getInstance(0);
+		Comparator<Integer> comparator = (leftCursor, rightCursor) -> {
+			left.setCursor(leftCursor);
+			right.setCursor(rightCursor);
+			return sorter.sort(left, right);
+		};
+		// Arrays.sort对于对象是稳定的
+		Arrays.sort(cursors, comparator);
+		DataModule sort = sorter.sort(module);
+		Assert.assertEquals(size, sort.getSize());
+		DataInstance instance = sort.getInstance(0);
+		for (int index = 0; index < size; index++) {
+			instance.setCursor(index);
+			left.setCursor(cursors[index]);
+			Assert.assertEquals(left.getDiscreteFeature(0), instance.getDiscreteFeature(0));
+			Assert.assertEquals(left.getDiscreteFeature(1), instance.getDiscreteFeature(1));
+			Assert.assertEquals(left.getContinuousFeature(0), instance.getContinuousFeature(0), 0F);
+			// 标记唯一地确定实例,所以同时检查稳定性
+			Assert.assertEquals(left.getContinuousMark(), instance.getContinuousMark(), 0F);
+		}
+	}
+
+	@Test
+	public void testStable() {
+		// 引用的最后一个元素位于新的分块
+		DataModule module = getDataModule(1000 + 1);
+		checkSort(module, (left, right) -> {
+			return left.getDiscreteFeature(0) - right.getDiscreteFeature(0);
+		});
+		checkSort(module, (left, right) -> {
+			return Float.compare(right.getContinuousFeature(0), left.getContinuousFeature(0));
+		});
+	}
+
+	@Test
+	public void testKey() {
+		DataModule module = getDataModule(1000 - 1);
+		checkSort(module, DataSorter.discreteFeature(0, true));
+		checkSort(module, DataSorter.discreteFeature(0, false));
+		checkSort(module, DataSorter.continuousFeature(0, true));
+		checkSort(module, DataSorter.continuousFeature(0, false));
+		checkSort(module, DataSorter.discreteMark(false));
+		checkSort(module, DataSorter.continuousMark(true));
+		// 多键
+		checkSort(module, DataSorter.discreteFeature(1, true).thenSort(DataSorter.continuousFeature(0, false)).thenSort(DataSorter.discreteFeature(0, true)));
+		checkSort(module, DataSorter.discreteMark(true).thenSort((left, right) -> {
+			return left.getDiscreteFeature(0) - right.getDiscreteFeature(0);
+		}));
+		// 引用模块
+		checkSort(DataSorter.discreteFeature(0, true).sort(module), DataSorter.continuousFeature(0, true).thenSort(DataSorter.discreteFeature(1, false)));
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		DataModule module = getDataModule(50000 - 1);
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			checkSort(module, DataSorter.discreteFeature(1, true).thenSort((left, right) -> {
+				return Float.compare(left.getContinuousFeature(0), right.getContinuousFeature(0));
+			}));
+			checkSort(module, DataSorter.discreteFeature(1, false).thenSort(DataSorter.continuousFeature(0, true)));
+		});
+		task.get();
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		DataModule module = getDataModule(50000 - 1);
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			try {
+				// 只有部分分块会失败
+				DataSorter sorter = (left, right) -> {
+					if (left.getCursor() == 40000 || right.getCursor() == 40000) {
+						throw new IllegalStateException();
+					}
+					return left.getDiscreteFeature(0) - right.getDiscreteFeature(0);
+				};
+				sorter.sort(module);
+				Assert.fail();
+			} catch (IllegalStateException exception) {
+			}
+		});
+		task.get();
+	}
+
 }
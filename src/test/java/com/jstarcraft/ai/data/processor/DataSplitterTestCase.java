@@ -2,6 +2,7 @@ package com.jstarcraft.ai.data.processor;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -9,6 +10,7 @@ import org.junit.Test;
 import com.jstarcraft.ai.data.DataInstance;
 import com.jstarcraft.ai.data.DataModule;
 import com.jstarcraft.ai.data.module.SparseModule;
+import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.core.utility.KeyValue;
 
 import it.unimi.dsi.fastutil.ints.Int2FloatAVLTreeMap;
@@ -63,4 +65,133 @@ public class DataSplitterTestCase {
 
 	}
 
+	/**
+	 * 获取模块(离散特征0为索引,离散标记为索引 % 3)
+	 */
+	private DataModule getDataModule(int instanceCapacity) {
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+		DataModule module = new SparseModule(moduleName, moduleDefinition, instanceCapacity);
+		Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+		Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+		for (int index = 0; index < instanceCapacity; index++) {
+			discreteFeatures.put(0, index);
+			module.associateInstance(discreteFeatures, continuousFeatures, index % 3);
+		}
+		return module;
+	}
+
+	/**
+	 * 检查交叉划分与划分一致
+	 */
+	private void checkFold(DataModule module, DataSplitter splitter, int number) {
+		DataModule[] parts = splitter.split(module, number);
+		DataModule[][] folds = splitter.fold(module, number);
+		DataInstance instance = module.getInstance(0);
+		for (int index = 0; index < number; index++) {
+			DataModule training = folds[index][0];
+			DataModule testing = folds[index][1];
+			Assert.assertEquals(parts[index].getSize(), testing.getSize());
+			Assert.assertEquals(module.getSize(), training.getSize() + testing.getSize());
+			int previous = -1;
+			for (DataInstance term : testing) {
+				int cursor = term.getDiscreteFeature(0);
+				Assert.assertTrue(previous < cursor);
+				instance.setCursor(cursor);
+				Assert.assertEquals(index, splitter.split(instance));
+				previous = cursor;
+			}
+			previous = -1;
+			for (DataInstance term : training) {
+				int cursor = term.getDiscreteFeature(0);
+				Assert.assertTrue(previous < cursor);
+				instance.setCursor(cursor);
+				Assert.assertNotEquals(index, splitter.split(instance));
+				previous = cursor;
+			}
+		}
+	}
+
+	@Test
+	public void testFold() {
+		DataModule module = getDataModule(1000 + 1);
+		int number = 4;
+		DataSplitter splitter = DataSplitter.randomSplitter(module, number);
+		DataModule[] parts = splitter.split(module, number);
+		for (DataModule part : parts) {
+			Assert.assertTrue(Math.abs(part.getSize() - module.getSize() / number) <= 1);
+		}
+		checkFold(module, splitter, number);
+	}
+
+	@Test
+	public void testStratified() {
+		DataModule module = getDataModule(1000 + 1);
+		int number = 4;
+		DataSplitter splitter = DataSplitter.stratifiedSplitter(module, number);
+		DataModule[] parts = splitter.split(module, number);
+		for (DataModule part : parts) {
+			int[] counts = new int[3];
+			for (DataInstance instance : part) {
+				counts[instance.getDiscreteMark()]++;
+			}
+			for (int mark = 0; mark < 3; mark++) {
+				Assert.assertTrue(Math.abs(counts[mark] - module.getSize() / 3 / number) <= 1);
+			}
+		}
+		checkFold(module, splitter, number);
+	}
+
+	@Test
+	public void testParallel() throws Exception {
+		DataModule module = getDataModule(30000 - 1);
+		int number = 5;
+		DataSplitter splitter = (instance) -> {
+			return instance.getDiscreteFeature(0) * 7919 % number;
+		};
+		DataModule[] serials = splitter.split(module, number);
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			DataModule[] parallels = splitter.split(module, number);
+			for (int index = 0; index < number; index++) {
+				// 顺序与串行一致
+				Assert.assertEquals(serials[index].getSize(), parallels[index].getSize());
+				DataInstance serial = serials[index].getInstance(0);
+				DataInstance parallel = parallels[index].getInstance(0);
+				for (int cursor = 0; cursor < serials[index].getSize(); cursor++) {
+					serial.setCursor(cursor);
+					parallel.setCursor(cursor);
+					Assert.assertEquals(serial.getDiscreteFeature(0), parallel.getDiscreteFeature(0));
+				}
+			}
+			checkFold(module, splitter, number);
+		});
+		task.get();
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		DataModule module = getDataModule(30000 - 1);
+		int number = 3;
+		// 只有一个分块会失败,异常必须原样抛出(而不是拼接时的NullPointerException)
+		DataSplitter splitter = (instance) -> {
+			if (instance.getCursor() == 20000) {
+				throw new IllegalStateException();
+			}
+			return instance.getCursor() % number;
+		};
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			try {
+				splitter.split(module, number);
+				Assert.fail();
+			} catch (IllegalStateException exception) {
+			}
+			try {
+				splitter.fold(module, number);
+				Assert.fail();
+			} catch (IllegalStateException exception) {
+			}
+		});
+		task.get();
+	}
+
 }
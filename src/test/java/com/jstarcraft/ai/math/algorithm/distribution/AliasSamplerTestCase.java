@@ -0,0 +1,40 @@
+package com.jstarcraft.ai.math.algorithm.distribution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AliasSamplerTestCase {
+
+	@Test
+	public void testSample() {
+		float[] weights = new float[] { 1F, 0F, 3F, 6F, 10F };
+		AliasSampler sampler = new AliasSampler(weights);
+		Assert.assertEquals(weights.length, sampler.getSize());
+		for (int index = 0; index < weights.length; index++) {
+			Assert.assertEquals(weights[index] / 20F, sampler.getProbability(index), 1E-6F);
+		}
+
+		int size = 1000000;
+		int[] counts = new int[weights.length];
+		for (int time = 0; time < size; time++) {
+			counts[sampler.sample()]++;
+		}
+		Assert.assertEquals(0, counts[1]);
+		for (int index = 0; index < weights.length; index++) {
+			Assert.assertEquals(sampler.getProbability(index), counts[index] / (float) size, 0.01F);
+		}
+	}
+
+	@Test
+	public void testLogUniform() {
+		int size = 1000;
+		AliasSampler sampler = AliasSampler.logUniformOf(size);
+		float sum = 0F;
+		for (int index = 0; index < size; index++) {
+			Assert.assertEquals(Math.log((index + 2D) / (index + 1D)) / Math.log(size + 1D), sampler.getProbability(index), 1E-6D);
+			sum += sampler.getProbability(index);
+		}
+		Assert.assertEquals(1F, sum, 1E-4F);
+	}
+
+}
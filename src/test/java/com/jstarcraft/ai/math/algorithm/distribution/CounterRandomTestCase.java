@@ -0,0 +1,71 @@
+package com.jstarcraft.ai.math.algorithm.distribution;
+
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+
+public class CounterRandomTestCase {
+
+	@Test
+	public void testDistribution() {
+		CounterRandom random = new CounterRandom(0L);
+		int size = 1000000;
+		double uniformSum = 0D, uniformSquare = 0D;
+		double gaussianSum = 0D, gaussianSquare = 0D;
+		for (int counter = 0; counter < size; counter++) {
+			float uniform = random.randomFloat(counter);
+			Assert.assertTrue(uniform >= 0F && uniform < 1F);
+			uniformSum += uniform;
+			uniformSquare += uniform * uniform;
+			float gaussian = random.randomGaussian(counter);
+			gaussianSum += gaussian;
+			gaussianSquare += gaussian * gaussian;
+		}
+		// 均匀分布的均值为1/2,方差为1/12
+		Assert.assertEquals(0.5D, uniformSum / size, 0.005D);
+		Assert.assertEquals(1D / 12D, uniformSquare / size - (uniformSum / size) * (uniformSum / size), 0.005D);
+		// 标准正态分布的均值为0,方差为1
+		Assert.assertEquals(0D, gaussianSum / size, 0.01D);
+		Assert.assertEquals(1D, gaussianSquare / size - (gaussianSum / size) * (gaussianSum / size), 0.01D);
+	}
+
+	@Test
+	public void testStream() {
+		CounterRandom random = new CounterRandom(0L);
+		// 相同的种子与计数器得到相同的随机数
+		Assert.assertEquals(random.randomLong(10L), new CounterRandom(0L).randomLong(10L));
+		Assert.assertEquals(random.split(1L), random.split(1L));
+		// 不同的流互不相同
+		Assert.assertNotEquals(random.split(1L), random.split(2L));
+		Assert.assertNotEquals(random.split(1L).randomLong(0L), random.split(2L).randomLong(0L));
+	}
+
+	private DenseMatrix getMatrix(int numberOfThreads) throws Exception {
+		EnvironmentContext context = EnvironmentContext.constructCpuContext(numberOfThreads);
+		try {
+			DenseMatrix matrix = DenseMatrix.valueOf(100, 100);
+			Future<?> task = context.doTask(() -> {
+				NormalParameterFactory factory = new NormalParameterFactory(0L);
+				factory.setValues(matrix);
+			});
+			task.get();
+			return matrix;
+		} finally {
+			context.shutdown();
+		}
+	}
+
+	@Test
+	public void testPartition() throws Exception {
+		// 相同的种子得到相同的参数,与线程数量无关
+		DenseMatrix left = getMatrix(1);
+		DenseMatrix right = getMatrix(4);
+		Assert.assertEquals(left, right);
+	}
+
+}
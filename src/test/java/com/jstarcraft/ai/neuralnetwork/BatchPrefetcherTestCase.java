@@ -0,0 +1,76 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.data.DataModule;
+import com.jstarcraft.ai.data.module.DenseModule;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.BatchPrefetcher.Batch;
+import com.jstarcraft.core.utility.KeyValue;
+
+import it.unimi.dsi.fastutil.ints.Int2FloatAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatSortedMap;
+import it.unimi.dsi.fastutil.ints.Int2IntAVLTreeMap;
+import it.unimi.dsi.fastutil.ints.Int2IntSortedMap;
+
+public class BatchPrefetcherTestCase {
+
+	@Test
+	public void testPrefetch() {
+		int numberOfInstances = 103;
+		int batchSize = 10;
+		List<KeyValue<KeyValue<String, Boolean>, Integer>> moduleDefinition = new LinkedList<>();
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("discrete", true), 1));
+		moduleDefinition.add(new KeyValue<>(new KeyValue<>("continuous", false), 1));
+		DataModule module = new DenseModule("module", moduleDefinition, numberOfInstances);
+		for (int index = 0; index < numberOfInstances; index++) {
+			Int2IntSortedMap discreteFeatures = new Int2IntAVLTreeMap();
+			discreteFeatures.put(0, index);
+			Int2FloatSortedMap continuousFeatures = new Int2FloatAVLTreeMap();
+			continuousFeatures.put(0, index * 0.5F);
+			module.associateInstance(discreteFeatures, continuousFeatures, index * 2F);
+		}
+
+		MathCache factory = new DenseCache();
+		BatchConverter converter = (instance, row, samples, labels) -> {
+			samples[0].setValue(row, 0, instance.getDiscreteFeature(0));
+			samples[1].setValue(row, 0, instance.getContinuousFeature(0));
+			labels[0].setValue(row, 0, instance.getContinuousMark());
+		};
+		BatchPrefetcher prefetcher = new BatchPrefetcher(module, factory, converter, new int[] { 1, 1 }, new int[] { 1 }, batchSize, 3);
+		try {
+			for (int epoch = 0; epoch < 3; epoch++) {
+				// 每个周期的批量不重复地覆盖排列(丢弃不完整的最后一个批量)
+				BitSet indexes = new BitSet(numberOfInstances);
+				for (int count = 0; count < numberOfInstances / batchSize; count++) {
+					Batch batch = prefetcher.borrowBatch();
+					Assert.assertEquals(epoch, batch.getEpoch());
+					MathMatrix[] samples = batch.getSamples();
+					MathMatrix[] labels = batch.getLabels();
+					Assert.assertEquals(batchSize, samples[0].getRowSize());
+					for (int row = 0; row < batchSize; row++) {
+						int index = (int) samples[0].getValue(row, 0);
+						Assert.assertFalse(indexes.get(index));
+						indexes.set(index);
+						Assert.assertEquals(index * 0.5F, samples[1].getValue(row, 0), 0F);
+						Assert.assertEquals(index * 2F, labels[0].getValue(row, 0), 0F);
+					}
+					prefetcher.returnBatch(batch);
+				}
+				Assert.assertEquals(numberOfInstances / batchSize * batchSize, indexes.cardinality());
+			}
+		} finally {
+			prefetcher.shutdown();
+		}
+		// 关闭之后借用返回null
+		Assert.assertNull(prefetcher.borrowBatch());
+	}
+
+}
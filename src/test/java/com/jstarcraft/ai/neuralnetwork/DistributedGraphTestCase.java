@@ -0,0 +1,214 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.ParameterConfigurator;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
+import com.jstarcraft.ai.neuralnetwork.learn.AdaGradLearner;
+import com.jstarcraft.ai.neuralnetwork.loss.LossFunction;
+import com.jstarcraft.ai.neuralnetwork.loss.MSELossFunction;
+import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
+import com.jstarcraft.ai.neuralnetwork.optimization.StochasticGradientOptimizer;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class DistributedGraphTestCase {
+
+	private final static float learnRatio = 0.01F;
+
+	private final static int numberOfItems = 100;
+
+	private final static int numberOfFactors = 10;
+
+	private final static int numberOfSamples = 200;
+
+	private final static int numberOfPeers = 2;
+
+	private static Map<String, ParameterConfigurator> getConfigurators() {
+		Map<String, ParameterConfigurator> configurators = new HashMap<>();
+		configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		return configurators;
+	}
+
+	/**
+	 * 可以模拟失败的损失函数
+	 */
+	private static class FailureLossFunction implements LossFunction {
+
+		private final LossFunction function = new MSELossFunction();
+
+		private volatile boolean failure = true;
+
+		private void check() {
+			if (failure) {
+				throw new IllegalStateException();
+			}
+		}
+
+		@Override
+		public void doCache(MathMatrix tests, MathMatrix trains) {
+			function.doCache(tests, trains);
+		}
+
+		@Override
+		public float computeScore(MathMatrix tests, MathMatrix trains, MathMatrix masks) {
+			check();
+			return function.computeScore(tests, trains, masks);
+		}
+
+		@Override
+		public void computeGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+			check();
+			function.computeGradient(tests, trains, masks, gradients);
+		}
+
+		@Override
+		public float computeScoreAndGradient(MathMatrix tests, MathMatrix trains, MathMatrix masks, MathMatrix gradients) {
+			check();
+			return function.computeScoreAndGradient(tests, trains, masks, gradients);
+		}
+
+	}
+
+	private Graph getGraph(MathCache factory) {
+		return getGraph(factory, new MSELossFunction());
+	}
+
+	private Graph getGraph(MathCache factory, LossFunction lossFunction) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		Layer embed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("embed", factory, embed, new AdaGradLearner(1E-6F, schedule), new IgnoreNormalizer()));
+		Layer weightLayer = new WeightLayer(numberOfFactors, 1, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("output", factory, weightLayer, new AdaGradLearner(1E-6F, schedule), new IgnoreNormalizer()), "embed");
+		return new Graph(configurator, new StochasticGradientOptimizer(), lossFunction);
+	}
+
+	private MathMatrix getMatrix(MathCache factory, int bound) {
+		MathMatrix matrix = factory.makeMatrix(numberOfSamples, 1);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomInteger(bound));
+		});
+		return matrix;
+	}
+
+	@Test
+	public void testLearn() throws Exception {
+		// 学习器对梯度非线性,必须按照归约之后的梯度执行,结果才与单个计算图处理整个批量一致
+		MathCache factory = new DenseCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		Graph[] graphs = new Graph[numberOfPeers + 1];
+		// 每个节点每次训练的得分
+		float[][] scores = new float[numberOfPeers + 1][5];
+		byte[][] datas = new byte[1][];
+		EnvironmentContext.CPU.doTask(() -> {
+			graphs[numberOfPeers] = getGraph(factory);
+			datas[0] = ModelCodec.KRYO.encodeModel(graphs[numberOfPeers]);
+			for (int epoch = 0; epoch < 5; epoch++) {
+				scores[numberOfPeers][epoch] = graphs[numberOfPeers].practice(10, samples, labels);
+			}
+		}).get();
+
+		InetSocketAddress[] peers = new InetSocketAddress[numberOfPeers];
+		for (int rank = 0; rank < numberOfPeers; rank++) {
+			try (ServerSocket socket = new ServerSocket(0)) {
+				peers[rank] = new InetSocketAddress("127.0.0.1", socket.getLocalPort());
+			}
+		}
+		// 每个节点使用独立的环境上下文模拟独立的进程
+		EnvironmentContext[] contexts = new EnvironmentContext[numberOfPeers];
+		Future<?>[] tasks = new Future[numberOfPeers];
+		try {
+			for (int rank = 0; rank < numberOfPeers; rank++) {
+				int position = rank;
+				int from = numberOfSamples * position / numberOfPeers;
+				int to = numberOfSamples * (position + 1) / numberOfPeers;
+				contexts[position] = EnvironmentContext.constructCpuContext(1);
+				tasks[position] = contexts[position].doTask(() -> {
+					graphs[position] = (Graph) ModelCodec.KRYO.decodeModel(datas[0]);
+					MathMatrix[] shardSamples = new MathMatrix[] { ParallelGraph.getShard(factory, samples[0], from, to) };
+					MathMatrix[] shardLabels = new MathMatrix[] { ParallelGraph.getShard(factory, labels[0], from, to) };
+					try (DistributedGraph graph = new DistributedGraph(graphs[position], new RingTransport(peers, position, false))) {
+						for (int epoch = 0; epoch < 5; epoch++) {
+							scores[position][epoch] = graph.practice(10, shardSamples, shardLabels);
+						}
+					}
+				});
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} finally {
+			for (EnvironmentContext context : contexts) {
+				if (context != null) {
+					context.shutdown();
+				}
+			}
+		}
+
+		Map<String, MathMatrix> leftParameters = graphs[numberOfPeers].getParameters();
+		for (int rank = 0; rank < numberOfPeers; rank++) {
+			// 正则化项只能计算一次,得分必须与单个计算图处理整个批量一致
+			for (int epoch = 0; epoch < 5; epoch++) {
+				Assert.assertEquals(scores[numberOfPeers][epoch], scores[rank][epoch], 1E-4F);
+			}
+			Map<String, MathMatrix> rightParameters = graphs[rank].getParameters();
+			for (Entry<String, MathMatrix> term : leftParameters.entrySet()) {
+				MathMatrix left = term.getValue();
+				MathMatrix right = rightParameters.get(term.getKey());
+				for (int row = 0; row < left.getRowSize(); row++) {
+					for (int column = 0; column < left.getColumnSize(); column++) {
+						Assert.assertEquals(left.getValue(row, column), right.getValue(row, column), 1E-4F);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		// 反向传播失败之后通信线程必须被释放,否则后续的训练会永远等待
+		MathCache factory = new DenseCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		FailureLossFunction lossFunction = new FailureLossFunction();
+		InetSocketAddress[] peers = new InetSocketAddress[] { new InetSocketAddress("127.0.0.1", 0) };
+		EnvironmentContext.CPU.doTask(() -> {
+			try (DistributedGraph graph = new DistributedGraph(getGraph(factory, lossFunction), new RingTransport(peers, 0, false))) {
+				try {
+					graph.practice(1, samples, labels);
+					Assert.fail();
+				} catch (RuntimeException exception) {
+				}
+				lossFunction.failure = false;
+				float score = graph.practice(1, samples, labels);
+				Assert.assertFalse(Float.isNaN(score) || Float.isInfinite(score));
+			}
+		}).get(1, TimeUnit.MINUTES);
+	}
+
+}
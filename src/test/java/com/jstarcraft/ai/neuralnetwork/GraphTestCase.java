@@ -2,6 +2,7 @@ package com.jstarcraft.ai.neuralnetwork;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.Future;
 
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
@@ -25,13 +26,16 @@ import org.nd4j.linalg.learning.config.Sgd;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
 import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.Nd4jCache;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
 import com.jstarcraft.ai.math.structure.matrix.Nd4jMatrix;
 import com.jstarcraft.ai.neuralnetwork.Graph;
 import com.jstarcraft.ai.neuralnetwork.GraphConfigurator;
 import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.activation.SigmoidActivationFunction;
 import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
 import com.jstarcraft.ai.neuralnetwork.layer.Layer;
 import com.jstarcraft.ai.neuralnetwork.layer.ParameterConfigurator;
@@ -173,4 +177,121 @@ public class GraphTestCase {
 		task.get();
 	}
 
+	private static MathMatrix getRandomMatrix(MathCache factory, int rowSize, int columnSize) {
+		MathMatrix matrix = factory.makeMatrix(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(-1F, 1F));
+		});
+		return matrix;
+	}
+
+	private Graph getDeepFunction(MathCache factory, MathMatrix[] weights, MathMatrix[] biases) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		String from = null;
+		for (int index = 0; index < weights.length; index++) {
+			Map<String, ParameterConfigurator> configurators = new HashMap<>();
+			configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(l1Regularization, l2Regularization, new CopyParameterFactory(weights[index])));
+			configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(l1Regularization, l2Regularization, new CopyParameterFactory(biases[index])));
+			int numberOfInputs = weights[index].getRowSize();
+			int numberOfOutputs = weights[index].getColumnSize();
+			Layer layer = new WeightLayer(numberOfInputs, numberOfOutputs, factory, configurators, Mode.TRAIN, index == weights.length - 1 ? new IdentityActivationFunction() : new SigmoidActivationFunction());
+			String name = "layer" + index;
+			if (from == null) {
+				configurator.connect(new LayerVertex(name, factory, layer, new SgdLearner(schedule), new IgnoreNormalizer()));
+			} else {
+				configurator.connect(new LayerVertex(name, factory, layer, new SgdLearner(schedule), new IgnoreNormalizer()), from);
+			}
+			from = name;
+		}
+		return new Graph(configurator, new StochasticGradientOptimizer(), new MSELossFunction());
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		MathCache factory = new DenseCache();
+		int numberOfLayers = 16;
+		int numberOfFactors = 8;
+		int numberOfSamples = 100;
+		MathMatrix[] weights = new MathMatrix[numberOfLayers];
+		MathMatrix[] biases = new MathMatrix[numberOfLayers];
+		for (int index = 0; index < numberOfLayers; index++) {
+			int numberOfOutputs = index == numberOfLayers - 1 ? 1 : numberOfFactors;
+			weights[index] = getRandomMatrix(factory, numberOfFactors, numberOfOutputs);
+			biases[index] = getRandomMatrix(factory, 1, numberOfOutputs);
+		}
+		MathMatrix[] samples = new MathMatrix[] { getRandomMatrix(factory, numberOfSamples, numberOfFactors) };
+		MathMatrix[] labels = new MathMatrix[] { getRandomMatrix(factory, numberOfSamples, 1) };
+
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph oldGraph = getDeepFunction(factory, weights, biases);
+			CheckpointCache cache = new CheckpointCache(factory);
+			Graph newGraph = getDeepFunction(cache, weights, biases);
+			newGraph.setCheckpoints(cache);
+			for (int epoch = 0; epoch < 5; epoch++) {
+				float oldScore = oldGraph.practice(2, samples, labels);
+				float newScore = newGraph.practice(2, samples, labels);
+				Assert.assertEquals(Float.floatToIntBits(oldScore), Float.floatToIntBits(newScore));
+			}
+
+			// 重新计算与保留输出的参数必须逐位一致
+			Map<String, MathMatrix> oldParameters = oldGraph.getParameters();
+			Map<String, MathMatrix> newParameters = newGraph.getParameters();
+			for (Entry<String, MathMatrix> term : oldParameters.entrySet()) {
+				MathMatrix left = term.getValue();
+				MathMatrix right = newParameters.get(term.getKey());
+				for (int row = 0; row < left.getRowSize(); row++) {
+					for (int column = 0; column < left.getColumnSize(); column++) {
+						Assert.assertEquals(Float.floatToIntBits(left.getValue(row, column)), Float.floatToIntBits(right.getValue(row, column)));
+					}
+				}
+			}
+		});
+		task.get();
+	}
+
+	@Test
+	public void testAccumulation() throws Exception {
+		MathCache factory = new DenseCache();
+		int numberOfLayers = 4;
+		int numberOfFactors = 8;
+		int numberOfSamples = 100;
+		MathMatrix[] weights = new MathMatrix[numberOfLayers];
+		MathMatrix[] biases = new MathMatrix[numberOfLayers];
+		for (int index = 0; index < numberOfLayers; index++) {
+			int numberOfOutputs = index == numberOfLayers - 1 ? 1 : numberOfFactors;
+			weights[index] = getRandomMatrix(factory, numberOfFactors, numberOfOutputs);
+			biases[index] = getRandomMatrix(factory, 1, numberOfOutputs);
+		}
+		MathMatrix[] samples = new MathMatrix[] { getRandomMatrix(factory, numberOfSamples, numberOfFactors) };
+		MathMatrix[] labels = new MathMatrix[] { getRandomMatrix(factory, numberOfSamples, 1) };
+
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph oldGraph = getDeepFunction(factory, weights, biases);
+			Graph newGraph = getDeepFunction(factory, weights, biases);
+			newGraph.setAccumulation(factory, 20);
+			for (int epoch = 0; epoch < 5; epoch++) {
+				float oldScore = oldGraph.practice(2, samples, labels);
+				float newScore = newGraph.practice(2, samples, labels);
+				Assert.assertEquals(oldScore, newScore, 1E-5F);
+			}
+			// 节点只按照微批量缓存
+			Assert.assertEquals(20, newGraph.getNumberOfSamples());
+
+			// 累积的梯度与整个批量的梯度只有求和顺序的差异
+			Map<String, MathMatrix> oldParameters = oldGraph.getParameters();
+			Map<String, MathMatrix> newParameters = newGraph.getParameters();
+			for (Entry<String, MathMatrix> term : oldParameters.entrySet()) {
+				MathMatrix left = term.getValue();
+				MathMatrix right = newParameters.get(term.getKey());
+				for (int row = 0; row < left.getRowSize(); row++) {
+					for (int column = 0; column < left.getColumnSize(); column++) {
+						Assert.assertEquals(left.getValue(row, column), right.getValue(row, column), 1E-5F);
+					}
+				}
+			}
+		});
+		task.get();
+	}
+
 }
@@ -0,0 +1,151 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.Nd4jCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.ParameterConfigurator;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
+import com.jstarcraft.ai.neuralnetwork.learn.SgdLearner;
+import com.jstarcraft.ai.neuralnetwork.loss.MSELossFunction;
+import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
+import com.jstarcraft.ai.neuralnetwork.optimization.StochasticGradientOptimizer;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Nd4jVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.transformation.HorizontalAttachVertex;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class HogwildGraphTestCase {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final static float learnRatio = 0.01F;
+
+	private final static int numberOfItems = 100;
+
+	private final static int numberOfFactors = 10;
+
+	private final static int numberOfSamples = 1000;
+
+	private static Map<String, ParameterConfigurator> getConfigurators() {
+		Map<String, ParameterConfigurator> configurators = new HashMap<>();
+		configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		return configurators;
+	}
+
+	private Graph getGraph(MathCache factory) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		Layer leftEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		Layer rightEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("leftEmbed", factory, leftEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new LayerVertex("rightEmbed", factory, rightEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new HorizontalAttachVertex("embed", factory), "leftEmbed", "rightEmbed");
+		configurator.connect(new Nd4jVertex("nd4j", factory, true), "embed");
+		Layer weightLayer = new WeightLayer(numberOfFactors * 2, 1, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("output", factory, weightLayer, new SgdLearner(schedule), new IgnoreNormalizer()), "nd4j");
+		return new Graph(configurator, new StochasticGradientOptimizer(), new MSELossFunction());
+	}
+
+	private MathMatrix getMatrix(MathCache factory, int bound) {
+		MathMatrix matrix = factory.makeMatrix(numberOfSamples, 1);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomInteger(bound));
+		});
+		return matrix;
+	}
+
+	@Test
+	public void testHogwild() throws Exception {
+		MathCache factory = new Nd4jCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems), getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		int numberOfThreads = EnvironmentContext.CPU.getNumberOfThreads();
+
+		// 基准:同步训练
+		byte[][] datas = new byte[1][];
+		float[] scores = new float[1];
+		Map<String, MathMatrix>[] synchronousParameters = new Map[1];
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph graph = getGraph(factory);
+			datas[0] = ModelCodec.KRYO.encodeModel(graph);
+			long time = System.currentTimeMillis();
+			graph.practice(1, samples, labels);
+			for (int epoch = 0; epoch < 10; epoch++) {
+				scores[0] = graph.practice(10, samples, labels);
+			}
+			synchronousParameters[0] = graph.getParameters();
+			logger.debug("synchronous: {}ms, score {}", System.currentTimeMillis() - time, scores[0]);
+		});
+		task.get();
+
+		for (int staleness = 0; staleness <= 4; staleness += 4) {
+			// 至少使用两个工作者,保证共享参数得到验证
+			for (int numberOfWorkers = 1; numberOfWorkers <= Math.max(2, numberOfThreads); numberOfWorkers <<= 1) {
+				Graph[] graphs = new Graph[1];
+				EnvironmentContext.CPU.doTask(() -> {
+					graphs[0] = (Graph) ModelCodec.KRYO.decodeModel(datas[0]);
+				}).get();
+				HogwildGraph graph = new HogwildGraph(graphs[0], factory, numberOfWorkers, Math.max(1, numberOfThreads / numberOfWorkers), staleness);
+				try {
+					long time = System.currentTimeMillis();
+					float first = graph.practice(1, samples, labels);
+					float score = first;
+					for (int epoch = 0; epoch < 10; epoch++) {
+						score = graph.practice(10, samples, labels);
+					}
+					logger.debug("{} workers, staleness {}: {}ms, score {}", numberOfWorkers, staleness, System.currentTimeMillis() - time, score);
+					Assert.assertFalse(Float.isNaN(score) || Float.isInfinite(score));
+					Assert.assertTrue(score < first);
+
+					if (numberOfWorkers == 1) {
+						// 单个工作者处理整个批量,必须与同步训练逐位一致
+						Assert.assertEquals(Float.floatToIntBits(scores[0]), Float.floatToIntBits(score));
+						Map<String, MathMatrix> parameters = graph.getWorker(0).getParameters();
+						for (Entry<String, MathMatrix> term : synchronousParameters[0].entrySet()) {
+							MathMatrix left = term.getValue();
+							MathMatrix right = parameters.get(term.getKey());
+							for (int row = 0; row < left.getRowSize(); row++) {
+								for (int column = 0; column < left.getColumnSize(); column++) {
+									Assert.assertEquals(Float.floatToIntBits(left.getValue(row, column)), Float.floatToIntBits(right.getValue(row, column)));
+								}
+							}
+						}
+					}
+
+					// 所有工作者共享同一份参数
+					Map<String, MathMatrix> leftParameters = graph.getWorker(0).getParameters();
+					for (int index = 1; index < numberOfWorkers; index++) {
+						Map<String, MathMatrix> rightParameters = graph.getWorker(index).getParameters();
+						for (String key : leftParameters.keySet()) {
+							Assert.assertSame(leftParameters.get(key), rightParameters.get(key));
+						}
+					}
+				} finally {
+					graph.shutdown();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.Nd4jCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.activation.SigmoidActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.ParameterConfigurator;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
+import com.jstarcraft.ai.neuralnetwork.learn.SgdLearner;
+import com.jstarcraft.ai.neuralnetwork.loss.MSELossFunction;
+import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
+import com.jstarcraft.ai.neuralnetwork.optimization.StochasticGradientOptimizer;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Nd4jVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.transformation.HorizontalAttachVertex;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class InferenceGraphTestCase {
+
+	private final static float learnRatio = 0.01F;
+
+	private final static int numberOfItems = 100;
+
+	private final static int numberOfFactors = 10;
+
+	private final static int numberOfSamples = 100;
+
+	private static Map<String, ParameterConfigurator> getConfigurators() {
+		Map<String, ParameterConfigurator> configurators = new HashMap<>();
+		configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		return configurators;
+	}
+
+	private Graph getGraph(MathCache factory) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		Layer leftEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		Layer rightEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("leftEmbed", factory, leftEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new LayerVertex("rightEmbed", factory, rightEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new HorizontalAttachVertex("embed", factory), "leftEmbed", "rightEmbed");
+		configurator.connect(new Nd4jVertex("nd4j", factory, true), "embed");
+		Layer hiddenLayer = new WeightLayer(numberOfFactors * 2, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new SigmoidActivationFunction());
+		configurator.connect(new LayerVertex("hidden", factory, hiddenLayer, new SgdLearner(schedule), new IgnoreNormalizer()), "nd4j");
+		Layer outputLayer = new WeightLayer(numberOfFactors, 1, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("output", factory, outputLayer, new SgdLearner(schedule), new IgnoreNormalizer()), "hidden");
+		return new Graph(configurator, new StochasticGradientOptimizer(), new MSELossFunction());
+	}
+
+	private MathMatrix getMatrix(MathCache factory, int bound) {
+		MathMatrix matrix = factory.makeMatrix(numberOfSamples, 1);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomInteger(bound));
+		});
+		return matrix;
+	}
+
+	private static void assertEquals(MathMatrix left, MathMatrix right) {
+		for (int row = 0; row < left.getRowSize(); row++) {
+			for (int column = 0; column < left.getColumnSize(); column++) {
+				Assert.assertEquals(Float.floatToIntBits(left.getValue(row, column)), Float.floatToIntBits(right.getValue(row, column)));
+			}
+		}
+	}
+
+	@Test
+	public void testPredict() throws Exception {
+		MathCache factory = new Nd4jCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems), getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		int numberOfRequests = Runtime.getRuntime().availableProcessors() * 2;
+
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph graph = getGraph(factory);
+			graph.practice(10, samples, labels);
+			MathMatrix[] expects = new MathMatrix[] { factory.makeMatrix(numberOfSamples, 1) };
+			graph.predict(samples, expects);
+
+			InferenceGraph inference = new InferenceGraph(graph, factory);
+			MathMatrix[][] actuals = new MathMatrix[numberOfRequests][];
+			for (int index = 0; index < numberOfRequests; index++) {
+				actuals[index] = new MathMatrix[] { factory.makeMatrix(numberOfSamples, 1) };
+			}
+			// 多个线程并发预测,结果必须与计算图逐位一致
+			CountDownLatch latch = new CountDownLatch(numberOfRequests);
+			for (int index = 0; index < numberOfRequests; index++) {
+				MathMatrix[] actual = actuals[index];
+				EnvironmentContext.CPU.doAlgorithmByAny(index, () -> {
+					try {
+						inference.predict(samples, actual);
+					} finally {
+						latch.countDown();
+					}
+				});
+			}
+			try {
+				latch.await();
+			} catch (Exception exception) {
+				throw new RuntimeException(exception);
+			}
+			for (int index = 0; index < numberOfRequests; index++) {
+				assertEquals(expects[0], actuals[index][0]);
+			}
+
+			// 继续训练原始计算图不影响推断计算图
+			graph.practice(10, samples, labels);
+			MathMatrix[] actual = new MathMatrix[] { factory.makeMatrix(numberOfSamples, 1) };
+			inference.predict(samples, actual);
+			assertEquals(expects[0], actual[0]);
+		});
+		task.get();
+	}
+
+	@Test
+	public void testBound() throws Exception {
+		MathCache factory = new Nd4jCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems), getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		int numberOfWorkspaces = 2;
+		int numberOfRequests = numberOfWorkspaces * 4;
+
+		// 独立的环境上下文保证请求在不同的线程并发执行
+		EnvironmentContext context = EnvironmentContext.constructCpuContext(numberOfRequests);
+		try {
+			Future<?> task = context.doTask(() -> {
+				Graph graph = getGraph(factory);
+				graph.practice(10, samples, labels);
+				MathMatrix[] expects = new MathMatrix[] { factory.makeMatrix(numberOfSamples, 1) };
+				graph.predict(samples, expects);
+
+				InferenceGraph inference = new InferenceGraph(graph, factory, numberOfWorkspaces);
+				MathMatrix[] actuals = new MathMatrix[numberOfRequests];
+				AtomicInteger concurrency = new AtomicInteger();
+				AtomicInteger maximum = new AtomicInteger();
+				CountDownLatch latch = new CountDownLatch(numberOfRequests);
+				for (int index = 0; index < numberOfRequests; index++) {
+					int position = index;
+					actuals[position] = factory.makeMatrix(numberOfSamples, 1);
+					context.doAlgorithmByAny(index, () -> {
+						try {
+							inference.predict(samples, (outputs) -> {
+								maximum.accumulateAndGet(concurrency.incrementAndGet(), Math::max);
+								try {
+									// 延长借用时间,让其它请求等待工作区
+									Thread.sleep(10L);
+								} catch (Exception exception) {
+									throw new RuntimeException(exception);
+								}
+								actuals[position].copyMatrix(outputs[0], false);
+								concurrency.decrementAndGet();
+							});
+						} finally {
+							latch.countDown();
+						}
+					});
+				}
+				try {
+					latch.await();
+				} catch (Exception exception) {
+					throw new RuntimeException(exception);
+				}
+				for (int index = 0; index < numberOfRequests; index++) {
+					assertEquals(expects[0], actuals[index]);
+				}
+				// 并发借用与构建的工作区都不能超过上限
+				Assert.assertTrue(maximum.get() <= numberOfWorkspaces);
+				Assert.assertTrue(inference.getWorkspaceSize() <= numberOfWorkspaces);
+			});
+			task.get();
+		} finally {
+			context.shutdown();
+		}
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		MathCache factory = new Nd4jCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems), getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		int maximumSize = 16;
+
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph graph = getGraph(factory);
+			graph.practice(10, samples, labels);
+			InferenceGraph inference = new InferenceGraph(graph, factory);
+			MathMatrix[] expects = new MathMatrix[] { factory.makeMatrix(numberOfSamples, 1) };
+			inference.predict(samples, expects);
+
+			InferenceBatcher batcher = new InferenceBatcher(inference, factory, EnvironmentContext.CPU, maximumSize, 1000L);
+			try {
+				// 单行请求合并为批量之后,每个请求得到对应的输出行
+				CompletableFuture<MathMatrix[]>[] futures = new CompletableFuture[numberOfSamples];
+				for (int row = 0; row < numberOfSamples; row++) {
+					MathMatrix left = factory.makeMatrix(1, 1);
+					left.setValue(0, 0, samples[0].getValue(row, 0));
+					MathMatrix right = factory.makeMatrix(1, 1);
+					right.setValue(0, 0, samples[1].getValue(row, 0));
+					futures[row] = batcher.predict(left, right);
+				}
+				for (int row = 0; row < numberOfSamples; row++) {
+					MathMatrix actual = futures[row].get()[0];
+					Assert.assertEquals(1, actual.getRowSize());
+					Assert.assertEquals(expects[0].getValue(row, 0), actual.getValue(0, 0), 1E-5F);
+				}
+
+				long count = 0L;
+				long[] batchSizes = batcher.getBatchSizes();
+				Assert.assertEquals(maximumSize + 1, batchSizes.length);
+				for (int size = 0; size < batchSizes.length; size++) {
+					count += batchSizes[size] * size;
+				}
+				Assert.assertEquals(numberOfSamples, count);
+			} catch (Exception exception) {
+				throw new RuntimeException(exception);
+			} finally {
+				batcher.shutdown();
+			}
+		});
+		task.get();
+	}
+
+}
@@ -8,6 +8,7 @@ import com.jstarcraft.ai.neuralnetwork.activation.ActivationFunctionTestSuite;
 import com.jstarcraft.ai.neuralnetwork.layer.LayerTestSuite;
 import com.jstarcraft.ai.neuralnetwork.learn.LearnerTestSuite;
 import com.jstarcraft.ai.neuralnetwork.loss.LossFunctionTestSuite;
+import com.jstarcraft.ai.neuralnetwork.normalization.NormalizerTestSuite;
 import com.jstarcraft.ai.neuralnetwork.vertex.VertexTestSuite;
 
 @RunWith(Suite.class)
@@ -15,6 +16,18 @@ import com.jstarcraft.ai.neuralnetwork.vertex.VertexTestSuite;
 
 		GraphTestCase.class,
 
+		ParallelGraphTestCase.class,
+
+		DistributedGraphTestCase.class,
+
+		HogwildGraphTestCase.class,
+
+		InferenceGraphTestCase.class,
+
+		BatchPrefetcherTestCase.class,
+
+		RingTransportTestCase.class,
+
 		ActivationFunctionTestSuite.class,
 
 		LayerTestSuite.class,
@@ -23,6 +36,8 @@ import com.jstarcraft.ai.neuralnetwork.vertex.VertexTestSuite;
 
 		LossFunctionTestSuite.class,
 
+		NormalizerTestSuite.class,
+
 		VertexTestSuite.class })
 public class NeuralTestSuite {
 
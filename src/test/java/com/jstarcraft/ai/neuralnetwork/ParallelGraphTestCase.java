@@ -0,0 +1,254 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.Nd4jCache;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.DropoutMasker;
+import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.layer.ParameterConfigurator;
+import com.jstarcraft.ai.neuralnetwork.layer.WeightLayer;
+import com.jstarcraft.ai.neuralnetwork.learn.AdaGradLearner;
+import com.jstarcraft.ai.neuralnetwork.learn.SgdLearner;
+import com.jstarcraft.ai.neuralnetwork.loss.MSELossFunction;
+import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
+import com.jstarcraft.ai.neuralnetwork.optimization.StochasticGradientOptimizer;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
+import com.jstarcraft.ai.neuralnetwork.vertex.LayerVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Nd4jVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.Vertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.transformation.HorizontalAttachVertex;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class ParallelGraphTestCase {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final static float learnRatio = 0.01F;
+
+	private final static int numberOfItems = 100;
+
+	private final static int numberOfFactors = 10;
+
+	private final static int numberOfSamples = 1000;
+
+	private static Map<String, ParameterConfigurator> getConfigurators() {
+		Map<String, ParameterConfigurator> configurators = new HashMap<>();
+		configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0.01F, 0.05F, new NormalParameterFactory()));
+		return configurators;
+	}
+
+	private Graph getGraph(MathCache factory) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		Layer leftEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		Layer rightEmbed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("leftEmbed", factory, leftEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new LayerVertex("rightEmbed", factory, rightEmbed, new SgdLearner(schedule), new IgnoreNormalizer()));
+		configurator.connect(new HorizontalAttachVertex("embed", factory), "leftEmbed", "rightEmbed");
+		configurator.connect(new Nd4jVertex("nd4j", factory, true), "embed");
+		Layer weightLayer = new WeightLayer(numberOfFactors * 2, 1, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("output", factory, weightLayer, new SgdLearner(schedule), new IgnoreNormalizer()), "nd4j");
+		return new Graph(configurator, new StochasticGradientOptimizer(), new MSELossFunction());
+	}
+
+	private Graph getAdaptiveGraph(MathCache factory) {
+		Schedule schedule = new ConstantSchedule(learnRatio);
+		GraphConfigurator configurator = new GraphConfigurator();
+		Layer embed = new EmbedLayer(numberOfItems, numberOfFactors, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("embed", factory, embed, new AdaGradLearner(1E-6F, schedule), new IgnoreNormalizer()));
+		Layer weightLayer = new WeightLayer(numberOfFactors, 1, factory, getConfigurators(), Mode.TRAIN, new IdentityActivationFunction());
+		configurator.connect(new LayerVertex("output", factory, weightLayer, new AdaGradLearner(1E-6F, schedule), new IgnoreNormalizer()), "embed");
+		return new Graph(configurator, new StochasticGradientOptimizer(), new MSELossFunction());
+	}
+
+	private MathMatrix getMatrix(MathCache factory, int bound) {
+		MathMatrix matrix = factory.makeMatrix(numberOfSamples, 1);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomInteger(bound));
+		});
+		return matrix;
+	}
+
+	@Test
+	public void testLearn() throws Exception {
+		// 学习器对梯度非线性,必须按照归约之后的梯度执行,结果才与单个计算图处理整个批量一致
+		MathCache factory = new DenseCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		Graph[] graphs = new Graph[2];
+		EnvironmentContext.CPU.doTask(() -> {
+			graphs[0] = getAdaptiveGraph(factory);
+			graphs[1] = (Graph) ModelCodec.KRYO.decodeModel(ModelCodec.KRYO.encodeModel(graphs[0]));
+			for (int epoch = 0; epoch < 5; epoch++) {
+				graphs[1].practice(10, samples, labels);
+			}
+		}).get();
+
+		ParallelGraph graph = new ParallelGraph(graphs[0], factory, 2, 1);
+		try {
+			for (int epoch = 0; epoch < 5; epoch++) {
+				graph.practice(10, samples, labels);
+			}
+		} finally {
+			graph.shutdown();
+		}
+
+		Map<String, MathMatrix> leftParameters = graphs[0].getParameters();
+		Map<String, MathMatrix> rightParameters = graphs[1].getParameters();
+		for (Entry<String, MathMatrix> term : leftParameters.entrySet()) {
+			MathMatrix left = term.getValue();
+			MathMatrix right = rightParameters.get(term.getKey());
+			for (int row = 0; row < left.getRowSize(); row++) {
+				for (int column = 0; column < left.getColumnSize(); column++) {
+					Assert.assertEquals(right.getValue(row, column), left.getValue(row, column), 1E-4F);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testScore() throws Exception {
+		// 正则化项只能计算一次,得分必须与单个计算图处理整个批量一致
+		MathCache factory = new DenseCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		Graph[] graphs = new Graph[2];
+		float[] scores = new float[2];
+		EnvironmentContext.CPU.doTask(() -> {
+			graphs[0] = getAdaptiveGraph(factory);
+			graphs[1] = (Graph) ModelCodec.KRYO.decodeModel(ModelCodec.KRYO.encodeModel(graphs[0]));
+			scores[1] = graphs[1].practice(1, samples, labels);
+		}).get();
+
+		ParallelGraph graph = new ParallelGraph(graphs[0], factory, 2, 1);
+		try {
+			scores[0] = graph.practice(1, samples, labels);
+		} finally {
+			graph.shutdown();
+		}
+		Assert.assertEquals(scores[1], scores[0], 1E-5F);
+	}
+
+	@Test
+	public void testMasker() throws Exception {
+		// 副本复制了掩码器的种子,必须派生独立的随机流,否则所有分片使用相同的掩码
+		MathCache factory = new DenseCache();
+		Graph[] graphs = new Graph[1];
+		EnvironmentContext.CPU.doTask(() -> {
+			graphs[0] = getAdaptiveGraph(factory);
+			for (Vertex vertex : graphs[0].getVertices()) {
+				if (vertex instanceof LayerVertex && LayerVertex.class.cast(vertex).getLayer() instanceof WeightLayer) {
+					WeightLayer.class.cast(LayerVertex.class.cast(vertex).getLayer()).setDropout(new DropoutMasker(new ConstantSchedule(0.5F)));
+				}
+			}
+		}).get();
+
+		ParallelGraph graph = new ParallelGraph(graphs[0], factory, 2, 1);
+		try {
+			DropoutMasker[] maskers = new DropoutMasker[2];
+			for (int index = 0; index < maskers.length; index++) {
+				for (Vertex vertex : graph.getReplica(index).getVertices()) {
+					if (vertex instanceof LayerVertex && LayerVertex.class.cast(vertex).getLayer() instanceof WeightLayer) {
+						maskers[index] = WeightLayer.class.cast(LayerVertex.class.cast(vertex).getLayer()).getDropout();
+					}
+				}
+			}
+			EnvironmentContext.CPU.doTask(() -> {
+				for (DropoutMasker masker : maskers) {
+					masker.generate(numberOfSamples, numberOfFactors);
+				}
+			}).get();
+			int count = 0;
+			for (int row = 0; row < numberOfSamples; row++) {
+				for (int column = 0; column < numberOfFactors; column++) {
+					if (maskers[0].isKept(row, column) != maskers[1].isKept(row, column)) {
+						count++;
+					}
+				}
+			}
+			// 独立的掩码大约一半的元素不一致
+			Assert.assertTrue(count > numberOfSamples * numberOfFactors / 4);
+		} finally {
+			graph.shutdown();
+		}
+	}
+
+	@Test
+	public void testReplicate() throws Exception {
+		MathCache factory = new Nd4jCache();
+		MathMatrix[] samples = new MathMatrix[] { getMatrix(factory, numberOfItems), getMatrix(factory, numberOfItems) };
+		MathMatrix[] labels = new MathMatrix[] { getMatrix(factory, 5) };
+		int numberOfThreads = EnvironmentContext.CPU.getNumberOfThreads();
+
+		// 基准:单个副本使用算子内部的并行
+		byte[][] datas = new byte[1][];
+		float[] scores = new float[1];
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			Graph graph = getGraph(factory);
+			datas[0] = ModelCodec.KRYO.encodeModel(graph);
+			long time = System.currentTimeMillis();
+			for (int epoch = 0; epoch < 10; epoch++) {
+				scores[0] = graph.practice(10, samples, labels);
+			}
+			logger.debug("intra-op: {}ms, score {}", System.currentTimeMillis() - time, scores[0]);
+		});
+		task.get();
+
+		// 至少使用两个副本,保证副本之间的一致性得到验证
+		for (int numberOfReplicas = 1; numberOfReplicas <= Math.max(2, numberOfThreads); numberOfReplicas <<= 1) {
+			Graph[] graphs = new Graph[1];
+			EnvironmentContext.CPU.doTask(() -> {
+				graphs[0] = (Graph) ModelCodec.KRYO.decodeModel(datas[0]);
+			}).get();
+			ParallelGraph graph = new ParallelGraph(graphs[0], factory, numberOfReplicas, Math.max(1, numberOfThreads / numberOfReplicas));
+			try {
+				long time = System.currentTimeMillis();
+				float score = 0F;
+				for (int epoch = 0; epoch < 10; epoch++) {
+					score = graph.practice(10, samples, labels);
+				}
+				logger.debug("{} replicas: {}ms, score {}", numberOfReplicas, System.currentTimeMillis() - time, score);
+				// 从相同的参数出发,得分只允许存在归约顺序导致的误差
+				Assert.assertEquals(scores[0], score, 1E-3F);
+
+				// 所有副本的参数必须逐位一致
+				Map<String, MathMatrix> leftParameters = graph.getReplica(0).getParameters();
+				for (int index = 1; index < numberOfReplicas; index++) {
+					Map<String, MathMatrix> rightParameters = graph.getReplica(index).getParameters();
+					for (Entry<String, MathMatrix> term : leftParameters.entrySet()) {
+						MathMatrix left = term.getValue();
+						MathMatrix right = rightParameters.get(term.getKey());
+						for (int row = 0; row < left.getRowSize(); row++) {
+							for (int column = 0; column < left.getColumnSize(); column++) {
+								Assert.assertEquals(Float.floatToIntBits(left.getValue(row, column)), Float.floatToIntBits(right.getValue(row, column)));
+							}
+						}
+					}
+				}
+			} finally {
+				graph.shutdown();
+			}
+		}
+	}
+
+}
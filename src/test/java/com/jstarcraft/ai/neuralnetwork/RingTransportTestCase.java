@@ -0,0 +1,134 @@
+package com.jstarcraft.ai.neuralnetwork;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingTransportTestCase {
+
+	private static final int numberOfPeers = 3;
+
+	private static final int numberOfElements = 1001;
+
+	private static float[] getData(int rank) {
+		float[] data = new float[numberOfElements];
+		for (int index = 0; index < numberOfElements; index++) {
+			data[index] = (rank + 1) * 0.5F + index;
+		}
+		return data;
+	}
+
+	private static boolean checkData(float[] data, boolean compress) {
+		for (int index = 0; index < numberOfElements; index++) {
+			float value = 0F;
+			for (int rank = 0; rank < numberOfPeers; rank++) {
+				value += (rank + 1) * 0.5F + index;
+			}
+			// bfloat16只有8位有效数字
+			float epsilon = compress ? Math.abs(value) / 64F : 0F;
+			if (Math.abs(data[index] - value) > epsilon) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 每个节点的数组长度不一致
+	private static int[] getIndexes(int rank) {
+		int[] indexes = new int[rank + 1];
+		for (int index = 0; index < indexes.length; index++) {
+			indexes[index] = rank * numberOfElements + index;
+		}
+		return indexes;
+	}
+
+	private static boolean checkIndexes(int[][] indexes) {
+		for (int rank = 0; rank < numberOfPeers; rank++) {
+			if (!Arrays.equals(getIndexes(rank), indexes[rank])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static InetSocketAddress[] getPeers(String[] ports) {
+		InetSocketAddress[] peers = new InetSocketAddress[ports.length];
+		for (int index = 0; index < ports.length; index++) {
+			peers[index] = new InetSocketAddress("127.0.0.1", Integer.valueOf(ports[index]));
+		}
+		return peers;
+	}
+
+	/**
+	 * 子进程入口
+	 *
+	 * @param arguments
+	 *            rank compress port...
+	 */
+	public static void main(String[] arguments) {
+		int rank = Integer.valueOf(arguments[0]);
+		boolean compress = Boolean.valueOf(arguments[1]);
+		String[] ports = new String[arguments.length - 2];
+		System.arraycopy(arguments, 2, ports, 0, ports.length);
+		try (RingTransport transport = new RingTransport(getPeers(ports), rank, compress)) {
+			float[] data = getData(rank);
+			transport.allReduce(data);
+			int[][] indexes = transport.allGather(getIndexes(rank));
+			System.exit(checkData(data, compress) && checkIndexes(indexes) ? 0 : 1);
+		}
+	}
+
+	private void testAllReduce(boolean compress) throws Exception {
+		String[] ports = new String[numberOfPeers];
+		for (int index = 0; index < numberOfPeers; index++) {
+			try (ServerSocket socket = new ServerSocket(0)) {
+				ports[index] = String.valueOf(socket.getLocalPort());
+			}
+		}
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classpath = System.getProperty("java.class.path");
+		List<Process> processes = new LinkedList<>();
+		for (int rank = 1; rank < numberOfPeers; rank++) {
+			List<String> command = new LinkedList<>();
+			command.add(java);
+			command.add("-cp");
+			command.add(classpath);
+			command.add(RingTransportTestCase.class.getName());
+			command.add(String.valueOf(rank));
+			command.add(String.valueOf(compress));
+			for (String port : ports) {
+				command.add(port);
+			}
+			processes.add(new ProcessBuilder(command).inheritIO().start());
+		}
+
+		float[] data = getData(0);
+		int[][] indexes;
+		try (RingTransport transport = new RingTransport(getPeers(ports), 0, compress)) {
+			transport.allReduce(data);
+			indexes = transport.allGather(getIndexes(0));
+		}
+		Assert.assertTrue(checkData(data, compress));
+		Assert.assertTrue(checkIndexes(indexes));
+		for (Process process : processes) {
+			Assert.assertEquals(0, process.waitFor());
+		}
+	}
+
+	@Test
+	public void testAllReduce() throws Exception {
+		testAllReduce(false);
+	}
+
+	@Test
+	public void testCompress() throws Exception {
+		testAllReduce(true);
+	}
+
+}
@@ -74,6 +74,15 @@ public abstract class ActivationFunctionTestCase {
 				newFuction.forward(input.getRowVector(index), vector);
 				Assert.assertTrue(equalVector(vector, output.getRowVector(index)));
 			}
+
+			if (newFuction instanceof ElementActivationFunction) {
+				ElementActivationFunction element = ElementActivationFunction.class.cast(newFuction);
+				for (int row = 0; row < input.getRowSize(); row++) {
+					for (int column = 0; column < input.getColumnSize(); column++) {
+						Assert.assertTrue(element.forward(input.getValue(row, column)) == output.getValue(row, column));
+					}
+				}
+			}
 		});
 		task.get();
 	}
@@ -102,6 +111,15 @@ public abstract class ActivationFunctionTestCase {
 				newFuction.backward(input.getRowVector(index), error.getRowVector(index), vector);
 				Assert.assertTrue(equalVector(vector, output.getRowVector(index)));
 			}
+
+			if (newFuction instanceof ElementActivationFunction) {
+				ElementActivationFunction element = ElementActivationFunction.class.cast(newFuction);
+				for (int row = 0; row < input.getRowSize(); row++) {
+					for (int column = 0; column < input.getColumnSize(); column++) {
+						Assert.assertTrue(element.backward(input.getValue(row, column), error.getValue(row, column)) == output.getValue(row, column));
+					}
+				}
+			}
 		});
 		task.get();
 	}
@@ -7,6 +7,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 		// 激活函数测试集
+		ApproximateUtilityTestCase.class,
+
 		CubeActivationFunctionTestCase.class,
 
 		ELUActivationFunctionTestCase.class,
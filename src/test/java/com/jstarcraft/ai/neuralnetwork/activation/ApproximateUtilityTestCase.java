@@ -0,0 +1,93 @@
+package com.jstarcraft.ai.neuralnetwork.activation;
+
+import org.apache.commons.math3.util.FastMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApproximateUtilityTestCase {
+
+	private interface Function {
+
+		float calculate(float value);
+
+	}
+
+	private static void assertAccuracy(Function exact, Function approximate, float minimum, float maximum) {
+		int size = 1000000;
+		float step = (maximum - minimum) / size;
+		float error = 0F;
+		for (int index = 0; index <= size; index++) {
+			float value = minimum + step * index;
+			float left = exact.calculate(value);
+			float right = approximate.calculate(value);
+			if (left != right) {
+				error = Math.max(error, Math.abs(left - right) / Math.abs(left));
+			}
+		}
+		System.out.println("maximum relative error: " + error);
+		Assert.assertTrue(error <= 1E-6F);
+	}
+
+	private static float benchmark(Function function, float[] values) {
+		float sum = 0F;
+		for (float value : values) {
+			sum += function.calculate(value);
+		}
+		return sum;
+	}
+
+	private static void assertThroughput(String name, Function exact, Function approximate) {
+		float[] values = new float[10000000];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = (float) (Math.sin(index) * 20D);
+		}
+		// 预热
+		benchmark(exact, values);
+		benchmark(approximate, values);
+		long instant = System.nanoTime();
+		benchmark(exact, values);
+		long exactTime = System.nanoTime() - instant;
+		instant = System.nanoTime();
+		benchmark(approximate, values);
+		long approximateTime = System.nanoTime() - instant;
+		System.out.println(name + " exact: " + (exactTime / (float) values.length) + " ns/element, approximate: " + (approximateTime / (float) values.length) + " ns/element");
+	}
+
+	@Test
+	public void testExponent() {
+		Function exact = (value) -> (float) Math.exp(value);
+		Function approximate = (value) -> ApproximateUtility.exp(value);
+		assertAccuracy(exact, approximate, -80F, 80F);
+		Assert.assertTrue(ApproximateUtility.exp(-200F) == 0F);
+		Assert.assertTrue(ApproximateUtility.exp(200F) == Float.POSITIVE_INFINITY);
+		Assert.assertTrue(Float.isNaN(ApproximateUtility.exp(Float.NaN)));
+		assertThroughput("exp", (value) -> (float) FastMath.exp(value), approximate);
+
+		assertAccuracy((value) -> (float) Math.expm1(value), (value) -> ApproximateUtility.expm1(value), -20F, 20F);
+	}
+
+	@Test
+	public void testSigmoid() {
+		Function exact = (value) -> (float) (1D / (1D + Math.exp(-value)));
+		Function approximate = (value) -> ApproximateUtility.sigmoid(value);
+		assertAccuracy(exact, approximate, -80F, 80F);
+		assertThroughput("sigmoid", (value) -> (float) (1F / (1F + FastMath.exp(-value))), approximate);
+	}
+
+	@Test
+	public void testTanh() {
+		Function exact = (value) -> (float) Math.tanh(value);
+		Function approximate = (value) -> ApproximateUtility.tanh(value);
+		assertAccuracy(exact, approximate, -20F, 20F);
+		assertThroughput("tanh", (value) -> (float) FastMath.tanh(value), approximate);
+	}
+
+	@Test
+	public void testSoftPlus() {
+		Function exact = (value) -> (float) (Math.max(value, 0D) + Math.log1p(Math.exp(-Math.abs(value))));
+		Function approximate = (value) -> ApproximateUtility.softplus(value);
+		assertAccuracy(exact, approximate, -80F, 80F);
+		assertThroughput("softplus", (value) -> (float) FastMath.log(1F + FastMath.exp(value)), approximate);
+	}
+
+}
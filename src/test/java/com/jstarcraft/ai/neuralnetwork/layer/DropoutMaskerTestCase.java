@@ -0,0 +1,123 @@
+package com.jstarcraft.ai.neuralnetwork.layer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.activation.SigmoidActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.parameter.NormalParameterFactory;
+import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class DropoutMaskerTestCase {
+
+	private static final float probability = 0.3F;
+
+	private static boolean equalValue(float left, float right) {
+		return Math.abs(left - right) <= 1E-5F * Math.max(1F, Math.max(Math.abs(left), Math.abs(right)));
+	}
+
+	private static DenseMatrix getRandom(int rowSize, int columnSize) {
+		DenseMatrix matrix = DenseMatrix.valueOf(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(2F) - 1F);
+		});
+		return matrix;
+	}
+
+	@Test
+	public void testMask() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			int rowSize = 100, columnSize = 333;
+			DropoutMasker masker = new DropoutMasker(new ConstantSchedule(probability), 0L);
+			DenseMatrix data = DenseMatrix.valueOf(rowSize, columnSize);
+			data.setValues(1F);
+			masker.mask(data, 0, 0);
+			float scale = 1F / (1F - probability);
+			int count = 0;
+			for (int row = 0; row < rowSize; row++) {
+				for (int column = 0; column < columnSize; column++) {
+					float value = data.getValue(row, column);
+					if (masker.isKept(row, column)) {
+						Assert.assertTrue(equalValue(scale, value));
+						count++;
+					} else {
+						Assert.assertTrue(value == 0F);
+					}
+				}
+			}
+			Assert.assertEquals(1F - probability, count / (float) (rowSize * columnSize), 0.02F);
+
+			// 反向传播复用同一个掩码
+			DenseMatrix error = DenseMatrix.valueOf(rowSize, columnSize);
+			error.setValues(1F);
+			masker.unmask(error);
+			Assert.assertEquals(data, error);
+
+			// 相同的种子得到相同的掩码
+			DenseMatrix copy = DenseMatrix.valueOf(rowSize, columnSize);
+			copy.setValues(1F);
+			new DropoutMasker(new ConstantSchedule(probability), 0L).mask(copy, 0, 0);
+			Assert.assertEquals(data, copy);
+		});
+		task.get();
+	}
+
+	@Test
+	public void testLayer() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			int rowSize = 20, numberOfInputs = 10, numberOfOutputs = 30;
+			Map<String, ParameterConfigurator> configurators = new HashMap<>();
+			configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0F, 0F, new NormalParameterFactory(0L)));
+			configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0F, 0F, new NormalParameterFactory(1L)));
+			MathCache factory = new DenseCache();
+			SigmoidActivationFunction function = new SigmoidActivationFunction();
+			WeightLayer layer = new WeightLayer(numberOfInputs, numberOfOutputs, factory, configurators, Mode.TRAIN, function);
+			DropoutMasker masker = new DropoutMasker(new ConstantSchedule(probability), 0L);
+			layer.setDropout(masker);
+
+			DenseMatrix input = getRandom(rowSize, numberOfInputs);
+			DenseMatrix error = DenseMatrix.valueOf(rowSize, numberOfInputs);
+			layer.doCache(factory, new KeyValue<>(input, error));
+			layer.doForward();
+			MathMatrix middleData = layer.getMiddleKeyValue().getKey();
+			MathMatrix outputData = layer.getOutputKeyValue().getKey();
+			float scale = 1F / (1F - probability);
+			for (int row = 0; row < rowSize; row++) {
+				for (int column = 0; column < numberOfOutputs; column++) {
+					float value = masker.isKept(row, column) ? function.forward(middleData.getValue(row, column)) * scale : 0F;
+					Assert.assertTrue(equalValue(value, outputData.getValue(row, column)));
+				}
+			}
+
+			MathMatrix innerError = layer.getOutputKeyValue().getValue();
+			innerError.copyMatrix(getRandom(rowSize, numberOfOutputs), false);
+			DenseMatrix copy = DenseMatrix.valueOf(rowSize, numberOfOutputs);
+			copy.copyMatrix(innerError, false);
+			layer.doBackward();
+			MathMatrix middleError = layer.getMiddleKeyValue().getValue();
+			for (int row = 0; row < rowSize; row++) {
+				for (int column = 0; column < numberOfOutputs; column++) {
+					float value = masker.isKept(row, column) ? function.backward(middleData.getValue(row, column), copy.getValue(row, column) * scale) : 0F;
+					Assert.assertTrue(equalValue(value, middleError.getValue(row, column)));
+				}
+			}
+		});
+		task.get();
+	}
+
+}
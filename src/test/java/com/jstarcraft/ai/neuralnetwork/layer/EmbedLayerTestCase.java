@@ -29,7 +29,8 @@ public class EmbedLayerTestCase extends LayerTestCase {
 
 	@Override
 	protected INDArray getData() {
-		return Nd4j.linspace(0, 4, 5).reshape(5, 1);
+		// 包含重复的索引
+		return Nd4j.create(new double[] { 0, 3, 1, 3, 0 }, new int[] { 5, 1 });
 	}
 
 	@Override
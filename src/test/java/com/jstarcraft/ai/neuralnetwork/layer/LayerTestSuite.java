@@ -7,8 +7,12 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 		// 层测试集
+		DropoutMaskerTestCase.class,
+
 		EmbedLayerTestCase.class,
 
+		SampledLayerTestCase.class,
+
 		WeightLayerTestCase.class, })
 public class LayerTestSuite {
 
@@ -0,0 +1,153 @@
+package com.jstarcraft.ai.neuralnetwork.layer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.algorithm.distribution.AliasSampler;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
+import com.jstarcraft.ai.neuralnetwork.parameter.CopyParameterFactory;
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class SampledLayerTestCase {
+
+	private static final int numberOfInputs = 8;
+
+	private static final int numberOfOutputs = 100;
+
+	private static final int numberOfSamples = 10;
+
+	private static final int rowSize = 20;
+
+	private static boolean equalValue(float left, float right) {
+		return Math.abs(left - right) <= 1E-4F * Math.max(1F, Math.max(Math.abs(left), Math.abs(right)));
+	}
+
+	private static DenseMatrix getRandom(int rowSize, int columnSize) {
+		DenseMatrix matrix = DenseMatrix.valueOf(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(2F) - 1F);
+		});
+		return matrix;
+	}
+
+	private float getLogit(MathMatrix input, int row, DenseMatrix weight, DenseMatrix bias, int index) {
+		float value = bias.getValue(index, 0);
+		for (int dimension = 0; dimension < numberOfInputs; dimension++) {
+			value += input.getValue(row, dimension + 1) * weight.getValue(index, dimension);
+		}
+		return value;
+	}
+
+	private boolean isHit(SampledLayer layer, int row, int column) {
+		return column > 0 && layer.getIndex(row, column) == layer.getIndex(row, 0);
+	}
+
+	private void doTest(Mode mode) throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			DenseMatrix weight = getRandom(numberOfOutputs, numberOfInputs);
+			DenseMatrix bias = getRandom(numberOfOutputs, 1);
+			Map<String, ParameterConfigurator> configurators = new HashMap<>();
+			configurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0F, 0F, new CopyParameterFactory(weight)));
+			configurators.put(WeightLayer.BIAS_KEY, new ParameterConfigurator(0F, 0F, new CopyParameterFactory(bias)));
+			MathCache factory = new DenseCache();
+			AliasSampler sampler = AliasSampler.logUniformOf(numberOfOutputs);
+			SampledLayer layer = new SampledLayer(numberOfInputs, numberOfOutputs, numberOfSamples, sampler, factory, configurators, mode, new IdentityActivationFunction());
+
+			// 第0列为真实类别
+			DenseMatrix input = getRandom(rowSize, numberOfInputs + 1);
+			for (int row = 0; row < rowSize; row++) {
+				input.setValue(row, 0, RandomUtility.randomInteger(numberOfOutputs));
+			}
+			DenseMatrix error = DenseMatrix.valueOf(rowSize, numberOfInputs + 1);
+			layer.doCache(factory, new KeyValue<>(input, error));
+			layer.doForward();
+			MathMatrix output = layer.getOutputKeyValue().getKey();
+
+			if (mode == Mode.TEST) {
+				Assert.assertEquals(numberOfOutputs, output.getColumnSize());
+				for (int row = 0; row < rowSize; row++) {
+					for (int column = 0; column < numberOfOutputs; column++) {
+						Assert.assertTrue(equalValue(getLogit(input, row, weight, bias, column), output.getValue(row, column)));
+					}
+				}
+				return;
+			}
+
+			// 正向传播
+			Assert.assertEquals(numberOfSamples + 1, output.getColumnSize());
+			for (int row = 0; row < rowSize; row++) {
+				Assert.assertEquals((int) input.getValue(row, 0), layer.getIndex(row, 0));
+				for (int column = 0; column <= numberOfSamples; column++) {
+					int index = layer.getIndex(row, column);
+					if (isHit(layer, row, column)) {
+						Assert.assertTrue(output.getValue(row, column) == Float.NEGATIVE_INFINITY);
+					} else {
+						float value = getLogit(input, row, weight, bias, index) - (float) Math.log(numberOfSamples * sampler.getProbability(index));
+						Assert.assertTrue(equalValue(value, output.getValue(row, column)));
+					}
+				}
+			}
+
+			// 反向传播
+			MathMatrix innerError = layer.getOutputKeyValue().getValue();
+			innerError.copyMatrix(getRandom(rowSize, numberOfSamples + 1), false);
+			layer.doBackward();
+			DenseMatrix weightGradient = DenseMatrix.valueOf(numberOfOutputs, numberOfInputs);
+			DenseMatrix biasGradient = DenseMatrix.valueOf(numberOfOutputs, 1);
+			DenseMatrix outerError = DenseMatrix.valueOf(rowSize, numberOfInputs + 1);
+			for (int row = 0; row < rowSize; row++) {
+				for (int column = 0; column <= numberOfSamples; column++) {
+					if (isHit(layer, row, column)) {
+						continue;
+					}
+					int index = layer.getIndex(row, column);
+					float value = innerError.getValue(row, column);
+					for (int dimension = 0; dimension < numberOfInputs; dimension++) {
+						weightGradient.shiftValue(index, dimension, value * input.getValue(row, dimension + 1));
+						outerError.shiftValue(row, dimension + 1, value * weight.getValue(index, dimension));
+					}
+					biasGradient.shiftValue(index, 0, value);
+				}
+			}
+			MathMatrix weightGradients = layer.getGradients().get(WeightLayer.WEIGHT_KEY);
+			MathMatrix biasGradients = layer.getGradients().get(WeightLayer.BIAS_KEY);
+			for (int index = 0; index < numberOfOutputs; index++) {
+				for (int dimension = 0; dimension < numberOfInputs; dimension++) {
+					Assert.assertTrue(equalValue(weightGradient.getValue(index, dimension), weightGradients.getValue(index, dimension)));
+				}
+				Assert.assertTrue(equalValue(biasGradient.getValue(index, 0), biasGradients.getValue(index, 0)));
+			}
+			for (int row = 0; row < rowSize; row++) {
+				for (int dimension = 0; dimension <= numberOfInputs; dimension++) {
+					Assert.assertTrue(equalValue(outerError.getValue(row, dimension), error.getValue(row, dimension)));
+				}
+			}
+		});
+		task.get();
+	}
+
+	@Test
+	public void testTrain() throws Exception {
+		doTest(Mode.TRAIN);
+	}
+
+	@Test
+	public void testTest() throws Exception {
+		doTest(Mode.TEST);
+	}
+
+}
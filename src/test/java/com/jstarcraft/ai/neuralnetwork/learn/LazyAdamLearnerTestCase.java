@@ -0,0 +1,87 @@
+package com.jstarcraft.ai.neuralnetwork.learn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.AdamUpdater;
+import org.nd4j.linalg.learning.GradientUpdater;
+import org.nd4j.linalg.learning.config.Adam;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.utility.MathUtility;
+
+public class LazyAdamLearnerTestCase extends LearnerTestCase {
+
+	@Override
+	protected GradientUpdater<?> getOldFunction(int[] shape) {
+		Adam configuration = new Adam();
+		GradientUpdater<?> oldFunction = new AdamUpdater(configuration);
+		int length = (int) (shape[0] * configuration.stateSize(shape[1]));
+		INDArray view = Nd4j.zeros(length);
+		oldFunction.setStateViewArray(view, shape, 'c', true);
+		return oldFunction;
+	}
+
+	@Override
+	protected Learner getNewFunction(int[] shape) {
+		Learner newFuction = new LazyAdamLearner();
+		return newFuction;
+	}
+
+	/**
+	 * 惰性学习器只更新存在梯度的行,每次迭代都存在梯度的行与稠密结果一致
+	 */
+	@Test
+	@Override
+	public void testSparse() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			int[] shape = { 5, 2 };
+			DenseMatrix denseGradient = DenseMatrix.valueOf(shape[0], shape[1]);
+			Map<String, MathMatrix> denseGradients = new HashMap<>();
+			denseGradients.put("gradients", denseGradient);
+			Learner denseFunction = new AdamLearner();
+			denseFunction.doCache(denseGradients);
+			RowSparseMatrix sparseGradient = RowSparseMatrix.valueOf(DenseMatrix.valueOf(shape[0], shape[1]));
+			Map<String, MathMatrix> sparseGradients = new HashMap<>();
+			sparseGradients.put("gradients", sparseGradient);
+			Learner sparseFunction = getNewFunction(shape);
+			sparseFunction.doCache(sparseGradients);
+
+			for (int iteration = 0; iteration < 10; iteration++) {
+				sparseGradient.clearRows();
+				for (int row = 0; row < shape[0]; row++) {
+					for (int column = 0; column < shape[1]; column++) {
+						// 第一行每次迭代都存在梯度,其它行间隔若干次迭代才存在梯度
+						float value = row == 0 || (row + iteration) % 3 == 0 ? row - column * 0.5F + 1F : 0F;
+						denseGradient.setValue(row, column, value);
+						sparseGradient.setValue(row, column, value);
+					}
+				}
+				denseFunction.learn(denseGradients, iteration, 0);
+				sparseFunction.learn(sparseGradients, iteration, 0);
+
+				for (int column = 0; column < shape[1]; column++) {
+					Assert.assertTrue(MathUtility.equal(sparseGradient.getValue(0, column), denseGradient.getValue(0, column)));
+				}
+				for (int row = 1; row < shape[0]; row++) {
+					if (!sparseGradient.isKnownRow(row)) {
+						for (int column = 0; column < shape[1]; column++) {
+							Assert.assertEquals(0F, sparseGradient.getValue(row, column), 0F);
+						}
+					}
+				}
+			}
+		});
+		task.get();
+	}
+
+}
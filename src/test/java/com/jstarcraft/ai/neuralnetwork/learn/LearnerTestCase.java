@@ -15,6 +15,7 @@ import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.math.structure.MathCalculator;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCodec;
 import com.jstarcraft.ai.neuralnetwork.learn.Learner;
 import com.jstarcraft.ai.utility.MathUtility;
@@ -40,6 +41,17 @@ public abstract class LearnerTestCase {
 		return true;
 	}
 
+	protected static boolean equalMatrix(MathMatrix left, MathMatrix right) {
+		for (int row = 0; row < left.getRowSize(); row++) {
+			for (int column = 0; column < left.getColumnSize(); column++) {
+				if (!MathUtility.equal(left.getValue(row, column), right.getValue(row, column))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	protected abstract GradientUpdater<?> getOldFunction(int[] shape);
 
 	protected abstract Learner getNewFunction(int[] shape);
@@ -70,6 +82,59 @@ public abstract class LearnerTestCase {
 		task.get();
 	}
 
+	/**
+	 * 行稀疏梯度必须与稠密梯度的结果一致
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSparse() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			int[] shape = { 5, 2 };
+			DenseMatrix denseGradient = DenseMatrix.valueOf(shape[0], shape[1]);
+			Map<String, MathMatrix> denseGradients = new HashMap<>();
+			denseGradients.put("gradients", denseGradient);
+			Learner denseFunction = getNewFunction(shape);
+			denseFunction.doCache(denseGradients);
+			RowSparseMatrix sparseGradient = RowSparseMatrix.valueOf(DenseMatrix.valueOf(shape[0], shape[1]));
+			Map<String, MathMatrix> sparseGradients = new HashMap<>();
+			sparseGradients.put("gradients", sparseGradient);
+			Learner sparseFunction = getNewFunction(shape);
+			sparseFunction.doCache(sparseGradients);
+
+			for (int iteration = 0; iteration < 10; iteration++) {
+				sparseGradient.clearRows();
+				for (int row = 0; row < shape[0]; row++) {
+					for (int column = 0; column < shape[1]; column++) {
+						// 每一行间隔若干次迭代才存在梯度
+						float value = (row + iteration) % 3 == 0 ? row - column * 0.5F + 1F : 0F;
+						denseGradient.setValue(row, column, value);
+						sparseGradient.setValue(row, column, value);
+					}
+				}
+				denseFunction.learn(denseGradients, iteration, 0);
+				sparseFunction.learn(sparseGradients, iteration, 0);
+
+				Assert.assertTrue(equalMatrix(sparseGradient, denseGradient));
+				// 没有梯度但是存在动量的行必须已知,否则步长函数会忽略它的更新
+				for (int row = 0; row < shape[0]; row++) {
+					if ((row + iteration) % 3 == 0) {
+						continue;
+					}
+					for (int column = 0; column < shape[1]; column++) {
+						float value = denseGradient.getValue(row, column);
+						if (value != 0F) {
+							Assert.assertTrue(sparseGradient.isKnownRow(row));
+							Assert.assertEquals(value, sparseGradient.getValue(row, column), 0F);
+						}
+					}
+				}
+			}
+		});
+		task.get();
+	}
+
 	@Test
 	public void testModel() {
 		int[] shape = { 5, 2 };
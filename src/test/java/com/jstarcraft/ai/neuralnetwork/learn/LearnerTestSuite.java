@@ -17,6 +17,8 @@ import org.junit.runners.Suite.SuiteClasses;
 
 		IgnoreLearnerTestCase.class,
 
+		LazyAdamLearnerTestCase.class,
+
 		NadamLearnerTestCase.class,
 
 		NesterovLearnerTestCase.class,
@@ -45,6 +45,31 @@ public abstract class LossFunctionTestCase {
 		return true;
 	}
 
+	/**
+	 * 比较合并计算与分别计算的结果(允许求和顺序导致的相对误差,NaN与无穷必须一致)
+	 * 
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	protected static boolean equalValue(float left, float right) {
+		if (Float.compare(left, right) == 0) {
+			return true;
+		}
+		return Math.abs(left - right) <= MathUtility.EPSILON * Math.max(1F, Math.max(Math.abs(left), Math.abs(right)));
+	}
+
+	protected static boolean equalMatrix(MathMatrix left, MathMatrix right) {
+		for (int row = 0; row < left.getRowSize(); row++) {
+			for (int column = 0; column < left.getColumnSize(); column++) {
+				if (!equalValue(left.getValue(row, column), right.getValue(row, column))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	protected abstract ILossFunction getOldFunction();
 
 	protected abstract LossFunction getNewFunction(ActivationFunction function);
@@ -111,6 +136,37 @@ public abstract class LossFunctionTestCase {
 		task.get();
 	}
 
+	@Test
+	public void testScoreAndGradient() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			LinkedList<KeyValue<IActivation, ActivationFunction>> activetionList = new LinkedList<>();
+			activetionList.add(new KeyValue<>(new ActivationSigmoid(), new SigmoidActivationFunction()));
+			activetionList.add(new KeyValue<>(new ActivationSoftmax(), new SoftMaxActivationFunction()));
+			for (KeyValue<IActivation, ActivationFunction> keyValue : activetionList) {
+				INDArray array = Nd4j.linspace(-2.5D, 2.0D, 10).reshape(5, 2);
+				INDArray labels = Nd4j.create(new double[] { 0D, 1D, 0D, 1D, 0D, 1D, 0D, 1D, 0D, 1D }).reshape(5, 2);
+
+				DenseMatrix input = getMatrix(array);
+				DenseMatrix output = DenseMatrix.valueOf(input.getRowSize(), input.getColumnSize());
+				ActivationFunction function = keyValue.getValue();
+				function.forward(input, output);
+				LossFunction newFunction = getNewFunction(function);
+				newFunction.doCache(getMatrix(labels), output);
+				DenseMatrix gradient = DenseMatrix.valueOf(input.getRowSize(), input.getColumnSize());
+				newFunction.computeGradient(getMatrix(labels), output, null, gradient);
+				float score = newFunction.computeScore(getMatrix(labels), output, null);
+
+				// 合并计算必须与分别计算一致
+				DenseMatrix fusion = DenseMatrix.valueOf(input.getRowSize(), input.getColumnSize());
+				float value = newFunction.computeScoreAndGradient(getMatrix(labels), output, null, fusion);
+				Assert.assertTrue(equalValue(score, value));
+				Assert.assertTrue(equalMatrix(fusion, gradient));
+			}
+		});
+		task.get();
+	}
+
 	@Test
 	public void testModel() {
 		LossFunction oldModel = getNewFunction(null);
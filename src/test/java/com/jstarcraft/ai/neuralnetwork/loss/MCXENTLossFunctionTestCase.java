@@ -1,12 +1,21 @@
 package com.jstarcraft.ai.neuralnetwork.loss;
 
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.lossfunctions.ILossFunction;
 import org.nd4j.linalg.lossfunctions.impl.LossMCXENT;
 
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
 import com.jstarcraft.ai.neuralnetwork.activation.ActivationFunction;
 import com.jstarcraft.ai.neuralnetwork.activation.SoftMaxActivationFunction;
 import com.jstarcraft.ai.neuralnetwork.loss.LossFunction;
 import com.jstarcraft.ai.neuralnetwork.loss.MCXENTLossFunction;
+import com.jstarcraft.core.utility.RandomUtility;
 
 public class MCXENTLossFunctionTestCase extends LossFunctionTestCase {
 
@@ -20,4 +29,38 @@ public class MCXENTLossFunctionTestCase extends LossFunctionTestCase {
 		return new MCXENTLossFunction(function instanceof SoftMaxActivationFunction);
 	}
 
+	@Test
+	public void testSoftMaximum() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			int rowSize = 50;
+			int columnSize = 1000;
+			DenseMatrix input = DenseMatrix.valueOf(rowSize, columnSize);
+			input.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+				scalar.setValue(RandomUtility.randomFloat(4F) - 2F);
+			});
+			DenseMatrix labels = DenseMatrix.valueOf(rowSize, columnSize);
+			for (int row = 0; row < rowSize; row++) {
+				labels.setValue(row, RandomUtility.randomInteger(columnSize), 1F);
+			}
+
+			// 分别计算:SoftMax正向传播,交叉熵,SoftMax反向传播
+			SoftMaxActivationFunction function = new SoftMaxActivationFunction();
+			MCXENTLossFunction lossFunction = new MCXENTLossFunction(true);
+			DenseMatrix output = DenseMatrix.valueOf(rowSize, columnSize);
+			function.forward(input, output);
+			DenseMatrix error = DenseMatrix.valueOf(rowSize, columnSize);
+			float score = lossFunction.computeScoreAndGradient(labels, output, null, error);
+			DenseMatrix gradient = DenseMatrix.valueOf(rowSize, columnSize);
+			function.backward(input, error, gradient);
+
+			// 合并计算
+			DenseMatrix fusion = DenseMatrix.valueOf(rowSize, columnSize);
+			float value = lossFunction.computeScoreAndGradientWithSoftMaximum(labels, input, null, fusion);
+			Assert.assertTrue(equalValue(score, value));
+			Assert.assertTrue(equalMatrix(fusion, gradient));
+		});
+		task.get();
+	}
+
 }
@@ -108,4 +108,36 @@ public class MixtureDensityLossFunctionTestCase extends LossFunctionTestCase {
 		task.get();
 	}
 
+	@Test
+	@Override
+	public void testScoreAndGradient() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			LinkedList<KeyValue<IActivation, ActivationFunction>> activetionList = new LinkedList<>();
+			activetionList.add(new KeyValue<>(new ActivationSigmoid(), new SigmoidActivationFunction()));
+			activetionList.add(new KeyValue<>(new ActivationSoftmax(), new SoftMaxActivationFunction()));
+			for (KeyValue<IActivation, ActivationFunction> keyValue : activetionList) {
+				INDArray array = Nd4j.linspace(-2.5D, 2.0D, 20).reshape(5, 4);
+				INDArray labels = Nd4j.create(new double[] { 0D, 1D, 0D, 1D, 0D, 1D, 0D, 1D, 0D, 1D }).reshape(5, 2);
+
+				MathMatrix input = getMatrix(array.rows(), array.columns()).copyMatrix(getMatrix(array), false);
+				MathMatrix output = getMatrix(input.getRowSize(), input.getColumnSize());
+				ActivationFunction function = keyValue.getValue();
+				function.forward(input, output);
+				LossFunction newFunction = getNewFunction(function);
+				newFunction.doCache(getMatrix(labels.rows(), labels.columns()).copyMatrix(getMatrix(labels), false), output);
+				MathMatrix gradient = getMatrix(input.getRowSize(), input.getColumnSize());
+				newFunction.computeGradient(getMatrix(labels.rows(), labels.columns()).copyMatrix(getMatrix(labels), false), output, null, gradient);
+				float score = newFunction.computeScore(getMatrix(labels.rows(), labels.columns()).copyMatrix(getMatrix(labels), false), output, null);
+
+				// 合并计算必须与分别计算一致
+				MathMatrix fusion = getMatrix(input.getRowSize(), input.getColumnSize());
+				float value = newFunction.computeScoreAndGradient(getMatrix(labels.rows(), labels.columns()).copyMatrix(getMatrix(labels), false), output, null, fusion);
+				Assert.assertTrue(equalValue(score, value));
+				Assert.assertTrue(equalMatrix(fusion, gradient));
+			}
+		});
+		task.get();
+	}
+
 }
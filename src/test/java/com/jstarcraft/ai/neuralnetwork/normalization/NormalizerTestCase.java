@@ -0,0 +1,151 @@
+package com.jstarcraft.ai.neuralnetwork.normalization;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
+import com.jstarcraft.ai.neuralnetwork.normalization.NormalizationUtility.Norm;
+import com.jstarcraft.ai.neuralnetwork.normalization.Normalizer.Mode;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class NormalizerTestCase {
+
+	private static boolean equalValue(float left, float right) {
+		return Math.abs(left - right) <= 1E-4F * Math.max(1F, Math.max(Math.abs(left), Math.abs(right)));
+	}
+
+	private static DenseMatrix getRandom(int rowSize, int columnSize) {
+		DenseMatrix matrix = DenseMatrix.valueOf(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(2F) - 1F);
+		});
+		return matrix;
+	}
+
+	private static Map<String, MathMatrix> getGradients() {
+		Map<String, MathMatrix> gradients = new HashMap<>();
+		gradients.put("weight", getRandom(300, 70));
+		gradients.put("bias", getRandom(1, 70));
+		RowSparseMatrix sparse = RowSparseMatrix.valueOf(DenseMatrix.valueOf(1000, 20));
+		for (int index = 0; index < 50; index++) {
+			sparse.attachRow(RandomUtility.randomInteger(1000));
+		}
+		sparse.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(2F) - 1F);
+		});
+		gradients.put("embed", sparse);
+		return gradients;
+	}
+
+	private static Map<String, MathMatrix> copyGradients(Map<String, MathMatrix> gradients) {
+		Map<String, MathMatrix> copies = new HashMap<>();
+		for (Map.Entry<String, MathMatrix> term : gradients.entrySet()) {
+			MathMatrix gradient = term.getValue();
+			DenseMatrix copy = DenseMatrix.valueOf(gradient.getRowSize(), gradient.getColumnSize());
+			gradient.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+				copy.setValue(scalar.getRow(), scalar.getColumn(), scalar.getValue());
+			});
+			copies.put(term.getKey(), copy);
+		}
+		return copies;
+	}
+
+	private static float getNorm(Map<String, MathMatrix> gradients, Norm norm) {
+		float accumulation = 0F;
+		for (MathMatrix gradient : gradients.values()) {
+			for (int row = 0; row < gradient.getRowSize(); row++) {
+				for (int column = 0; column < gradient.getColumnSize(); column++) {
+					accumulation = norm.reduce(accumulation, gradient.getValue(row, column));
+				}
+			}
+		}
+		return norm.complete(accumulation);
+	}
+
+	private static void assertGradients(Map<String, MathMatrix> expects, Map<String, MathMatrix> actuals) {
+		for (String key : expects.keySet()) {
+			MathMatrix expect = expects.get(key);
+			MathMatrix actual = actuals.get(key);
+			for (int row = 0; row < expect.getRowSize(); row++) {
+				for (int column = 0; column < expect.getColumnSize(); column++) {
+					Assert.assertTrue(equalValue(expect.getValue(row, column), actual.getValue(row, column)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNorm() throws Exception {
+		EnvironmentContext context = EnvironmentContext.CPU;
+		Future<?> task = context.doTask(() -> {
+			Map<String, MathMatrix> gradients = getGradients();
+			Map<String, MathMatrix> copies = copyGradients(gradients);
+			for (Norm norm : Norm.values()) {
+				Assert.assertTrue(equalValue(getNorm(copies, norm), NormalizationUtility.getNorm(norm, gradients.values())));
+			}
+		});
+		task.get();
+	}
+
+	@Test
+	public void testNormalize() throws Exception {
+		EnvironmentContext context = EnvironmentContext.CPU;
+		Future<?> task = context.doTask(() -> {
+			{
+				Map<String, MathMatrix> gradients = getGradients();
+				Map<String, MathMatrix> copies = copyGradients(gradients);
+				float norm = getNorm(copies, Norm.L2);
+				for (MathMatrix copy : copies.values()) {
+					copy.scaleValues(1F / norm);
+				}
+				new Norm2Normalizer(Mode.GLOBAL).normalize(gradients);
+				assertGradients(copies, gradients);
+				Assert.assertTrue(equalValue(1F, NormalizationUtility.getNorm(Norm.L2, gradients.values())));
+			}
+
+			{
+				Map<String, MathMatrix> gradients = getGradients();
+				Map<String, MathMatrix> copies = copyGradients(gradients);
+				float threshold = 1F;
+				float norm = getNorm(copies, Norm.L2);
+				for (MathMatrix copy : copies.values()) {
+					copy.scaleValues(threshold / norm);
+				}
+				new ClipNorm2Normalizer(Mode.GLOBAL, threshold).normalize(gradients);
+				assertGradients(copies, gradients);
+			}
+
+			{
+				Map<String, MathMatrix> gradients = getGradients();
+				Map<String, MathMatrix> copies = copyGradients(gradients);
+				// 范数小于阈值时保持不变
+				new ClipNorm2Normalizer(Mode.LOCAL, Float.MAX_VALUE).normalize(gradients);
+				assertGradients(copies, gradients);
+			}
+
+			{
+				Map<String, MathMatrix> gradients = getGradients();
+				Map<String, MathMatrix> copies = copyGradients(gradients);
+				float threshold = 0.5F;
+				for (MathMatrix copy : copies.values()) {
+					copy.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+						float value = scalar.getValue();
+						scalar.setValue(value < -threshold ? -threshold : (value > threshold ? threshold : value));
+					});
+				}
+				new ClipNormalizer(threshold).normalize(gradients);
+				assertGradients(copies, gradients);
+			}
+		});
+		task.get();
+	}
+
+}
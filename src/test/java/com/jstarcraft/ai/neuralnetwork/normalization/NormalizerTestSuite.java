@@ -0,0 +1,13 @@
+package com.jstarcraft.ai.neuralnetwork.normalization;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+@RunWith(Suite.class)
+@SuiteClasses({
+		// 标准器测试集
+		NormalizerTestCase.class })
+public class NormalizerTestSuite {
+
+}
@@ -0,0 +1,63 @@
+package com.jstarcraft.ai.neuralnetwork.vertex;
+
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.DivideVertex;
+import com.jstarcraft.core.utility.KeyValue;
+
+public class DivideVertexTestCase {
+
+	private int rowSize = 5, columnSize = 3;
+
+	private DenseMatrix getMatrix(float from, float step) {
+		DenseMatrix matrix = DenseMatrix.valueOf(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(from + (scalar.getRow() * columnSize + scalar.getColumn()) * step);
+		});
+		return matrix;
+	}
+
+	@Test
+	public void testPropagate() throws Exception {
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			MathMatrix leftData = getMatrix(-2F, 0.25F);
+			MathMatrix rightData = getMatrix(0.5F, 0.125F);
+			MathMatrix leftError = DenseMatrix.valueOf(rowSize, columnSize);
+			MathMatrix rightError = DenseMatrix.valueOf(rowSize, columnSize);
+			Vertex vertex = new DivideVertex("divide", new DenseCache());
+			vertex.doCache(new KeyValue<>(leftData, leftError), new KeyValue<>(rightData, rightError));
+
+			vertex.doForward();
+			MathMatrix outputData = vertex.getOutputKeyValue().getKey();
+			MathMatrix outputError = vertex.getOutputKeyValue().getValue();
+			outputError.copyMatrix(getMatrix(1F, -0.1F), false);
+			vertex.doBackward();
+			for (int row = 0; row < rowSize; row++) {
+				for (int column = 0; column < columnSize; column++) {
+					float left = leftData.getValue(row, column);
+					float right = rightData.getValue(row, column);
+					float error = outputError.getValue(row, column);
+					Assert.assertEquals(left / right, outputData.getValue(row, column), 1E-6F);
+					// d(l/r)/dl = 1/r, d(l/r)/dr = -l/r^2
+					Assert.assertEquals(error / right, leftError.getValue(row, column), 1E-5F);
+					Assert.assertEquals(-error * left / (right * right), rightError.getValue(row, column), 1E-5F);
+				}
+			}
+		});
+		task.get();
+	}
+
+	@Test
+	public void testString() {
+		Assert.assertEquals("DivideVertex(name=divide)", new DivideVertex("divide", new DenseCache()).toString());
+	}
+
+}
@@ -0,0 +1,124 @@
+package com.jstarcraft.ai.neuralnetwork.vertex;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.hamcrest.CoreMatchers;
+import org.junit.Assert;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.model.ModelCodec;
+import com.jstarcraft.ai.neuralnetwork.GraphConfigurator;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.AverageVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.DivideVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.FusionVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.LimitVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.MinusVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.MultiplyVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.PlusVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.ScaleVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.ShiftVertex;
+import com.jstarcraft.core.utility.KeyValue;
+import com.jstarcraft.core.utility.RandomUtility;
+
+public class FusionVertexTestCase {
+
+	private int rowSize = 20, columnSize = 7;
+
+	private DenseMatrix getRandom() {
+		DenseMatrix matrix = DenseMatrix.valueOf(rowSize, columnSize);
+		matrix.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(RandomUtility.randomFloat(2F) + 0.5F);
+		});
+		return matrix;
+	}
+
+	private GraphConfigurator getConfigurator() {
+		MathCache factory = new DenseCache();
+		GraphConfigurator configurator = new GraphConfigurator();
+		// 输入节点没有依赖,不会被融合
+		configurator.connect(new ShiftVertex("left", factory, 0F));
+		configurator.connect(new ShiftVertex("right", factory, 0F));
+		configurator.connect(new PlusVertex("plus", factory), "left", "right");
+		configurator.connect(new ScaleVertex("scale", factory, 2F), "plus");
+		configurator.connect(new DivideVertex("divide", factory), "scale", "right");
+		configurator.connect(new MinusVertex("minus", factory), "left", "right");
+		configurator.connect(new MultiplyVertex("multiply", factory), "divide", "minus", "left");
+		configurator.connect(new ShiftVertex("shift", factory, -1F), "right");
+		configurator.connect(new AverageVertex("average", factory), "multiply", "shift");
+		configurator.connect(new LimitVertex("limit", factory, LimitVertex.Mode.Maximum), "average", "left");
+		return configurator;
+	}
+
+	/**
+	 * 按照索引顺序串行传播
+	 * 
+	 * @return 输出数据,左输入误差,右输入误差
+	 */
+	private MathMatrix[] propagate(GraphConfigurator configurator, MathMatrix leftData, MathMatrix rightData, MathMatrix error) {
+		Map<String, KeyValue<Integer, Vertex>> map = configurator.getVertices();
+		Vertex[] vertices = new Vertex[map.size()];
+		for (KeyValue<Integer, Vertex> keyValue : map.values()) {
+			vertices[keyValue.getKey()] = keyValue.getValue();
+		}
+		List<Integer>[] dependencies = configurator.calculateTopologicalOrder().getValue().getKey();
+		DenseMatrix leftError = DenseMatrix.valueOf(rowSize, columnSize);
+		DenseMatrix rightError = DenseMatrix.valueOf(rowSize, columnSize);
+		vertices[0].doCache(new KeyValue<>(leftData, leftError));
+		vertices[1].doCache(new KeyValue<>(rightData, rightError));
+		for (int index = 2; index < vertices.length; index++) {
+			KeyValue<MathMatrix, MathMatrix>[] keyValues = new KeyValue[dependencies[index].size()];
+			for (int position = 0; position < keyValues.length; position++) {
+				keyValues[position] = vertices[dependencies[index].get(position)].getOutputKeyValue();
+			}
+			vertices[index].doCache(keyValues);
+		}
+		for (Vertex vertex : vertices) {
+			vertex.doForward();
+		}
+		Vertex output = vertices[vertices.length - 1];
+		output.getOutputKeyValue().getValue().copyMatrix(error, false);
+		for (int index = vertices.length - 1; index >= 0; index--) {
+			vertices[index].doBackward();
+		}
+		return new MathMatrix[] { output.getOutputKeyValue().getKey(), leftError, rightError };
+	}
+
+	@Test
+	public void testFuse() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			GraphConfigurator oldConfigurator = getConfigurator();
+			GraphConfigurator newConfigurator = oldConfigurator.fuseVertices(new DenseCache());
+			// 除了输入节点,所有逐元素节点融合为一个节点
+			Assert.assertEquals(3, newConfigurator.getVertices().size());
+			Vertex fusion = newConfigurator.getVertices().get("limit").getValue();
+			Assert.assertTrue(fusion instanceof FusionVertex);
+
+			DenseMatrix leftData = getRandom();
+			DenseMatrix rightData = getRandom();
+			DenseMatrix error = getRandom();
+			MathMatrix[] oldResults = propagate(oldConfigurator, leftData, rightData, error);
+			MathMatrix[] newResults = propagate(newConfigurator, leftData, rightData, error);
+			for (int index = 0; index < oldResults.length; index++) {
+				Assert.assertEquals(oldResults[index], newResults[index]);
+			}
+
+			for (ModelCodec codec : ModelCodec.values()) {
+				byte[] data = codec.encodeModel(fusion);
+				Vertex model = (Vertex) codec.decodeModel(data);
+				Assert.assertThat(model, CoreMatchers.equalTo(fusion));
+			}
+		});
+		task.get();
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.jstarcraft.ai.neuralnetwork.vertex;
+
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jstarcraft.ai.environment.EnvironmentContext;
+import com.jstarcraft.ai.math.structure.DenseCache;
+import com.jstarcraft.ai.math.structure.MathCalculator;
+import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.LimitVertex;
+import com.jstarcraft.ai.neuralnetwork.vertex.operation.LimitVertex.Mode;
+import com.jstarcraft.core.utility.KeyValue;
+
+public class LimitVertexTestCase {
+
+	private int rowSize = 5, columnSize = 4;
+
+	private int numberOfInputs = 3;
+
+	/**
+	 * 检查每个元素的误差只传播到极限值所在的输入(多列保证每个元素独立地记录极限值的索引)
+	 */
+	private void checkPropagate(Mode mode) {
+		MathMatrix[] datas = new MathMatrix[numberOfInputs];
+		MathMatrix[] errors = new MathMatrix[numberOfInputs];
+		KeyValue<MathMatrix, MathMatrix>[] samples = new KeyValue[numberOfInputs];
+		for (int index = 0; index < numberOfInputs; index++) {
+			int input = index;
+			datas[index] = DenseMatrix.valueOf(rowSize, columnSize);
+			datas[index].iterateElement(MathCalculator.SERIAL, (scalar) -> {
+				// 每个元素的极限值位于不同的输入
+				scalar.setValue(((scalar.getRow() + scalar.getColumn() + input) % numberOfInputs) * 1.5F - scalar.getColumn());
+			});
+			errors[index] = DenseMatrix.valueOf(rowSize, columnSize);
+			samples[index] = new KeyValue<>(datas[index], errors[index]);
+		}
+		Vertex vertex = new LimitVertex("limit", new DenseCache(), mode);
+		vertex.doCache(samples);
+
+		vertex.doForward();
+		MathMatrix outputData = vertex.getOutputKeyValue().getKey();
+		MathMatrix outputError = vertex.getOutputKeyValue().getValue();
+		outputError.iterateElement(MathCalculator.SERIAL, (scalar) -> {
+			scalar.setValue(scalar.getRow() * columnSize + scalar.getColumn() + 1F);
+		});
+		vertex.doBackward();
+		for (int row = 0; row < rowSize; row++) {
+			for (int column = 0; column < columnSize; column++) {
+				int limit = 0;
+				for (int index = 1; index < numberOfInputs; index++) {
+					float value = datas[index].getValue(row, column);
+					if (mode == Mode.Maximum ? value > datas[limit].getValue(row, column) : value < datas[limit].getValue(row, column)) {
+						limit = index;
+					}
+				}
+				Assert.assertEquals(datas[limit].getValue(row, column), outputData.getValue(row, column), 0F);
+				for (int index = 0; index < numberOfInputs; index++) {
+					float error = index == limit ? outputError.getValue(row, column) : 0F;
+					Assert.assertEquals(error, errors[index].getValue(row, column), 0F);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPropagate() throws Exception {
+		Future<?> task = EnvironmentContext.CPU.doTask(() -> {
+			checkPropagate(Mode.Maximum);
+			checkPropagate(Mode.Minimum);
+		});
+		task.get();
+	}
+
+}
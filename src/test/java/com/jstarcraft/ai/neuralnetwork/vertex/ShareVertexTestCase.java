@@ -13,11 +13,15 @@ import com.jstarcraft.ai.environment.EnvironmentContext;
 import com.jstarcraft.ai.math.structure.DenseCache;
 import com.jstarcraft.ai.math.structure.MathCache;
 import com.jstarcraft.ai.math.structure.matrix.DenseMatrix;
+import com.jstarcraft.ai.math.structure.matrix.MathMatrix;
+import com.jstarcraft.ai.math.structure.matrix.RowSparseMatrix;
 import com.jstarcraft.ai.model.ModelCodec;
 import com.jstarcraft.ai.neuralnetwork.EpochMonitor;
 import com.jstarcraft.ai.neuralnetwork.Graph;
 import com.jstarcraft.ai.neuralnetwork.GraphConfigurator;
+import com.jstarcraft.ai.neuralnetwork.activation.IdentityActivationFunction;
 import com.jstarcraft.ai.neuralnetwork.activation.SigmoidActivationFunction;
+import com.jstarcraft.ai.neuralnetwork.layer.DropoutMasker;
 import com.jstarcraft.ai.neuralnetwork.layer.EmbedLayer;
 import com.jstarcraft.ai.neuralnetwork.layer.Layer;
 import com.jstarcraft.ai.neuralnetwork.layer.Layer.Mode;
@@ -27,11 +31,13 @@ import com.jstarcraft.ai.neuralnetwork.learn.SgdLearner;
 import com.jstarcraft.ai.neuralnetwork.loss.MSELossFunction;
 import com.jstarcraft.ai.neuralnetwork.normalization.IgnoreNormalizer;
 import com.jstarcraft.ai.neuralnetwork.optimization.StochasticGradientOptimizer;
+import com.jstarcraft.ai.neuralnetwork.parameter.CopyParameterFactory;
 import com.jstarcraft.ai.neuralnetwork.schedule.ConstantSchedule;
 import com.jstarcraft.ai.neuralnetwork.schedule.Schedule;
 import com.jstarcraft.ai.neuralnetwork.vertex.accumulation.SumVertex;
 import com.jstarcraft.ai.neuralnetwork.vertex.transformation.HorizontalAttachVertex;
 import com.jstarcraft.ai.neuralnetwork.vertex.transformation.HorizontalDetachVertex;
+import com.jstarcraft.core.utility.KeyValue;
 import com.jstarcraft.core.utility.RandomUtility;
 
 public class ShareVertexTestCase {
@@ -185,6 +191,106 @@ public class ShareVertexTestCase {
 		task.get();
 	}
 
+	@Test
+	public void testEmbed() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			MathCache factory = new DenseCache();
+			int numberOfShares = 2;
+			DenseMatrix weights = DenseMatrix.valueOf(discreteDimension, numberOfFactors);
+			for (int row = 0; row < discreteDimension; row++) {
+				for (int column = 0; column < numberOfFactors; column++) {
+					weights.setValue(row, column, row + column * 0.1F);
+				}
+			}
+			Map<String, ParameterConfigurator> weightConfigurators = new HashMap<>();
+			weightConfigurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0F, 0F, new CopyParameterFactory(weights)));
+			Layer embedLayer = new EmbedLayer(discreteDimension, numberOfFactors, factory, weightConfigurators, Mode.TRAIN, new IdentityActivationFunction());
+			ShareVertex shareVertex = new ShareVertex("embedCodec", factory, numberOfShares, embedLayer);
+			// 只检查归约的梯度,不执行学习器
+			shareVertex.setAccumulation(true);
+
+			// 索引0与1只在第一个共享出现,索引2与3只在第二个共享出现,索引4不出现
+			DenseMatrix inputs = DenseMatrix.valueOf(numberOfSamples, numberOfShares);
+			for (int point = 0; point < numberOfSamples; point++) {
+				inputs.setValue(point, 0, point % 2);
+				inputs.setValue(point, 1, point % 2 + 2);
+			}
+			shareVertex.doCache(new KeyValue<>(inputs, null));
+			shareVertex.doForward();
+			MathMatrix outputs = shareVertex.getOutputKeyValue().getKey();
+			for (int point = 0; point < numberOfSamples; point++) {
+				for (int shareIndex = 0; shareIndex < numberOfShares; shareIndex++) {
+					int index = (int) inputs.getValue(point, shareIndex);
+					for (int column = 0; column < numberOfFactors; column++) {
+						Assert.assertEquals(weights.getValue(index, column), outputs.getValue(point, shareIndex * numberOfFactors + column), 0F);
+					}
+				}
+			}
+
+			MathMatrix errors = shareVertex.getOutputKeyValue().getValue();
+			for (int point = 0; point < numberOfSamples; point++) {
+				for (int column = 0; column < numberOfFactors * numberOfShares; column++) {
+					errors.setValue(point, column, point + column);
+				}
+			}
+			shareVertex.doBackward();
+
+			DenseMatrix expect = DenseMatrix.valueOf(discreteDimension, numberOfFactors);
+			for (int point = 0; point < numberOfSamples; point++) {
+				for (int shareIndex = 0; shareIndex < numberOfShares; shareIndex++) {
+					int index = (int) inputs.getValue(point, shareIndex);
+					for (int column = 0; column < numberOfFactors; column++) {
+						expect.shiftValue(index, column, errors.getValue(point, shareIndex * numberOfFactors + column) / numberOfShares);
+					}
+				}
+			}
+			RowSparseMatrix gradients = RowSparseMatrix.class.cast(embedLayer.getGradients().get(WeightLayer.WEIGHT_KEY));
+			Assert.assertEquals(4, gradients.getKnownRowSize());
+			Assert.assertFalse(gradients.isKnownRow(4));
+			for (int row = 0; row < discreteDimension; row++) {
+				for (int column = 0; column < numberOfFactors; column++) {
+					Assert.assertEquals(expect.getValue(row, column), gradients.getValue(row, column), 0F);
+				}
+			}
+		});
+		task.get();
+	}
+
+	@Test
+	public void testDropout() throws Exception {
+		EnvironmentContext context = Nd4j.getAffinityManager().getClass().getSimpleName().equals("CpuAffinityManager") ? EnvironmentContext.CPU : EnvironmentContext.GPU;
+		Future<?> task = context.doTask(() -> {
+			MathCache factory = new DenseCache();
+			int numberOfShares = 2;
+			DenseMatrix weights = DenseMatrix.valueOf(1, numberOfFactors);
+			weights.setValues(1F);
+			Map<String, ParameterConfigurator> weightConfigurators = new HashMap<>();
+			weightConfigurators.put(WeightLayer.WEIGHT_KEY, new ParameterConfigurator(0F, 0F, new CopyParameterFactory(weights)));
+			WeightLayer weightLayer = new WeightLayer(1, numberOfFactors, factory, weightConfigurators, Mode.TRAIN, new IdentityActivationFunction());
+			weightLayer.setDropout(new DropoutMasker(new ConstantSchedule(0.5F), 10L));
+			ShareVertex shareVertex = new ShareVertex("dropoutCodec", factory, numberOfShares, weightLayer);
+
+			// 所有共享的输入相同,只有掩码可能不同
+			DenseMatrix inputs = DenseMatrix.valueOf(numberOfSamples, numberOfShares);
+			inputs.setValues(1F);
+			shareVertex.doCache(new KeyValue<>(inputs, null));
+			shareVertex.doForward();
+			MathMatrix outputs = shareVertex.getOutputKeyValue().getKey();
+			boolean different = false;
+			for (int point = 0; point < numberOfSamples; point++) {
+				for (int column = 0; column < numberOfFactors; column++) {
+					if (outputs.getValue(point, column) != outputs.getValue(point, numberOfFactors + column)) {
+						different = true;
+					}
+				}
+			}
+			// 每个共享使用独立的随机流
+			Assert.assertTrue(different);
+		});
+		task.get();
+	}
+
 	@Test
 	public void testModel() {
 		MathCache factory = new DenseCache();
@@ -7,12 +7,18 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
 		// 节点测试集
+		DivideVertexTestCase.class,
+
 		EuclideanVertexTestCase.class,
 
+		FusionVertexTestCase.class,
+
 		HorizontalStackVertexTestCase.class,
 
 		HorizontalUnstackVertexTestCase.class,
 
+		LimitVertexTestCase.class,
+
 		MinusVertexTestCase.class,
 
 		MultiplyVertexTestCase.class,